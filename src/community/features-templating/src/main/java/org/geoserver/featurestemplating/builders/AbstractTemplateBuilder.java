@@ -12,6 +12,7 @@ import org.geotools.filter.LiteralExpressionImpl;
 import org.geotools.filter.text.cql2.CQLException;
 import org.opengis.filter.Filter;
 import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
 import org.xml.sax.helpers.NamespaceSupport;
 
 /**
@@ -21,6 +22,9 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
 
     protected Expression key;
 
+    /** The key value, resolved once at parse time when the key is not a dynamic expression */
+    protected String staticKey;
+
     protected Filter filter;
 
     protected int filterContextPos = 0;
@@ -29,6 +33,7 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
 
     public AbstractTemplateBuilder(String key, NamespaceSupport namespaces) {
         this.key = getKeyAsExpression(key);
+        this.staticKey = getStaticKey(this.key);
         this.namespaces = namespaces;
     }
 
@@ -48,11 +53,13 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
     }
 
     public String getKey() {
+        if (staticKey != null) return staticKey;
         return key != null ? key.evaluate(null).toString() : null;
     }
 
     public void setKey(String key) {
         this.key = getKeyAsExpression(key);
+        this.staticKey = getStaticKey(this.key);
     }
 
     /**
@@ -92,10 +99,13 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
      * @throws IOException
      */
     protected void writeKey(TemplateOutputWriter writer) throws IOException {
-        if (key != null && !key.evaluate(null).equals(""))
-            // key might be and EnvFunction or a Literal. In both cases
-            // no argument is needed for the evaluation thus passing null.
-            writer.writeElementName(key.evaluate(null));
+        if (staticKey != null) {
+            if (!staticKey.equals("")) writer.writeElementName(staticKey);
+        } else if (key != null) {
+            // key is an EnvFunction, no argument is needed for the evaluation thus passing null.
+            Object keyValue = key.evaluate(null);
+            if (keyValue != null && !keyValue.equals("")) writer.writeElementName(keyValue);
+        }
     }
 
     public NamespaceSupport getNamespaces() {
@@ -116,4 +126,12 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
         }
         return keyExpr;
     }
+
+    private String getStaticKey(Expression key) {
+        if (key instanceof Literal) {
+            Object value = key.evaluate(null);
+            return value != null ? value.toString() : null;
+        }
+        return null;
+    }
 }
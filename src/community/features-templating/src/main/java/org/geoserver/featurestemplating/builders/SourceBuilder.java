@@ -18,6 +18,12 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
 
     private Expression source;
 
+    /** The source xpath, resolved once at parse time when not computed by an expression */
+    private String strSource;
+
+    /** The last xpath produced by a dynamic source expression, reused while it does not change */
+    private volatile AttributeExpressionImpl dynamicSource;
+
     protected List<TemplateBuilder> children;
 
     public SourceBuilder(String key, NamespaceSupport namespaces) {
@@ -33,9 +39,11 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
      */
     public TemplateBuilderContext evaluateSource(TemplateBuilderContext context) {
 
-        if (source != null && !getStrSource().equals(context.getCurrentSource())) {
+        if (source == null) return context;
+        String strSource = getStrSource();
+        if (!strSource.equals(context.getCurrentSource())) {
             Object o = evaluateSource(context.getCurrentObj());
-            TemplateBuilderContext newContext = new TemplateBuilderContext(o, getStrSource());
+            TemplateBuilderContext newContext = new TemplateBuilderContext(o, strSource);
             newContext.setParent(context);
             return newContext;
         }
@@ -50,13 +58,25 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
      */
     public Object evaluateSource(Object o) {
         if (!(source instanceof AttributeExpressionImpl)) {
-            AttributeExpressionImpl sourceToEval =
-                    new AttributeExpressionImpl(source.evaluate(null).toString(), namespaces);
-            return sourceToEval.evaluate(o);
+            return getDynamicSource().evaluate(o);
         }
         return source.evaluate(o);
     }
 
+    /**
+     * Resolves the xpath produced by a dynamic source expression, reusing the previously built
+     * one, along with its cached property accessor, when the expression result did not change
+     */
+    private AttributeExpressionImpl getDynamicSource() {
+        String xpath = source.evaluate(null).toString();
+        AttributeExpressionImpl result = dynamicSource;
+        if (result == null || !xpath.equals(result.getPropertyName())) {
+            result = new AttributeExpressionImpl(xpath, namespaces);
+            dynamicSource = result;
+        }
+        return result;
+    }
+
     @Override
     public void addChild(TemplateBuilder builder) {
         this.children.add(builder);
@@ -74,7 +94,7 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
      */
     public Expression getSource() {
         if (!(source instanceof AttributeExpressionImpl) && source != null) {
-            return new AttributeExpressionImpl(source.evaluate(null).toString(), namespaces);
+            return getDynamicSource();
         }
         return source;
     }
@@ -85,11 +105,9 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
      * @return the source a string
      */
     public String getStrSource() {
+        if (strSource != null) return strSource;
         if (source == null) return null;
-
-        if (source instanceof AttributeExpressionImpl)
-            return ((AttributeExpressionImpl) source).getPropertyName();
-        else return source.evaluate(null).toString();
+        return source.evaluate(null).toString();
     }
 
     /**
@@ -104,5 +122,10 @@ public abstract class SourceBuilder extends AbstractTemplateBuilder {
             this.source =
                     new AttributeExpressionImpl(sourceExpr.evaluate(null).toString(), namespaces);
         else this.source = sourceExpr;
+        this.strSource =
+                this.source instanceof AttributeExpressionImpl
+                        ? ((AttributeExpressionImpl) this.source).getPropertyName()
+                        : null;
+        this.dynamicSource = null;
     }
 }
@@ -74,6 +74,7 @@ public class CompositeBuilder extends SourceBuilder {
 
     @Override
     protected void writeKey(TemplateOutputWriter writer) throws IOException {
-        if (key != null && !key.equals("")) writer.writeElementName(key);
+        if (key != null && !key.equals(""))
+            writer.writeElementName(staticKey != null ? staticKey : key);
     }
 }
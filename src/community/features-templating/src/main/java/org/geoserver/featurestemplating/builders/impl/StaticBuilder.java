@@ -4,21 +4,36 @@
  */
 package org.geoserver.featurestemplating.builders.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.geoserver.featurestemplating.builders.AbstractTemplateBuilder;
 import org.geoserver.featurestemplating.writers.TemplateOutputWriter;
+import org.geotools.util.logging.Logging;
 import org.xml.sax.helpers.NamespaceSupport;
 
 /** This class provides functionality to write content from Json-ld template file as it is */
 public class StaticBuilder extends AbstractTemplateBuilder {
 
+    private static final Logger LOGGER = Logging.getLogger(StaticBuilder.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     protected JsonNode staticValue;
     protected String strValue;
 
+    /** The static value, serialized once when the template is parsed and written out as is */
+    protected SerializableString encodedValue;
+
     public StaticBuilder(String key, JsonNode value, NamespaceSupport namespaces) {
         super(key, namespaces);
         this.staticValue = value;
+        this.encodedValue = encode(value);
     }
 
     public StaticBuilder(String key, String strValue, NamespaceSupport namespaces) {
@@ -37,9 +52,20 @@ public class StaticBuilder extends AbstractTemplateBuilder {
     protected void evaluateInternal(TemplateOutputWriter writer, TemplateBuilderContext context)
             throws IOException {
         if (strValue != null) writer.writeStaticContent(getKey(), strValue);
+        else if (encodedValue != null) writer.writeStaticContent(getKey(), encodedValue);
         else writer.writeStaticContent(getKey(), staticValue);
     }
 
+    private static SerializableString encode(JsonNode value) {
+        if (value == null) return null;
+        try {
+            return new SerializedString(MAPPER.writeValueAsString(value));
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.FINE, "Could not pre-encode static template content", e);
+            return null;
+        }
+    }
+
     /**
      * Get the static value as a JsonNode
      *
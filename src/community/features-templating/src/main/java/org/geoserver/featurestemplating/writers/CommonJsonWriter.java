@@ -34,6 +34,10 @@ public abstract class CommonJsonWriter extends com.fasterxml.jackson.core.JsonGe
     public void writeStaticContent(String key, Object staticContent) throws IOException {
         if (staticContent instanceof String) {
             writeStringField(key, (String) staticContent);
+        } else if (staticContent instanceof SerializableString) {
+            // content encoded in advance, see StaticBuilder
+            if (key != null && !key.equals("")) writeFieldName(key);
+            writeRawValue((SerializableString) staticContent);
         } else {
             JsonNode jsonNode = (JsonNode) staticContent;
             if (jsonNode.isArray()) writeArrayNode(key, jsonNode);
@@ -325,6 +329,11 @@ public abstract class CommonJsonWriter extends com.fasterxml.jackson.core.JsonGe
         delegate.writeRaw(c);
     }
 
+    @Override
+    public void writeRawValue(SerializableString serializableString) throws IOException {
+        delegate.writeRawValue(serializableString);
+    }
+
     @Override
     public void writeRawValue(String s) throws IOException {
         delegate.writeRawValue(s);
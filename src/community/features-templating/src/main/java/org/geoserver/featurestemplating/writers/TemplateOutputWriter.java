@@ -30,7 +30,8 @@ public interface TemplateOutputWriter extends Closeable {
     void writeElementValue(Object elementValue) throws IOException;
 
     /**
-     * Write a static content, no matter how nested.
+     * Write a static content, no matter how nested. Implementations may also receive content
+     * already encoded in their own output format, to be written out as is.
      *
      * @param name the name of the element
      * @param staticContent an object representing some static content
@@ -4,12 +4,16 @@ import static org.junit.Assert.assertEquals;
 
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
+import org.geoserver.featurestemplating.builders.impl.StaticBuilder;
+import org.geoserver.featurestemplating.builders.impl.TemplateBuilderContext;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.junit.Test;
@@ -58,4 +62,35 @@ public class JsonWriterTest {
         JSONObject json = (JSONObject) JSONSerializer.toJSON(jsonString);
         assertEquals(json.getString("url"), "http://some/url/to.test");
     }
+
+    @Test
+    public void testStaticContentEncodedOnce() throws IOException {
+        // the static builder pre-encodes its content, the output must match the node based one
+        JsonNode node =
+                new ObjectMapper()
+                        .readTree("{\"a\":\"text\",\"b\":[1,2.5,true],\"c\":{\"d\":\"e\"}}");
+        StaticBuilder builder = new StaticBuilder("static", node, null);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        JsonLdWriter writer =
+                new JsonLdWriter(new JsonFactory().createGenerator(encoded, JsonEncoding.UTF8));
+        writer.writeStartObject();
+        builder.evaluate(writer, new TemplateBuilderContext(null));
+        builder.evaluate(writer, new TemplateBuilderContext(null));
+        writer.writeFieldName("after");
+        writer.writeString("value");
+        writer.endObject();
+        writer.close();
+
+        ByteArrayOutputStream walked = new ByteArrayOutputStream();
+        writer = new JsonLdWriter(new JsonFactory().createGenerator(walked, JsonEncoding.UTF8));
+        writer.writeStartObject();
+        writer.writeObjectNode("static", node);
+        writer.writeObjectNode("static", node);
+        writer.writeFieldName("after");
+        writer.writeString("value");
+        writer.endObject();
+        writer.close();
+
+        assertEquals(new String(walked.toByteArray()), new String(encoded.toByteArray()));
+    }
 }
@@ -10,6 +10,9 @@ import static org.geoserver.geopkg.GeoPkg.*;
 import com.google.common.collect.Sets;
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -129,6 +132,37 @@ public class GeoPackageGetMapOutputFormat extends AbstractTilesGetMapOutputForma
             geopkg.add(e, t);
         }
 
+        @Override
+        public void addTiles(List<TileData> tiles) throws IOException {
+            // a single transaction for the whole batch, way faster than one per tile
+            String sql =
+                    "INSERT INTO \""
+                            + e.getTableName()
+                            + "\" (zoom_level, tile_column, tile_row, tile_data) VALUES (?,?,?,?)";
+            try (Connection cx = geopkg.getDataSource().getConnection()) {
+                boolean autoCommit = cx.getAutoCommit();
+                cx.setAutoCommit(false);
+                try (PreparedStatement ps = cx.prepareStatement(sql)) {
+                    for (TileData tile : tiles) {
+                        ps.setInt(1, tile.zoom);
+                        ps.setInt(2, tile.x);
+                        ps.setInt(3, tile.y);
+                        ps.setBytes(4, tile.data);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    cx.commit();
+                } catch (SQLException ex) {
+                    cx.rollback();
+                    throw ex;
+                } finally {
+                    cx.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+
         @Override
         public File getFile() {
             return geopkg.getFile();
@@ -196,6 +196,9 @@ public class FeatureLayerController extends AbstractGSRController {
                         whereClause,
                         false,
                         null,
+                        null,
+                        null,
+                        true,
                         l);
         long[] ids = FeatureEncoder.objectIds(features).getObjectIds();
         List<Long> idsList = Arrays.stream(ids).boxed().collect(Collectors.toList());
@@ -22,6 +22,9 @@ import org.geoserver.gsr.model.map.LayersAndTables;
 import org.geoserver.gsr.translate.feature.FeatureDAO;
 import org.geoserver.gsr.translate.map.LayerDAO;
 import org.geoserver.wfs.WFSInfo;
+import org.geotools.feature.FeatureCollection;
+import org.opengis.feature.Feature;
+import org.opengis.feature.type.FeatureType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
@@ -122,29 +125,27 @@ public class FeatureServiceController extends QueryController {
             if (l.getType() != PublishedType.VECTOR) {
                 break;
             }
-            FeatureList features =
-                    new FeatureList(
-                            FeatureDAO.getFeatureCollectionForLayer(
-                                    workspaceName,
-                                    layerOrTable.getId(),
-                                    geometryTypeName,
-                                    geometryText,
-                                    inSRText,
-                                    outSRText,
-                                    spatialRelText,
-                                    objectIdsText,
-                                    relatePattern,
-                                    time,
-                                    text,
-                                    maxAllowableOffsets,
-                                    whereClause,
-                                    returnGeometry,
-                                    outFieldsText,
-                                    l),
+            FeatureCollection<? extends FeatureType, ? extends Feature> collection =
+                    FeatureDAO.getFeatureCollectionForLayer(
+                            workspaceName,
+                            layerOrTable.getId(),
+                            geometryTypeName,
+                            geometryText,
+                            inSRText,
+                            outSRText,
+                            spatialRelText,
+                            objectIdsText,
+                            relatePattern,
+                            time,
+                            text,
+                            maxAllowableOffsets,
+                            whereClause,
                             returnGeometry,
-                            outSRText);
-            if (features.features.size() > 0) {
-                layer.setFeatures(features);
+                            outFieldsText,
+                            l);
+            // the feature list is encoded while streaming the response, check emptiness upfront
+            if (!collection.isEmpty()) {
+                layer.setFeatures(new FeatureList(collection, returnGeometry, outSRText));
                 queryResult.getLayers().add(layer);
             }
         }
@@ -13,12 +13,15 @@ import java.io.IOException;
 import org.geoserver.config.GeoServer;
 import org.geoserver.gsr.api.AbstractGSRController;
 import org.geoserver.gsr.model.GSRModel;
+import org.geoserver.gsr.model.feature.FeatureCount;
 import org.geoserver.gsr.model.feature.FeatureList;
+import org.geoserver.gsr.model.geometry.Envelope;
 import org.geoserver.gsr.model.map.LayersAndTables;
 import org.geoserver.gsr.translate.feature.FeatureDAO;
 import org.geoserver.gsr.translate.feature.FeatureEncoder;
 import org.geoserver.gsr.translate.map.LayerDAO;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.FeatureType;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -75,12 +78,31 @@ public class QueryController extends AbstractGSRController {
                     String outFieldsText,
             @RequestParam(name = "returnIdsOnly", required = false, defaultValue = "false")
                     boolean returnIdsOnly,
+            @RequestParam(name = "returnCountOnly", required = false, defaultValue = "false")
+                    boolean returnCountOnly,
+            @RequestParam(name = "returnExtentOnly", required = false, defaultValue = "false")
+                    boolean returnExtentOnly,
+            @RequestParam(name = "resultOffset", required = false) Integer resultOffset,
+            @RequestParam(name = "resultRecordCount", required = false)
+                    Integer resultRecordCount,
             @RequestParam(name = "quantizationParameters", required = false)
                     String quantizationParameters)
             throws IOException {
 
         LayersAndTables layersAndTables = LayerDAO.find(catalog, workspaceName);
 
+        // counts, extents and ids cover all the matching features, paging applies only to the
+        // feature list, with an extra feature to tell whether the transfer limit was exceeded
+        boolean summary = returnCountOnly || returnExtentOnly || returnIdsOnly;
+        Integer offset = summary ? null : resultOffset;
+        Integer limit = null;
+        if (!summary && resultRecordCount != null) {
+            limit =
+                    resultRecordCount < Integer.MAX_VALUE
+                            ? resultRecordCount + 1
+                            : resultRecordCount;
+        }
+
         FeatureCollection<? extends FeatureType, ? extends Feature> features =
                 FeatureDAO.getFeatureCollectionForLayerWithId(
                         workspaceName,
@@ -98,12 +120,30 @@ public class QueryController extends AbstractGSRController {
                         whereClause,
                         returnGeometry,
                         outFieldsText,
+                        offset,
+                        limit,
+                        returnIdsOnly || (returnCountOnly && !returnExtentOnly),
                         layersAndTables);
-        if (returnIdsOnly) {
+        if (returnCountOnly || returnExtentOnly) {
+            Integer count = returnCountOnly ? features.size() : null;
+            Envelope extent = null;
+            if (returnExtentOnly) {
+                ReferencedEnvelope bounds = features.getBounds();
+                if (bounds != null && !bounds.isNull()) {
+                    extent = new Envelope(bounds);
+                }
+            }
+            return new FeatureCount(count, extent);
+        } else if (returnIdsOnly) {
             return FeatureEncoder.objectIds(features);
         } else {
             FeatureList featureList =
-                    new FeatureList(features, returnGeometry, outSRText, quantizationParameters);
+                    new FeatureList(
+                            features,
+                            returnGeometry,
+                            outSRText,
+                            quantizationParameters,
+                            limit == null ? null : resultRecordCount);
             return featureList;
         }
     }
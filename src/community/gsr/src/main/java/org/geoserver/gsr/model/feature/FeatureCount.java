@@ -0,0 +1,34 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gsr.model.feature;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.geoserver.gsr.model.GSRModel;
+import org.geoserver.gsr.model.geometry.Envelope;
+
+/**
+ * Response of a query with <code>returnCountOnly</code> and/or <code>returnExtentOnly</code>, both
+ * computed by the store without reading the features
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeatureCount implements GSRModel {
+
+    private final Integer count;
+
+    private final Envelope extent;
+
+    public FeatureCount(Integer count, Envelope extent) {
+        this.count = count;
+        this.extent = extent;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public Envelope getExtent() {
+        return extent;
+    }
+}
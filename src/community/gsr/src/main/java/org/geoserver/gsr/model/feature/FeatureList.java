@@ -11,8 +11,16 @@
 package org.geoserver.gsr.model.feature;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 import org.apache.commons.lang.StringUtils;
@@ -42,9 +50,23 @@ import org.opengis.referencing.operation.TransformException;
 /**
  * List of {@link Feature}, that can be serialized as JSON
  *
+ * <p>The features are not loaded in memory, they are read from the collection and encoded one at a
+ * time while the list is being serialized. The feature iterator is closed once serialization
+ * completes or fails (e.g., on client disconnect), see {@link FeaturesSerializer}.
+ *
  * <p>See https://developers.arcgis.com/documentation/common-data-types/featureset-object.htm
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({
+    "objectIdFieldName",
+    "globalIdFieldName",
+    "geometryType",
+    "spatialReference",
+    "transform",
+    "fields",
+    "features",
+    "exceededTransferLimit"
+})
 public class FeatureList implements GSRModel {
 
     public final String objectIdFieldName = FeatureEncoder.OBJECTID_FIELD_NAME;
@@ -59,7 +81,12 @@ public class FeatureList implements GSRModel {
 
     public final ArrayList<Field> fields = new ArrayList<>();
 
-    public final ArrayList<Feature> features = new ArrayList<>();
+    @JsonSerialize(using = FeaturesSerializer.class)
+    public final Iterable<Feature> features;
+
+    private final Integer limit;
+
+    private Boolean exceededTransferLimit;
 
     public <T extends FeatureType, F extends org.opengis.feature.Feature> FeatureList(
             FeatureCollection<T, F> collection, boolean returnGeometry) throws IOException {
@@ -78,6 +105,27 @@ public class FeatureList implements GSRModel {
             String outputSR,
             String quantizationParameters)
             throws IOException {
+        this(collection, returnGeometry, outputSR, quantizationParameters, null);
+    }
+
+    /**
+     * Builds a feature list
+     *
+     * @param collection The features, if paging, it should contain one feature more than the
+     *     limit, to find out whether the transfer limit has been exceeded
+     * @param returnGeometry Whether to include the geometries
+     * @param outputSR The output spatial reference, optional
+     * @param quantizationParameters The quantization parameters, optional
+     * @param limit The maximum number of features to encode, or null for no limit
+     */
+    public <T extends FeatureType, F extends org.opengis.feature.Feature> FeatureList(
+            FeatureCollection<T, F> collection,
+            boolean returnGeometry,
+            String outputSR,
+            String quantizationParameters,
+            Integer limit)
+            throws IOException {
+        this.limit = limit;
 
         T schema = collection.getSchema();
 
@@ -182,16 +230,111 @@ public class FeatureList implements GSRModel {
 
         fields.add(FeatureEncoder.syntheticObjectIdField(objectIdFieldName));
 
-        try (FeatureIterator<F> iterator = collection.features()) {
-            while (iterator.hasNext()) {
-                org.opengis.feature.Feature feature = iterator.next();
-                features.add(
-                        FeatureEncoder.feature(
-                                feature,
-                                returnGeometry,
-                                spatialReference,
-                                objectIdFieldName,
-                                geometryEncoder));
+        features =
+                () ->
+                        new FeatureStream<>(
+                                collection.features(), returnGeometry, geometryEncoder);
+    }
+
+    /**
+     * Whether there were more features than the limit, only available once the features have been
+     * encoded, which is why it's serialized after them
+     */
+    public Boolean getExceededTransferLimit() {
+        return exceededTransferLimit;
+    }
+
+    /**
+     * Writes the features as an array, closing the iterator in all cases, the iterator might hold
+     * resources such as a database connection
+     */
+    static class FeaturesSerializer extends JsonSerializer<Iterable<Feature>> {
+
+        @Override
+        public void serialize(
+                Iterable<Feature> features, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            Iterator<Feature> it = features.iterator();
+            try {
+                gen.writeStartArray();
+                while (it.hasNext()) {
+                    provider.defaultSerializeValue(it.next(), gen);
+                }
+                gen.writeEndArray();
+            } finally {
+                if (it instanceof Closeable) {
+                    ((Closeable) it).close();
+                }
+            }
+        }
+    }
+
+    /** Encodes the features while iterating, closing the feature iterator when done */
+    private class FeatureStream<F extends org.opengis.feature.Feature>
+            implements Iterator<Feature>, Closeable {
+
+        private final FeatureIterator<F> delegate;
+
+        private final boolean returnGeometry;
+
+        private final AbstractGeometryEncoder geometryEncoder;
+
+        private int count;
+
+        private boolean closed;
+
+        FeatureStream(
+                FeatureIterator<F> delegate,
+                boolean returnGeometry,
+                AbstractGeometryEncoder geometryEncoder) {
+            this.delegate = delegate;
+            this.returnGeometry = returnGeometry;
+            this.geometryEncoder = geometryEncoder;
+            if (limit != null) {
+                exceededTransferLimit = false;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            boolean hasNext = delegate.hasNext();
+            if (hasNext && limit != null && count >= limit) {
+                exceededTransferLimit = true;
+                hasNext = false;
+            }
+            if (!hasNext) {
+                close();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                delegate.close();
+            }
+        }
+
+        @Override
+        public Feature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                count++;
+                return FeatureEncoder.feature(
+                        delegate.next(),
+                        returnGeometry,
+                        spatialReference,
+                        objectIdFieldName,
+                        geometryEncoder);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
             }
         }
     }
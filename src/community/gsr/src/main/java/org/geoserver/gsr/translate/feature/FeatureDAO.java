@@ -52,6 +52,7 @@ import org.opengis.feature.type.*;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -649,6 +650,59 @@ public class FeatureDAO {
                     String outFieldsText,
                     LayersAndTables layersAndTables)
                     throws IOException {
+        return getFeatureCollectionForLayerWithId(
+                workspaceName,
+                layerId,
+                geometryTypeName,
+                geometryText,
+                inSRText,
+                outSRText,
+                spatialRelText,
+                objectIdsText,
+                relatePattern,
+                time,
+                text,
+                maxAllowableOffsets,
+                whereClause,
+                returnGeometry,
+                outFieldsText,
+                null,
+                null,
+                false,
+                layersAndTables);
+    }
+
+    /**
+     * Same as {@link #getFeatureCollectionForLayerWithId(String, Integer, String, String, String,
+     * String, String, String, String, String, String, String, String, Boolean, String,
+     * LayersAndTables)}, with paging and id-only support
+     *
+     * @see #getFeatureCollectionForLayer(String, Integer, String, String, String, String, String,
+     *     String, String, String, String, String, String, Boolean, String, Integer, Integer,
+     *     boolean, LayerInfo)
+     */
+    public static FeatureCollection<? extends FeatureType, ? extends Feature>
+            getFeatureCollectionForLayerWithId(
+                    String workspaceName,
+                    Integer layerId,
+                    String geometryTypeName,
+                    String geometryText,
+                    String inSRText,
+                    String outSRText,
+                    String spatialRelText,
+                    String objectIdsText,
+                    String relatePattern,
+                    String time,
+                    String text,
+                    String maxAllowableOffsets,
+                    String whereClause,
+                    Boolean returnGeometry,
+                    String outFieldsText,
+                    Integer resultOffset,
+                    Integer resultRecordCount,
+                    boolean returnIdsOnly,
+                    LayersAndTables layersAndTables)
+                    throws IOException {
 
         LayerInfo l = null;
         for (LayerOrTable layerOrTable : layersAndTables.layers) {
@@ -688,6 +742,9 @@ public class FeatureDAO {
                 whereClause,
                 returnGeometry,
                 outFieldsText,
+                resultOffset,
+                resultRecordCount,
+                returnIdsOnly,
                 l);
     }
 
@@ -746,6 +803,73 @@ public class FeatureDAO {
                     String outFieldsText,
                     LayerInfo l)
                     throws IOException {
+        return getFeatureCollectionForLayer(
+                workspaceName,
+                layerId,
+                geometryTypeName,
+                geometryText,
+                inSRText,
+                outSRText,
+                spatialRelText,
+                objectIdsText,
+                relatePattern,
+                time,
+                text,
+                maxAllowableOffsets,
+                whereClause,
+                returnGeometry,
+                outFieldsText,
+                null,
+                null,
+                false,
+                l);
+    }
+
+    /**
+     * Returns a list of features from a single layer, matching the provided criteria. Paging and
+     * id-only projections are part of the query, so that the store can handle them natively
+     * (e.g., with a SQL offset/limit, or without reading the attributes)
+     *
+     * @see #getFeatureCollectionForLayer(String, Integer, String, String, String, String, String,
+     *     String, String, String, String, String, String, Boolean, String, LayerInfo) for a
+     *     description of the other parameters
+     * @param resultOffset The number of features to skip, optional
+     * @param resultRecordCount The maximum number of features to return, optional
+     * @param returnIdsOnly If true, only the feature ids are read, the other properties are not
+     * @return List of features for the layer, filtered by the provided pararameters.
+     * @throws IOException
+     */
+    public static FeatureCollection<? extends FeatureType, ? extends Feature>
+            getFeatureCollectionForLayer(
+                    String workspaceName,
+                    Integer layerId,
+                    String geometryTypeName,
+                    String geometryText,
+                    String inSRText,
+                    String outSRText,
+                    String spatialRelText,
+                    String objectIdsText,
+                    String relatePattern,
+                    String time,
+                    String text,
+                    String maxAllowableOffsets,
+                    String whereClause,
+                    Boolean returnGeometry,
+                    String outFieldsText,
+                    Integer resultOffset,
+                    Integer resultRecordCount,
+                    boolean returnIdsOnly,
+                    LayerInfo l)
+                    throws IOException {
+        if (resultOffset != null && resultOffset < 0) {
+            throw new IllegalArgumentException(
+                    "'resultOffset' must be a non negative integer; was " + resultOffset);
+        }
+        if (resultRecordCount != null && resultRecordCount < 0) {
+            throw new IllegalArgumentException(
+                    "'resultRecordCount' must be a non negative integer; was "
+                            + resultRecordCount);
+        }
         FeatureTypeInfo featureType = (FeatureTypeInfo) l.getResource();
         if (null == featureType) {
             throw new NoSuchElementException(
@@ -780,7 +904,9 @@ public class FeatureDAO {
         FeatureSource<? extends FeatureType, ? extends Feature> source =
                 featureType.getFeatureSource(null, null);
         final String[] effectiveProperties =
-                adjustProperties(returnGeometry, properties, source.getSchema());
+                returnIdsOnly
+                        ? Query.NO_NAMES
+                        : adjustProperties(returnGeometry, properties, source.getSchema());
 
         final Query query;
         if (effectiveProperties == null) {
@@ -789,6 +915,18 @@ public class FeatureDAO {
             query = new Query(featureType.getName(), filter, effectiveProperties);
         }
         query.setCoordinateSystemReproject(outSR);
+        if (resultOffset != null) {
+            query.setStartIndex(resultOffset);
+        }
+        if (resultRecordCount != null) {
+            query.setMaxFeatures(resultRecordCount);
+        }
+        // paging needs a stable order, use the natural one (e.g., primary key) when possible
+        SortBy[] naturalOrder = {SortBy.NATURAL_ORDER};
+        if ((resultOffset != null || resultRecordCount != null)
+                && source.getQueryCapabilities().supportsSorting(naturalOrder)) {
+            query.setSortBy(naturalOrder);
+        }
 
         return source.getFeatures(query);
     }
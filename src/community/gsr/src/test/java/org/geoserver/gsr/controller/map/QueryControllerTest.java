@@ -467,4 +467,62 @@ public class QueryControllerTest extends ControllerTest {
         System.out.println(obj.toString());
         assertFalse(obj.has("error"));
     }
+
+    @Test
+    public void testPagedQuery() throws Exception {
+        String base = "?f=json&geometryType=esriGeometryEnvelope&geometry=-180,-90,180,90";
+        JSONObject json = (JSONObject) getAsJSON(query("cite", 11, base + "&resultRecordCount=1"));
+        assertEquals(1, json.getJSONArray("features").size());
+        assertTrue(json.getBoolean("exceededTransferLimit"));
+
+        json =
+                (JSONObject)
+                        getAsJSON(
+                                query(
+                                        "cite",
+                                        11,
+                                        base + "&resultOffset=1&resultRecordCount=1"));
+        assertEquals(1, json.getJSONArray("features").size());
+        assertFalse(json.getBoolean("exceededTransferLimit"));
+
+        // not paged, no transfer limit
+        json = (JSONObject) getAsJSON(query("cite", 11, base));
+        assertEquals(2, json.getJSONArray("features").size());
+        assertFalse(json.has("exceededTransferLimit"));
+    }
+
+    @Test
+    public void testPagedQueryMaxRecordCount() throws Exception {
+        String base = "?f=json&geometryType=esriGeometryEnvelope&geometry=-180,-90,180,90";
+        JSONObject json =
+                (JSONObject)
+                        getAsJSON(
+                                query(
+                                        "cite",
+                                        11,
+                                        base + "&resultRecordCount=" + Integer.MAX_VALUE));
+        assertEquals(2, json.getJSONArray("features").size());
+        assertFalse(json.getBoolean("exceededTransferLimit"));
+    }
+
+    @Test
+    public void testCountAndExtentOnly() throws Exception {
+        String base = "?f=json&geometryType=esriGeometryEnvelope&geometry=-180,-90,180,90";
+        JSONObject json = (JSONObject) getAsJSON(query("cite", 11, base + "&returnCountOnly=true"));
+        assertEquals(2, json.getInt("count"));
+        assertFalse(json.has("features"));
+        assertFalse(json.has("extent"));
+
+        json =
+                (JSONObject)
+                        getAsJSON(
+                                query(
+                                        "cite",
+                                        11,
+                                        base + "&returnCountOnly=true&returnExtentOnly=true"));
+        assertEquals(2, json.getInt("count"));
+        JSONObject extent = json.getJSONObject("extent");
+        assertTrue(extent.getDouble("xmin") <= extent.getDouble("xmax"));
+        assertTrue(extent.getDouble("ymin") <= extent.getDouble("ymax"));
+    }
 }
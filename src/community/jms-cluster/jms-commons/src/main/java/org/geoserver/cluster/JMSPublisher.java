@@ -6,10 +6,21 @@
 package org.geoserver.cluster;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.jms.JMSException;
 import javax.jms.Topic;
+import org.geoserver.cluster.configuration.EncodingConfiguration;
+import org.geoserver.cluster.message.JMSBytesMessageCreator;
+import org.geoserver.cluster.message.JMSEventCodec;
 import org.geoserver.cluster.message.JMSObjectMessageCreator;
 import org.geotools.util.logging.Logging;
 import org.springframework.jms.core.JmsTemplate;
@@ -22,14 +33,41 @@ import org.springframework.jms.core.MessageCreator;
  * JMSTemplate. Valid means that we are appending to the message some conventional (to this JMS
  * plug-in) properties which can be used to synchronize consumer and producers.
  *
+ * <p>When the {@link EncodingConfiguration#BINARY_ENCODING binary encoding} is configured events
+ * are sent as compact BytesMessages instead, and bursts of events can be packed into a single
+ * message (see {@link EncodingConfiguration#BATCH_SIZE_KEY}). Batched events are sent in
+ * publication order, either when the batch is full or when the batch delay expires.
+ *
  * @author Carlo Cancellieri - carlo.cancellieri@geo-solutions.it
  */
 public class JMSPublisher {
 
     static final Logger LOGGER = Logging.getLogger(JMSPublisher.class);
 
+    /**
+     * The key of the message property used to partition events on the consumer side: events with
+     * the same partition are applied in order, events in different partitions may be applied in
+     * parallel, events without a partition are applied once all the previous ones are done.
+     */
+    public static final String PARTITION_KEY = "JMSPartition";
+
     private final JMSManager jmsManager;
 
+    /** guards the pending batch and serializes the sends, so that the event order is preserved */
+    private final Object batchLock = new Object();
+
+    private List<JMSEventCodec.Event> pending = new ArrayList<>();
+
+    private Topic pendingDestination;
+
+    private JmsTemplate pendingTemplate;
+
+    private boolean pendingCompress;
+
+    private ScheduledFuture<?> pendingFlush;
+
+    private ScheduledExecutorService scheduler;
+
     /** Constructor */
     public JMSPublisher(JMSManager jmsManager) {
         this.jmsManager = jmsManager;
@@ -58,11 +96,45 @@ public class JMSPublisher {
             // set the used SPI
             props.put(JMSEventHandlerSPI.getKeyName(), handler.getGeneratorClass().getSimpleName());
 
-            // TODO make this configurable
-            final MessageCreator creator =
-                    new JMSObjectMessageCreator(handler.serialize(object), props);
+            final S serialized = handler.serialize(object);
+            final String encoding =
+                    props.getProperty(
+                            EncodingConfiguration.ENCODING_KEY,
+                            EncodingConfiguration.DEFAULT_ENCODING);
+            // the binary encoding only carries string payloads, send the others as is
+            if (!EncodingConfiguration.BINARY_ENCODING.equals(encoding)
+                    || !(serialized instanceof String)) {
+                final MessageCreator creator = new JMSObjectMessageCreator(serialized, props);
+                synchronized (batchLock) {
+                    // do not overtake events still waiting in a batch
+                    flush();
+                    jmsTemplate.send(destination, creator);
+                }
+                return;
+            }
 
-            jmsTemplate.send(destination, creator);
+            // the same properties object may be reused by the caller for the next event
+            final Properties eventProps = new Properties();
+            eventProps.putAll(props);
+            final JMSEventCodec.Event event =
+                    new JMSEventCodec.Event(
+                            handler.getGeneratorClass().getSimpleName(),
+                            eventProps,
+                            (String) serialized);
+            final boolean compress =
+                    Boolean.parseBoolean(
+                            props.getProperty(
+                                    EncodingConfiguration.COMPRESSION_KEY,
+                                    EncodingConfiguration.DEFAULT_COMPRESSION));
+            final int batchSize =
+                    EncodingConfiguration.getInt(
+                            props.getProperty(EncodingConfiguration.BATCH_SIZE_KEY),
+                            EncodingConfiguration.DEFAULT_BATCH_SIZE);
+            final int batchDelay =
+                    EncodingConfiguration.getInt(
+                            props.getProperty(EncodingConfiguration.BATCH_DELAY_KEY),
+                            EncodingConfiguration.DEFAULT_BATCH_DELAY);
+            enqueue(destination, jmsTemplate, event, compress, batchSize, batchDelay);
 
         } catch (Exception e) {
             if (LOGGER.isLoggable(java.util.logging.Level.SEVERE)) {
@@ -73,4 +145,86 @@ public class JMSPublisher {
             throw ex;
         }
     }
+
+    private void enqueue(
+            Topic destination,
+            JmsTemplate jmsTemplate,
+            JMSEventCodec.Event event,
+            boolean compress,
+            int batchSize,
+            int batchDelay) {
+        synchronized (batchLock) {
+            if (!pending.isEmpty()
+                    && (!destination.equals(pendingDestination) || compress != pendingCompress)) {
+                flush();
+            }
+            if (batchSize <= 1 || batchDelay <= 0) {
+                flush();
+                jmsTemplate.send(
+                        destination,
+                        new JMSBytesMessageCreator(Collections.singletonList(event), compress));
+                return;
+            }
+            pending.add(event);
+            pendingDestination = destination;
+            pendingTemplate = jmsTemplate;
+            pendingCompress = compress;
+            if (pending.size() >= batchSize) {
+                flush();
+            } else if (pendingFlush == null) {
+                pendingFlush =
+                        getScheduler()
+                                .schedule(this::flushQuietly, batchDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Sends the pending batch, if any */
+    public void flush() {
+        synchronized (batchLock) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            final List<JMSEventCodec.Event> batch = pending;
+            pending = new ArrayList<>();
+            pendingTemplate.send(
+                    pendingDestination, new JMSBytesMessageCreator(batch, pendingCompress));
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unable to publish the pending batch of events", e);
+        }
+    }
+
+    private ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler =
+                    Executors.newSingleThreadScheduledExecutor(
+                            r -> {
+                                Thread t = new Thread(r, "JMSPublisher-batch");
+                                t.setDaemon(true);
+                                return t;
+                            });
+        }
+        return scheduler;
+    }
+
+    /** Sends the pending events and releases the batching thread */
+    public void dispose() {
+        synchronized (batchLock) {
+            flushQuietly();
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
 }
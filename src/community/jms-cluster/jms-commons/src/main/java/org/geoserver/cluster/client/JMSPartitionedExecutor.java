@@ -0,0 +1,114 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a sequence of tasks keeping their relative order within a partition, while tasks of
+ * different partitions run in parallel. Each partition is mapped to a single threaded lane, so
+ * the order within a partition is the submission order. Tasks without a partition act as a
+ * barrier: they run on the calling thread once all the previously submitted tasks completed.
+ */
+class JMSPartitionedExecutor {
+
+    /** A task bound to a partition, a null partition means the task depends on all partitions */
+    interface PartitionedTask {
+
+        String getPartition();
+
+        void run() throws Exception;
+    }
+
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    private final ExecutorService[] lanes;
+
+    JMSPartitionedExecutor(int threads) {
+        int poolId = POOL_SEQUENCE.incrementAndGet();
+        this.lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "JMSConsumer-" + poolId + "-" + i;
+            lanes[i] =
+                    Executors.newSingleThreadExecutor(
+                            r -> {
+                                Thread t = new Thread(r, name);
+                                t.setDaemon(true);
+                                return t;
+                            });
+        }
+    }
+
+    int getThreads() {
+        return lanes.length;
+    }
+
+    /**
+     * Runs all the tasks and waits for their completion
+     *
+     * @throws Exception the first failure encountered. A failure does not prevent the other tasks
+     *     from running.
+     */
+    void runAll(List<? extends PartitionedTask> tasks) throws Exception {
+        List<Future<?>> running = new ArrayList<>();
+        Exception failure = null;
+        for (PartitionedTask task : tasks) {
+            String partition = task.getPartition();
+            if (partition == null || lanes.length == 1) {
+                failure = first(failure, await(running));
+                running.clear();
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    failure = first(failure, e);
+                }
+            } else {
+                ExecutorService lane = lanes[Math.floorMod(partition.hashCode(), lanes.length)];
+                running.add(
+                        lane.submit(
+                                () -> {
+                                    task.run();
+                                    return null;
+                                }));
+            }
+        }
+        failure = first(failure, await(running));
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Exception await(List<Future<?>> futures) {
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                failure = first(failure, cause instanceof Exception ? (Exception) cause : e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = first(failure, e);
+            }
+        }
+        return failure;
+    }
+
+    private static Exception first(Exception current, Exception other) {
+        return current != null ? current : other;
+    }
+
+    void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+}
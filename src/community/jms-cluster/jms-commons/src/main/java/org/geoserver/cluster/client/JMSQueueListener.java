@@ -6,10 +6,13 @@
 package org.geoserver.cluster.client;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.ObjectMessage;
@@ -18,8 +21,11 @@ import org.geoserver.cluster.JMSApplicationListener;
 import org.geoserver.cluster.JMSEventHandler;
 import org.geoserver.cluster.JMSEventHandlerSPI;
 import org.geoserver.cluster.JMSManager;
+import org.geoserver.cluster.JMSPublisher;
+import org.geoserver.cluster.configuration.EncodingConfiguration;
 import org.geoserver.cluster.configuration.JMSConfiguration;
 import org.geoserver.cluster.events.ToggleType;
+import org.geoserver.cluster.message.JMSEventCodec;
 import org.geotools.util.logging.Logging;
 import org.springframework.jms.listener.SessionAwareMessageListener;
 
@@ -29,6 +35,11 @@ import org.springframework.jms.listener.SessionAwareMessageListener;
  * <p>Class which leverages on commons classes to define a Topic consumer handling incoming messages
  * using runtime loaded SPI to instantiate needed handlers.
  *
+ * <p>Binary encoded messages may carry several events: events of different partitions (see {@link
+ * JMSPublisher#PARTITION_KEY}) are applied in parallel, using up to {@link
+ * EncodingConfiguration#CONSUMER_THREADS_KEY} threads, while keeping their order within a
+ * partition.
+ *
  * @see {@link JMSManager}
  * @author Carlo Cancellieri - carlo.cancellieri@geo-solutions.it
  */
@@ -47,6 +58,8 @@ public class JMSQueueListener extends JMSApplicationListener
 
     private AtomicLong consumedEvents = new AtomicLong();
 
+    private JMSPartitionedExecutor executor;
+
     @Override
     public void onMessage(Message message, Session session) throws JMSException {
 
@@ -132,31 +145,13 @@ public class JMSQueueListener extends JMSApplicationListener
             final Serializable obj = objMessage.getObject();
 
             try {
-                // lookup the SPI handler, search is performed using the
-                // name
-                final JMSEventHandler<Serializable, Object> handler =
-                        jmsManager.getHandlerByClassName(generatorClass);
-                if (handler == null) {
-                    throw new JMSException(
-                            "Unable to find SPI named \'"
-                                    + generatorClass
-                                    + "\', be shure to load that SPI into your context.");
-                }
-
                 final Enumeration<String> keys = message.getPropertyNames();
                 final Properties options = new Properties();
                 while (keys.hasMoreElements()) {
                     String key = keys.nextElement();
                     options.put(key, message.getObjectProperty(key));
                 }
-                handler.setProperties(options);
-
-                // try to synchronize object locally
-                if (!handler.synchronize(handler.deserialize(obj))) {
-                    throw new JMSException(
-                            "Unable to synchronize message locally.\n SPI: " + generatorClass);
-                }
-
+                synchronize(generatorClass, options, obj);
             } catch (Exception e) {
                 final JMSException jmsE = new JMSException(e.getLocalizedMessage());
                 jmsE.initCause(e);
@@ -164,9 +159,107 @@ public class JMSQueueListener extends JMSApplicationListener
             } finally {
                 this.consumedEvents.incrementAndGet();
             }
+        } else if (message instanceof BytesMessage) {
+
+            final BytesMessage bytesMessage = (BytesMessage) message;
+            final byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+
+            final List<JMSEventCodec.Event> events;
+            try {
+                events = JMSEventCodec.decode(bytes);
+            } catch (Exception e) {
+                final JMSException jmsE = new JMSException(e.getLocalizedMessage());
+                jmsE.initCause(e);
+                throw jmsE;
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(
+                        "Incoming binary message carrying "
+                                + events.size()
+                                + " events in "
+                                + bytes.length
+                                + " bytes");
+            }
+
+            final List<JMSPartitionedExecutor.PartitionedTask> tasks = new ArrayList<>();
+            for (final JMSEventCodec.Event event : events) {
+                tasks.add(
+                        new JMSPartitionedExecutor.PartitionedTask() {
+
+                            @Override
+                            public String getPartition() {
+                                return event.getProperties()
+                                        .getProperty(JMSPublisher.PARTITION_KEY);
+                            }
+
+                            @Override
+                            public void run() throws Exception {
+                                try {
+                                    synchronize(
+                                            event.getHandlerName(),
+                                            event.getProperties(),
+                                            event.getPayload());
+                                } finally {
+                                    consumedEvents.incrementAndGet();
+                                }
+                            }
+                        });
+            }
+            try {
+                getExecutor().runAll(tasks);
+            } catch (Exception e) {
+                final JMSException jmsE = new JMSException(e.getLocalizedMessage());
+                jmsE.initCause(e);
+                throw jmsE;
+            }
         } else throw new JMSException("Unrecognized message type for catalog incoming event");
     }
 
+    /** Looks up the SPI handler by name and uses it to apply the event locally */
+    private void synchronize(String generatorClass, Properties options, Serializable obj)
+            throws Exception {
+        // lookup the SPI handler, search is performed using the
+        // name
+        final JMSEventHandler<Serializable, Object> handler =
+                jmsManager.getHandlerByClassName(generatorClass);
+        if (handler == null) {
+            throw new JMSException(
+                    "Unable to find SPI named \'"
+                            + generatorClass
+                            + "\', be shure to load that SPI into your context.");
+        }
+        handler.setProperties(options);
+
+        // try to synchronize object locally
+        if (!handler.synchronize(handler.deserialize(obj))) {
+            throw new JMSException(
+                    "Unable to synchronize message locally.\n SPI: " + generatorClass);
+        }
+    }
+
+    private synchronized JMSPartitionedExecutor getExecutor() {
+        final int threads =
+                EncodingConfiguration.getInt(
+                        config.getConfiguration(EncodingConfiguration.CONSUMER_THREADS_KEY),
+                        EncodingConfiguration.DEFAULT_CONSUMER_THREADS);
+        if (executor == null || executor.getThreads() != Math.max(1, threads)) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            executor = new JMSPartitionedExecutor(threads);
+        }
+        return executor;
+    }
+
+    /** Releases the threads used to apply the incoming events */
+    public synchronized void dispose() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
     // /**
     // * @deprecated unused/untested
     // */
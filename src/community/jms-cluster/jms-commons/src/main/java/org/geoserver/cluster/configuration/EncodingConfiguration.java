@@ -0,0 +1,81 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.configuration;
+
+import java.io.IOException;
+
+/**
+ * Defines the configuration parameters and defaults for the encoding of the events sent over the
+ * JMS channel, their batching on the producer side and their parallel application on the consumer
+ * side.
+ *
+ * <p>Defaults keep the original behaviour: one XStream serialized {@link javax.jms.ObjectMessage}
+ * per event, applied sequentially.
+ */
+public final class EncodingConfiguration implements JMSConfigurationExt {
+
+    /** Message encoding, either {@link #OBJECT_ENCODING} or {@link #BINARY_ENCODING} */
+    public static final String ENCODING_KEY = "encoding";
+
+    /** One {@link javax.jms.ObjectMessage} per event */
+    public static final String OBJECT_ENCODING = "object";
+
+    /** Compact {@link javax.jms.BytesMessage} carrying one or more events */
+    public static final String BINARY_ENCODING = "binary";
+
+    public static final String DEFAULT_ENCODING = OBJECT_ENCODING;
+
+    /** Whether binary messages get deflated */
+    public static final String COMPRESSION_KEY = "compression";
+
+    public static final String DEFAULT_COMPRESSION = "true";
+
+    /** Max number of events packed in a single binary message, 1 disables batching */
+    public static final String BATCH_SIZE_KEY = "batchSize";
+
+    public static final String DEFAULT_BATCH_SIZE = "1";
+
+    /** Max time (in milliseconds) an event waits for a batch to fill before being sent */
+    public static final String BATCH_DELAY_KEY = "batchDelay";
+
+    public static final String DEFAULT_BATCH_DELAY = "50";
+
+    /** Number of threads applying incoming events of different workspaces in parallel */
+    public static final String CONSUMER_THREADS_KEY = "consumerThreads";
+
+    public static final String DEFAULT_CONSUMER_THREADS = "1";
+
+    @Override
+    public void initDefaults(JMSConfiguration config) throws IOException {
+        config.putConfiguration(ENCODING_KEY, DEFAULT_ENCODING);
+        config.putConfiguration(COMPRESSION_KEY, DEFAULT_COMPRESSION);
+        config.putConfiguration(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        config.putConfiguration(BATCH_DELAY_KEY, DEFAULT_BATCH_DELAY);
+        config.putConfiguration(CONSUMER_THREADS_KEY, DEFAULT_CONSUMER_THREADS);
+    }
+
+    @Override
+    public boolean override(JMSConfiguration config) throws IOException {
+        // evaluate all of them, each call fills in the missing defaults
+        boolean override = config.override(ENCODING_KEY, DEFAULT_ENCODING);
+        override |= config.override(COMPRESSION_KEY, DEFAULT_COMPRESSION);
+        override |= config.override(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        override |= config.override(BATCH_DELAY_KEY, DEFAULT_BATCH_DELAY);
+        override |= config.override(CONSUMER_THREADS_KEY, DEFAULT_CONSUMER_THREADS);
+        return override;
+    }
+
+    /** Parses an integer configuration value, falling back on the default if missing or invalid */
+    public static int getInt(Object value, String defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                // fall back on default
+            }
+        }
+        return Integer.parseInt(defaultValue);
+    }
+}
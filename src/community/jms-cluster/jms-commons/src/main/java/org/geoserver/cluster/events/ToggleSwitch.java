@@ -13,6 +13,10 @@ import org.springframework.context.ApplicationContextAware;
  * Those events can be used by the a producer to enable or disable the message events production
  * over the JMS channel.
  *
+ * <p>Disable and enable calls nest: the toggle event re-enabling the producer is only sent once
+ * every disable call has been matched by an enable call, so that events applied in parallel on the
+ * consumer side do not re-enable the producer while others are still being applied.
+ *
  * @see {@link JMSEventListener}
  * @author Carlo Cancellieri - carlo.cancellieri@geo-solutions.it
  */
@@ -25,6 +29,9 @@ public class ToggleSwitch implements ApplicationContextAware {
 
     private final ToggleType toggleType;
 
+    /** number of pending disable calls */
+    private int disabled;
+
     public ToggleSwitch(final ToggleType toggleType) {
         this.toggleType = toggleType;
     }
@@ -53,15 +60,22 @@ public class ToggleSwitch implements ApplicationContextAware {
         this.ctx = ctx;
     }
 
-    public void enable() {
+    public synchronized void enable() {
         if (isToggleEnabled()) {
-            ctx.publishEvent(new ToggleEvent(Boolean.TRUE, toggleType));
+            if (disabled > 0) {
+                disabled--;
+            }
+            if (disabled == 0) {
+                ctx.publishEvent(new ToggleEvent(Boolean.TRUE, toggleType));
+            }
         }
     }
 
-    public void disable() {
+    public synchronized void disable() {
         if (isToggleEnabled()) {
-            ctx.publishEvent(new ToggleEvent(Boolean.FALSE, toggleType));
+            if (disabled++ == 0) {
+                ctx.publishEvent(new ToggleEvent(Boolean.FALSE, toggleType));
+            }
         }
     }
 }
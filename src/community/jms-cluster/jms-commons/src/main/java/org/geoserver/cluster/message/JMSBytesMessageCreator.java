@@ -0,0 +1,60 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.message;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import org.springframework.jms.core.MessageCreator;
+
+/**
+ * Class implementing a MessageCreator which produces BytesMessages carrying one or more events
+ * encoded with the {@link JMSEventCodec}.
+ *
+ * <p>The properties of the first event are also set as message properties, so that consumers can
+ * filter the message (instance name, group, handler) without decoding its body.
+ */
+public class JMSBytesMessageCreator implements MessageCreator {
+
+    private final List<JMSEventCodec.Event> events;
+
+    private final boolean compress;
+
+    public JMSBytesMessageCreator(final List<JMSEventCodec.Event> events, boolean compress) {
+        if (events == null || events.isEmpty()) {
+            throw new IllegalArgumentException("At least one event is required");
+        }
+        this.events = events;
+        this.compress = compress;
+    }
+
+    protected void updateProperties(Message message) throws JMSException {
+        final Properties properties = events.get(0).getProperties();
+        for (Entry<Object, Object> entry : properties.entrySet()) {
+            message.setObjectProperty(entry.getKey().toString(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Message createMessage(Session session) throws JMSException {
+        final BytesMessage message = session.createBytesMessage();
+        try {
+            message.writeBytes(JMSEventCodec.encode(events, compress));
+        } catch (Exception e) {
+            final JMSException ex = new JMSException(e.getLocalizedMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+
+        // append properties
+        updateProperties(message);
+
+        return message;
+    }
+}
@@ -0,0 +1,297 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary encoding for one or more JMS events, used as the body of a {@link
+ * javax.jms.BytesMessage}.
+ *
+ * <p>Layout:
+ *
+ * <pre>
+ * magic (4 bytes) | version (1 byte) | flags (1 byte) | body (optionally deflated)
+ *
+ * body := count (varint)
+ *         shared properties
+ *         count * (handler name | property diff | payload type (1 byte) | payload)
+ * </pre>
+ *
+ * The properties of the first event are stored once as the shared properties, the following
+ * events only store the entries differing from them. Strings are written as varint length plus
+ * UTF-8 bytes, so there is no 64KB limit as in {@link DataOutputStream#writeUTF(String)}.
+ *
+ * <p>Only string payloads are supported, the messages come from the broker and are never Java
+ * deserialized. Lengths are not trusted either, strings are read in chunks so that the memory
+ * allocated follows the bytes actually received.
+ */
+public final class JMSEventCodec {
+
+    /** "GJMS" */
+    static final int MAGIC = 0x474A4D53;
+
+    static final byte VERSION = 1;
+
+    static final byte FLAG_DEFLATE = 1;
+
+    static final byte PAYLOAD_STRING = 0;
+
+    /** Size of the chunks strings are read in */
+    static final int CHUNK_SIZE = 8192;
+
+    private JMSEventCodec() {}
+
+    /** A single event, the serialized form produced by a JMSEventHandler plus its properties */
+    public static final class Event {
+
+        private final String handlerName;
+
+        private final Properties properties;
+
+        private final String payload;
+
+        public Event(String handlerName, Properties properties, String payload) {
+            this.handlerName = Objects.requireNonNull(handlerName, "handlerName");
+            this.properties = properties != null ? properties : new Properties();
+            this.payload = payload;
+        }
+
+        /** @return the simple class name of the JMSEventHandlerSPI which serialized the payload */
+        public String getHandlerName() {
+            return handlerName;
+        }
+
+        public Properties getProperties() {
+            return properties;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * Encodes the events
+     *
+     * @param events the events to encode, in publication order
+     * @param compress whether to deflate the body
+     */
+    public static byte[] encode(List<Event> events, boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.flush();
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body =
+                    compress ? new DeflaterOutputStream(bytes, deflater, 8192) : bytes;
+            DataOutputStream out = new DataOutputStream(body);
+            writeVarInt(out, events.size());
+            Properties shared = events.isEmpty() ? new Properties() : events.get(0).properties;
+            writeProperties(out, shared);
+            for (Event event : events) {
+                writeString(out, event.handlerName);
+                writePropertiesDiff(out, shared, event.properties);
+                writePayload(out, event.payload);
+            }
+            out.flush();
+            if (compress) {
+                ((DeflaterOutputStream) body).finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Decodes events previously encoded with {@link #encode(List, boolean)} */
+    public static List<Event> decode(byte[] encoded) throws IOException {
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(encoded));
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a binary encoded JMS event message");
+        }
+        byte version = header.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary JMS event message version: " + version);
+        }
+        boolean compressed = (header.readByte() & FLAG_DEFLATE) != 0;
+        InputStream body = compressed ? new InflaterInputStream(header) : header;
+        try (DataInputStream in = new DataInputStream(body)) {
+            int count = readLength(in);
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            Properties shared = readProperties(in);
+            List<Event> events = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String handlerName = readString(in);
+                Properties properties = readPropertiesDiff(in, shared);
+                String payload = readPayload(in);
+                events.add(new Event(handlerName, properties, payload));
+            }
+            return events;
+        }
+    }
+
+    /** @return true if the bytes start with the binary event message signature */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null
+                && bytes.length >= 6
+                && ((bytes[0] & 0xFF) << 24
+                                | (bytes[1] & 0xFF) << 16
+                                | (bytes[2] & 0xFF) << 8
+                                | (bytes[3] & 0xFF))
+                        == MAGIC;
+    }
+
+    private static void writeProperties(DataOutputStream out, Properties properties)
+            throws IOException {
+        writeVarInt(out, properties.size());
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            writeString(out, String.valueOf(entry.getKey()));
+            writeString(out, String.valueOf(entry.getValue()));
+        }
+    }
+
+    private static Properties readProperties(DataInputStream in) throws IOException {
+        Properties properties = new Properties();
+        int size = readLength(in);
+        for (int i = 0; i < size; i++) {
+            properties.put(readString(in), readString(in));
+        }
+        return properties;
+    }
+
+    private static void writePropertiesDiff(
+            DataOutputStream out, Properties shared, Properties properties) throws IOException {
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            String value = String.valueOf(entry.getValue());
+            Object sharedValue = shared.get(entry.getKey());
+            if (sharedValue == null || !value.equals(String.valueOf(sharedValue))) {
+                changed.add(key);
+                changed.add(value);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (Object key : shared.keySet()) {
+            if (!properties.containsKey(key)) {
+                removed.add(String.valueOf(key));
+            }
+        }
+        writeVarInt(out, changed.size() / 2);
+        for (String s : changed) {
+            writeString(out, s);
+        }
+        writeVarInt(out, removed.size());
+        for (String s : removed) {
+            writeString(out, s);
+        }
+    }
+
+    private static Properties readPropertiesDiff(DataInputStream in, Properties shared)
+            throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(shared);
+        int changed = readLength(in);
+        for (int i = 0; i < changed; i++) {
+            properties.put(readString(in), readString(in));
+        }
+        int removed = readLength(in);
+        for (int i = 0; i < removed; i++) {
+            properties.remove(readString(in));
+        }
+        return properties;
+    }
+
+    private static void writePayload(DataOutputStream out, String payload) throws IOException {
+        out.writeByte(PAYLOAD_STRING);
+        writeString(out, payload);
+    }
+
+    private static String readPayload(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type != PAYLOAD_STRING) {
+            throw new IOException("Unsupported payload type: " + type);
+        }
+        return readString(in);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readLength(in);
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        while (length > 0) {
+            int read = Math.min(length, CHUNK_SIZE);
+            in.readFully(chunk, 0, read);
+            bytes.write(chunk, 0, read);
+            length -= read;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Reads a length or a count, which cannot be negative */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return length;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
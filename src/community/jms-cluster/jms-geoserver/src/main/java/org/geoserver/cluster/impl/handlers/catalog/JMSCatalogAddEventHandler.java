@@ -52,9 +52,13 @@ public class JMSCatalogAddEventHandler extends JMSCatalogEventHandler {
                 final CatalogInfo info = addEv.getSource();
                 // disable the producer to avoid recursion
                 producer.disable();
-
-                // add the incoming CatalogInfo to the local catalog
-                JMSCatalogAddEventHandler.add(catalog, info);
+                try {
+                    // add the incoming CatalogInfo to the local catalog
+                    JMSCatalogAddEventHandler.add(catalog, info);
+                } finally {
+                    // re enable the producer
+                    producer.enable();
+                }
             } else {
                 // incoming object not recognized
                 if (LOGGER.isLoggable(java.util.logging.Level.SEVERE))
@@ -67,9 +71,6 @@ public class JMSCatalogAddEventHandler extends JMSCatalogEventHandler {
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + event);
             throw e;
-        } finally {
-            // re enable the producer
-            producer.enable();
         }
         return true;
     }
@@ -60,7 +60,12 @@ public class JMSCatalogModifyEventHandler extends JMSCatalogEventHandler {
                 final CatalogModifyEvent modifyEv = ((CatalogModifyEvent) event);
 
                 producer.disable();
-                JMSCatalogModifyEventHandler.modify(catalog, modifyEv);
+                try {
+                    JMSCatalogModifyEventHandler.modify(catalog, modifyEv);
+                } finally {
+                    // re enable the producer
+                    producer.enable();
+                }
 
             } else {
                 // incoming object not recognized
@@ -74,9 +79,6 @@ public class JMSCatalogModifyEventHandler extends JMSCatalogEventHandler {
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + event);
             throw e;
-        } finally {
-            // re enable the producer
-            producer.enable();
         }
         return true;
     }
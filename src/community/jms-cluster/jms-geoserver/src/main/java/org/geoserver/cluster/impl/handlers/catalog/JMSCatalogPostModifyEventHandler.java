@@ -46,8 +46,12 @@ public class JMSCatalogPostModifyEventHandler extends JMSCatalogEventHandler {
                 final CatalogPostModifyEvent postModEv = ((CatalogPostModifyEvent) event);
 
                 producer.disable();
-
-                postModify(catalog, postModEv);
+                try {
+                    postModify(catalog, postModEv);
+                } finally {
+                    // re enable the producer
+                    producer.enable();
+                }
 
             } else {
                 // incoming object not recognized
@@ -61,9 +65,6 @@ public class JMSCatalogPostModifyEventHandler extends JMSCatalogEventHandler {
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + event);
             throw e;
-        } finally {
-            // re enable the producer
-            producer.enable();
         }
         return true;
     }
@@ -49,8 +49,13 @@ public class JMSCatalogRemoveEventHandler extends JMSCatalogEventHandler {
 
                 // disable the producer to avoid recursion
                 producer.disable();
-                // remove the selected CatalogInfo
-                JMSCatalogRemoveEventHandler.remove(catalog, info, getProperties());
+                try {
+                    // remove the selected CatalogInfo
+                    JMSCatalogRemoveEventHandler.remove(catalog, info, getProperties());
+                } finally {
+                    // re enable the producer
+                    producer.enable();
+                }
 
             } else {
                 // incoming object not recognized
@@ -64,9 +69,6 @@ public class JMSCatalogRemoveEventHandler extends JMSCatalogEventHandler {
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + event);
             throw e;
-        } finally {
-            // re enable the producer
-            producer.enable();
         }
         return true;
     }
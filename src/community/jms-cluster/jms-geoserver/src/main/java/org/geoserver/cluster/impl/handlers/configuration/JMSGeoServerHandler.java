@@ -50,17 +50,18 @@ public class JMSGeoServerHandler extends JMSConfigurationHandler<JMSGlobalModify
 
             // disable the message producer to avoid recursion
             producer.disable();
-
-            // save changes locally
-            this.geoServer.save(localObject);
+            try {
+                // save changes locally
+                this.geoServer.save(localObject);
+            } finally {
+                producer.enable();
+            }
 
         } catch (Exception e) {
             if (LOGGER.isLoggable(java.util.logging.Level.SEVERE))
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + ev);
             throw e;
-        } finally {
-            producer.enable();
         }
         return true;
     }
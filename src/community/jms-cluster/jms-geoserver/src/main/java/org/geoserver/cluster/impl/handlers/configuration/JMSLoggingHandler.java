@@ -46,18 +46,19 @@ public class JMSLoggingHandler extends JMSConfigurationHandler<LoggingInfo> {
 
             // disable the message producer to avoid recursion
             producer.disable();
-
-            // save the localized object
-            geoServer.save(localObject);
+            try {
+                // save the localized object
+                geoServer.save(localObject);
+            } finally {
+                // enable message the producer
+                producer.enable();
+            }
 
         } catch (Exception e) {
             if (LOGGER.isLoggable(java.util.logging.Level.SEVERE))
                 LOGGER.severe(
                         this.getClass() + " is unable to synchronize the incoming event: " + info);
             throw e;
-        } finally {
-            // enable message the producer
-            producer.enable();
         }
         return true;
     }
@@ -40,9 +40,9 @@ public class JMSServiceHandler extends JMSConfigurationHandler<JMSServiceModifyE
         if (ev == null) {
             throw new NullPointerException("Incoming event is null");
         }
+        // disable the message producer to avoid recursion
+        producer.disable();
         try {
-            // disable the message producer to avoid recursion
-            producer.disable();
             // let's see which type of event we have
             switch (ev.getEventType()) {
                 case MODIFIED:
@@ -35,9 +35,9 @@ public class JMSSettingsHandler extends JMSConfigurationHandler<JMSSettingsModif
         if (event == null) {
             throw new NullPointerException("Incoming event is NULL.");
         }
+        // disable the message producer to avoid recursion
+        producer.disable();
         try {
-            // disable the message producer to avoid recursion
-            producer.disable();
             // let's see which type of event we have and handle it
             switch (event.getEventType()) {
                 case MODIFIED:
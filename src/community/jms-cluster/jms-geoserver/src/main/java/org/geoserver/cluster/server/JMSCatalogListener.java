@@ -12,9 +12,14 @@ import javax.jms.JMSException;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
 import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.event.CatalogModifyEvent;
 import org.geoserver.catalog.event.CatalogPostModifyEvent;
@@ -81,6 +86,7 @@ public class JMSCatalogListener extends JMSAbstractGeoServerProducer implements
 
         // update properties
         final Properties options = getProperties();
+        setPartition(options, event);
 
         try {
             // check if we may publish also the file
@@ -149,6 +155,7 @@ public class JMSCatalogListener extends JMSAbstractGeoServerProducer implements
 
         // update properties
         Properties options = getProperties();
+        setPartition(options, event);
 
         try {
             jmsPublisher.publish(getTopic(), getJmsTemplate(), options, event);
@@ -179,6 +186,7 @@ public class JMSCatalogListener extends JMSAbstractGeoServerProducer implements
 
         // update properties
         Properties options = getProperties();
+        setPartition(options, event);
 
         // check if we may publish also the file
         CatalogInfo info = event.getSource();
@@ -278,4 +286,47 @@ public class JMSCatalogListener extends JMSAbstractGeoServerProducer implements
         // this is potentially a problem since this listener should be the first
         // called by the GeoServer.
     }
+
+    /**
+     * Marks the event with the name of the workspace its source belongs to, so that consumers can
+     * apply events of different workspaces in parallel. Global styles and layer groups,
+     * workspaces and namespaces themselves, and modifications moving an object to another
+     * workspace get no partition, so they are applied after all the events preceding them.
+     */
+    static void setPartition(Properties options, CatalogEvent event) {
+        String workspace = getWorkspaceName(event.getSource());
+        if (event instanceof CatalogModifyEvent) {
+            for (String property : ((CatalogModifyEvent) event).getPropertyNames()) {
+                if ("workspace".equalsIgnoreCase(property)
+                        || "store".equalsIgnoreCase(property)
+                        || "namespace".equalsIgnoreCase(property)) {
+                    workspace = null;
+                }
+            }
+        }
+        if (workspace != null) {
+            options.put(JMSPublisher.PARTITION_KEY, workspace);
+        } else {
+            options.remove(JMSPublisher.PARTITION_KEY);
+        }
+    }
+
+    private static String getWorkspaceName(CatalogInfo info) {
+        WorkspaceInfo workspace = null;
+        if (info instanceof StoreInfo) {
+            workspace = ((StoreInfo) info).getWorkspace();
+        } else if (info instanceof ResourceInfo) {
+            StoreInfo store = ((ResourceInfo) info).getStore();
+            workspace = store != null ? store.getWorkspace() : null;
+        } else if (info instanceof LayerInfo) {
+            ResourceInfo resource = ((LayerInfo) info).getResource();
+            StoreInfo store = resource != null ? resource.getStore() : null;
+            workspace = store != null ? store.getWorkspace() : null;
+        } else if (info instanceof StyleInfo) {
+            workspace = ((StyleInfo) info).getWorkspace();
+        } else if (info instanceof LayerGroupInfo) {
+            workspace = ((LayerGroupInfo) info).getWorkspace();
+        }
+        return workspace != null ? workspace.getName() : null;
+    }
 }
@@ -0,0 +1,119 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JMSPartitionedExecutorTest {
+
+    private JMSPartitionedExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new JMSPartitionedExecutor(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testOrderWithinPartition() throws Exception {
+        Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        List<String> barriers = new CopyOnWriteArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String partition = "ws" + (i % 7);
+            int sequence = i;
+            tasks.add(
+                    new Task(
+                            partition,
+                            () ->
+                                    applied.computeIfAbsent(
+                                                    partition,
+                                                    k ->
+                                                            Collections.synchronizedList(
+                                                                    new ArrayList<>()))
+                                            .add(sequence)));
+            if (i == 100) {
+                // a global event sees everything submitted before it
+                tasks.add(
+                        new Task(
+                                null,
+                                () -> {
+                                    int total =
+                                            applied.values().stream().mapToInt(List::size).sum();
+                                    barriers.add("seen " + total);
+                                }));
+            }
+        }
+        executor.runAll(tasks);
+
+        assertEquals(Collections.singletonList("seen 101"), barriers);
+        for (List<Integer> sequences : applied.values()) {
+            List<Integer> sorted = new ArrayList<>(sequences);
+            Collections.sort(sorted);
+            assertEquals(sorted, sequences);
+        }
+        assertEquals(200, applied.values().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void testFailureDoesNotStopOtherPartitions() throws Exception {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(
+                new Task(
+                        "a",
+                        () -> {
+                            throw new IllegalStateException("boom");
+                        }));
+        tasks.add(new Task("b", () -> applied.add("b")));
+        tasks.add(new Task(null, () -> applied.add("global")));
+        try {
+            executor.runAll(tasks);
+            fail("Should have thrown the task failure");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertTrue(applied.contains("b"));
+        assertTrue(applied.contains("global"));
+    }
+
+    private static class Task implements JMSPartitionedExecutor.PartitionedTask {
+
+        private final String partition;
+
+        private final Runnable runnable;
+
+        Task(String partition, Runnable runnable) {
+            this.partition = partition;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public String getPartition() {
+            return partition;
+        }
+
+        @Override
+        public void run() throws Exception {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+
+public class JMSEventCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Properties p1 = new Properties();
+        p1.put("instanceName", "node-1");
+        p1.put("group", "geoserver-cluster");
+        p1.put("JMSEventHandlerSPI", "JMSCatalogAddEventHandlerSPI");
+        Properties p2 = new Properties();
+        p2.putAll(p1);
+        p2.put("JMSEventHandlerSPI", "JMSCatalogModifyEventHandlerSPI");
+        p2.put("JMSPartition", "topp");
+        p2.remove("group");
+
+        String xml = "<catalogAddEvent><source>\u00e8\u00e0</source></catalogAddEvent>";
+        String large = String.join("", Collections.nCopies(5000, "<layer/>"));
+        List<JMSEventCodec.Event> events =
+                Arrays.asList(
+                        new JMSEventCodec.Event("JMSCatalogAddEventHandlerSPI", p1, xml),
+                        new JMSEventCodec.Event("JMSCatalogModifyEventHandlerSPI", p2, large));
+
+        for (boolean compress : new boolean[] {true, false}) {
+            byte[] encoded = JMSEventCodec.encode(events, compress);
+            assertTrue(JMSEventCodec.isEncoded(encoded));
+
+            List<JMSEventCodec.Event> decoded = JMSEventCodec.decode(encoded);
+            assertEquals(2, decoded.size());
+            assertEquals("JMSCatalogAddEventHandlerSPI", decoded.get(0).getHandlerName());
+            assertEquals(p1, decoded.get(0).getProperties());
+            assertEquals(xml, decoded.get(0).getPayload());
+            assertEquals("JMSCatalogModifyEventHandlerSPI", decoded.get(1).getHandlerName());
+            assertEquals(p2, decoded.get(1).getProperties());
+            assertEquals(large, decoded.get(1).getPayload());
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<layer><name>layer").append(i).append("</name></layer>");
+        }
+        List<JMSEventCodec.Event> events =
+                Arrays.asList(new JMSEventCodec.Event("handler", new Properties(), sb.toString()));
+
+        byte[] plain = JMSEventCodec.encode(events, false);
+        byte[] compressed = JMSEventCodec.encode(events, true);
+        assertTrue(compressed.length * 5 < plain.length);
+        assertEquals(sb.toString(), JMSEventCodec.decode(compressed).get(0).getPayload());
+    }
+
+    /** Writes the frame header and a single event with no properties, up to the payload type */
+    private DataOutputStream startFrame(ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(JMSEventCodec.MAGIC);
+        out.writeByte(JMSEventCodec.VERSION);
+        out.writeByte(0);
+        JMSEventCodec.writeVarInt(out, 1);
+        JMSEventCodec.writeVarInt(out, 0);
+        JMSEventCodec.writeVarInt(out, 1);
+        out.writeByte('h');
+        JMSEventCodec.writeVarInt(out, 0);
+        JMSEventCodec.writeVarInt(out, 0);
+        return out;
+    }
+
+    @Test
+    public void testRejectSerializedPayload() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = startFrame(bytes);
+        // the payload type once used for Java serialized objects
+        out.writeByte(1);
+        JMSEventCodec.writeVarInt(out, 4);
+        out.write(new byte[] {(byte) 0xAC, (byte) 0xED, 0, 5});
+        try {
+            JMSEventCodec.decode(bytes.toByteArray());
+            fail("Should have rejected the payload");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unsupported payload type"));
+        }
+    }
+
+    @Test
+    public void testTruncatedLength() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = startFrame(bytes);
+        // a string claiming to be close to 2GB, followed by a few bytes only
+        out.writeByte(JMSEventCodec.PAYLOAD_STRING);
+        JMSEventCodec.writeVarInt(out, Integer.MAX_VALUE - 8);
+        out.write(new byte[16]);
+        try {
+            JMSEventCodec.decode(bytes.toByteArray());
+            fail("Should have failed reading the payload");
+        } catch (EOFException e) {
+            // fine, no attempt to allocate the declared size
+        }
+
+        bytes = new ByteArrayOutputStream();
+        out = startFrame(bytes);
+        out.writeByte(JMSEventCodec.PAYLOAD_STRING);
+        JMSEventCodec.writeVarInt(out, -1);
+        try {
+            JMSEventCodec.decode(bytes.toByteArray());
+            fail("Should have rejected the length");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Invalid length"));
+        }
+    }
+
+    @Test
+    public void testNotEncoded() {
+        assertFalse(JMSEventCodec.isEncoded("<xml/>".getBytes()));
+        assertFalse(JMSEventCodec.isEncoded(null));
+    }
+}
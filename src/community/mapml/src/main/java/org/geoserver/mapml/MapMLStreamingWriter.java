@@ -0,0 +1,270 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+
+package org.geoserver.mapml;
+
+import java.io.IOException;
+import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.geoserver.mapml.xml.InputType;
+import org.geoserver.mapml.xml.RelType;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryType;
+
+/**
+ * Writes a MapML document with StAX, one feature at a time, producing the same output as
+ * marshalling the {@link org.geoserver.mapml.xml.Mapml} object tree built by {@link
+ * MapMLGenerator}, without having to keep all the features in memory.
+ *
+ * <p>Usage: {@link #writeHead}, then {@link #startBody}, {@link #writeFeature} for each feature,
+ * and finally {@link #endDocument}.
+ */
+public class MapMLStreamingWriter {
+
+    static final XMLOutputFactory FACTORY = XMLOutputFactory.newFactory();
+
+    private final XMLStreamWriter writer;
+
+    private final String charset;
+
+    /**
+     * @param writer The target writer
+     * @param charset The charset used by the writer, declared in the XML prolog and in the head
+     */
+    public MapMLStreamingWriter(Writer writer, String charset) throws IOException {
+        this.charset = charset;
+        try {
+            this.writer = FACTORY.createXMLStreamWriter(writer);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the root element and the document head
+     *
+     * @param title The document title
+     * @param baseHref The base link
+     * @param licenseLink The license link, optional
+     * @param licenseTitle The license title, optional
+     */
+    public void writeHead(String title, String baseHref, String licenseLink, String licenseTitle)
+            throws IOException {
+        try {
+            writer.writeStartDocument(charset, "1.0");
+            writer.writeStartElement("mapml");
+            writer.writeStartElement("head");
+            writer.writeStartElement("title");
+            writer.writeCharacters(title);
+            writer.writeEndElement();
+            writer.writeEmptyElement("base");
+            writer.writeAttribute("href", baseHref);
+            writer.writeEmptyElement("meta");
+            writer.writeAttribute("charset", charset.toLowerCase());
+            writer.writeEmptyElement("meta");
+            writer.writeAttribute("content", MapMLConstants.MAPML_MIME_TYPE);
+            writer.writeAttribute("http-equiv", "Content-Type");
+            if (licenseLink != null || licenseTitle != null) {
+                writer.writeEmptyElement("link");
+                if (licenseLink != null) {
+                    writer.writeAttribute("href", licenseLink);
+                }
+                writer.writeAttribute("rel", RelType.LICENSE.value());
+                if (licenseTitle != null) {
+                    writer.writeAttribute("title", licenseTitle);
+                }
+            }
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Starts the body, writing the extent with a single zoom level */
+    public void startBody() throws IOException {
+        try {
+            writer.writeStartElement("body");
+            writer.writeStartElement("extent");
+            writer.writeEmptyElement("input");
+            writer.writeAttribute("name", "z");
+            writer.writeAttribute("type", InputType.ZOOM.value());
+            writer.writeAttribute("value", "0");
+            writer.writeAttribute("min", "0");
+            writer.writeAttribute("max", "0");
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Writes a feature, with its geometry and its properties as a HTML table */
+    public void writeFeature(SimpleFeature sf) throws IOException {
+        try {
+            writer.writeStartElement("feature");
+            writer.writeAttribute("id", sf.getID());
+            writer.writeAttribute("class", sf.getFeatureType().getTypeName());
+
+            Geometry g = null;
+            for (AttributeDescriptor attr : sf.getFeatureType().getAttributeDescriptors()) {
+                if (attr.getType() instanceof GeometryType) {
+                    g = (Geometry) sf.getAttribute(attr.getName());
+                }
+            }
+            writer.writeStartElement("geometry");
+            if (g != null) {
+                writeGeometry(g, true);
+            }
+            writer.writeEndElement();
+
+            writer.writeStartElement("properties");
+            writer.writeStartElement("table");
+            writer.writeStartElement("thead");
+            writer.writeStartElement("tr");
+            writeColumnHeader("Property name");
+            writeColumnHeader("Property value");
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeStartElement("tbody");
+            for (AttributeDescriptor attr : sf.getFeatureType().getAttributeDescriptors()) {
+                if (attr.getType() instanceof GeometryType) continue;
+                String name = attr.getLocalName();
+                Object value = sf.getAttribute(attr.getName());
+                writer.writeStartElement("tr");
+                writer.writeStartElement("th");
+                writer.writeAttribute("scope", "row");
+                writer.writeCharacters(name);
+                writer.writeEndElement();
+                writer.writeStartElement("td");
+                writer.writeAttribute("itemprop", name);
+                writer.writeCharacters(value == null ? "" : value.toString());
+                writer.writeEndElement();
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeColumnHeader(String label) throws XMLStreamException {
+        writer.writeStartElement("th");
+        writer.writeAttribute("role", "columnheader");
+        writer.writeAttribute("scope", "col");
+        writer.writeCharacters(label);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Writes a geometry
+     *
+     * @param g The geometry
+     * @param allowCollection If false, geometry collections are not supported (they cannot be
+     *     nested in MapML)
+     */
+    private void writeGeometry(Geometry g, boolean allowCollection)
+            throws XMLStreamException, IOException {
+        if (g instanceof Point) {
+            writer.writeStartElement("point");
+            writer.writeStartElement("coordinates");
+            Point p = (Point) g;
+            writer.writeCharacters(p.getX() + " " + p.getY());
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } else if (g instanceof MultiPoint) {
+            writer.writeStartElement("multipoint");
+            writer.writeStartElement("coordinates");
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                if (i > 0) writer.writeCharacters(" ");
+                Point p = (Point) g.getGeometryN(i);
+                writer.writeCharacters(p.getX() + " " + p.getY());
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        } else if (g instanceof LineString) {
+            writer.writeStartElement("linestring");
+            writeCoordinates(((LineString) g).getCoordinateSequence());
+            writer.writeEndElement();
+        } else if (g instanceof MultiLineString) {
+            writer.writeStartElement("multilinestring");
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                writeCoordinates(((LineString) g.getGeometryN(i)).getCoordinateSequence());
+            }
+            writer.writeEndElement();
+        } else if (g instanceof Polygon) {
+            writePolygon((Polygon) g);
+        } else if (g instanceof MultiPolygon) {
+            writer.writeStartElement("multipolygon");
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                writePolygon((Polygon) g.getGeometryN(i));
+            }
+            writer.writeEndElement();
+        } else if (g instanceof GeometryCollection && allowCollection) {
+            writer.writeStartElement("geometrycollection");
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                writeGeometry(g.getGeometryN(i), false);
+            }
+            writer.writeEndElement();
+        } else {
+            throw new IOException("Unknown geometry type: " + g.getGeometryType());
+        }
+    }
+
+    private void writePolygon(Polygon p) throws XMLStreamException {
+        writer.writeStartElement("polygon");
+        writeCoordinates(p.getExteriorRing().getCoordinateSequence());
+        for (int i = 0; i < p.getNumInteriorRing(); i++) {
+            writeCoordinates(p.getInteriorRingN(i).getCoordinateSequence());
+        }
+        writer.writeEndElement();
+    }
+
+    private void writeCoordinates(CoordinateSequence cs) throws XMLStreamException {
+        writer.writeStartElement("coordinates");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cs.size(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(cs.getX(i)).append(' ').append(cs.getY(i));
+        }
+        writer.writeCharacters(sb.toString());
+        writer.writeEndElement();
+    }
+
+    /** Closes the body and the root element, and flushes the output */
+    public void endDocument() throws IOException {
+        try {
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Flushes the contents written so far to the underlying writer */
+    public void flush() throws IOException {
+        try {
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.mapml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class MapMLStreamingWriterTest {
+
+    private SimpleFeature feature(String id, String wkt, String name) throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("geom", Geometry.class);
+        tb.add("name", String.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        fb.add(new WKTReader().read(wkt));
+        fb.add(name);
+        return fb.buildFeature(id);
+    }
+
+    private Document write(SimpleFeature... features) throws Exception {
+        StringWriter sw = new StringWriter();
+        MapMLStreamingWriter writer = new MapMLStreamingWriter(sw, "UTF-8");
+        writer.writeHead("test", "http://localhost/geoserver/mapml", "http://license", null);
+        writer.startBody();
+        for (SimpleFeature f : features) {
+            writer.writeFeature(f);
+        }
+        writer.endDocument();
+        return DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder()
+                .parse(new ByteArrayInputStream(sw.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testHeadAndBody() throws Exception {
+        Document doc = write();
+        Element root = doc.getDocumentElement();
+        assertEquals("mapml", root.getNodeName());
+        assertEquals("test", text(doc, "title", 0));
+        Element base = (Element) doc.getElementsByTagName("base").item(0);
+        assertEquals("http://localhost/geoserver/mapml", base.getAttribute("href"));
+        assertEquals(2, doc.getElementsByTagName("meta").getLength());
+        Element link = (Element) doc.getElementsByTagName("link").item(0);
+        assertEquals("license", link.getAttribute("rel"));
+        assertEquals("http://license", link.getAttribute("href"));
+        Element input = (Element) doc.getElementsByTagName("input").item(0);
+        assertEquals("zoom", input.getAttribute("type"));
+        assertEquals(0, doc.getElementsByTagName("feature").getLength());
+    }
+
+    @Test
+    public void testFeatures() throws Exception {
+        String polygon =
+                "POLYGON ((0 0, 1 0, 1 1, 0 0), (0.1 0.1, 0.2 0.1, 0.2 0.2, 0.1 0.1))";
+        Document doc =
+                write(
+                        feature("f.1", "POINT (1 2)", "a < b & c"),
+                        feature("f.2", polygon, null),
+                        feature("f.3", "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))", "c"));
+        NodeList features = doc.getElementsByTagName("feature");
+        assertEquals(3, features.getLength());
+        Element f1 = (Element) features.item(0);
+        assertEquals("f.1", f1.getAttribute("id"));
+        assertEquals("test", f1.getAttribute("class"));
+        assertEquals("1.0 2.0", text(doc, "coordinates", 0));
+        // property values are escaped
+        assertEquals("a < b & c", f1.getElementsByTagName("td").item(0).getTextContent());
+
+        assertEquals(1, doc.getElementsByTagName("polygon").getLength());
+        assertEquals("0.0 0.0 1.0 0.0 1.0 1.0 0.0 0.0", text(doc, "coordinates", 1));
+        assertEquals("0.1 0.1 0.2 0.1 0.2 0.2 0.1 0.1", text(doc, "coordinates", 2));
+        Element f2 = (Element) features.item(1);
+        assertEquals("", f2.getElementsByTagName("td").item(0).getTextContent());
+
+        assertEquals(1, doc.getElementsByTagName("multilinestring").getLength());
+        assertEquals("0.0 0.0 1.0 1.0", text(doc, "coordinates", 3));
+        assertEquals("2.0 2.0 3.0 3.0", text(doc, "coordinates", 4));
+    }
+
+    @Test
+    public void testCharset() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        OutputStreamWriter osw = new OutputStreamWriter(bos, StandardCharsets.ISO_8859_1);
+        MapMLStreamingWriter writer = new MapMLStreamingWriter(osw, "ISO-8859-1");
+        writer.writeHead("t\u00e8st", "http://localhost/geoserver/mapml", null, null);
+        writer.startBody();
+        writer.writeFeature(feature("f.1", "POINT (1 2)", "caf\u00e9"));
+        writer.endDocument();
+        osw.flush();
+
+        String xml = new String(bos.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(xml, xml.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+        // the parser picks the encoding from the declaration
+        Document doc =
+                DocumentBuilderFactory.newInstance()
+                        .newDocumentBuilder()
+                        .parse(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals("t\u00e8st", text(doc, "title", 0));
+        assertEquals("caf\u00e9", text(doc, "td", 0));
+        Element meta = (Element) doc.getElementsByTagName("meta").item(0);
+        assertEquals("iso-8859-1", meta.getAttribute("charset"));
+    }
+
+    private String text(Document doc, String name, int index) {
+        return doc.getElementsByTagName(name).item(index).getTextContent();
+    }
+}
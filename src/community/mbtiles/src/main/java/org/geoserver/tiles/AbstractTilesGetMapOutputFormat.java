@@ -7,18 +7,33 @@ package org.geoserver.tiles;
 import static java.lang.String.format;
 
 import com.google.common.base.Preconditions;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.IOUtils;
@@ -26,6 +41,7 @@ import org.geoserver.gwc.GWC;
 import org.geoserver.ows.util.OwsUtils;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapLayerInfo;
 import org.geoserver.wms.MapProducerCapabilities;
@@ -39,6 +55,7 @@ import org.geoserver.wms.map.JPEGMapResponse;
 import org.geoserver.wms.map.PNGMapResponse;
 import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.map.RenderedImageMapOutputFormat;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.Layer;
@@ -53,6 +70,8 @@ import org.geowebcache.grid.GridSubset;
 import org.geowebcache.grid.GridSubsetFactory;
 import org.geowebcache.grid.SRS;
 import org.geowebcache.layer.TileLayer;
+import org.geowebcache.storage.StorageBroker;
+import org.geowebcache.storage.TileObject;
 import org.locationtech.jts.geom.Envelope;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -80,13 +99,72 @@ public abstract class AbstractTilesGetMapOutputFormat extends AbstractMapOutputF
         public void addTile(int zoom, int x, int y, byte[] data)
                 throws IOException, ServiceException;
 
+        /** Adds a batch of tiles, implementations are encouraged to use a single transaction */
+        public default void addTiles(List<TileData> tiles) throws IOException, ServiceException {
+            for (TileData tile : tiles) {
+                addTile(tile.zoom, tile.x, tile.y, tile.data);
+            }
+        }
+
         public File getFile();
 
         public void close();
     }
 
+    /** A rendered tile, ready to be stored in the tiles file */
+    protected static class TileData {
+        public final int zoom;
+        public final int x;
+        public final int y;
+        public final byte[] data;
+
+        public TileData(int zoom, int x, int y, byte[] data) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.data = data;
+        }
+    }
+
     protected static final int TILE_CLEANUP_INTERVAL;
 
+    /** Number of threads rendering metatiles, shared by all the tiles requests */
+    static final int RENDERING_THREADS =
+            Integer.getInteger(
+                    "GS_TILES_RENDERING_THREADS", Runtime.getRuntime().availableProcessors());
+
+    /** Default metatiling factor, can be overridden with the "metatile" format option */
+    static final int DEFAULT_METATILE_SIZE = 4;
+
+    /**
+     * Default size in pixels of the area rendered around a metatile and then discarded, can be
+     * overridden with the "gutter" format option
+     */
+    static final int DEFAULT_GUTTER = 16;
+
+    /** Number of tiles written to the tiles file in a single batch */
+    static final int BATCH_SIZE = 256;
+
+    /** Format options driving the export itself, they do not affect how the tiles look */
+    static final Set<String> EXPORT_OPTIONS =
+            new HashSet<>(
+                    Arrays.asList(
+                            "tileset_name",
+                            "format",
+                            "gridset",
+                            "min_zoom",
+                            "max_zoom",
+                            "num_zooms",
+                            "min_column",
+                            "max_column",
+                            "min_row",
+                            "max_row",
+                            "metatile",
+                            "gutter",
+                            "flipy"));
+
+    private static ExecutorService executor;
+
     static {
         // calculate the number of tiles we can generate before having to cleanup, value is
         // 25% of total memory / approximte size of single tile
@@ -273,30 +351,342 @@ public abstract class AbstractTilesGetMapOutputFormat extends AbstractMapOutputF
             maxRow = Integer.parseInt(formatOpts.get("max_row").toString());
         }
 
+        int metaSize = DEFAULT_METATILE_SIZE;
+        if (formatOpts.containsKey("metatile")) {
+            metaSize = Math.max(1, Integer.parseInt(formatOpts.get("metatile").toString()));
+        }
+        int gutter = DEFAULT_GUTTER;
+        if (formatOpts.containsKey("gutter")) {
+            gutter = Math.max(0, Integer.parseInt(formatOpts.get("gutter").toString()));
+        }
+        // only images can be split, other formats are rendered one tile at a time, as is
+        if (!(wms.getMapOutputFormat(imageFormat) instanceof RenderedImageMapOutputFormat)) {
+            metaSize = 1;
+            gutter = 0;
+        }
+        int metaGutter = gutter;
         // flag determining if tile row indexes we store in database should be inverted
         boolean flipy = Boolean.valueOf((String) formatOpts.get("flipy"));
-        for (int z = minmax[0]; z < minmax[1]; z++) {
-            long[] intersect = gridSubset.getCoverageIntersection(z, bbox);
-            long minX = minColumn == null ? intersect[0] : Math.max(minColumn, intersect[0]);
-            long maxX = maxColumn == null ? intersect[2] : Math.min(maxColumn, intersect[2]);
-            long minY = minRow == null ? intersect[1] : Math.max(minRow, intersect[1]);
-            long maxY = maxRow == null ? intersect[3] : Math.min(maxRow, intersect[3]);
-            for (long x = minX; x <= maxX; x++) {
-                for (long y = minY; y <= maxY; y++) {
-                    BoundingBox box = gridSubset.boundsFromIndex(new long[] {x, y, z});
-                    req.setBbox(
-                            new Envelope(
-                                    box.getMinX(), box.getMaxX(), box.getMinY(), box.getMaxY()));
-                    WebMap result = webMapService.getMap(req);
-                    tiles.addTile(
-                            z,
-                            (int) x,
-                            (int) (flipy ? gridSubset.getNumTilesHigh(z) - (y + 1) : y),
-                            toBytes(result));
-                    // Cleanup
-                    cleaner.finished(null);
+        TileLayer cached = findCachedTileLayer(req, gridSubset, imageFormat);
+
+        // metatiles are rendered in parallel, the tiles are written in batches by this thread
+        CompletionService<List<TileData>> completion =
+                new ExecutorCompletionService<>(getExecutor());
+        // the metatiles being rendered, completed ones are removed so that their tiles can be
+        // garbage collected once written
+        Set<Future<List<TileData>>> futures = new HashSet<>();
+        List<TileData> batch = new ArrayList<>();
+        try {
+            for (int z = minmax[0]; z < minmax[1]; z++) {
+                long[] intersect = gridSubset.getCoverageIntersection(z, bbox);
+                long minX = minColumn == null ? intersect[0] : Math.max(minColumn, intersect[0]);
+                long maxX = maxColumn == null ? intersect[2] : Math.min(maxColumn, intersect[2]);
+                long minY = minRow == null ? intersect[1] : Math.max(minRow, intersect[1]);
+                long maxY = maxRow == null ? intersect[3] : Math.min(maxRow, intersect[3]);
+                for (long x = minX; x <= maxX; x += metaSize) {
+                    for (long y = minY; y <= maxY; y += metaSize) {
+                        long[] metaTile = {
+                            x, y, Math.min(x + metaSize - 1, maxX), Math.min(y + metaSize - 1, maxY)
+                        };
+                        int zoom = z;
+                        ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+                        futures.add(
+                                completion.submit(
+                                        () -> {
+                                            transfer.apply();
+                                            try {
+                                                return renderMetaTile(
+                                                        req,
+                                                        gridSubset,
+                                                        zoom,
+                                                        metaTile,
+                                                        metaGutter,
+                                                        flipy,
+                                                        cached);
+                                            } finally {
+                                                // Cleanup
+                                                cleaner.finished(null);
+                                                transfer.cleanup();
+                                            }
+                                        }));
+                        // keep the amount of rendered tiles waiting in memory bounded
+                        if (futures.size() >= RENDERING_THREADS * 2) {
+                            collect(completion, futures, tiles, batch);
+                        }
+                    }
                 }
             }
+            while (!futures.isEmpty()) {
+                collect(completion, futures, tiles, batch);
+            }
+            if (!batch.isEmpty()) {
+                tiles.addTiles(batch);
+            }
+        } finally {
+            // in case of failure, stop rendering what's left
+            for (Future<List<TileData>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadFactory factory =
+                    new ThreadFactory() {
+                        final AtomicInteger counter = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "TilesRenderer-" + counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    };
+            executor = Executors.newFixedThreadPool(Math.max(1, RENDERING_THREADS), factory);
+        }
+        return executor;
+    }
+
+    /** Waits for the next rendered metatile, and writes its tiles once a batch is complete */
+    private void collect(
+            CompletionService<List<TileData>> completion,
+            Set<Future<List<TileData>>> futures,
+            TilesFile tiles,
+            List<TileData> batch)
+            throws IOException {
+        try {
+            Future<List<TileData>> future = completion.take();
+            futures.remove(future);
+            batch.addAll(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while rendering tiles", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServiceException(cause);
+        }
+        if (batch.size() >= BATCH_SIZE) {
+            tiles.addTiles(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Renders a block of tiles with a single GetMap, and splits the result. Tiles already cached
+     * by GWC are copied instead, if all the tiles of the block are available.
+     *
+     * @param metaTile the min column, min row, max column and max row of the block
+     * @param gutter the pixels rendered around the block and then discarded, so that symbols and
+     *     labels close to its edges are not cut off. Zero for formats that cannot be split, in
+     *     which case the block must be a single tile.
+     */
+    protected List<TileData> renderMetaTile(
+            GetMapRequest prototype,
+            GridSubset gridSubset,
+            int z,
+            long[] metaTile,
+            int gutter,
+            boolean flipy,
+            TileLayer cached)
+            throws IOException {
+        List<TileData> result = new ArrayList<>();
+        if (cached != null
+                && copyCachedTiles(
+                        cached, gridSubset, prototype.getFormat(), z, metaTile, flipy, result)) {
+            return result;
+        }
+        result.clear();
+
+        int columns = (int) (metaTile[2] - metaTile[0] + 1);
+        int rows = (int) (metaTile[3] - metaTile[1] + 1);
+        int tileWidth = gridSubset.getTileWidth();
+        int tileHeight = gridSubset.getTileHeight();
+        Envelope bounds = getBounds(gridSubset, z, metaTile);
+        if (gutter == 0 && columns * rows == 1) {
+            GetMapRequest req = (GetMapRequest) prototype.clone();
+            req.setBbox(bounds);
+            WebMap map = webMapService.getMap(req);
+            result.add(tileData(gridSubset, z, metaTile[0], metaTile[1], flipy, map));
+            return result;
+        }
+
+        // no gutter on the sides at the edge of the gridset
+        int left = metaTile[0] > 0 ? gutter : 0;
+        int bottom = metaTile[1] > 0 ? gutter : 0;
+        int right = metaTile[2] < gridSubset.getNumTilesWide(z) - 1 ? gutter : 0;
+        int top = metaTile[3] < gridSubset.getNumTilesHigh(z) - 1 ? gutter : 0;
+        double resX = bounds.getWidth() / (columns * tileWidth);
+        double resY = bounds.getHeight() / (rows * tileHeight);
+        GetMapRequest req = (GetMapRequest) prototype.clone();
+        req.setBbox(
+                new Envelope(
+                        bounds.getMinX() - left * resX,
+                        bounds.getMaxX() + right * resX,
+                        bounds.getMinY() - bottom * resY,
+                        bounds.getMaxY() + top * resY));
+        req.setWidth(columns * tileWidth + left + right);
+        req.setHeight(rows * tileHeight + bottom + top);
+        WebMap map = webMapService.getMap(req);
+        Preconditions.checkState(
+                map instanceof RenderedImageMap,
+                "Metatiles can only be split if rendered as images");
+
+        RenderedImageMap imageMap = (RenderedImageMap) map;
+        RenderedImage image = imageMap.getImage();
+        for (long x = metaTile[0]; x <= metaTile[2]; x++) {
+            for (long y = metaTile[1]; y <= metaTile[3]; y++) {
+                // image rows go top to bottom, grid rows bottom to top
+                RenderedImage tile =
+                        crop(
+                                image,
+                                image.getMinX() + left + (int) (x - metaTile[0]) * tileWidth,
+                                image.getMinY() + top + (int) (metaTile[3] - y) * tileHeight,
+                                tileWidth,
+                                tileHeight);
+                WebMap tileMap =
+                        new RenderedImageMap(imageMap.getMapContext(), tile, map.getMimeType());
+                result.add(tileData(gridSubset, z, x, y, flipy, tileMap));
+            }
+        }
+        return result;
+    }
+
+    private TileData tileData(
+            GridSubset gridSubset, int z, long x, long y, boolean flipy, WebMap map)
+            throws IOException {
+        return new TileData(z, (int) x, flipY(gridSubset, z, y, flipy), toBytes(map));
+    }
+
+    private int flipY(GridSubset gridSubset, int z, long y, boolean flipy) {
+        return (int) (flipy ? gridSubset.getNumTilesHigh(z) - (y + 1) : y);
+    }
+
+    private Envelope getBounds(GridSubset gridSubset, int z, long[] metaTile) {
+        BoundingBox lower = gridSubset.boundsFromIndex(new long[] {metaTile[0], metaTile[1], z});
+        BoundingBox upper = gridSubset.boundsFromIndex(new long[] {metaTile[2], metaTile[3], z});
+        return new Envelope(lower.getMinX(), upper.getMaxX(), lower.getMinY(), upper.getMaxY());
+    }
+
+    /** Copies a section of the image into a new one, with origin at 0,0 */
+    private RenderedImage crop(RenderedImage image, int x, int y, int width, int height) {
+        ColorModel cm = image.getColorModel();
+        WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
+        image.copyData(raster.createWritableTranslatedChild(x, y));
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Returns the GWC tile layer whose cached tiles can be used as is for the given request, if
+     * any. That's the case only for a single layer request using the layer defaults, in a format
+     * and gridset cached by the tile layer, without rendering options GWC would not use either.
+     */
+    protected TileLayer findCachedTileLayer(
+            GetMapRequest req, GridSubset gridSubset, String imageFormat) {
+        if (gwc == null || req.getLayers().size() != 1) {
+            return null;
+        }
+        MapLayerInfo layer = req.getLayers().get(0);
+        boolean defaultStyle =
+                req.getStyles() == null
+                        || req.getStyles().isEmpty()
+                        || req.getStyles().get(0) == null
+                        || (layer.getDefaultStyle() != null
+                                && req.getStyles().get(0).equals(layer.getDefaultStyle()));
+        if (!defaultStyle
+                || req.getSldBody() != null
+                || req.getSld() != null
+                || (req.getFilter() != null && !req.getFilter().isEmpty())
+                || (req.getCQLFilter() != null && !req.getCQLFilter().isEmpty())
+                || (req.getFeatureId() != null && !req.getFeatureId().isEmpty())
+                || (req.getViewParams() != null && !req.getViewParams().isEmpty())
+                || (req.getEnv() != null && !req.getEnv().isEmpty())
+                || (req.getTime() != null && !req.getTime().isEmpty())
+                || (req.getElevation() != null && !req.getElevation().isEmpty())
+                || hasRenderingOptions(req)) {
+            return null;
+        }
+        try {
+            TileLayer tileLayer = gwc.getTileLayerByName(layer.getName());
+            GridSubset cachedSubset = tileLayer.getGridSubset(gridSubset.getName());
+            if (tileLayer.isEnabled()
+                    && cachedSubset != null
+                    && cachedSubset.getGridSet().equals(gridSubset.getGridSet())
+                    && tileLayer
+                            .getMimeTypes()
+                            .stream()
+                            .anyMatch(mt -> imageFormat.equals(mt.getFormat()))) {
+                return tileLayer;
+            }
+        } catch (IllegalArgumentException e) {
+            // no tile layer
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the request asks for rendering options differing from the ones GWC uses to
+     * build its tiles: format options such as dpi, a background color, no transparency (GWC renders
+     * transparent tiles), a rotation or a buffer
+     */
+    private boolean hasRenderingOptions(GetMapRequest req) {
+        Map<?, ?> formatOptions = req.getFormatOptions();
+        if (formatOptions != null) {
+            for (Object key : formatOptions.keySet()) {
+                if (!EXPORT_OPTIONS.contains(String.valueOf(key).toLowerCase())) {
+                    return true;
+                }
+            }
+        }
+        Map<String, String> rawKvp = req.getRawKvp();
+        return (rawKvp != null && rawKvp.get("BGCOLOR") != null)
+                || !req.isTransparent()
+                || req.getAngle() != 0
+                || req.getBuffer() != 0;
+    }
+
+    /** Copies the tiles from the GWC cache, returns false if any of them is missing */
+    private boolean copyCachedTiles(
+            TileLayer tileLayer,
+            GridSubset gridSubset,
+            String imageFormat,
+            int z,
+            long[] metaTile,
+            boolean flipy,
+            List<TileData> result) {
+        StorageBroker storageBroker = GeoServerExtensions.bean(StorageBroker.class);
+        if (storageBroker == null) {
+            return false;
+        }
+        try {
+            for (long x = metaTile[0]; x <= metaTile[2]; x++) {
+                for (long y = metaTile[1]; y <= metaTile[3]; y++) {
+                    TileObject tile =
+                            TileObject.createQueryTileObject(
+                                    tileLayer.getName(),
+                                    new long[] {x, y, z},
+                                    gridSubset.getName(),
+                                    imageFormat,
+                                    null);
+                    if (!storageBroker.get(tile)) {
+                        return false;
+                    }
+                    byte[] data;
+                    try (InputStream is = tile.getBlob().getInputStream()) {
+                        data = IOUtils.toByteArray(is);
+                    }
+                    result.add(new TileData(z, (int) x, flipY(gridSubset, z, y, flipy), data));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to read tiles from the GWC cache, rendering them", e);
+            return false;
         }
     }
 
@@ -13,9 +13,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
 import javax.xml.namespace.QName;
 import org.apache.commons.io.FileUtils;
 import org.geoserver.data.test.SystemTestData;
@@ -162,6 +167,73 @@ public class MBTilesGetMapOutputFormatTest extends WMSTestSupport {
         assertNotEquals(bounds1.getMaxY(), bounds2.getMaxY(), tolerance);
     }
 
+    @Test
+    public void testMetaTiledEntries() throws Exception {
+        // one GetMap per tile, as the baseline
+        Map<String, BufferedImage> tiles = getTiles("1", "0");
+        assertTrue(tiles.size() > 4);
+        // rendering as metatiles and splitting produces the very same pyramid
+        assertSameTiles(tiles, getTiles("4", null));
+        assertSameTiles(tiles, getTiles("3", "0"));
+        assertSameTiles(tiles, getTiles("3", "5"));
+    }
+
+    private void assertSameTiles(
+            Map<String, BufferedImage> expected, Map<String, BufferedImage> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, BufferedImage> entry : expected.entrySet()) {
+            BufferedImage e = entry.getValue();
+            BufferedImage a = actual.get(entry.getKey());
+            assertEquals(e.getWidth(), a.getWidth());
+            assertEquals(e.getHeight(), a.getHeight());
+            // allow for rounding differences along the raster cell boundaries, a misplaced or
+            // cut off tile would differ on most of its pixels
+            int mismatches = 0;
+            for (int x = 0; x < e.getWidth(); x++) {
+                for (int y = 0; y < e.getHeight(); y++) {
+                    if (e.getRGB(x, y) != a.getRGB(x, y)) {
+                        mismatches++;
+                    }
+                }
+            }
+            assertTrue(
+                    mismatches + " pixels differ in tile " + entry.getKey(),
+                    mismatches <= e.getWidth() * e.getHeight() / 100);
+        }
+    }
+
+    private Map<String, BufferedImage> getTiles(String metaTile, String gutter) throws Exception {
+        WMSMapContent mapContent = createMapContent(WORLD, LAKES);
+        mapContent
+                .getRequest()
+                .setBbox(new Envelope(-0.17578125, -0.087890625, 0.17578125, 0.087890625));
+        Map<String, Object> options = mapContent.getRequest().getFormatOptions();
+        options.put("min_zoom", "10");
+        options.put("max_zoom", "13");
+        options.put("format", "image/png");
+        options.put("metatile", metaTile);
+        if (gutter != null) {
+            options.put("gutter", gutter);
+        }
+
+        MBTilesFile mbtiles = createMbTilesFiles(format.produceMap(mapContent));
+        Map<String, BufferedImage> result = new HashMap<>();
+        MBTilesFile.TileIterator tiles = mbtiles.tiles();
+        try {
+            while (tiles.hasNext()) {
+                MBTilesTile t = tiles.next();
+                assertNotNull(t.getData());
+                result.put(
+                        t.getZoomLevel() + "/" + t.getTileColumn() + "/" + t.getTileRow(),
+                        ImageIO.read(new ByteArrayInputStream(t.getData())));
+            }
+        } finally {
+            tiles.close();
+            mbtiles.close();
+        }
+        return result;
+    }
+
     MBTilesFile createMbTilesFiles(WebMap map) throws IOException {
         assertTrue(map instanceof RawMap);
 
@@ -0,0 +1,120 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * A bounded pool of named threads shared by the DGGS computations that can be split in parallel
+ * (zone counts, boundary computations), so that they do not compete with each other, or with the
+ * rest of the application, on the common fork join pool.
+ */
+public class DGGSExecutor {
+
+    /** Maximum number of threads used by the DGGS computations */
+    public static final int THREADS =
+            Math.max(
+                    1,
+                    Integer.getInteger(
+                            "DGGS_THREADS", Runtime.getRuntime().availableProcessors()));
+
+    private static ExecutorService executor;
+
+    private DGGSExecutor() {}
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            THREADS,
+                            THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread t = new Thread(r, "DGGS-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Runs the action for each index between 0 (included) and size (excluded), splitting the range
+     * in up to {@link #THREADS} contiguous chunks. The first chunk is run by the calling thread,
+     * the others by the pool, the method returns once all of them are done.
+     *
+     * @param size The number of indexes
+     * @param minChunk The minimum number of indexes worth handing over to another thread
+     * @param action The action to run, must be thread safe
+     */
+    public static void forEach(int size, int minChunk, IntConsumer action) {
+        int chunks = Math.min(THREADS, size / Math.max(1, minChunk));
+        if (chunks <= 1) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+            return;
+        }
+
+        int chunkSize = (size + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        for (int start = chunkSize; start < size; start += chunkSize) {
+            int from = start;
+            int to = Math.min(size, start + chunkSize);
+            futures.add(
+                    getExecutor()
+                            .submit(
+                                    () -> {
+                                        for (int i = from; i < to; i++) {
+                                            action.accept(i);
+                                        }
+                                    }));
+        }
+        try {
+            for (int i = 0; i < chunkSize; i++) {
+                action.accept(i);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            futures.forEach(f -> f.cancel(false));
+        }
+    }
+}
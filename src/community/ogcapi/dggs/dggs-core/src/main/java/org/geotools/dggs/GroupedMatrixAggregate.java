@@ -18,6 +18,7 @@ package org.geotools.dggs;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -39,7 +40,9 @@ public class GroupedMatrixAggregate implements FeatureCalc, FeatureAttributeVisi
     private final List<Aggregate> aggregates;
     private final List<Expression> variables;
     private final List<Expression> groupBy;
-    private final Map<List<Object>, List<FeatureCalc>> calculators = new LinkedHashMap<>();
+    private final Map<GroupKey, FeatureCalc[]> calculators = new LinkedHashMap<>();
+    /** Reused to look up the group of each visited feature, without allocating a new key */
+    private final GroupKey probe;
     private CalcResult result;
 
     public GroupedMatrixAggregate(
@@ -47,6 +50,7 @@ public class GroupedMatrixAggregate implements FeatureCalc, FeatureAttributeVisi
         this.variables = variables;
         this.aggregates = aggregates;
         this.groupBy = groupBy;
+        this.probe = new GroupKey(new Object[groupBy.size()]);
     }
 
     public void setResults(Map<List<Object>, List<Object>> results) {
@@ -96,33 +100,37 @@ public class GroupedMatrixAggregate implements FeatureCalc, FeatureAttributeVisi
         if (this.result instanceof IterableResult) return result;
 
         Map<List<Object>, List<CalcResult>> wrapped = new LinkedHashMap<>();
-        calculators
-                .entrySet()
-                .stream()
-                .forEach(e -> wrapped.put(e.getKey(), getResult(e.getValue())));
+        calculators.forEach((k, v) -> wrapped.put(Arrays.asList(k.values), getResult(v)));
         MemoryResult computed = new MemoryResult(wrapped);
         if (this.result == null) return computed;
         else return computed.merge(this.result);
     }
 
-    private List<CalcResult> getResult(List<FeatureCalc> calculators) {
-        return calculators.stream().map(c -> c.getResult()).collect(Collectors.toList());
+    private List<CalcResult> getResult(FeatureCalc[] calculators) {
+        List<CalcResult> results = new ArrayList<>(calculators.length);
+        for (FeatureCalc calculator : calculators) {
+            results.add(calculator.getResult());
+        }
+        return results;
     }
 
     @Override
     public void visit(Feature feature) {
-        List<Object> groupBy = evaluateGroupBy(feature);
-        List<FeatureCalc> groupCalculators =
-                calculators.computeIfAbsent(groupBy, k -> getCalculators());
+        Object[] values = probe.values;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = groupBy.get(i).evaluate(feature);
+        }
+        probe.rehash();
+        FeatureCalc[] groupCalculators = calculators.get(probe);
+        if (groupCalculators == null) {
+            groupCalculators = getCalculators().toArray(new FeatureCalc[0]);
+            calculators.put(new GroupKey(values.clone()), groupCalculators);
+        }
         for (FeatureCalc calc : groupCalculators) {
             calc.visit(feature);
         }
     }
 
-    private List<Object> evaluateGroupBy(Feature feature) {
-        return groupBy.stream().map(e -> e.evaluate(feature)).collect(Collectors.toList());
-    }
-
     @Override
     public List<Expression> getExpressions() {
         return Collections.unmodifiableList(variables);
@@ -133,6 +141,35 @@ public class GroupedMatrixAggregate implements FeatureCalc, FeatureAttributeVisi
         return Collections.unmodifiableList(groupBy);
     }
 
+    /** Group key based on a plain array of values, with a precomputed hash code */
+    static final class GroupKey {
+        final Object[] values;
+        int hash;
+
+        GroupKey(Object[] values) {
+            this.values = values;
+            rehash();
+        }
+
+        void rehash() {
+            // same as List.hashCode, for consistency with the list keys used elsewhere
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof GroupKey)) return false;
+            GroupKey other = (GroupKey) o;
+            return hash == other.hash && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     /** Holds the grouping key and the associated values */
     public static class GroupByResult {
         List<Object> key;
@@ -0,0 +1,103 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * A bounded cache of zone boundaries, keyed by DGGS identifier and zone identifier. Only zones up
+ * to a given resolution are cached: coarse zones are computed over and over by global requests
+ * and by the zone iterators drilling down from the root zones, while the finer ones are many and
+ * rarely requested twice.
+ */
+public class ZoneGeometryCache {
+
+    /** Maximum number of boundaries kept in the cache */
+    public static final long SIZE = Long.getLong("DGGS_GEOMETRY_CACHE_SIZE", 100000);
+
+    /** Maximum resolution of the zones whose boundaries are cached */
+    public static final int MAX_RESOLUTION =
+            Integer.getInteger("DGGS_GEOMETRY_CACHE_MAX_RESOLUTION", 6);
+
+    private static final Cache<Key, Polygon> CACHE =
+            CacheBuilder.newBuilder().maximumSize(SIZE).build();
+
+    private ZoneGeometryCache() {}
+
+    /**
+     * Returns the boundary of the zone, from the cache if available, computing and caching it
+     * otherwise
+     *
+     * @param dggsIdentifier The DGGS identifier, see {@link DGGSInstance#getIdentifier()}
+     * @param zoneId The zone identifier
+     * @param resolution The zone resolution
+     * @param loader Computes the boundary when it's not found in the cache
+     */
+    public static Polygon getBoundary(
+            String dggsIdentifier, String zoneId, int resolution, Supplier<Polygon> loader) {
+        if (resolution > MAX_RESOLUTION || SIZE <= 0) {
+            return loader.get();
+        }
+        try {
+            // hand out copies, renderers and the like might modify the geometries in place
+            return (Polygon) CACHE.get(new Key(dggsIdentifier, zoneId), loader::get).copy();
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException("Failed to compute boundary for zone " + zoneId, cause);
+        }
+    }
+
+    /** Empties the cache */
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+
+    /** Returns the number of boundaries currently cached */
+    public static long size() {
+        return CACHE.size();
+    }
+
+    static class Key {
+        String dggs;
+        String zone;
+
+        public Key(String dggs, String zone) {
+            this.dggs = dggs;
+            this.zone = zone;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(dggs, key.dggs) && Objects.equals(zone, key.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dggs, zone);
+        }
+    }
+}
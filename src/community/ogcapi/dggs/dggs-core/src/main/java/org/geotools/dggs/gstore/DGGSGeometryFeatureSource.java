@@ -156,22 +156,33 @@ class DGGSGeometryFeatureSource extends ContentFeatureSource implements DGGSFeat
 
         // reading might need properties used by filtering and sorting only
         SimpleFeatureType resultSchema = getResultSchema(query);
+        Filter filter = query.getFilter();
+        boolean filtered = filter != null && !Filter.INCLUDE.equals(filter);
+        // sorting, for basic paging just use the DGGS iteration order
+        SortBy[] sortBy = query.getSortBy();
+        boolean sorted =
+                sortBy != null
+                        && sortBy.length != 0
+                        && sortBy != SortBy.UNSORTED
+                        && !(sortBy.length == 1 && sortBy[0] == SortBy.NATURAL_ORDER);
+
+        // when reading in iteration order, at most start index + max features zones are used
+        int maxFeatures = Integer.MAX_VALUE;
+        if (!filtered && !sorted && !query.isMaxFeaturesUnlimited()) {
+            long start = query.getStartIndex() != null ? query.getStartIndex() : 0;
+            maxFeatures = (int) Math.min(Integer.MAX_VALUE, start + query.getMaxFeatures());
+        }
         FeatureReader<SimpleFeatureType, SimpleFeature> reader =
-                new ZonesFeatureIterator(iterator, readSchema, store.dggs.getExtraProperties());
+                new ZonesFeatureIterator(
+                        iterator, readSchema, store.dggs.getExtraProperties(), maxFeatures);
 
         // filter if necessary
-        Filter filter = query.getFilter();
-        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+        if (filtered) {
             reader = new FilteringFeatureReader<>(reader, filter);
         }
 
-        // sorting, for basic paging just use the DGGS iteration order
-        SortBy[] sortBy = query.getSortBy();
-        if (sortBy != null && sortBy.length != 0) {
-            if (sortBy != SortBy.UNSORTED
-                    && !(sortBy.length == 1 && sortBy[0] == SortBy.NATURAL_ORDER)) {
-                reader = new SortedFeatureReader(DataUtilities.simple(reader), query);
-            }
+        if (sorted) {
+            reader = new SortedFeatureReader(DataUtilities.simple(reader), query);
         }
 
         // retyping at end if necessary
@@ -22,22 +22,42 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 import org.geotools.data.simple.SimpleFeatureReader;
+import org.geotools.dggs.DGGSExecutor;
 import org.geotools.dggs.Zone;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.Polygon;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 
+/**
+ * Turns zones into features. Zones are read in batches, and their boundaries computed in parallel
+ * on the {@link DGGSExecutor} when the batch is large enough, while preserving the zone iteration
+ * order.
+ */
 class ZonesFeatureIterator implements SimpleFeatureReader {
+
+    /** Number of zones read and computed at once */
+    static final int BATCH_SIZE = Integer.getInteger("DGGS_ZONE_BATCH_SIZE", 256);
+
+    /** Minimum number of zones whose boundaries are worth computing in a separate thread */
+    static final int PARALLEL_THRESHOLD = 16;
+
     private final Iterator<Zone> iterator;
     private final List<String> requestedProperties;
+    private final boolean geometryRequested;
+    private final Zone[] zones;
+    private final Polygon[] boundaries;
+    private int position;
+    private int size;
     SimpleFeatureBuilder fb;
     List<Boolean> includeExtraProperties;
 
     public ZonesFeatureIterator(
             Iterator<Zone> iterator,
             SimpleFeatureType schema,
-            List<AttributeDescriptor> extraProperties) {
+            List<AttributeDescriptor> extraProperties,
+            int maxFeatures) {
         this.iterator = iterator;
         fb = new SimpleFeatureBuilder(schema);
         requestedProperties =
@@ -45,6 +65,23 @@ class ZonesFeatureIterator implements SimpleFeatureReader {
                         .stream()
                         .map(ad -> ad.getLocalName())
                         .collect(Collectors.toList());
+        geometryRequested = requestedProperties.contains(DGGSGeometryStore.GEOMETRY);
+        // no point reading and computing more zones than the query can return
+        zones = new Zone[Math.max(1, Math.min(BATCH_SIZE, maxFeatures))];
+        boundaries = new Polygon[zones.length];
+    }
+
+    /** Reads the next batch of zones, computing their boundaries if needed */
+    private void readBatch() {
+        position = 0;
+        size = 0;
+        while (size < zones.length && iterator.hasNext()) {
+            zones[size++] = iterator.next();
+        }
+        if (geometryRequested) {
+            DGGSExecutor.forEach(
+                    size, PARALLEL_THRESHOLD, i -> boundaries[i] = zones[i].getBoundary());
+        }
     }
 
     @Override
@@ -55,11 +92,16 @@ class ZonesFeatureIterator implements SimpleFeatureReader {
     @Override
     public SimpleFeature next()
             throws IOException, IllegalArgumentException, NoSuchElementException {
-        Zone zone = iterator.next();
+        if (!hasNext()) throw new NoSuchElementException();
+        Zone zone = zones[position];
+        Polygon boundary = boundaries[position];
+        zones[position] = null;
+        boundaries[position] = null;
+        position++;
         String id = zone.getId();
         for (String p : requestedProperties) {
             if (DGGSGeometryStore.GEOMETRY.equals(p)) {
-                fb.add(zone.getBoundary());
+                fb.add(boundary);
             } else if (DGGSGeometryStore.ZONE_ID.equals(p)) {
                 fb.add(id);
             } else if (DGGSGeometryStore.RESOLUTION.equals(p)) {
@@ -74,7 +116,10 @@ class ZonesFeatureIterator implements SimpleFeatureReader {
 
     @Override
     public boolean hasNext() throws IOException {
-        return iterator.hasNext();
+        if (position >= size) {
+            readBatch();
+        }
+        return position < size;
     }
 
     @Override
@@ -20,6 +20,7 @@ import com.uber.h3core.util.GeoCoord;
 import java.util.List;
 import java.util.Objects;
 import org.geotools.dggs.Zone;
+import org.geotools.dggs.ZoneGeometryCache;
 import org.geotools.dggs.ZoneWrapper;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
@@ -56,6 +57,11 @@ public class H3Zone implements Zone {
 
     @Override
     public Polygon getBoundary() {
+        return ZoneGeometryCache.getBoundary(
+                dggs.getIdentifier(), getId(), getResolution(), this::computeBoundary);
+    }
+
+    private Polygon computeBoundary() {
         CoordinateSequence cs = getCoordinateSequence();
 
         // rewrap to avoid dateline jumps
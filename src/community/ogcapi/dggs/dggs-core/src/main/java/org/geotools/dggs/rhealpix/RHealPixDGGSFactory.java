@@ -7,13 +7,9 @@ package org.geotools.dggs.rhealpix;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import jep.JepException;
 import org.geotools.data.Parameter;
 import org.geotools.dggs.DGGSFactory;
 import org.geotools.dggs.DGGSInstance;
-import org.geotools.util.logging.Logging;
 
 /**
  * Factory for rHealPix DGGS instances. TODO: for now it always returns a TB16-Pix instance, but it
@@ -21,17 +17,14 @@ import org.geotools.util.logging.Logging;
  */
 public class RHealPixDGGSFactory implements DGGSFactory {
 
-    static final Logger LOGGER = Logging.getLogger(RHealPixDGGSFactory.class);
-    private static final JEPWebRuntime.Initializer INITIALIZER =
-            interpreter -> {
-                interpreter.exec("from rhealpixdggs import dggs, ellipsoids");
-                interpreter.exec("from rhealpixdggs.ellipsoids import Ellipsoid");
-                interpreter.exec("from rhealpixdggs.dggs import RHEALPixDGGS, Cell");
-                interpreter.exec(
-                        "WGS84_TB16 = Ellipsoid(a=6378137.0, b=6356752.314140356, e=0.0578063088401, f=0.003352810681182, lon_0=-131.25)");
-                interpreter.exec(
-                        "dggs = RHEALPixDGGS(ellipsoid=WGS84_TB16, north_square=0, south_square=0, N_side=3)");
-            };
+    /** WGS84 semi major axis */
+    static final double WGS84_A = 6378137.0;
+
+    /** WGS84 semi minor axis */
+    static final double WGS84_B = 6356752.314140356;
+
+    /** Central meridian of the TB16-Pix DGGS */
+    static final double TB16_LON_0 = -131.25;
 
     @Override
     public String getId() {
@@ -47,25 +40,12 @@ public class RHealPixDGGSFactory implements DGGSFactory {
 
     @Override
     public DGGSInstance createInstance(Map<String, Serializable> params) throws IOException {
-        return new RHealPixDGGSInstance(new JEPWebRuntime(INITIALIZER), "TB16-Pix");
+        return new RHealPixDGGSInstance("TB16-Pix", WGS84_A, WGS84_B, TB16_LON_0, 0, 0);
     }
 
     @Override
     public boolean isAvailable() {
-        JEPWebRuntime runtime = new JEPWebRuntime(INITIALIZER);
-        try {
-            runtime.getInterpreter();
-            return true;
-        } catch (Exception | UnsatisfiedLinkError e) {
-            LOGGER.log(Level.FINE, "Could not instantiate a rHEALPix DGGS", e);
-            return false;
-        } finally {
-            try {
-                JEPWebRuntime.closeThreadIntepreter();
-            } catch (JepException e) {
-                LOGGER.log(Level.FINE, "Could not clean up the JEP runtime", e);
-                return false;
-            }
-        }
+        // pure Java, no native libraries involved
+        return true;
     }
 }
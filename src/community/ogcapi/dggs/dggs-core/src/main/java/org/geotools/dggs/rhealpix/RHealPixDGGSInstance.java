@@ -18,8 +18,6 @@ package org.geotools.dggs.rhealpix;
 
 import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.StreamSupport.stream;
-import static org.geotools.dggs.rhealpix.RHealPixUtils.setCellId;
-
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -33,16 +31,14 @@ import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import jep.JepException;
-import jep.SharedInterpreter;
 import org.geotools.data.store.EmptyIterator;
+import org.geotools.dggs.DGGSExecutor;
 import org.geotools.dggs.DGGSInstance;
 import org.geotools.dggs.Zone;
 import org.geotools.dggs.gstore.DGGSStore;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.filter.function.FilterFunction_offset;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -56,30 +52,34 @@ import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 
+/**
+ * rHEALPix DGGS instance, computing zones in pure Java. Zone identifiers and geometries match the
+ * ones of the rhealpixdggs Python library. The instance holds no per thread state, and can be used
+ * concurrently.
+ */
 public class RHealPixDGGSInstance implements DGGSInstance {
 
     static final Logger LOGGER = Logging.getLogger(RHealPixDGGSInstance.class);
     private final String identifier;
 
-    final JEPWebRuntime runtime;
+    final RHealPixGrid grid;
     final GeometryFactory gf = new GeometryFactory();
-    final Set<String> northPoleZones;
-    final Set<String> southPoleZones;
-    final SoftValueHashMap<String, RHealPixZone> zoneCache = new SoftValueHashMap<>(10000);
 
-    public RHealPixDGGSInstance(JEPWebRuntime runtime, String identifier) {
-        this.runtime = runtime;
+    /**
+     * Builds a new instance
+     *
+     * @param identifier The instance identifier
+     * @param a The ellipsoid semi major axis
+     * @param b The ellipsoid semi minor axis
+     * @param lon0 The central meridian, in degrees
+     * @param northSquare The position of the north square (0 to 3)
+     * @param southSquare The position of the south square (0 to 3)
+     */
+    public RHealPixDGGSInstance(
+            String identifier, double a, double b, double lon0, int northSquare, int southSquare) {
         this.identifier = identifier;
-
-        int[] resolutions = getResolutions();
-        this.northPoleZones =
-                Arrays.stream(resolutions)
-                        .mapToObj(r -> getZone(0, 90, r).getId())
-                        .collect(Collectors.toSet());
-        this.southPoleZones =
-                Arrays.stream(resolutions)
-                        .mapToObj(r -> getZone(0, -90, r).getId())
-                        .collect(Collectors.toSet());
+        this.grid =
+                new RHealPixGrid(new RHealPixProjection(a, b, lon0, northSquare, southSquare));
     }
 
     @Override
@@ -89,7 +89,7 @@ public class RHealPixDGGSInstance implements DGGSInstance {
 
     @Override
     public void close() {
-        this.runtime.dispose();
+        // nothing to dispose
     }
 
     @Override
@@ -104,57 +104,19 @@ public class RHealPixDGGSInstance implements DGGSInstance {
 
     @Override
     public RHealPixZone getZone(String id) {
-        RHealPixZone zone = zoneCache.get(id);
-        if (zone == null) {
-            try {
-                @SuppressWarnings("PMD.CloseResource") // the runtime is responsible for closing it
-                SharedInterpreter interpreter = runtime.getInterpreter();
-                setCellId(interpreter, "id", id);
-                interpreter.exec("c = dggs.cell(id)");
-                zone = new RHealPixZone(this, id);
-                zoneCache.put(id, zone);
-            } catch (JepException e) {
-                throw new IllegalArgumentException("Invalid zone identifier '" + id + "'", e);
-            }
-        }
-        return zone;
+        RHealPixGrid.validate(id);
+        return new RHealPixZone(this, id);
     }
 
     @Override
     public Zone getZone(double lat, double lon, int resolution) {
-        return runtime.runSafe(
-                interpreter -> {
-                    interpreter.set("p", Arrays.asList(lat, lon));
-                    interpreter.set("r", (Integer) resolution);
-                    interpreter.exec("c = dggs.cell_from_point(r, p, False)");
-                    List<Object> idList = interpreter.getValue("c.suid", List.class);
-                    String id = toZoneId(idList);
-                    return new RHealPixZone(this, id);
-                });
-    }
-
-    private String toZoneId(List<Object> idList) {
-        String id = idList.stream().map(o -> String.valueOf(o)).collect(Collectors.joining(""));
-        return id;
+        // callers have always passed the point in x/y order, treat it as such
+        return new RHealPixZone(this, grid.cell(lat, lon, resolution));
     }
 
     @Override
     public Iterator<Zone> zonesFromEnvelope(
             Envelope envelope, int targetResolution, boolean compact) {
-        // WAY USING DIRECT LIBRARY CALLS. Faster, but memory bound.
-        //        return runtime.runSafe(
-        //                interpreter -> {
-        //                    Envelope safe = envelope.intersection(DGGSInstance.WORLD);
-        //                    interpreter.set("nw", Arrays.asList(safe.getMinX(), safe.getMaxY()));
-        //                    interpreter.set("se", Arrays.asList(safe.getMaxX(), safe.getMinY()));
-        //                    interpreter.set("r", (Integer) resolution);
-        //                    interpreter.exec("cells = dggs.cells_from_region(r, nw, se, False)");
-        //                    List<List<String>> idList = interpreter.getValue("cells", List.class);
-        //                    return idList.stream()
-        //                            .flatMap(l -> l.stream())
-        //                            .map(id -> (Zone) new RHealPixZone(this, id))
-        //                            .iterator();
-        //                });
         Envelope intersection = envelope.intersection(WORLD);
         if (intersection.isNull()) {
             return new EmptyIterator();
@@ -186,17 +148,24 @@ public class RHealPixDGGSInstance implements DGGSInstance {
             compact(identifiers);
             return identifiers.stream().map(id -> (Zone) new RHealPixZone(this, id)).iterator();
         } else {
-            return new RHealPixZoneIterator<>(
-                    this,
-                    zone -> {
-                        return zone.getResolution() < targetResolution
-                                && (overlaps(zone.getBoundary(), envelope, true));
-                    },
-                    zone -> {
-                        return zone.getResolution() == targetResolution
-                                && overlaps(zone.getBoundary(), envelope, false);
-                    },
-                    zone -> (Zone) zone);
+            // zones fully contained in the envelope are expanded to their children without
+            // computing any further geometry
+            Iterator<Zone> compactIterator =
+                    new RHealPixZoneIterator<>(
+                            this,
+                            zone -> {
+                                return zone.getResolution() < targetResolution
+                                        && (overlaps(zone.getBoundary(), envelope, true));
+                            },
+                            zone -> {
+                                int r = zone.getResolution();
+                                if (r == targetResolution) {
+                                    return overlaps(zone.getBoundary(), envelope, false);
+                                }
+                                return contained(zone.getBoundary(), envelope, true);
+                            },
+                            zone -> (Zone) zone);
+            return expandChildren(compactIterator, targetResolution);
         }
     }
 
@@ -321,6 +290,22 @@ public class RHealPixDGGSInstance implements DGGSInstance {
             return 0;
         }
         AtomicLong counter = new AtomicLong();
+        // split the work by parent zones, counting each sub-tree in parallel
+        List<String> parents = RHealPixGrid.CELLS0;
+        if (resolution > 0) {
+            parents =
+                    parents.stream()
+                            .flatMap(id -> RHealPixGrid.children(id).stream())
+                            .collect(Collectors.toList());
+        }
+        List<String> ids = parents;
+        DGGSExecutor.forEach(
+                ids.size(), 1, i -> countZones(ids.get(i), envelope, resolution, counter));
+        return counter.get();
+    }
+
+    /** Counts the zones in the envelope, descending from the given parent zone */
+    private void countZones(String parent, Envelope envelope, int resolution, AtomicLong counter) {
         RHealPixZoneIterator<AtomicLong> iterator =
                 new RHealPixZoneIterator<>(
                         this,
@@ -346,10 +331,10 @@ public class RHealPixDGGSInstance implements DGGSInstance {
                             return false;
                         },
                         // just return the current counter value
-                        zone -> counter);
+                        zone -> counter,
+                        Arrays.asList(parent));
         // make it visit
         while (iterator.hasNext()) iterator.next();
-        return counter.get();
     }
 
     private long childrenCount(int resolutionDifference) {
@@ -373,36 +358,27 @@ public class RHealPixDGGSInstance implements DGGSInstance {
 
     @Override
     public Iterator<Zone> neighbors(String id, int radius) {
+        RHealPixGrid.validate(id);
         Set<String> result = new HashSet<>();
         // temporary add to work as an exclusion mask too
         result.add(id);
         // cells yet to explore
         Set<String> toExplore = new HashSet<>();
         toExplore.add(id);
-        runtime.runSafe(
-                interpreter -> {
-                    for (int i = 0; i < radius; i++) {
-                        Set<String> nextRound = new HashSet<>();
-                        for (String cell : toExplore) {
-                            setCellId(interpreter, "id", cell);
-                            // find the neighbors of the cell
-                            List<String> neighbors =
-                                    interpreter.getValue(
-                                            "list(Cell(dggs, id).neighbors(False).values())",
-                                            List.class);
-                            // compute the zones that we haven't hit yet
-                            List<String> newZones = new ArrayList<>(neighbors);
-                            newZones.removeAll(result);
-                            // add to the result, schedule for next round of checks
-                            result.addAll(newZones);
-                            nextRound.addAll(newZones);
-                        }
-                        // done collecting the current ring, switch to the next
-                        toExplore.clear();
-                        toExplore.addAll(nextRound);
+        for (int i = 0; i < radius; i++) {
+            Set<String> nextRound = new HashSet<>();
+            for (String cell : toExplore) {
+                // find the neighbors of the cell, and the zones that we haven't hit yet
+                for (String neighbor : grid.neighbors(cell)) {
+                    // add to the result, schedule for next round of checks
+                    if (result.add(neighbor)) {
+                        nextRound.add(neighbor);
                     }
-                    return null;
-                });
+                }
+            }
+            // done collecting the current ring, switch to the next
+            toExplore = nextRound;
+        }
         // remove the seed zone
         result.remove(id);
         return result.stream().map(zoneId -> (Zone) new RHealPixZone(this, zoneId)).iterator();
@@ -431,15 +407,7 @@ public class RHealPixDGGSInstance implements DGGSInstance {
 
     @Override
     public Zone point(Point point, int resolution) {
-        return runtime.runSafe(
-                interpreter -> {
-                    interpreter.set("p", Arrays.asList(point.getX(), point.getY()));
-                    interpreter.set("r", Integer.valueOf(resolution));
-                    List<Object> idList =
-                            interpreter.getValue(
-                                    "dggs.cell_from_point(r, p, False).suid", List.class);
-                    return new RHealPixZone(RHealPixDGGSInstance.this, toZoneId(idList));
-                });
+        return new RHealPixZone(this, grid.cell(point.getX(), point.getY(), resolution));
     }
 
     @Override
@@ -472,6 +440,11 @@ public class RHealPixDGGSInstance implements DGGSInstance {
                                     || testContains(prepared, zone.getBoundary());
                         },
                         zone -> (Zone) zone);
+        return expandChildren(compactIterator, resolution);
+    }
+
+    /** Expands the zones at a lower resolution than the target one into their children */
+    private Iterator<Zone> expandChildren(Iterator<Zone> compactIterator, int resolution) {
         // expand the cells that are at a lower resolution using the fast children computation
         return stream(spliteratorUnknownSize(compactIterator, Spliterator.ORDERED), false)
                 .flatMap(
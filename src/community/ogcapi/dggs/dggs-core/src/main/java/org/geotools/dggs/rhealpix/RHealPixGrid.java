@@ -0,0 +1,274 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs.rhealpix;
+
+import static org.geotools.dggs.rhealpix.RHealPixProjection.PI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The rHEALPix cell structure with a side of 3 cells, on top of a {@link RHealPixProjection}.
+ * Cells are identified by the letter of the resolution 0 cell followed by one digit per
+ * resolution, each digit locating the child cell in row major order, starting from the upper left
+ * corner of the parent in the plane, matching the identifiers of the rhealpixdggs Python library.
+ *
+ * <p>The class is immutable and thread safe.
+ */
+class RHealPixGrid {
+
+    static final List<String> CELLS0 = Arrays.asList("N", "O", "P", "Q", "R", "S");
+
+    static final int N = 0;
+
+    static final int S = 5;
+
+    /** Side of the resolution 0 cells */
+    static final double SIDE = PI / 2;
+
+    /** Number of points per side used to describe the curved cells boundaries */
+    static final int BOUNDARY_POINTS = 10;
+
+    final RHealPixProjection projection;
+
+    /** Upper left vertices of the resolution 0 cells, in the plane */
+    final double[][] ul;
+
+    RHealPixGrid(RHealPixProjection projection) {
+        this.projection = projection;
+        this.ul =
+                new double[][] {
+                    {-PI + projection.northSquare * SIDE, 3 * PI / 4},
+                    {-PI, PI / 4},
+                    {-PI / 2, PI / 4},
+                    {0, PI / 4},
+                    {PI / 2, PI / 4},
+                    {-PI + projection.southSquare * SIDE, -PI / 4}
+                };
+    }
+
+    /** Throws an {@link IllegalArgumentException} if the identifier is not a valid cell */
+    static void validate(String id) {
+        if (id == null || id.isEmpty() || CELLS0.indexOf(id.substring(0, 1)) < 0) {
+            throw new IllegalArgumentException("Invalid zone identifier '" + id + "'");
+        }
+        for (int i = 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '8') {
+                throw new IllegalArgumentException("Invalid zone identifier '" + id + "'");
+            }
+        }
+    }
+
+    /** Returns the width of the cells at the given resolution, in the plane */
+    static double width(int resolution) {
+        return SIDE / Math.pow(3, resolution);
+    }
+
+    /** Returns the index of the resolution 0 cell of the given identifier */
+    static int face(String id) {
+        return CELLS0.indexOf(id.substring(0, 1));
+    }
+
+    /** Returns the row of the cell inside its resolution 0 cell */
+    static int row(String id) {
+        int row = 0;
+        for (int i = 1; i < id.length(); i++) {
+            row = row * 3 + (id.charAt(i) - '0') / 3;
+        }
+        return row;
+    }
+
+    /** Returns the column of the cell inside its resolution 0 cell */
+    static int column(String id) {
+        int col = 0;
+        for (int i = 1; i < id.length(); i++) {
+            col = col * 3 + (id.charAt(i) - '0') % 3;
+        }
+        return col;
+    }
+
+    /** Builds the identifier of a cell given its position inside the resolution 0 cell */
+    static String toId(int face, int row, int col, int resolution) {
+        char[] chars = new char[resolution + 1];
+        chars[0] = CELLS0.get(face).charAt(0);
+        for (int i = resolution; i > 0; i--) {
+            chars[i] = (char) ('0' + (row % 3) * 3 + col % 3);
+            row /= 3;
+            col /= 3;
+        }
+        return new String(chars);
+    }
+
+    /** Returns the direct children of the given cell */
+    static List<String> children(String id) {
+        List<String> result = new ArrayList<>(9);
+        for (int i = 0; i < 9; i++) {
+            result.add(id + i);
+        }
+        return result;
+    }
+
+    /** Returns the upper left vertex of the cell, in the plane */
+    double[] ulVertex(String id) {
+        int resolution = id.length() - 1;
+        double w = width(resolution);
+        double[] ul0 = ul[face(id)];
+        return new double[] {ul0[0] + column(id) * w, ul0[1] - row(id) * w};
+    }
+
+    /**
+     * Returns the cell containing the given planar point, at the given resolution, or null if the
+     * point is outside of the rHEALPix image
+     */
+    String planarCell(double x, double y, int resolution) {
+        int face = -1;
+        for (int f = 0; f < ul.length; f++) {
+            double[] ul0 = ul[f];
+            if (x >= ul0[0] - 1e-9
+                    && x <= ul0[0] + SIDE + 1e-9
+                    && y <= ul0[1] + 1e-9
+                    && y >= ul0[1] - SIDE - 1e-9) {
+                face = f;
+                // prefer the equatorial cells on the shared sides
+                if (f != N) break;
+            }
+        }
+        if (face < 0) return null;
+        int cells = (int) Math.pow(3, resolution);
+        double w = width(resolution);
+        double[] ul0 = ul[face];
+        int col = clamp((int) Math.floor((x - ul0[0]) / w), cells);
+        int row = clamp((int) Math.floor((ul0[1] - y) / w), cells);
+        return toId(face, row, col, resolution);
+    }
+
+    private static int clamp(int value, int cells) {
+        return Math.max(0, Math.min(cells - 1, value));
+    }
+
+    /** Returns the cell containing the given geographic point, at the given resolution */
+    String cell(double lon, double lat, int resolution) {
+        double[] p = new double[2];
+        projection.project(lon, lat, p);
+        return planarCell(p[0], p[1], resolution);
+    }
+
+    /** Returns true if the cell lies in the north or south square */
+    static boolean isPolar(String id) {
+        int face = face(id);
+        return face == N || face == S;
+    }
+
+    /** Returns the shape of the cell on the ellipsoid */
+    RHealPixZone.CellType shape(String id) {
+        if (!isPolar(id)) return RHealPixZone.CellType.quad;
+        boolean center = true;
+        for (int i = 1; i < id.length() && center; i++) {
+            center = id.charAt(i) == '4';
+        }
+        if (center) return RHealPixZone.CellType.cap;
+        int row = row(id);
+        int col = column(id);
+        int last = (int) Math.pow(3, id.length() - 1) - 1;
+        if (row == col || row + col == last) return RHealPixZone.CellType.dart;
+        return RHealPixZone.CellType.skew_quad;
+    }
+
+    /**
+     * Returns the vertices of the cell on the ellipsoid, as lon/lat pairs. Quads and caps are
+     * described by their four corners, in upper left, upper right, lower right, lower left order,
+     * the other shapes have curved sides and are described by {@link #BOUNDARY_POINTS} points per
+     * side, in the same order.
+     */
+    double[][] vertices(String id) {
+        RHealPixZone.CellType shape = shape(id);
+        int perSide =
+                shape == RHealPixZone.CellType.quad || shape == RHealPixZone.CellType.cap
+                        ? 1
+                        : BOUNDARY_POINTS - 1;
+        double[] ul = ulVertex(id);
+        double w = width(id.length() - 1);
+        double step = w / perSide;
+        double[][] result = new double[perSide * 4][];
+        for (int i = 0; i < perSide; i++) {
+            result[i] = unproject(ul[0] + i * step, ul[1]);
+            result[perSide + i] = unproject(ul[0] + w, ul[1] - i * step);
+            result[2 * perSide + i] = unproject(ul[0] + w - i * step, ul[1] - w);
+            result[3 * perSide + i] = unproject(ul[0], ul[1] - w + i * step);
+        }
+        return result;
+    }
+
+    private double[] unproject(double x, double y) {
+        double[] result = new double[2];
+        projection.unproject(x, y, result);
+        return result;
+    }
+
+    /** Returns the centroid of the cell on the ellipsoid, as a lon/lat pair */
+    double[] centroid(String id) {
+        double[] ul = ulVertex(id);
+        double w = width(id.length() - 1);
+        return unproject(ul[0] + w / 2, ul[1] - w / 2);
+    }
+
+    /**
+     * Returns the cells sharing a side with the given one, at the same resolution. Cells sharing
+     * only a corner are not considered neighbors.
+     */
+    Set<String> neighbors(String id) {
+        int resolution = id.length() - 1;
+        double[] ul = ulVertex(id);
+        double w = width(resolution);
+        double cx = ul[0] + w / 2;
+        double cy = ul[1] - w / 2;
+        Set<String> result = new LinkedHashSet<>(4);
+        addNeighbor(id, cx, cy + w, resolution, result);
+        addNeighbor(id, cx + w, cy, resolution, result);
+        addNeighbor(id, cx, cy - w, resolution, result);
+        addNeighbor(id, cx - w, cy, resolution, result);
+        return result;
+    }
+
+    private void addNeighbor(String id, double x, double y, int resolution, Set<String> result) {
+        double[] p = new double[] {x, y};
+        int face = face(id);
+        if (face == N || face == S) {
+            double[] ul0 = ul[face];
+            if (x < ul0[0] || x > ul0[0] + SIDE || y > ul0[1] || y < ul0[1] - SIDE) {
+                // out of the polar square, back into the HEALPix equatorial region
+                projection.splitTriangles(x, y, p);
+            }
+        } else if (y > PI / 4 || y < -PI / 4) {
+            // out of the equatorial region, into one of the polar triangles
+            projection.combineTriangles(x, y, p);
+        }
+        // the equatorial region wraps around in longitude
+        if (Math.abs(p[1]) <= PI / 4) {
+            if (p[0] < -PI) p[0] += 2 * PI;
+            else if (p[0] >= PI) p[0] -= 2 * PI;
+        }
+        String neighbor = planarCell(p[0], p[1], resolution);
+        if (neighbor != null && !neighbor.equals(id)) {
+            result.add(neighbor);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs.rhealpix;
+
+/**
+ * The rHEALPix projection of an ellipsoid, as implemented by the rhealpixdggs Python library: the
+ * geodetic latitude is turned into the authalic one, projected with the HEALPix projection, and
+ * the polar triangles are then combined into the north and south squares.
+ *
+ * <p>Planar coordinates are computed on the unit authalic sphere, the cell structure only depends
+ * on their ratios, so there is no need to scale them by the authalic radius. Geographic
+ * coordinates are expressed in degrees.
+ */
+class RHealPixProjection {
+
+    static final double PI = Math.PI;
+
+    static final double PHI_0 = Math.asin(2d / 3);
+
+    private static final double EPS = 1e-12;
+
+    final double e;
+
+    final double lon0;
+
+    final int northSquare;
+
+    final int southSquare;
+
+    /** Authalic q computed at the pole */
+    private final double qp;
+
+    /** Coefficients of the series expansion of the inverse authalic latitude */
+    private final double c2;
+
+    private final double c4;
+
+    private final double c6;
+
+    /**
+     * Builds the projection
+     *
+     * @param a The ellipsoid semi major axis
+     * @param b The ellipsoid semi minor axis
+     * @param lon0 The central meridian, in degrees
+     * @param northSquare The position of the north square (0 to 3)
+     * @param southSquare The position of the south square (0 to 3)
+     */
+    RHealPixProjection(double a, double b, double lon0, int northSquare, int southSquare) {
+        this.e = Math.sqrt(1 - (b / a) * (b / a));
+        this.lon0 = Math.toRadians(lon0);
+        this.northSquare = northSquare;
+        this.southSquare = southSquare;
+        this.qp = q(1);
+        double e2 = e * e;
+        double e4 = e2 * e2;
+        double e6 = e4 * e2;
+        this.c2 = e2 / 3 + 31 * e4 / 180 + 517 * e6 / 5040;
+        this.c4 = 23 * e4 / 360 + 251 * e6 / 3780;
+        this.c6 = 761 * e6 / 45360;
+    }
+
+    private double q(double sinPhi) {
+        if (e == 0) return 2 * sinPhi;
+        double esin = e * sinPhi;
+        return (1 - e * e)
+                * (sinPhi / (1 - esin * esin) - Math.log((1 - esin) / (1 + esin)) / (2 * e));
+    }
+
+    /** Returns the authalic latitude, in radians, of the given geodetic one */
+    double authalic(double phi) {
+        double ratio = q(Math.sin(phi)) / qp;
+        return Math.asin(Math.max(-1, Math.min(1, ratio)));
+    }
+
+    /** Returns the geodetic latitude, in radians, of the given authalic one */
+    double geodetic(double beta) {
+        return beta + c2 * Math.sin(2 * beta) + c4 * Math.sin(4 * beta) + c6 * Math.sin(6 * beta);
+    }
+
+    /** Wraps a longitude in radians in the [-PI, PI) range */
+    static double wrapLongitude(double lambda) {
+        if (lambda >= -PI && lambda < PI) return lambda;
+        double wrapped = lambda - 2 * PI * Math.floor((lambda + PI) / (2 * PI));
+        // guard against rounding errors
+        return wrapped >= PI ? wrapped - 2 * PI : wrapped;
+    }
+
+    /** Returns the number of the polar triangle (0 to 3) containing the given x */
+    static int capNumber(double x) {
+        int cap = (int) Math.floor(2 * x / PI + 2);
+        return Math.max(0, Math.min(3, cap));
+    }
+
+    /**
+     * Projects the given geographic coordinates on the rHEALPix plane
+     *
+     * @param lon The longitude, in degrees
+     * @param lat The latitude, in degrees
+     * @param result The array receiving the planar x and y
+     */
+    void project(double lon, double lat, double[] result) {
+        double lambda = wrapLongitude(Math.toRadians(lon) - lon0);
+        double beta = authalic(Math.toRadians(lat));
+        // HEALPix
+        if (Math.abs(beta) <= PHI_0) {
+            result[0] = lambda;
+            result[1] = 3 * PI / 8 * Math.sin(beta);
+            return;
+        }
+        double sigma = Math.sqrt(3 * (1 - Math.abs(Math.sin(beta))));
+        int cap = capNumber(lambda);
+        double xc = -3 * PI / 4 + cap * PI / 2;
+        double x = xc + (lambda - xc) * sigma;
+        double y = Math.signum(beta) * PI / 4 * (2 - sigma);
+        combineTriangles(x, y, result);
+    }
+
+    /**
+     * Moves the polar triangles of the HEALPix projection into the north and south squares,
+     * rotating them around the polar square center
+     */
+    void combineTriangles(double x, double y, double[] result) {
+        if (Math.abs(y) <= PI / 4) {
+            result[0] = x;
+            result[1] = y;
+            return;
+        }
+        int cap = capNumber(x);
+        double xc = -3 * PI / 4 + cap * PI / 2;
+        double dx = x - xc;
+        if (y > 0) {
+            double dy = y - PI / 2;
+            // rotate counter clockwise by (cap - northSquare) quarter turns
+            int turns = Math.floorMod(cap - northSquare, 4);
+            rotate(dx, dy, turns, result);
+            result[0] += -3 * PI / 4 + northSquare * PI / 2;
+            result[1] += PI / 2;
+        } else {
+            double dy = y + PI / 2;
+            // rotate clockwise by (cap - southSquare) quarter turns
+            int turns = Math.floorMod(southSquare - cap, 4);
+            rotate(dx, dy, turns, result);
+            result[0] += -3 * PI / 4 + southSquare * PI / 2;
+            result[1] += -PI / 2;
+        }
+    }
+
+    /** Rotates the vector counter clockwise by the given number of quarter turns */
+    private static void rotate(double dx, double dy, int turns, double[] result) {
+        switch (turns) {
+            case 1:
+                result[0] = -dy;
+                result[1] = dx;
+                break;
+            case 2:
+                result[0] = -dx;
+                result[1] = -dy;
+                break;
+            case 3:
+                result[0] = dy;
+                result[1] = -dx;
+                break;
+            default:
+                result[0] = dx;
+                result[1] = dy;
+        }
+    }
+
+    /**
+     * Moves points of the north and south squares back to the HEALPix polar triangles. Points in
+     * the equatorial region are left untouched.
+     */
+    void splitTriangles(double x, double y, double[] result) {
+        if (Math.abs(y) <= PI / 4 + EPS) {
+            result[0] = x;
+            result[1] = y;
+            return;
+        }
+        boolean north = y > 0;
+        int square = north ? northSquare : southSquare;
+        double cx = -3 * PI / 4 + square * PI / 2;
+        double dx = x - cx;
+        double dy = north ? y - PI / 2 : y + PI / 2;
+        // pick the triangle by sector around the square center, the triangles are numbered
+        // counter clockwise from the side facing the equator in the north, clockwise in the south
+        int sector;
+        if (north) {
+            if (-dy >= Math.abs(dx)) sector = 0;
+            else if (dx >= Math.abs(dy)) sector = 1;
+            else if (dy >= Math.abs(dx)) sector = 2;
+            else sector = 3;
+        } else {
+            if (dy >= Math.abs(dx)) sector = 0;
+            else if (dx >= Math.abs(dy)) sector = 1;
+            else if (-dy >= Math.abs(dx)) sector = 2;
+            else sector = 3;
+        }
+        int cap = (square + sector) % 4;
+        double xc = -3 * PI / 4 + cap * PI / 2;
+        // undo the rotation applied by combineTriangles
+        int turns = north ? Math.floorMod(square - cap, 4) : Math.floorMod(cap - square, 4);
+        rotate(dx, dy, turns, result);
+        result[0] += xc;
+        result[1] += north ? PI / 2 : -PI / 2;
+    }
+
+    /**
+     * Maps planar rHEALPix coordinates back to geographic ones
+     *
+     * @param x The planar x
+     * @param y The planar y
+     * @param result The array receiving the longitude and latitude, in degrees
+     */
+    void unproject(double x, double y, double[] result) {
+        splitTriangles(x, y, result);
+        double hx = result[0];
+        double hy = result[1];
+        double lambda;
+        double beta;
+        if (Math.abs(hy) <= PI / 4) {
+            lambda = hx;
+            beta = Math.asin(Math.max(-1, Math.min(1, 8 * hy / (3 * PI))));
+        } else if (Math.abs(hy) < PI / 2 - EPS) {
+            int cap = capNumber(hx);
+            double xc = -3 * PI / 4 + cap * PI / 2;
+            double tau = 2 - 4 * Math.abs(hy) / PI;
+            lambda = xc + (hx - xc) / tau;
+            beta = Math.signum(hy) * Math.asin(1 - tau * tau / 3);
+        } else {
+            lambda = -PI;
+            beta = Math.signum(hy) * PI / 2;
+        }
+        result[0] = Math.toDegrees(wrapLongitude(lambda + lon0));
+        result[1] = Math.toDegrees(geodetic(beta));
+    }
+}
@@ -16,14 +16,10 @@
  */
 package org.geotools.dggs.rhealpix;
 
-import static org.geotools.dggs.rhealpix.RHealPixUtils.setCellId;
-
-import java.awt.*;
-import java.util.List;
+import java.awt.Color;
 import java.util.Objects;
-import jep.JepException;
-import jep.SharedInterpreter;
 import org.geotools.dggs.Zone;
+import org.geotools.dggs.ZoneGeometryCache;
 import org.geotools.dggs.ZoneWrapper;
 import org.geotools.util.Converters;
 import org.locationtech.jts.geom.Coordinate;
@@ -38,32 +34,13 @@ public class RHealPixZone implements Zone {
     enum CellType {
         quad,
         cap,
-        dart(null, "c.boundary(10, False)"), // we might get specialized calls for these two
-        skew_quad(null, "c.boundary(10, False)");
-
-        String setupScript = null;
-        String verticesScript = "c.vertices(False)";
-
-        CellType() {
-            // use defaults
-        }
-
-        CellType(String setupScript, String verticesScript) {
-            this.setupScript = setupScript;
-            this.verticesScript = verticesScript;
-        }
-
-        public double[][] getVertices(SharedInterpreter interpreter) throws JepException {
-            if (setupScript != null) interpreter.exec(setupScript);
-
-            return interpreter.getValue(verticesScript, double[][].class);
-        }
+        dart,
+        skew_quad
     }
 
     private final String id;
     private final RHealPixDGGSInstance dggs;
     private Polygon boundary;
-    private Integer resolution;
 
     public RHealPixZone(RHealPixDGGSInstance dggs, String id) {
         this.dggs = dggs;
@@ -77,19 +54,14 @@ public class RHealPixZone implements Zone {
 
     @Override
     public int getResolution() {
-        // avoid python calls, use the naming conventions instead
+        // use the naming conventions, one digit per resolution level
         return id.length() - 1;
     }
 
     @Override
     public Point getCenter() {
-        return dggs.runtime.runSafe(
-                interpreter -> {
-                    setCellId(interpreter, "id", id);
-                    interpreter.exec("c = Cell(dggs, id)");
-                    double[] points = interpreter.getValue("c.centroid(False)", double[].class);
-                    return dggs.gf.createPoint(new Coordinate(points[0], points[1]));
-                });
+        double[] centroid = dggs.grid.centroid(id);
+        return dggs.gf.createPoint(new Coordinate(centroid[0], centroid[1]));
     }
 
     @Override
@@ -97,15 +69,11 @@ public class RHealPixZone implements Zone {
         // boundary computation is expensive, cache the result
         if (boundary == null) {
             boundary =
-                    dggs.runtime.runSafe(
-                            interpreter -> {
-                                setCellId(interpreter, "id", id);
-                                interpreter.exec("c = Cell(dggs, id)");
-                                double[][] vertices = getShape().getVertices(interpreter);
-
-                                return getPolygon(vertices);
-                            },
-                            e -> new RuntimeException("Failed to compute boundary for " + id, e));
+                    ZoneGeometryCache.getBoundary(
+                            dggs.getIdentifier(),
+                            id,
+                            getResolution(),
+                            () -> getPolygon(dggs.grid.vertices(id)));
         }
         return boundary;
     }
@@ -113,41 +81,40 @@ public class RHealPixZone implements Zone {
     @Override
     public Object getExtraProperty(String name) {
         if ("shape".equals(name)) {
-            return dggs.runtime.runSafe(
-                    si -> {
-                        setCellId(si, "id", id);
-                        si.exec("c = Cell(dggs, id)");
-                        return si.getValue("c.ellipsoidal_shape()", String.class);
-                    });
+            return getShape().name();
         } else if ("color".equals(name)) {
-            return dggs.runtime.runSafe(
-                    si -> {
-                        setCellId(si, "id", id);
-                        si.exec("c = Cell(dggs, id)");
-                        List<Number> definition = si.getValue("c.color()", List.class);
-                        int red = (int) Math.round(definition.get(0).doubleValue() * 255);
-                        int green = (int) Math.round(definition.get(1).doubleValue() * 255);
-                        int blue = (int) Math.round(definition.get(2).doubleValue() * 255);
-                        return Converters.convert(new Color(red, green, blue), String.class);
-                    });
+            return Converters.convert(getColor(), String.class);
         }
         throw new IllegalArgumentException("Invalid extra property value " + name);
     }
 
-    private CellType getShape() {
-        return dggs.runtime.runSafe(
-                si -> {
-                    return CellType.valueOf(si.getValue("c.ellipsoidal_shape()", String.class));
-                });
+    CellType getShape() {
+        return dggs.grid.shape(id);
+    }
+
+    /**
+     * A plotting color, the hue depends on the resolution 0 cell, the brightness on the position
+     * of the cell inside it, so that adjacent cells are told apart
+     */
+    private Color getColor() {
+        float hue = RHealPixGrid.face(id) / 6f;
+        int resolution = getResolution();
+        float brightness = 1f;
+        if (resolution > 0) {
+            int last = id.charAt(resolution) - '0';
+            brightness = 0.6f + 0.4f * ((last * 5) % 9) / 8f;
+        }
+        return new Color(Color.HSBtoRGB(hue, 0.5f, brightness));
     }
 
     private Polygon getPolygon(double[][] vertices) {
         CoordinateSequenceFactory csf = dggs.gf.getCoordinateSequenceFactory();
         CoordinateSequence cs;
-        if (dggs.northPoleZones.contains(id)) {
+        boolean cap = getShape() == CellType.cap;
+        if (cap && RHealPixGrid.face(id) == RHealPixGrid.N) {
             double latitude = vertices[0][1];
             cs = buildRectangle(csf, -180, latitude, 180, 90);
-        } else if (dggs.southPoleZones.contains(id)) {
+        } else if (cap) {
             double latitude = vertices[0][1];
             cs = buildRectangle(csf, -180, -90, 180, latitude);
         } else {
@@ -16,11 +16,8 @@
  */
 package org.geotools.dggs.rhealpix;
 
-import static org.geotools.dggs.rhealpix.RHealPixUtils.setCellId;
-
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 import java.util.function.Function;
@@ -47,12 +44,7 @@ class RHealPixZoneIterator<R> implements Iterator<R> {
             Function<RHealPixZone, Boolean> drill,
             Function<RHealPixZone, Boolean> accept,
             Function<RHealPixZone, R> map) {
-        this(
-                rpix,
-                drill,
-                accept,
-                map,
-                (List<String>) rpix.runtime.runSafe(si -> si.getValue("dggs.cells0", List.class)));
+        this(rpix, drill, accept, map, RHealPixGrid.CELLS0);
     }
 
     public RHealPixZoneIterator(
@@ -78,14 +70,7 @@ class RHealPixZoneIterator<R> implements Iterator<R> {
                 next = map.apply(zone);
             } else {
                 if (drill.apply(zone)) {
-                    candidates.addAll(
-                            0,
-                            rpix.runtime.runSafe(
-                                    si -> {
-                                        setCellId(si, "id", test);
-                                        si.exec("c = Cell(dggs, id)");
-                                        return si.getValue("list(c.subcells())", List.class);
-                                    }));
+                    candidates.addAll(0, RHealPixGrid.children(test));
                 }
             }
         }
@@ -0,0 +1,65 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+
+public class DGGSExecutorTest {
+
+    @Test
+    public void testForEachVisitsAllIndexes() {
+        int size = 1000;
+        AtomicIntegerArray visits = new AtomicIntegerArray(size);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        DGGSExecutor.forEach(
+                size,
+                10,
+                i -> {
+                    visits.incrementAndGet(i);
+                    threads.add(Thread.currentThread().getName());
+                });
+        for (int i = 0; i < size; i++) {
+            assertEquals(1, visits.get(i));
+        }
+        // the work runs on the caller thread and on the named pool threads only
+        String caller = Thread.currentThread().getName();
+        assertTrue(threads.stream().allMatch(n -> n.equals(caller) || n.startsWith("DGGS-")));
+        assertTrue(threads.size() <= DGGSExecutor.THREADS);
+    }
+
+    @Test
+    public void testForEachPropagatesFailures() {
+        try {
+            DGGSExecutor.forEach(
+                    100,
+                    1,
+                    i -> {
+                        if (i == 99) throw new IllegalStateException("failed " + i);
+                    });
+            fail("Should have thrown an exception");
+        } catch (IllegalStateException e) {
+            assertEquals("failed 99", e.getMessage());
+        }
+    }
+}
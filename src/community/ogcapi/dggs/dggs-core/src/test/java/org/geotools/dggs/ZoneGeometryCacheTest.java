@@ -0,0 +1,75 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.geotools.dggs.h3.H3DGGSFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.locationtech.jts.geom.Polygon;
+
+public class ZoneGeometryCacheTest {
+
+    @After
+    public void clearCache() {
+        ZoneGeometryCache.clear();
+    }
+
+    @Test
+    public void testCachedBoundary() throws IOException {
+        try (DGGSInstance h3 = new H3DGGSFactory().createInstance(null)) {
+            Zone zone = h3.getZone("807ffffffffffff");
+            AtomicInteger loads = new AtomicInteger();
+            Supplier<Polygon> loader =
+                    () -> {
+                        loads.incrementAndGet();
+                        return zone.getBoundary();
+                    };
+            Polygon first = ZoneGeometryCache.getBoundary("test", zone.getId(), 0, loader);
+            Polygon second = ZoneGeometryCache.getBoundary("test", zone.getId(), 0, loader);
+            assertEquals(1, loads.get());
+            assertTrue(first.equalsExact(second));
+            // copies are handed out
+            assertNotSame(first, second);
+
+            // different DGGS, different entry
+            ZoneGeometryCache.getBoundary("other", zone.getId(), 0, loader);
+            assertEquals(2, loads.get());
+        }
+    }
+
+    @Test
+    public void testFineResolutionNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Polygon> loader =
+                () -> {
+                    loads.incrementAndGet();
+                    return null;
+                };
+        int resolution = ZoneGeometryCache.MAX_RESOLUTION + 1;
+        ZoneGeometryCache.getBoundary("test", "zone", resolution, loader);
+        ZoneGeometryCache.getBoundary("test", "zone", resolution, loader);
+        assertEquals(2, loads.get());
+        assertEquals(0, ZoneGeometryCache.size());
+    }
+}
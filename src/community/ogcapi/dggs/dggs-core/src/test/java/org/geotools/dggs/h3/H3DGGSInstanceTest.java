@@ -34,7 +34,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import jep.JepException;
 import org.geotools.dggs.DGGSFactory;
 import org.geotools.dggs.DGGSFactoryFinder;
 import org.geotools.dggs.DGGSInstance;
@@ -71,7 +70,7 @@ public class H3DGGSInstanceTest {
     }
 
     @Test
-    public void getZone() throws JepException {
+    public void getZone() {
         Zone zone = h3i.getZone("8029fffffffffff");
         assertNotNull(zone);
         assertEquals(0, zone.getResolution());
@@ -20,10 +20,8 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.util.Collections;
-import jep.JepException;
 import org.geotools.dggs.DGGSInstance;
 import org.geotools.dggs.gstore.DGGSGeometryStore;
-import org.junit.After;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,11 +33,6 @@ public class RHealPixGeometryStoreTest {
         Assume.assumeTrue(new RHealPixDGGSFactory().isAvailable());
     }
 
-    @After
-    public void cleanup() throws JepException {
-        JEPWebRuntime.closeThreadIntepreter();
-    }
-
     @Test
     public void testStoreCreation() throws IOException {
         try (DGGSInstance instance =
@@ -33,8 +33,6 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
-import jep.JepException;
-import jep.SharedInterpreter;
 import org.geotools.dggs.DGGSFactory;
 import org.geotools.dggs.DGGSFactoryFinder;
 import org.geotools.dggs.DGGSInstance;
@@ -42,7 +40,6 @@ import org.geotools.dggs.Zone;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.hamcrest.CoreMatchers;
-import org.junit.After;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -71,13 +68,8 @@ public class RHealPixInstanceTest {
         rpix = factory.get().createInstance(null);
     }
 
-    @After
-    public void cleanup() throws JepException {
-        JEPWebRuntime.closeThreadIntepreter();
-    }
-
     @Test
-    public void getZone() throws JepException {
+    public void getZone() {
         Zone zone = rpix.getZone("P");
         assertNotNull(zone);
         assertEquals(0, zone.getResolution());
@@ -241,20 +233,57 @@ public class RHealPixInstanceTest {
     @Test
     public void testChildren() throws Exception {
         String parent = "R";
-        SharedInterpreter interpreter = JEPWebRuntime.INTERPRETER.get();
         // keep the resolution small, the list can grow veeeeeery fast
+        Set<String> expected = new HashSet<>(Arrays.asList(parent));
         for (int r = 1; r < 4; r++) {
             Set<String> actual = new HashSet<>();
             rpix.children(parent, r).forEachRemaining(z -> actual.add(z.getId()));
-            RHealPixUtils.setCellId(interpreter, "id", parent);
-            interpreter.exec("c = Cell(dggs, id)");
-            interpreter.set("resolution", Integer.valueOf(r));
-            Set<String> expected =
-                    new HashSet<>(interpreter.getValue("list(c.subcells(resolution))", List.class));
+            Set<String> nextExpected = new HashSet<>();
+            for (String id : expected) {
+                for (int i = 0; i < 9; i++) {
+                    nextExpected.add(id + i);
+                }
+            }
+            expected = nextExpected;
             assertEquals(expected, actual);
         }
     }
 
+    @Test
+    public void testNeighborsSymmetric() {
+        // every zone is a neighbor of its neighbors, all zones have four neighbors
+        Iterator<Zone> zones = rpix.zonesFromEnvelope(WORLD, 2, false);
+        int count = 0;
+        while (zones.hasNext()) {
+            String id = zones.next().getId();
+            List<String> neighbors = new ArrayList<>();
+            rpix.neighbors(id, 1).forEachRemaining(z -> neighbors.add(z.getId()));
+            assertEquals(id, 4, neighbors.size());
+            for (String neighbor : neighbors) {
+                List<String> back = new ArrayList<>();
+                rpix.neighbors(neighbor, 1).forEachRemaining(z -> back.add(z.getId()));
+                assertThat(back, hasItems(id));
+            }
+            count++;
+        }
+        assertEquals(6 * 81, count);
+    }
+
+    @Test
+    public void testCentroidInZone() {
+        Iterator<Zone> zones = rpix.zonesFromEnvelope(WORLD, 3, false);
+        while (zones.hasNext()) {
+            Zone zone = zones.next();
+            Zone centerZone = rpix.point(zone.getCenter(), zone.getResolution());
+            assertEquals(zone.getId(), centerZone.getId());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidZone() {
+        rpix.getZone("X12");
+    }
+
     @Test
     public void testMapPoint() throws Exception {
         Point northPole = GF.createPoint(new Coordinate(0, 90));
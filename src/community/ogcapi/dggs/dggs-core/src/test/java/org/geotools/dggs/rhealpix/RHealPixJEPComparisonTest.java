@@ -0,0 +1,149 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2020, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.dggs.rhealpix;
+
+import static org.geotools.dggs.rhealpix.RHealPixUtils.setCellId;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import jep.JepException;
+import jep.SharedInterpreter;
+import org.geotools.util.logging.Logging;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the pure Java rHEALPix implementation against the rhealpixdggs Python library, and
+ * compares their speed. Runs only if JEP and the Python library are installed.
+ */
+public class RHealPixJEPComparisonTest {
+
+    static final Logger LOGGER = Logging.getLogger(RHealPixJEPComparisonTest.class);
+
+    private static final JEPWebRuntime.Initializer INITIALIZER =
+            interpreter -> {
+                interpreter.exec("from rhealpixdggs import dggs, ellipsoids");
+                interpreter.exec("from rhealpixdggs.ellipsoids import Ellipsoid");
+                interpreter.exec("from rhealpixdggs.dggs import RHEALPixDGGS, Cell");
+                interpreter.exec(
+                        "WGS84_TB16 = Ellipsoid(a=6378137.0, b=6356752.314140356, "
+                                + "e=0.0578063088401, f=0.003352810681182, lon_0=-131.25)");
+                interpreter.exec(
+                        "dggs = RHEALPixDGGS(ellipsoid=WGS84_TB16, north_square=0, "
+                                + "south_square=0, N_side=3)");
+            };
+
+    private static final int SAMPLES = 2000;
+
+    SharedInterpreter interpreter;
+
+    RHealPixDGGSInstance rpix;
+
+    @Before
+    public void setup() throws IOException {
+        try {
+            interpreter = new JEPWebRuntime(INITIALIZER).getInterpreter();
+        } catch (Exception | UnsatisfiedLinkError e) {
+            Assume.assumeNoException(e);
+        }
+        rpix = (RHealPixDGGSInstance) new RHealPixDGGSFactory().createInstance(null);
+    }
+
+    @After
+    public void cleanup() throws JepException {
+        JEPWebRuntime.closeThreadIntepreter();
+    }
+
+    private String pythonCell(double lon, double lat, int resolution) throws JepException {
+        interpreter.set("p", Arrays.asList(lon, lat));
+        interpreter.set("r", Integer.valueOf(resolution));
+        List<?> suid = interpreter.getValue("dggs.cell_from_point(r, p, False).suid", List.class);
+        return suid.stream().map(String::valueOf).collect(Collectors.joining(""));
+    }
+
+    @Test
+    public void testSameZones() throws Exception {
+        Random random = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            double lon = random.nextDouble() * 360 - 180;
+            double lat = random.nextDouble() * 180 - 90;
+            int resolution = random.nextInt(8);
+            String id = rpix.grid.cell(lon, lat, resolution);
+            assertEquals(pythonCell(lon, lat, resolution), id);
+
+            setCellId(interpreter, "id", id);
+            interpreter.exec("c = Cell(dggs, id)");
+            assertEquals(
+                    interpreter.getValue("c.ellipsoidal_shape()", String.class),
+                    rpix.getZone(id).getShape().name());
+            double[][] vertices = interpreter.getValue("c.vertices(False)", double[][].class);
+            double[][] actual = rpix.grid.vertices(id);
+            int step = actual.length / 4;
+            for (int v = 0; v < 4; v++) {
+                assertArrayEquals(id, vertices[v], actual[v * step], 1e-6);
+            }
+            Set<String> neighbors =
+                    new HashSet<>(
+                            interpreter.getValue(
+                                    "list(c.neighbors(False).values())", List.class));
+            assertEquals(id, neighbors, rpix.grid.neighbors(id));
+        }
+    }
+
+    @Test
+    public void testSpeed() throws Exception {
+        Random random = new Random(0);
+        double[][] points = new double[SAMPLES][];
+        for (int i = 0; i < SAMPLES; i++) {
+            double lon = random.nextDouble() * 360 - 180;
+            double lat = random.nextDouble() * 180 - 90;
+            points[i] = new double[] {lon, lat};
+        }
+        // warm up both, then time them
+        for (double[] p : points) {
+            pythonCell(p[0], p[1], 6);
+            rpix.getZone(p[0], p[1], 6).getBoundary();
+        }
+        long start = System.nanoTime();
+        for (double[] p : points) {
+            String id = pythonCell(p[0], p[1], 6);
+            setCellId(interpreter, "id", id);
+            interpreter.exec("c = Cell(dggs, id)");
+            interpreter.getValue("c.vertices(False)", double[][].class);
+        }
+        long python = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (double[] p : points) {
+            rpix.getZone(p[0], p[1], 6).getBoundary();
+        }
+        long java = System.nanoTime() - start;
+        LOGGER.info(
+                String.format(
+                        "Zone lookup and boundary, %d samples: JEP %.1f ms, Java %.1f ms",
+                        SAMPLES, python / 1e6, java / 1e6));
+    }
+}
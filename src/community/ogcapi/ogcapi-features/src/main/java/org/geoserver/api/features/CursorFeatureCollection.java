@@ -0,0 +1,129 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.api.features;
+
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.wfs.TypeInfoCollectionWrapper;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.DecoratingSimpleFeatureIterator;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Wraps the page of features being encoded, and hands the last one to a consumer once the
+ * iteration is over, so that the next cursor can be computed without running the query again.
+ * Links written after the features (e.g., in the GeoJSON and HTML bodies) will see it, the ones
+ * written before (e.g., the HTTP Link headers) won't.
+ */
+class CursorFeatureCollection {
+
+    static FeatureCollection wrap(
+            FeatureCollection delegate, FeatureTypeInfo info, Consumer<Feature> lastFeature) {
+        if (delegate instanceof SimpleFeatureCollection) {
+            return new Simple((SimpleFeatureCollection) delegate, info, lastFeature);
+        } else {
+            return new Complex(delegate, info, lastFeature);
+        }
+    }
+
+    static class Simple extends TypeInfoCollectionWrapper.Simple {
+
+        private final Consumer<Feature> lastFeature;
+
+        Simple(SimpleFeatureCollection delegate, FeatureTypeInfo info, Consumer<Feature> last) {
+            super(delegate, info);
+            this.lastFeature = last;
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            return new SimpleIterator(super.features(), lastFeature);
+        }
+    }
+
+    static class Complex extends TypeInfoCollectionWrapper.Complex {
+
+        private final Consumer<Feature> lastFeature;
+
+        Complex(FeatureCollection delegate, FeatureTypeInfo info, Consumer<Feature> last) {
+            super(delegate, info);
+            this.lastFeature = last;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public FeatureIterator features() {
+            return new ComplexIterator(super.features(), lastFeature);
+        }
+    }
+
+    static class SimpleIterator extends DecoratingSimpleFeatureIterator {
+
+        private final Consumer<Feature> lastFeature;
+
+        private SimpleFeature last;
+
+        SimpleIterator(SimpleFeatureIterator delegate, Consumer<Feature> lastFeature) {
+            super(delegate);
+            this.lastFeature = lastFeature;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = super.hasNext();
+            if (!hasNext && last != null) {
+                lastFeature.accept(last);
+                last = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public SimpleFeature next() throws NoSuchElementException {
+            last = super.next();
+            return last;
+        }
+    }
+
+    static class ComplexIterator implements FeatureIterator<Feature> {
+
+        private final FeatureIterator<Feature> delegate;
+
+        private final Consumer<Feature> lastFeature;
+
+        private Feature last;
+
+        ComplexIterator(FeatureIterator<Feature> delegate, Consumer<Feature> lastFeature) {
+            this.delegate = delegate;
+            this.lastFeature = lastFeature;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && last != null) {
+                lastFeature.accept(last);
+                last = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Feature next() throws NoSuchElementException {
+            last = delegate.next();
+            return last;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.api.features;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.geoserver.catalog.AttributeTypeInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.ServiceException;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.Feature;
+import org.opengis.feature.Property;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+/**
+ * Support for keyset (search-after) pagination. When a feature type lists, in its metadata, a set
+ * of properties that uniquely and stably sort its features, the items are sorted on them and the
+ * next link carries an opaque cursor with the values of the last feature returned. The following
+ * page is then selected with a range filter on those values, which the stores can answer with an
+ * index range scan, instead of skipping over all the previous pages as an offset does.
+ */
+public class FeatureCursor {
+
+    /**
+     * Feature type metadata key listing the cursor properties, comma separated. The list should
+     * end with a unique property (e.g., the primary key), to make the order total. All the
+     * properties must be declared as not nillable, either by the store or in the feature type
+     * attributes configuration, as the range filters cannot select rows with null values
+     */
+    public static final String CURSOR_PROPERTIES = "features.cursorProperties";
+
+    /** The items request parameter carrying the cursor */
+    public static final String CURSOR = "cursor";
+
+    static final Logger LOGGER = Logging.getLogger(FeatureCursor.class);
+
+    private static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    private final List<String> properties;
+
+    private final List<Class<?>> bindings;
+
+    FeatureCursor(List<String> properties, List<Class<?>> bindings) {
+        this.properties = properties;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Returns the cursor support for the given feature type, or null if the feature type has no
+     * cursor properties configured, or some of them are nillable
+     */
+    public static FeatureCursor get(FeatureTypeInfo ft) throws IOException {
+        String spec = ft.getMetadata().get(CURSOR_PROPERTIES, String.class);
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+        List<String> properties =
+                Arrays.stream(spec.split("\\s*,\\s*"))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .collect(Collectors.toList());
+        FeatureType schema = ft.getFeatureType();
+        List<Class<?>> bindings = new ArrayList<>();
+        for (String property : properties) {
+            PropertyDescriptor pd = schema.getDescriptor(property);
+            if (pd == null) {
+                throw new ServiceException(
+                        "Cursor property " + property + " not found in " + ft.prefixedName());
+            }
+            bindings.add(pd.getType().getBinding());
+        }
+        for (AttributeTypeInfo attribute : ft.attributes()) {
+            if (properties.contains(attribute.getName()) && attribute.isNillable()) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Cursor property "
+                                + attribute.getName()
+                                + " is nillable in "
+                                + ft.prefixedName()
+                                + ", falling back on offset paging");
+                return null;
+            }
+        }
+        return new FeatureCursor(properties, bindings);
+    }
+
+    public List<String> getProperties() {
+        return Collections.unmodifiableList(properties);
+    }
+
+    /** The sort used to page through the features */
+    public List<SortBy> getSortBy() {
+        return properties
+                .stream()
+                .map(p -> FF.sort(p, SortOrder.ASCENDING))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the filter selecting the features following the cursor in the sort order, that is,
+     * <code>p1 > v1 OR (p1 = v1 AND p2 > v2) OR ...</code>
+     */
+    public Filter toFilter(String cursor) {
+        List<Object> values = decode(cursor);
+        List<Filter> alternatives = new ArrayList<>();
+        for (int i = 0; i < properties.size(); i++) {
+            List<Filter> filters = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                filters.add(FF.equals(FF.property(properties.get(j)), FF.literal(values.get(j))));
+            }
+            PropertyName property = FF.property(properties.get(i));
+            filters.add(FF.greater(property, FF.literal(values.get(i))));
+            alternatives.add(filters.size() == 1 ? filters.get(0) : FF.and(filters));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : FF.or(alternatives);
+    }
+
+    /**
+     * Returns the cursor pointing after the given feature, the last one of the current page
+     *
+     * @throws ServiceException if the feature has a null value in one of the cursor properties,
+     *     paging would otherwise silently end or skip features
+     */
+    public String getNextCursor(Feature last) {
+        List<Object> values = new ArrayList<>();
+        for (String name : properties) {
+            Property property = last.getProperty(name);
+            Object value = property != null ? property.getValue() : null;
+            if (value == null) {
+                throw new ServiceException(
+                        "Cursor property "
+                                + name
+                                + " is null in feature "
+                                + last.getIdentifier()
+                                + ", but it has been declared as not nillable");
+            }
+            values.add(value);
+        }
+        return encode(values);
+    }
+
+    /** Encodes the values as a URL safe token, each value prefixed by its length */
+    String encode(List<Object> values) {
+        StringBuilder sb = new StringBuilder();
+        for (Object value : values) {
+            String s =
+                    value instanceof Date
+                            ? String.valueOf(((Date) value).getTime())
+                            : Converters.convert(value, String.class);
+            sb.append(s.length()).append(':').append(s);
+        }
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    List<Object> decode(String cursor) {
+        try {
+            String s = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            List<Object> values = new ArrayList<>();
+            int pos = 0;
+            for (Class<?> binding : bindings) {
+                int colon = s.indexOf(':', pos);
+                int length = Integer.parseInt(s.substring(pos, colon));
+                String value = s.substring(colon + 1, colon + 1 + length);
+                pos = colon + 1 + length;
+                values.add(toValue(value, binding));
+            }
+            if (pos != s.length()) {
+                throw new IllegalArgumentException("Unexpected trailing content");
+            }
+            return values;
+        } catch (RuntimeException e) {
+            throw new ServiceException(
+                    "Invalid cursor: " + cursor,
+                    e,
+                    ServiceException.INVALID_PARAMETER_VALUE,
+                    CURSOR);
+        }
+    }
+
+    private Object toValue(String value, Class<?> binding) {
+        if (Date.class.isAssignableFrom(binding)) {
+            return Converters.convert(new Date(Long.parseLong(value)), binding);
+        }
+        Object result = Converters.convert(value, binding);
+        if (result == null) {
+            throw new IllegalArgumentException("Cannot convert " + value + " to " + binding);
+        }
+        return result;
+    }
+}
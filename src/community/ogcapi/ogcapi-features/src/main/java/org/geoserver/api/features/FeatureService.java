@@ -241,7 +241,18 @@ public class FeatureService {
             @PathVariable(name = "itemId") String itemId,
             @RequestParam(name = "crs", required = false) String crs)
             throws Exception {
-        return items(collectionId, startIndex, limit, bbox, bboxCRS, crs, time, null, null, itemId);
+        return items(
+                collectionId,
+                startIndex,
+                limit,
+                bbox,
+                bboxCRS,
+                crs,
+                time,
+                null,
+                null,
+                null,
+                itemId);
     }
 
     @GetMapping(path = "collections/{collectionId}/items", name = "getFeatures")
@@ -258,6 +269,7 @@ public class FeatureService {
             @RequestParam(name = "filter", required = false) String filter,
             @RequestParam(name = "filter-lang", required = false) String filterLanguage,
             @RequestParam(name = "crs", required = false) String crs,
+            @RequestParam(name = FeatureCursor.CURSOR, required = false) String cursor,
             String itemId)
             throws Exception {
         // build the request in a way core WFS machinery can understand it
@@ -284,6 +296,24 @@ public class FeatureService {
             Filter parsedFilter = filterParser.parse(filter, filterLanguage);
             filters.add(parsedFilter);
         }
+        // keyset pagination, unless the client explicitly asked for an offset
+        FeatureCursor featureCursor = null;
+        if (itemId == null && (startIndex == null || startIndex.signum() == 0)) {
+            featureCursor = FeatureCursor.get(ft);
+        }
+        if (cursor != null) {
+            if (featureCursor == null) {
+                throw new ServiceException(
+                        "Cursor paging is not available for this collection, or cannot be used "
+                                + "along with startIndex",
+                        ServiceException.INVALID_PARAMETER_VALUE,
+                        FeatureCursor.CURSOR);
+            }
+            filters.add(featureCursor.toFilter(cursor));
+        }
+        if (featureCursor != null) {
+            query.getSortBy().addAll(featureCursor.getSortBy());
+        }
         query.setFilter(mergeFiltersAnd(filters));
         if (crs != null) {
             query.setSrsName(new URI(crs));
@@ -297,6 +327,7 @@ public class FeatureService {
 
         // run it
         FeaturesGetFeature gf = new FeaturesGetFeature(getService(), getCatalog());
+        gf.setCursor(featureCursor);
         gf.setFilterFactory(FF);
         gf.setStoredQueryProvider(getStoredQueryProvider());
         FeatureCollectionResponse response = gf.run(request);
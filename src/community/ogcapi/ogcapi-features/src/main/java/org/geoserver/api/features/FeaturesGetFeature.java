@@ -19,6 +19,7 @@ import org.geoserver.wfs.WFSInfo;
 import org.geoserver.wfs.request.FeatureCollectionResponse;
 import org.geoserver.wfs.request.GetFeatureRequest;
 import org.geoserver.wfs.request.Query;
+import org.geotools.feature.FeatureCollection;
 import org.geotools.util.logging.Logging;
 
 /** A subclass of GetFeature that builds proper API Feature nex/prev links */
@@ -26,10 +27,20 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
 
     static final Logger LOGGER = Logging.getLogger(FeaturesGetFeature.class);
 
+    private FeatureCursor cursor;
+
     public FeaturesGetFeature(WFSInfo wfs, Catalog catalog) {
         super(wfs, catalog);
     }
 
+    /**
+     * Sets up keyset pagination, the next link will carry a cursor instead of a start index (and
+     * no previous link will be generated, cursors only move forward)
+     */
+    public void setCursor(FeatureCursor cursor) {
+        this.cursor = cursor;
+    }
+
     @Override
     protected void buildPrevNextLinks(
             GetFeatureRequest request,
@@ -68,6 +79,10 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
         // wait for the filtering/crs extensions to show up before deciding exactly what exactly to
         // do
         kvp = APIRequestInfo.get().getSimpleQueryMap();
+        if (cursor != null) {
+            buildCursorNextLink(maxFeatures, count, result, kvp, itemsPath, typeInfo);
+            return;
+        }
         // build prev link if needed
         if (offset > 0) {
             // previous offset calculated as the current offset - maxFeatures, or 0 if this is a
@@ -86,6 +101,35 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
         }
     }
 
+    private void buildCursorNextLink(
+            int maxFeatures,
+            int count,
+            FeatureCollectionResponse result,
+            Map<String, String> kvp,
+            String itemsPath,
+            FeatureTypeInfo typeInfo) {
+        if (count <= 0 || maxFeatures > count || result.getFeature().size() != 1) {
+            return;
+        }
+        // the cursor is computed from the last feature while the page is encoded, reading the
+        // page again would run the query twice. The link is thus available only to the encoders
+        // writing it after the features, not to the HTTP Link headers
+        kvp.remove("startIndex");
+        kvp.put("limit", String.valueOf(maxFeatures));
+        String baseURL = APIRequestInfo.get().getBaseURL();
+        FeatureCollection page =
+                CursorFeatureCollection.wrap(
+                        result.getFeature().get(0),
+                        typeInfo,
+                        last -> {
+                            kvp.put(FeatureCursor.CURSOR, cursor.getNextCursor(last));
+                            result.setNext(
+                                    ResponseUtils.buildURL(
+                                            baseURL, itemsPath, kvp, URLType.SERVICE));
+                        });
+        result.getFeature().set(0, page);
+    }
+
     protected String getItemsPath(String collectionName) {
         return "ogc/features/collections/" + ResponseUtils.urlEncode(collectionName) + "/items";
     }
@@ -154,6 +154,7 @@ public class ApiTest extends FeaturesTestSupport {
                 containsInAnyOrder(
                         "#/components/parameters/collectionId",
                         "#/components/parameters/limit",
+                        "#/components/parameters/cursor",
                         "#/components/parameters/bbox",
                         "#/components/parameters/datetime",
                         "#/components/parameters/filter",
@@ -12,16 +12,22 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import com.jayway.jsonpath.DocumentContext;
+import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import net.minidev.json.JSONArray;
+import org.geoserver.catalog.AttributeTypeInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.data.test.MockData;
 import org.geoserver.ows.util.KvpUtils;
@@ -521,4 +527,106 @@ public class FeatureTest extends FeaturesTestSupport {
             getCatalog().save(genericEntity);
         }
     }
+
+    @Test
+    public void testCursorPaging() throws Exception {
+        FeatureTypeInfo roadSegments =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+        roadSegments.getMetadata().put(FeatureCursor.CURSOR_PROPERTIES, "FID");
+        declareNotNillable(roadSegments, "FID");
+        try {
+            String base = "http://localhost:8080/geoserver/";
+            String path =
+                    "ogc/features/collections/"
+                            + ResponseUtils.urlEncode(getLayerId(MockData.ROAD_SEGMENTS))
+                            + "/items?limit=2";
+            Set<String> ids = new LinkedHashSet<>();
+            int pages = 0;
+            while (path != null) {
+                DocumentContext json = getAsJSONPath(path, 200);
+                pages++;
+                ids.addAll(json.read("features[*].id", List.class));
+                // no offset based links in cursor mode
+                assertThat(json.read("$.links[?(@.rel=='prev')].href"), Matchers.empty());
+                JSONArray next = json.read("$.links[?(@.rel=='next')].href", JSONArray.class);
+                if (next.isEmpty()) {
+                    path = null;
+                } else {
+                    String href = (String) next.get(0);
+                    assertThat(href, containsString("cursor="));
+                    assertThat(href, not(containsString("startIndex")));
+                    path = href.substring(base.length());
+                }
+            }
+            assertEquals(3, pages);
+            assertEquals(5, ids.size());
+        } finally {
+            roadSegments.getMetadata().remove(FeatureCursor.CURSOR_PROPERTIES);
+            roadSegments.getAttributes().clear();
+            getCatalog().save(roadSegments);
+        }
+    }
+
+    private void declareNotNillable(FeatureTypeInfo ft, String... names) throws IOException {
+        List<AttributeTypeInfo> attributes = ft.attributes();
+        for (AttributeTypeInfo attribute : attributes) {
+            if (Arrays.asList(names).contains(attribute.getName())) {
+                attribute.setNillable(false);
+            }
+        }
+        ft.getAttributes().addAll(attributes);
+        getCatalog().save(ft);
+    }
+
+    @Test
+    public void testCursorNillableProperties() throws Exception {
+        FeatureTypeInfo roadSegments =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.ROAD_SEGMENTS));
+        String path =
+                "ogc/features/collections/"
+                        + ResponseUtils.urlEncode(getLayerId(MockData.ROAD_SEGMENTS))
+                        + "/items?limit=2";
+        try {
+            // a nillable last key, a null value would end paging early
+            roadSegments.getMetadata().put(FeatureCursor.CURSOR_PROPERTIES, "FID");
+            getCatalog().save(roadSegments);
+            assertOffsetPaging(path);
+
+            // a nillable earlier key, the range filters would skip the null values
+            roadSegments.getMetadata().put(FeatureCursor.CURSOR_PROPERTIES, "NAME,FID");
+            declareNotNillable(roadSegments, "FID");
+            assertOffsetPaging(path);
+
+            // all declared as not nillable, the cursor is used
+            roadSegments.getAttributes().clear();
+            declareNotNillable(roadSegments, "NAME", "FID");
+            DocumentContext json = getAsJSONPath(path, 200);
+            JSONArray next = json.read("$.links[?(@.rel=='next')].href", JSONArray.class);
+            assertThat((String) next.get(0), containsString("cursor="));
+        } finally {
+            roadSegments.getMetadata().remove(FeatureCursor.CURSOR_PROPERTIES);
+            roadSegments.getAttributes().clear();
+            getCatalog().save(roadSegments);
+        }
+    }
+
+    private void assertOffsetPaging(String path) throws Exception {
+        DocumentContext json = getAsJSONPath(path, 200);
+        JSONArray next = json.read("$.links[?(@.rel=='next')].href", JSONArray.class);
+        assertEquals(1, next.size());
+        assertThat((String) next.get(0), containsString("startIndex=2"));
+        assertThat((String) next.get(0), not(containsString("cursor=")));
+        // and the cursor parameter is refused
+        DocumentContext error = getAsJSONPath(path + "&cursor=abc", 400);
+        assertEquals("InvalidParameterValue", error.read("code"));
+    }
+
+    @Test
+    public void testInvalidCursor() throws Exception {
+        String roadSegments = ResponseUtils.urlEncode(getLayerId(MockData.ROAD_SEGMENTS));
+        DocumentContext json =
+                getAsJSONPath(
+                        "ogc/features/collections/" + roadSegments + "/items?cursor=abc", 400);
+        assertEquals("InvalidParameterValue", json.read("code"));
+    }
 }
@@ -0,0 +1,460 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.api.tiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.xml.namespace.QName;
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.GeoServer;
+import org.geoserver.gwc.GWC;
+import org.geoserver.wfs.TransactionCallback;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.request.TransactionResponse;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the tiles that cannot be stored by GWC, the ones rendered by {@link
+ * VolatileGeoServerTileLayer} for filters the tile layer has no parameter filter for. Tiles are
+ * kept in memory, in least recently used order, and when the memory budget is exceeded they are
+ * moved to disk, if a disk budget is configured.
+ *
+ * <p>The budgets are set with the <code>OGCAPI_TILES_CACHE_MEMORY</code> and <code>
+ * OGCAPI_TILES_CACHE_DISK</code> system variables, in bytes, a memory budget of zero disables the
+ * cache. The disk cache is cleared on startup, as it might have missed invalidation events.
+ *
+ * <p>Tiles are invalidated by WFS transactions on the feature types they depend on, while catalog
+ * changes (e.g., a style modification, a layer group edit) clear the whole cache, as tracking the
+ * dependencies would be complex and they are rare compared to tile requests. Each invalidation
+ * bumps a generation counter, callers grab it with {@link #getGeneration()} before rendering a tile
+ * and pass it to {@link #put}, so that tiles rendered before an invalidation are not cached after
+ * it.
+ *
+ * <p>The tile contents depend on the data and layers the user can access, so the keys include the
+ * current user name and authorities, tiles are never shared among different users.
+ */
+@Component
+public class TileResponseCache implements TransactionCallback {
+
+    static final Logger LOGGER = Logging.getLogger(TileResponseCache.class);
+
+    static final long DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+    /** A cached tile */
+    public static class CachedTile {
+        final String layerName;
+        final String etag;
+        final long created;
+        final long size;
+        final byte[] contents;
+
+        CachedTile(String layerName, byte[] contents, String etag, long created, long size) {
+            this.layerName = layerName;
+            this.contents = contents;
+            this.etag = etag;
+            this.created = created;
+            this.size = size;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public byte[] getContents() {
+            return contents;
+        }
+    }
+
+    private final long memoryBudget;
+
+    private final long diskBudget;
+
+    private final File directory;
+
+    private GWC gwc;
+
+    private final LinkedHashMap<String, CachedTile> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Tiles on disk, without contents */
+    private final LinkedHashMap<String, CachedTile> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long memorySize;
+
+    private long diskSize;
+
+    /** Incremented on each invalidation */
+    private long generation;
+
+    /** Tile layers touched by the transactions in progress */
+    private final ThreadLocal<Set<String>> dirtyLayers = ThreadLocal.withInitial(HashSet::new);
+
+    @Autowired
+    public TileResponseCache(GeoServer geoServer, GWC gwc) {
+        this(
+                Long.getLong("OGCAPI_TILES_CACHE_MEMORY", DEFAULT_MEMORY_BUDGET),
+                Long.getLong("OGCAPI_TILES_CACHE_DISK", 0),
+                getDirectory(geoServer));
+        this.gwc = gwc;
+        geoServer.getCatalog().addListener(new CacheClearingListener());
+    }
+
+    private static File getDirectory(GeoServer geoServer) {
+        if (Long.getLong("OGCAPI_TILES_CACHE_DISK", 0) <= 0) {
+            return null;
+        }
+        return geoServer.getCatalog().getResourceLoader().get("ogcapi/tiles-cache").dir();
+    }
+
+    TileResponseCache(long memoryBudget, long diskBudget, File directory) {
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        this.directory = directory;
+        if (diskBudget > 0) {
+            try {
+                FileUtils.cleanDirectory(directory);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not clean the tile cache directory", e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return memoryBudget > 0;
+    }
+
+    /** Builds the cache key of a tile, for the user making the current request */
+    public String getKey(
+            String layerName,
+            String gridSetId,
+            long[] tileIndex,
+            String format,
+            String styleId,
+            String cqlFilter) {
+        return layerName
+                + "/"
+                + gridSetId
+                + "/"
+                + tileIndex[2]
+                + "/"
+                + tileIndex[1]
+                + "/"
+                + tileIndex[0]
+                + "/"
+                + format
+                + "/"
+                + styleId
+                + "/"
+                + getUser()
+                + "/"
+                + cqlFilter;
+    }
+
+    private static String getUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return null;
+        }
+        return auth.getName()
+                + auth.getAuthorities()
+                        .stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .sorted()
+                        .collect(Collectors.toList());
+    }
+
+    /** Returns the ETag of the cached tile, without reading its contents, or null */
+    public synchronized String getETag(String key) {
+        CachedTile tile = memory.get(key);
+        if (tile == null) {
+            tile = disk.get(key);
+        }
+        return tile != null ? tile.etag : null;
+    }
+
+    /** Returns the cached tile, or null if not found */
+    public CachedTile get(String key) {
+        CachedTile onDisk;
+        synchronized (this) {
+            CachedTile tile = memory.get(key);
+            if (tile != null) {
+                return tile;
+            }
+            onDisk = disk.get(key);
+        }
+        if (onDisk == null) {
+            return null;
+        }
+        try {
+            byte[] contents = Files.readAllBytes(getFile(key).toPath());
+            return new CachedTile(
+                    onDisk.layerName, contents, onDisk.etag, onDisk.created, onDisk.size);
+        } catch (IOException e) {
+            // evicted or invalidated in the meantime
+            LOGGER.log(Level.FINE, "Could not read cached tile " + key, e);
+            synchronized (this) {
+                if (disk.get(key) == onDisk) {
+                    disk.remove(key);
+                    diskSize -= onDisk.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the current invalidation generation, to be grabbed before rendering a tile that will
+     * be then passed to {@link #put}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches a tile, unless the cache has been invalidated since the given generation was read with
+     * {@link #getGeneration()}
+     */
+    public void put(
+            String key,
+            String layerName,
+            byte[] contents,
+            String etag,
+            long created,
+            long generation) {
+        if (!isEnabled() || contents.length > memoryBudget) {
+            return;
+        }
+        CachedTile tile = new CachedTile(layerName, contents, etag, created, contents.length);
+        List<Map.Entry<String, CachedTile>> evicted = new ArrayList<>();
+        long current;
+        synchronized (this) {
+            if (generation != this.generation) {
+                // rendered before an invalidation, might be stale
+                return;
+            }
+            current = this.generation;
+            remove(key);
+            memory.put(key, tile);
+            memorySize += tile.size;
+            Iterator<Map.Entry<String, CachedTile>> it = memory.entrySet().iterator();
+            while (memorySize > memoryBudget && it.hasNext()) {
+                Map.Entry<String, CachedTile> eldest = it.next();
+                it.remove();
+                memorySize -= eldest.getValue().size;
+                evicted.add(eldest);
+            }
+        }
+        // disk writes happen outside of the lock, the spilled tiles are not found while written
+        for (Map.Entry<String, CachedTile> e : evicted) {
+            spill(e.getKey(), e.getValue(), current);
+        }
+    }
+
+    /** Moves an evicted tile to disk, if there is a disk budget for it */
+    private void spill(String key, CachedTile tile, long generation) {
+        if (tile.size > diskBudget) {
+            return;
+        }
+        File file = getFile(key);
+        try {
+            File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+            Files.write(tmp.toPath(), tile.contents);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write tile " + key + " to the disk cache", e);
+            return;
+        }
+        synchronized (this) {
+            if (generation != this.generation || memory.containsKey(key)) {
+                // invalidated or cached again while writing
+                if (!disk.containsKey(key)) {
+                    file.delete();
+                }
+                return;
+            }
+            CachedTile previous =
+                    disk.put(
+                            key,
+                            new CachedTile(
+                                    tile.layerName, null, tile.etag, tile.created, tile.size));
+            if (previous != null) {
+                diskSize -= previous.size;
+            }
+            diskSize += tile.size;
+            Iterator<Map.Entry<String, CachedTile>> it = disk.entrySet().iterator();
+            while (diskSize > diskBudget && it.hasNext()) {
+                Map.Entry<String, CachedTile> eldest = it.next();
+                it.remove();
+                diskSize -= eldest.getValue().size;
+                getFile(eldest.getKey()).delete();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        CachedTile tile = memory.remove(key);
+        if (tile != null) {
+            memorySize -= tile.size;
+        }
+        tile = disk.remove(key);
+        if (tile != null) {
+            diskSize -= tile.size;
+            getFile(key).delete();
+        }
+    }
+
+    /** Removes all the tiles of the given tile layer */
+    public synchronized void invalidate(String layerName) {
+        generation++;
+        removeIf(t -> t.layerName.equals(layerName));
+    }
+
+    /** Removes all the tiles */
+    public synchronized void clear() {
+        generation++;
+        removeIf(t -> true);
+    }
+
+    private void removeIf(Predicate<CachedTile> predicate) {
+        Set<String> keys = new HashSet<>();
+        memory.forEach((k, t) -> addIf(keys, k, t, predicate));
+        disk.forEach((k, t) -> addIf(keys, k, t, predicate));
+        keys.forEach(this::remove);
+    }
+
+    private void addIf(Set<String> keys, String key, CachedTile t, Predicate<CachedTile> p) {
+        if (p.test(t)) {
+            keys.add(key);
+        }
+    }
+
+    synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    private File getFile(String key) {
+        try {
+            byte[] hash =
+                    MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return new File(directory, sb.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public TransactionRequest beforeTransaction(TransactionRequest request) throws WFSException {
+        dirtyLayers.get().clear();
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionRequest request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    public void afterTransaction(
+            TransactionRequest request, TransactionResponse result, boolean committed) {
+        Set<String> layers = dirtyLayers.get();
+        dirtyLayers.remove();
+        if (committed) {
+            layers.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        QName name = event.getLayerName();
+        if (name == null || gwc == null || !isEnabled()) {
+            return;
+        }
+        try {
+            dirtyLayers
+                    .get()
+                    .addAll(
+                            gwc.getTileLayersByFeatureType(
+                                    name.getNamespaceURI(), name.getLocalPart()));
+        } catch (RuntimeException e) {
+            // never make the transaction fail due to caching, just drop everything
+            LOGGER.log(Level.WARNING, "Could not find the tile layers affected by " + name, e);
+            clear();
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    /** Clears the cache on catalog changes */
+    class CacheClearingListener implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            // new objects do not affect the cached tiles
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            clear();
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            // wait for the change to be applied
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            clear();
+        }
+
+        @Override
+        public void reloaded() {
+            clear();
+        }
+    }
+}
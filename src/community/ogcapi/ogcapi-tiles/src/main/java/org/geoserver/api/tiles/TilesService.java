@@ -4,6 +4,7 @@
  */
 package org.geoserver.api.tiles;
 
+import static org.geowebcache.conveyor.Conveyor.CacheResult.HIT;
 import static org.geowebcache.conveyor.Conveyor.CacheResult.MISS;
 
 import io.swagger.v3.oas.models.OpenAPI;
@@ -87,18 +88,21 @@ public class TilesService {
     private final WMS wms;
     private final StorageBroker storageBroker;
     private final APIFilterParser filterParser;
+    private final TileResponseCache tileCache;
 
     public TilesService(
             GeoServer geoServer,
             WMS wms,
             GWC gwc,
             StorageBroker storageBroker,
-            APIFilterParser filterParser) {
+            APIFilterParser filterParser,
+            TileResponseCache tileCache) {
         this.geoServer = geoServer;
         this.gwc = gwc;
         this.wms = wms;
         this.storageBroker = storageBroker;
         this.filterParser = filterParser;
+        this.tileCache = tileCache;
     }
 
     @GetMapping(name = "getLandingPage")
@@ -303,20 +307,51 @@ public class TilesService {
                         null,
                         null);
         boolean tileIsCacheable = filterSpec == null || supportsCQLFilter(tileLayer, filterSpec);
+        HttpServletRequest httpRequest = APIRequestInfo.get().getRequest();
+        final String ifNoneMatch = httpRequest.getHeader("If-None-Match");
+        String cacheKey = null;
+        long cacheGeneration = 0;
+        TileResponseCache.CachedTile cached = null;
         if (tileIsCacheable) {
             tile = tileLayer.getTile(tile);
         } else {
             if (!(tileLayer instanceof GeoServerTileLayer)) {
                 throw new InvalidParameterValueException("Filter is not supported on this layer");
             }
-            // if geoserver tile layer, run the filter with no meta tiling, otherwise throw an
-            // exception
-            VolatileGeoServerTileLayer volatileLayer =
-                    new VolatileGeoServerTileLayer((GeoServerTileLayer) tileLayer);
-            volatileLayer.getTile(tile);
-            TileObject so = tile.getStorageObject();
-            if (so != null) {
-                so.setCreated(System.currentTimeMillis());
+            // GWC cannot store these, but the response cache can, check it before rendering
+            if (tileCache.isEnabled()) {
+                cacheKey =
+                        tileCache.getKey(
+                                tileLayer.getName(),
+                                tileMatrixSetId,
+                                tileIndex,
+                                requestedFormat.getFormat(),
+                                styleId,
+                                cqlSpecification);
+                if (ifNoneMatch != null && ifNoneMatch.equals(tileCache.getETag(cacheKey))) {
+                    LOGGER.finer("ETag matches cached dynamic tile, returning 304");
+                    return new ResponseEntity(HttpStatus.NOT_MODIFIED);
+                }
+                // grab it before rendering, a tile rendered during an invalidation is not cached
+                cacheGeneration = tileCache.getGeneration();
+                cached = tileCache.get(cacheKey);
+            }
+            if (cached != null) {
+                tile.setBlob(new ByteArrayResource(cached.getContents()));
+                TileObject so = tile.getStorageObject();
+                if (so != null) {
+                    so.setCreated(cached.getCreated());
+                }
+            } else {
+                // if geoserver tile layer, run the filter with no meta tiling, otherwise throw an
+                // exception
+                VolatileGeoServerTileLayer volatileLayer =
+                        new VolatileGeoServerTileLayer((GeoServerTileLayer) tileLayer);
+                volatileLayer.getTile(tile);
+                TileObject so = tile.getStorageObject();
+                if (so != null) {
+                    so.setCreated(System.currentTimeMillis());
+                }
             }
         }
 
@@ -340,9 +375,12 @@ public class TilesService {
         }
 
         // Handle Etags
-        HttpServletRequest httpRequest = APIRequestInfo.get().getRequest();
-        final String ifNoneMatch = httpRequest.getHeader("If-None-Match");
-        final String etag = getETag(tileBytes);
+        final String etag = cached != null ? cached.getETag() : getETag(tileBytes);
+        if (cacheKey != null && cached == null && tileBytes != null) {
+            TileObject so = tile.getStorageObject();
+            long created = so != null ? so.getCreated() : System.currentTimeMillis();
+            tileCache.put(cacheKey, tileLayer.getName(), tileBytes, etag, created, cacheGeneration);
+        }
         if (etag.equals(ifNoneMatch)) {
             // Client already has the current version
             LOGGER.finer("ETag matches, returning 304");
@@ -363,7 +401,9 @@ public class TilesService {
                 tileLayer instanceof GeoServerTileLayer
                         ? ((GeoServerTileLayer) tileLayer).getContextualName()
                         : tileLayer.getName());
-        if (filterSpec != null && !tileIsCacheable) {
+        if (cached != null) {
+            tmpHeaders.put("geowebcache-cache-result", HIT.toString());
+        } else if (filterSpec != null && !tileIsCacheable) {
             tmpHeaders.put("geowebcache-cache-result", MISS.toString());
             tmpHeaders.put(
                     "geowebcache-miss-reason",
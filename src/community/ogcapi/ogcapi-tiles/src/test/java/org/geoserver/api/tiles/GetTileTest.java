@@ -6,6 +6,7 @@ package org.geoserver.api.tiles;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -21,6 +22,7 @@ import java.util.List;
 import javax.imageio.ImageIO;
 import no.ecc.vectortile.VectorTileDecoder;
 import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.data.test.MockData;
 import org.geoserver.data.test.SystemTestData;
 import org.geoserver.wms.mapbox.MapBoxTileBuilderFactory;
@@ -45,6 +47,7 @@ public class GetTileTest extends TilesTestSupport {
                 FileUtils.deleteQuietly(f);
             }
         }
+        applicationContext.getBean(TileResponseCache.class).clear();
     }
 
     @Test
@@ -287,6 +290,43 @@ public class GetTileTest extends TilesTestSupport {
         ImageAssert.assertEquals(expectedFilteredFile, filteredImage, 100);
     }
 
+    @Test
+    public void testNonCacheableFilteredTileResponseCache() throws Exception {
+        String layerId = getLayerId(MockData.STREAMS);
+        String path =
+                "ogc/tiles/collections/"
+                        + layerId
+                        + "/map/Streams/tiles/EPSG:900913/EPSG:900913:15/16384/16384?f=image/png"
+                        + "&filter=NAME='Cam Stream'&filter-lang=cql-text";
+        MockHttpServletResponse sr1 = getAsServletResponse(path);
+        assertEquals(200, sr1.getStatus());
+        assertEquals("MISS", sr1.getHeader("geowebcache-cache-result"));
+        String eTag = sr1.getHeader("ETag");
+        assertNotNull(eTag);
+
+        // second time it comes from the response cache, same contents
+        MockHttpServletResponse sr2 = getAsServletResponse(path);
+        assertEquals(200, sr2.getStatus());
+        assertEquals("image/png", sr2.getContentType());
+        assertEquals("HIT", sr2.getHeader("geowebcache-cache-result"));
+        assertNull(sr2.getHeader("geowebcache-miss-reason"));
+        assertEquals(eTag, sr2.getHeader("ETag"));
+        assertArrayEquals(sr1.getContentAsByteArray(), sr2.getContentAsByteArray());
+
+        // conditional request answered from the cache
+        MockHttpServletRequest request = createRequest(path);
+        request.setMethod("GET");
+        request.addHeader("If-None-Match", eTag);
+        MockHttpServletResponse sr3 = dispatch(request);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), sr3.getStatus());
+
+        // a catalog change invalidates the cache
+        FeatureTypeInfo streams = getCatalog().getFeatureTypeByName(layerId);
+        getCatalog().save(streams);
+        MockHttpServletResponse sr4 = getAsServletResponse(path);
+        assertEquals("MISS", sr4.getHeader("geowebcache-cache-result"));
+    }
+
     @Test
     public void testEmtpyMVTTile() throws Exception {
         String request =
@@ -0,0 +1,162 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.api.tiles;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class TileResponseCacheTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearAuthentication() {
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+
+    private void login(String user, String role) {
+        SecurityContextHolder.getContext()
+                .setAuthentication(
+                        new UsernamePasswordAuthenticationToken(
+                                user,
+                                "password",
+                                Collections.singletonList(new SimpleGrantedAuthority(role))));
+    }
+
+    private String key(TileResponseCache cache, String layer, long x) {
+        return cache.getKey(layer, "EPSG:4326", new long[] {x, 0, 0}, "image/png", null, "a=1");
+    }
+
+    @Test
+    public void testMemoryOnly() throws Exception {
+        TileResponseCache cache = new TileResponseCache(20, 0, folder.getRoot());
+        String k1 = key(cache, "l1", 1);
+        String k2 = key(cache, "l1", 2);
+        cache.put(k1, "l1", new byte[10], "e1", 1, cache.getGeneration());
+        cache.put(k2, "l1", new byte[10], "e2", 2, cache.getGeneration());
+        assertEquals(20, cache.getMemorySize());
+        assertEquals("e1", cache.getETag(k1));
+        assertEquals(1, cache.get(k1).getCreated());
+
+        // k2 is now the least recently used, gets evicted, no disk budget
+        cache.put(key(cache, "l1", 3), "l1", new byte[10], "e3", 3, cache.getGeneration());
+        assertEquals(20, cache.getMemorySize());
+        assertNull(cache.get(k2));
+        assertNull(cache.getETag(k2));
+        assertNotNull(cache.get(k1));
+
+        // larger than the budget, not cached
+        cache.put(key(cache, "l1", 4), "l1", new byte[30], "e4", 4, cache.getGeneration());
+        assertNull(cache.get(key(cache, "l1", 4)));
+    }
+
+    @Test
+    public void testSpillToDisk() throws Exception {
+        TileResponseCache cache = new TileResponseCache(10, 15, folder.getRoot());
+        String k1 = key(cache, "l1", 1);
+        String k2 = key(cache, "l1", 2);
+        String k3 = key(cache, "l1", 3);
+        byte[] contents = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        cache.put(k1, "l1", contents, "e1", 1, cache.getGeneration());
+        cache.put(k2, "l1", new byte[10], "e2", 2, cache.getGeneration());
+        assertEquals(10, cache.getMemorySize());
+        assertEquals(10, cache.getDiskSize());
+
+        // read back from disk, with its metadata
+        TileResponseCache.CachedTile tile = cache.get(k1);
+        assertArrayEquals(contents, tile.getContents());
+        assertEquals("e1", tile.getETag());
+        assertEquals(1, tile.getCreated());
+
+        // k2 moves to disk, k1 gets evicted from it
+        cache.put(k3, "l1", new byte[10], "e3", 3, cache.getGeneration());
+        assertEquals(10, cache.getDiskSize());
+        assertNull(cache.get(k1));
+        assertNotNull(cache.get(k2));
+        assertNotNull(cache.get(k3));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        TileResponseCache cache = new TileResponseCache(10, 100, folder.getRoot());
+        String k1 = key(cache, "l1", 1);
+        String k2 = key(cache, "l2", 1);
+        cache.put(k1, "l1", new byte[10], "e1", 1, cache.getGeneration());
+        cache.put(k2, "l2", new byte[10], "e2", 2, cache.getGeneration());
+
+        // k1 is on disk, k2 in memory
+        cache.invalidate("l1");
+        assertNull(cache.get(k1));
+        assertNotNull(cache.get(k2));
+        assertEquals(0, cache.getDiskSize());
+        assertEquals(0, folder.getRoot().list().length);
+
+        cache.clear();
+        assertNull(cache.get(k2));
+        assertEquals(0, cache.getMemorySize());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        TileResponseCache cache = new TileResponseCache(0, 0, folder.getRoot());
+        assertFalse(cache.isEnabled());
+        String k1 = key(cache, "l1", 1);
+        cache.put(k1, "l1", new byte[10], "e1", 1, cache.getGeneration());
+        assertNull(cache.get(k1));
+    }
+
+    @Test
+    public void testKeyDependsOnUser() throws Exception {
+        TileResponseCache cache = new TileResponseCache(100, 0, folder.getRoot());
+        login("alice", "ROLE_A");
+        String aliceKey = key(cache, "l1", 1);
+        cache.put(aliceKey, "l1", new byte[10], "e1", 1, cache.getGeneration());
+        assertNotNull(cache.get(key(cache, "l1", 1)));
+
+        // same request, different user, the tile rendered for alice is not visible
+        login("bob", "ROLE_B");
+        String bobKey = key(cache, "l1", 1);
+        assertNotEquals(aliceKey, bobKey);
+        assertNull(cache.get(bobKey));
+        assertNull(cache.getETag(bobKey));
+
+        // same user name, different roles
+        login("alice", "ROLE_B");
+        assertNotEquals(aliceKey, key(cache, "l1", 1));
+        assertNull(cache.get(key(cache, "l1", 1)));
+    }
+
+    @Test
+    public void testStalePut() throws Exception {
+        TileResponseCache cache = new TileResponseCache(100, 0, folder.getRoot());
+        String k1 = key(cache, "l1", 1);
+        String k2 = key(cache, "l2", 1);
+        // grabbed before rendering
+        long generation = cache.getGeneration();
+
+        // a transaction gets committed while rendering, the tiles rendered so far are not cached
+        cache.invalidate("l1");
+        cache.put(k1, "l1", new byte[10], "e1", 1, generation);
+        cache.put(k2, "l2", new byte[10], "e2", 1, generation);
+        assertNull(cache.get(k1));
+        assertNull(cache.get(k2));
+
+        cache.put(k1, "l1", new byte[10], "e1", 1, cache.getGeneration());
+        assertNotNull(cache.get(k1));
+    }
+}
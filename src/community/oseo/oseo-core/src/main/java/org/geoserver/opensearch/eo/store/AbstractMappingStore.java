@@ -15,9 +15,11 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -30,8 +32,6 @@ import org.geotools.data.DefaultResourceInfo;
 import org.geotools.data.FeatureListener;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureStore;
-import org.geotools.data.Join;
-import org.geotools.data.Join.Type;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.ResourceInfo;
@@ -41,7 +41,6 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.data.store.EmptyFeatureCollection;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.AttributeBuilder;
 import org.geotools.feature.ComplexFeatureBuilder;
@@ -90,6 +89,30 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
         R apply(T t, U u) throws IOException;
     }
 
+    /**
+     * A table holding rows related to the main one (metadata, links, ...), along with the foreign
+     * key pointing to the main table id, and the logic appending a row to the complex feature
+     */
+    protected static class RelatedTable {
+        final String table;
+
+        final String foreignKey;
+
+        final BiConsumer<ComplexFeatureBuilder, SimpleFeature> mapper;
+
+        public RelatedTable(
+                String table,
+                String foreignKey,
+                BiConsumer<ComplexFeatureBuilder, SimpleFeature> mapper) {
+            this.table = table;
+            this.foreignKey = foreignKey;
+            this.mapper = mapper;
+        }
+    }
+
+    /** Default number of main features per page, whose related rows are fetched together */
+    static final int FETCH_BATCH_SIZE = Integer.getInteger("OSEO_FETCH_BATCH_SIZE", 100);
+
     protected JDBCOpenSearchAccess openSearchAccess;
 
     protected FeatureType schema;
@@ -104,6 +127,8 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
 
     private Transaction transaction;
 
+    private int fetchBatchSize = FETCH_BATCH_SIZE;
+
     public AbstractMappingStore(
             JDBCOpenSearchAccess openSearchAccess, FeatureType collectionFeatureType)
             throws IOException {
@@ -156,6 +181,16 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
         };
     }
 
+    /** Returns the number of main features whose related rows are fetched together */
+    public int getFetchBatchSize() {
+        return fetchBatchSize;
+    }
+
+    /** Sets the number of main features whose related rows are fetched together */
+    public void setFetchBatchSize(int fetchBatchSize) {
+        this.fetchBatchSize = fetchBatchSize;
+    }
+
     @Override
     public Name getName() {
         return schema.getName();
@@ -244,7 +279,7 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
 
     @Override
     public ReferencedEnvelope getBounds(Query query) throws IOException {
-        Query mapped = mapToSimpleCollectionQuery(query, false);
+        Query mapped = mapToSimpleCollectionQuery(query);
         return getDelegateCollectionSource().getBounds(mapped);
     }
 
@@ -261,12 +296,12 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
 
     @Override
     public int getCount(Query query) throws IOException {
-        final Query mappedQuery = mapToSimpleCollectionQuery(query, false);
+        final Query mappedQuery = mapToSimpleCollectionQuery(query);
         return getDelegateCollectionSource().getCount(mappedQuery);
     }
 
     /** Maps query back the main underlying feature source */
-    protected Query mapToSimpleCollectionQuery(Query query, boolean addJoins) throws IOException {
+    protected Query mapToSimpleCollectionQuery(Query query) throws IOException {
         Query result = new Query(getDelegateCollectionSource().getSchema().getTypeName());
         final Filter originalFilter = query.getFilter();
         if (originalFilter != null) {
@@ -310,44 +345,8 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
             result.setSortBy(defaultSort);
         }
 
-        if (addJoins) {
-            // join to metadata table if necessary
-            if (hasOutputProperty(query, METADATA_PROPERTY_NAME, false)) {
-                Filter filter = FF.equal(FF.property("id"), FF.property("metadata.mid"), true);
-                final String metadataTable = getMetadataTable();
-                Join join = new Join(metadataTable, filter);
-                join.setAlias("metadata");
-                join.setType(Type.OUTER);
-                result.getJoins().add(join);
-            }
-
-            // same for output layer, if necessary
-            if (hasOutputProperty(query, LAYERS_PROPERTY_NAME, false)
-                    || hasOutputProperty(query, LAYERS_PROPERTY_NAME, false)) {
-                Filter filter = FF.equal(FF.property("id"), FF.property("layer.cid"), true);
-                final String layerTable = getCollectionLayerTable();
-                Join join = new Join(layerTable, filter);
-                join.setAlias("layer");
-                join.setType(Type.OUTER);
-                result.getJoins().add(join);
-            }
-
-            // same goes for OGC links (they might be missing, so outer join is used)
-            if (hasOutputProperty(query, OGC_LINKS_PROPERTY_NAME, true)) {
-                final String linkTable = getLinkTable();
-                final String linkForeignKey = getLinkForeignKey();
-                Filter filter =
-                        FF.equal(FF.property("id"), FF.property("link." + linkForeignKey), true);
-                Join join = new Join(linkTable, filter);
-                join.setAlias("link");
-                join.setType(Type.OUTER);
-                result.getJoins().add(join);
-            }
-        } else {
-            // only non joined requests are pageable
-            result.setStartIndex(query.getStartIndex());
-            result.setMaxFeatures(query.getMaxFeatures());
-        }
+        result.setStartIndex(query.getStartIndex());
+        result.setMaxFeatures(query.getMaxFeatures());
 
         return result;
     }
@@ -408,85 +407,130 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
         return false;
     }
 
-    @Override
-    public FeatureCollection<FeatureType, Feature> getFeatures(Query query) throws IOException {
-        // first get the ids of the features we are going to return, no joins to support paging
-        Query idsQuery = mapToSimpleCollectionQuery(query, false);
-        // idsQuery.setProperties(Query.NO_PROPERTIES); (no can do, there are mandatory fields)
-        SimpleFeatureCollection idFeatureCollection =
-                getDelegateCollectionSource().getFeatures(idsQuery);
-
-        Set<FeatureId> ids = new LinkedHashSet<>();
-        idFeatureCollection.accepts(f -> ids.add(f.getIdentifier()), null);
-
-        // if no features, return immediately
-        SimpleFeatureCollection fc;
-        if (ids.isEmpty()) {
-            fc = new EmptyFeatureCollection(getDelegateCollectionSource().getSchema());
-        } else {
-            // the run a joined query with the specified ids
-            Query dataQuery = mapToSimpleCollectionQuery(query, true);
-            dataQuery.setFilter(FF.id(ids));
-            fc = getDelegateCollectionSource().getFeatures(dataQuery);
+    /**
+     * Returns the tables holding rows related to the main one that need to be fetched for the
+     * given query. Subclasses can override to add more
+     */
+    protected List<RelatedTable> getRelatedTables(Query query) {
+        List<RelatedTable> result = new ArrayList<>();
+        if (hasOutputProperty(query, METADATA_PROPERTY_NAME, false)) {
+            AttributeDescriptor descriptor =
+                    (AttributeDescriptor) schema.getDescriptor(METADATA_PROPERTY_NAME);
+            result.add(
+                    new RelatedTable(
+                            getMetadataTable(),
+                            "mid",
+                            (builder, row) ->
+                                    appendSimple(
+                                            builder, descriptor, row.getAttribute("metadata"))));
         }
-
-        return new MappingFeatureCollection(schema, fc, this::mapToComplexFeature);
+        if (hasOutputProperty(query, LAYERS_PROPERTY_NAME, false)) {
+            result.add(
+                    new RelatedTable(
+                            getCollectionLayerTable(),
+                            "cid",
+                            (builder, row) ->
+                                    builder.append(LAYERS_PROPERTY_NAME, retypeLayerFeature(row))));
+        }
+        if (hasOutputProperty(query, OGC_LINKS_PROPERTY_NAME, true)) {
+            result.add(
+                    new RelatedTable(
+                            getLinkTable(),
+                            getLinkForeignKey(),
+                            (builder, row) ->
+                                    builder.append(
+                                            OGC_LINKS_PROPERTY_NAME,
+                                            SimpleFeatureBuilder.retype(row, linkFeatureType))));
+        }
+        return result;
     }
 
-    /** Maps the underlying features (eventually joined) to the output complex feature */
-    protected Feature mapToComplexFeature(PushbackFeatureIterator<SimpleFeature> it) {
-        SimpleFeature fi = it.next();
-
-        ComplexFeatureBuilder builder = new ComplexFeatureBuilder(schema);
-
-        // allow subclasses to perform custom mappings while reusing the common ones
-        mapPropertiesToComplex(builder, fi);
-
-        // the OGC links can be more than one
-        Set<SimpleFeature> links = new LinkedHashSet<>();
-        Set<SimpleFeature> layers = new LinkedHashSet<>();
-        for (; ; ) {
-            Object link = fi.getAttribute("link");
-            Object layer = fi.getAttribute("layer");
-
-            // handle joined layer if any
-            if (layer instanceof SimpleFeature) {
-                layers.add((SimpleFeature) layer);
-            }
-
-            if (link instanceof SimpleFeature) {
-                links.add((SimpleFeature) link);
-            }
+    @Override
+    public FeatureCollection<FeatureType, Feature> getFeatures(Query query) throws IOException {
+        // the main table is read in pages of fetchBatchSize features, each page is read and its
+        // cursor closed before fetching the related rows, with one query per related table
+        Query mainQuery = mapToSimpleCollectionQuery(query);
+        String[] propertyNames = mainQuery.getPropertyNames();
+        if (propertyNames != null && !Arrays.asList(propertyNames).contains("id")) {
+            String[] extended = Arrays.copyOf(propertyNames, propertyNames.length + 1);
+            extended[propertyNames.length] = "id";
+            mainQuery.setPropertyNames(extended);
+        }
+        List<RelatedTable> relatedTables = getRelatedTables(query);
+
+        return new MappingFeatureCollection(
+                schema,
+                getDelegateCollectionSource(),
+                mainQuery,
+                fetchBatchSize,
+                batch -> mapToComplexFeatures(batch, relatedTables));
+    }
+
+    /** Maps a batch of main features, and their related rows, to the output complex features */
+    protected List<Feature> mapToComplexFeatures(
+            List<SimpleFeature> batch, List<RelatedTable> relatedTables) throws IOException {
+        List<Object> ids =
+                batch.stream()
+                        .map(f -> f.getAttribute("id"))
+                        .filter(id -> id != null)
+                        .collect(Collectors.toList());
+        List<Map<String, List<SimpleFeature>>> relatedRows = new ArrayList<>();
+        for (RelatedTable table : relatedTables) {
+            relatedRows.add(ids.isEmpty() ? Collections.emptyMap() : fetchRelated(table, ids));
+        }
 
-            if (it.hasNext()) {
-                SimpleFeature next = it.next();
-                if (!next.getID().equals(fi.getID())) {
-                    // moved to the next feature, push it back,
-                    // we're done for the current one
-                    it.pushBack();
-                    break;
-                } else {
-                    fi = next;
+        List<Feature> result = new ArrayList<>(batch.size());
+        for (SimpleFeature fi : batch) {
+            ComplexFeatureBuilder builder = new ComplexFeatureBuilder(schema);
+            // allow subclasses to perform custom mappings while reusing the common ones
+            mapPropertiesToComplex(builder, fi);
+            String id = String.valueOf(fi.getAttribute("id"));
+            for (int i = 0; i < relatedTables.size(); i++) {
+                RelatedTable table = relatedTables.get(i);
+                for (SimpleFeature row :
+                        relatedRows.get(i).getOrDefault(id, Collections.emptyList())) {
+                    table.mapper.accept(builder, row);
                 }
-            } else {
-                break;
             }
+            result.add(builder.buildFeature(fi.getID()));
         }
+        return result;
+    }
 
-        for (SimpleFeature layerFeature : layers) {
-            SimpleFeature retyped = retypeLayerFeature(layerFeature);
-            builder.append(LAYERS_PROPERTY_NAME, retyped);
+    /** Fetches the rows related to the given main table ids, grouped by foreign key */
+    private Map<String, List<SimpleFeature>> fetchRelated(RelatedTable table, List<Object> ids)
+            throws IOException {
+        List<Filter> filters =
+                ids.stream()
+                        .map(id -> FF.equal(FF.property(table.foreignKey), FF.literal(id), false))
+                        .collect(Collectors.toList());
+        Filter filter = filters.size() == 1 ? filters.get(0) : FF.or(filters);
+        SimpleFeatureSource source =
+                openSearchAccess.getDelegateStore().getFeatureSource(table.table);
+        // sort on the primary key, so that the related rows come in a stable order
+        Query query = new Query(table.table, filter);
+        query.setSortBy(new SortBy[] {SortBy.NATURAL_ORDER});
+        Map<String, List<SimpleFeature>> result = new HashMap<>();
+        try (SimpleFeatureIterator fi = source.getFeatures(query).features()) {
+            while (fi.hasNext()) {
+                SimpleFeature row = fi.next();
+                String key = String.valueOf(row.getAttribute(table.foreignKey));
+                result.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+            }
         }
+        return result;
+    }
 
-        for (SimpleFeature link : links) {
-            SimpleFeature linkFeature =
-                    SimpleFeatureBuilder.retype((SimpleFeature) link, linkFeatureType);
-            builder.append(OGC_LINKS_PROPERTY_NAME, linkFeature);
+    /** Appends a simple attribute to the builder */
+    protected void appendSimple(
+            ComplexFeatureBuilder builder, AttributeDescriptor descriptor, Object value) {
+        if (value == null) {
+            return;
         }
-
-        //
-        Feature feature = builder.buildFeature(fi.getID());
-        return feature;
+        AttributeBuilder ab = new AttributeBuilder(FEATURE_FACTORY);
+        ab.setDescriptor(descriptor);
+        Attribute attribute = ab.buildSimple(null, value);
+        builder.append(descriptor.getName(), attribute);
     }
 
     /** Performs the common mappings, subclasses can override to add more */
@@ -508,15 +552,6 @@ public abstract class AbstractMappingStore implements FeatureStore<FeatureType,
             Attribute attribute = ab.buildSimple(null, value);
             builder.append(pd.getName(), attribute);
         }
-
-        // handle joined metadata
-        Object metadataValue = fi.getAttribute("metadata");
-        if (metadataValue instanceof SimpleFeature) {
-            SimpleFeature metadataFeature = (SimpleFeature) metadataValue;
-            ab.setDescriptor((AttributeDescriptor) schema.getDescriptor(METADATA_PROPERTY_NAME));
-            Attribute attribute = ab.buildSimple(null, metadataFeature.getAttribute("metadata"));
-            builder.append(METADATA_PROPERTY_NAME, attribute);
-        }
     }
 
     private SimpleFeature retypeLayerFeature(SimpleFeature layerFeature) {
@@ -10,18 +10,13 @@ import java.io.IOException;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import org.geotools.data.Join;
 import org.geotools.data.Query;
 import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.factory.CommonFactoryFinder;
-import org.geotools.feature.AttributeBuilder;
-import org.geotools.feature.ComplexFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.util.logging.Logging;
-import org.opengis.feature.Attribute;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.FeatureType;
@@ -76,36 +71,23 @@ public class JDBCProductFeatureStore extends AbstractMappingStore {
     }
 
     @Override
-    protected Query mapToSimpleCollectionQuery(Query query, boolean addJoins) throws IOException {
-        Query result = super.mapToSimpleCollectionQuery(query, addJoins);
-
-        // join to quicklook table if necessary
-        if (addJoins && hasOutputProperty(query, OpenSearchAccess.QUICKLOOK_PROPERTY_NAME, false)) {
-            Filter filter = FF.equal(FF.property("id"), FF.property("quicklook.tid"), true);
-            Join join = new Join("product_thumb", filter);
-            join.setAlias("quicklook");
-            result.getJoins().add(join);
-        }
-
-        return result;
-    }
+    protected List<RelatedTable> getRelatedTables(Query query) {
+        List<RelatedTable> result = super.getRelatedTables(query);
 
-    @Override
-    protected void mapPropertiesToComplex(ComplexFeatureBuilder builder, SimpleFeature fi) {
-        // basic mappings
-        super.mapPropertiesToComplex(builder, fi);
-
-        // quicklook extraction
-        Object metadataValue = fi.getAttribute("quicklook");
-        if (metadataValue instanceof SimpleFeature) {
-            SimpleFeature quicklookFeature = (SimpleFeature) metadataValue;
-            AttributeBuilder ab = new AttributeBuilder(CommonFactoryFinder.getFeatureFactory(null));
-            ab.setDescriptor(
+        // fetch the quicklooks if necessary
+        if (hasOutputProperty(query, OpenSearchAccess.QUICKLOOK_PROPERTY_NAME, false)) {
+            AttributeDescriptor descriptor =
                     (AttributeDescriptor)
-                            schema.getDescriptor(OpenSearchAccess.QUICKLOOK_PROPERTY_NAME));
-            Attribute attribute = ab.buildSimple(null, quicklookFeature.getAttribute("thumb"));
-            builder.append(OpenSearchAccess.QUICKLOOK_PROPERTY_NAME, attribute);
+                            schema.getDescriptor(OpenSearchAccess.QUICKLOOK_PROPERTY_NAME);
+            result.add(
+                    new RelatedTable(
+                            getThumbnailTable(),
+                            "tid",
+                            (builder, row) ->
+                                    appendSimple(builder, descriptor, row.getAttribute("thumb"))));
         }
+
+        return result;
     }
 
     @Override
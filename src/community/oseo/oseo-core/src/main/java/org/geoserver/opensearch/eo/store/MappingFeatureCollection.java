@@ -4,19 +4,33 @@
  */
 package org.geoserver.opensearch.eo.store;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.function.Function;
 import java.util.logging.Logger;
+import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.collection.BaseFeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.FeatureType;
 
 /**
- * Similar to gt-transform code, but building complex features on a custom transformation
+ * Similar to gt-transform code, but building complex features on a custom transformation. The
+ * simple features are read in batches, and each batch is mapped at once, so that the mapper can
+ * fetch related data with a few queries per batch rather than per feature, while keeping memory
+ * usage bounded by the batch size.
+ *
+ * <p>Each batch is read with its own paged query, which is closed before the batch is mapped, so
+ * that the related data lookups do not need a second connection while the main one is in use.
  *
  * @author Andrea Aime - GeoSolution
  */
@@ -24,40 +38,122 @@ class MappingFeatureCollection extends BaseFeatureCollection<FeatureType, Featur
 
     static final Logger LOGGER = Logging.getLogger(MappingFeatureCollection.class);
 
-    private SimpleFeatureCollection features;
+    /**
+     * Maps a batch of simple features to complex ones, allowed to throw {@link IOException}
+     *
+     * @author Andrea Aime - GeoSolutions
+     */
+    @FunctionalInterface
+    interface BatchMapper {
+        List<Feature> apply(List<SimpleFeature> batch) throws IOException;
+    }
+
+    private SimpleFeatureSource source;
+
+    private Query query;
+
+    private int batchSize;
 
-    private Function<PushbackFeatureIterator<SimpleFeature>, Feature> mapper;
+    private BatchMapper mapper;
 
     public MappingFeatureCollection(
             FeatureType schema,
-            SimpleFeatureCollection features,
-            Function<PushbackFeatureIterator<SimpleFeature>, Feature> mapper) {
+            SimpleFeatureSource source,
+            Query query,
+            int batchSize,
+            BatchMapper mapper) {
         super(schema);
-        this.features = features;
+        this.source = source;
+        this.query = query;
+        this.batchSize = Math.max(1, batchSize);
         this.mapper = mapper;
     }
 
+    @Override
+    public int size() {
+        // one complex feature per simple feature, no need to map them to count
+        return getFeatures().size();
+    }
+
+    @Override
+    public ReferencedEnvelope getBounds() {
+        return getFeatures().getBounds();
+    }
+
+    private SimpleFeatureCollection getFeatures() {
+        try {
+            return source.getFeatures(query);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read features", e);
+        }
+    }
+
     @Override
     public FeatureIterator<Feature> features() {
-        PushbackFeatureIterator<SimpleFeature> iterator =
-                new PushbackFeatureIterator<>(features.features());
-        // scan through the joined features and map them
         return new FeatureIterator<Feature>() {
 
+            Deque<Feature> mapped = new ArrayDeque<>();
+
+            /** Number of simple features read so far */
+            int read;
+
+            boolean exhausted;
+
             @Override
             public boolean hasNext() {
-                return iterator.hasNext();
+                if (mapped.isEmpty()) {
+                    fill();
+                }
+                return !mapped.isEmpty();
+            }
+
+            private void fill() {
+                if (exhausted) {
+                    return;
+                }
+                try {
+                    List<SimpleFeature> batch = readBatch();
+                    if (!batch.isEmpty()) {
+                        mapped.addAll(mapper.apply(batch));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to map features", e);
+                }
+            }
+
+            private List<SimpleFeature> readBatch() throws IOException {
+                int start = query.getStartIndex() != null ? query.getStartIndex() : 0;
+                int max = Math.min(batchSize, query.getMaxFeatures() - read);
+                List<SimpleFeature> batch = new ArrayList<>(Math.max(0, max));
+                if (max > 0) {
+                    Query batchQuery = new Query(query);
+                    batchQuery.setStartIndex(start + read);
+                    batchQuery.setMaxFeatures(max);
+                    try (SimpleFeatureIterator iterator =
+                            source.getFeatures(batchQuery).features()) {
+                        while (batch.size() < max && iterator.hasNext()) {
+                            batch.add(iterator.next());
+                        }
+                    }
+                }
+                read += batch.size();
+                exhausted = max <= 0 || batch.size() < max;
+                return batch;
             }
 
             @Override
             public Feature next() throws NoSuchElementException {
-                Feature mapped = mapper.apply(iterator);
-                return mapped;
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return mapped.poll();
             }
 
             @Override
             public void close() {
-                iterator.close();
+                // each batch is read with its own iterator, already closed
+                mapped.clear();
+                exhausted = true;
             }
         };
     }
@@ -47,6 +47,7 @@ import java.util.stream.Collectors;
 import org.apache.commons.io.IOUtils;
 import org.easymock.EasyMock;
 import org.geoserver.config.GeoServer;
+import org.geoserver.opensearch.eo.store.AbstractMappingStore;
 import org.geoserver.opensearch.eo.store.JDBCOpenSearchAccess;
 import org.geoserver.opensearch.eo.store.OpenSearchAccess;
 import org.geoserver.platform.GeoServerExtensionsHelper;
@@ -741,4 +742,62 @@ public class JDBCOpenSearchAccessTest {
         Property layerProperty = collection.getProperty(LAYERS_NAME);
         assertNull(layerProperty);
     }
+
+    @Test
+    public void testProductBatchBoundaries() throws Exception {
+        // one product per batch as the reference
+        Map<String, Feature> reference = readProducts(1);
+        assertThat(reference.size(), greaterThan(3));
+
+        // batch boundaries falling inside the result set
+        for (int batchSize : new int[] {2, 3, 7}) {
+            Map<String, Feature> products = readProducts(batchSize);
+            assertEquals(reference.keySet(), products.keySet());
+            for (Map.Entry<String, Feature> entry : reference.entrySet()) {
+                Feature expected = entry.getValue();
+                Feature actual = products.get(entry.getKey());
+                assertEquals(
+                        getValue(expected, OpenSearchAccess.METADATA_PROPERTY_NAME),
+                        getValue(actual, OpenSearchAccess.METADATA_PROPERTY_NAME));
+                assertArrayEquals(
+                        (byte[]) getValue(expected, OpenSearchAccess.QUICKLOOK_PROPERTY_NAME),
+                        (byte[]) getValue(actual, OpenSearchAccess.QUICKLOOK_PROPERTY_NAME));
+                assertEquals(getLinks(expected), getLinks(actual));
+                // the links are the ones of the product
+                String productId = entry.getKey().substring(entry.getKey().lastIndexOf('.') + 1);
+                for (Property link :
+                        actual.getProperties(OpenSearchAccess.OGC_LINKS_PROPERTY_NAME)) {
+                    assertEquals(
+                            productId,
+                            String.valueOf(((SimpleFeature) link).getAttribute("product_id")));
+                }
+            }
+        }
+    }
+
+    private Map<String, Feature> readProducts(int batchSize) throws IOException {
+        AbstractMappingStore source = (AbstractMappingStore) osAccess.getProductSource();
+        source.setFetchBatchSize(batchSize);
+        Query q = new Query();
+        q.setProperties(
+                Arrays.asList(
+                        FF.property(OpenSearchAccess.METADATA_PROPERTY_NAME),
+                        FF.property(OpenSearchAccess.OGC_LINKS_PROPERTY_NAME),
+                        FF.property(OpenSearchAccess.QUICKLOOK_PROPERTY_NAME)));
+        Map<String, Feature> result = new LinkedHashMap<>();
+        source.getFeatures(q).accepts(f -> result.put(f.getIdentifier().getID(), f), null);
+        return result;
+    }
+
+    private Object getValue(Feature feature, Name name) {
+        Property property = feature.getProperty(name);
+        return property == null ? null : property.getValue();
+    }
+
+    private List<String> getLinks(Feature feature) {
+        return feature.getProperties(OpenSearchAccess.OGC_LINKS_PROPERTY_NAME)
+                .stream()
+                .map(p -> ((SimpleFeature) p).getID())
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,104 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.opensearch.eo.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.sort.SortBy;
+
+public class MappingFeatureCollectionTest {
+
+    SimpleFeatureType type;
+
+    MemoryDataStore store;
+
+    List<Integer> batchSizes = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        type = DataUtilities.createType("product", "id:Integer,geom:Point:srid=4326");
+        store = new MemoryDataStore(type);
+        WKTReader reader = new WKTReader();
+        for (int i = 0; i < 5; i++) {
+            Point point = (Point) reader.read("POINT(" + i + " " + i + ")");
+            store.addFeature(SimpleFeatureBuilder.build(type, new Object[] {i, point}, "p." + i));
+        }
+    }
+
+    private MappingFeatureCollection collection(int batchSize) throws IOException {
+        Query query = new Query("product");
+        query.setSortBy(new SortBy[] {SortBy.NATURAL_ORDER});
+        return collection(query, batchSize);
+    }
+
+    private MappingFeatureCollection collection(Query query, int batchSize) throws IOException {
+        return new MappingFeatureCollection(
+                type,
+                store.getFeatureSource("product"),
+                query,
+                batchSize,
+                batch -> {
+                    batchSizes.add(batch.size());
+                    return new ArrayList<>(batch);
+                });
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        List<String> ids = new ArrayList<>();
+        try (FeatureIterator<Feature> it = collection(2).features()) {
+            while (it.hasNext()) {
+                ids.add(((SimpleFeature) it.next()).getID());
+            }
+        }
+        // the last batch is partial, the order is preserved across batches
+        assertEquals(Arrays.asList(2, 2, 1), batchSizes);
+        assertEquals(Arrays.asList("p.0", "p.1", "p.2", "p.3", "p.4"), ids);
+    }
+
+    @Test
+    public void testBatchesWithinPage() throws Exception {
+        Query query = new Query("product");
+        query.setSortBy(new SortBy[] {SortBy.NATURAL_ORDER});
+        query.setStartIndex(1);
+        query.setMaxFeatures(3);
+        List<String> ids = new ArrayList<>();
+        try (FeatureIterator<Feature> it = collection(query, 2).features()) {
+            while (it.hasNext()) {
+                ids.add(((SimpleFeature) it.next()).getID());
+            }
+        }
+        // the batches stay within the requested page
+        assertEquals(Arrays.asList(2, 1), batchSizes);
+        assertEquals(Arrays.asList("p.1", "p.2", "p.3"), ids);
+    }
+
+    @Test
+    public void testCountAndBoundsDoNotMap() throws Exception {
+        MappingFeatureCollection collection = collection(2);
+        assertEquals(5, collection.size());
+        ReferencedEnvelope bounds = collection.getBounds();
+        assertEquals(0, bounds.getMinX(), 0d);
+        assertEquals(4, bounds.getMaxY(), 0d);
+        assertEquals(0, batchSizes.size());
+    }
+}
@@ -51,6 +51,7 @@ class CatalogStoreFeatureCollection extends AbstractFeatureCollection<FeatureTyp
     protected int offset, count;
     protected SortBy[] sortOrder;
     protected Filter filter;
+    protected Filter candidates;
     protected Catalog catalog;
     protected CatalogStoreMapping mapping;
     protected RecordDescriptor rd;
@@ -63,6 +64,8 @@ class CatalogStoreFeatureCollection extends AbstractFeatureCollection<FeatureTyp
      * @param count Count
      * @param sortOrder Sort Order
      * @param filter Filter
+     * @param candidates Filter selecting the candidate catalog objects, as resolved by the {@link
+     *     CatalogStoreIndex}, or null
      * @param catalog The GeoServer Catalog
      * @param mapping The Mapping
      * @param rd Record Descriptor
@@ -72,6 +75,7 @@ class CatalogStoreFeatureCollection extends AbstractFeatureCollection<FeatureTyp
             int count,
             SortBy[] sortOrder,
             Filter filter,
+            Filter candidates,
             Catalog catalog,
             CatalogStoreMapping mapping,
             RecordDescriptor rd,
@@ -80,6 +84,7 @@ class CatalogStoreFeatureCollection extends AbstractFeatureCollection<FeatureTyp
         this.offset = offset;
         this.count = count;
         this.filter = filter;
+        this.candidates = candidates;
         this.catalog = catalog;
         this.mapping = mapping;
         this.sortOrder = sortOrder;
@@ -139,6 +144,11 @@ class CatalogStoreFeatureCollection extends AbstractFeatureCollection<FeatureTyp
                                                 ff.literal(PublishedType.GROUP)),
                                         (Filter)
                                                 result.accept(new ResourceFilterVisitor(), null))));
+
+        // cheap identifier check first, the full filter is evaluated only on the candidates
+        if (candidates != null) {
+            result = ff.and(candidates, result);
+        }
         return result;
     }
 
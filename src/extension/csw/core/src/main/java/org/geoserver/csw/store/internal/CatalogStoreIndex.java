@@ -0,0 +1,552 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.csw.store.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.geoserver.csw.records.RecordDescriptor;
+import org.geoserver.csw.store.internal.CatalogStoreMapping.CatalogStoreMappingElement;
+import org.geotools.data.complex.util.XPathUtil;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+
+/**
+ * In memory index of the published catalog objects, as seen through a {@link CatalogStoreMapping},
+ * used to narrow down the objects a GetRecords filter needs to be evaluated against, before any
+ * mapping happens.
+ *
+ * <p>The text of each mapped field, and of the AnyText concatenation, is indexed by trigrams, the
+ * envelopes are kept in {@link STRtree}s. The index only selects candidates, a superset of the
+ * matching objects, the query filter is still evaluated on them afterwards: parts of the filter
+ * that cannot be resolved by the index (negations, comparisons, dates, ...) just do not restrict
+ * the candidates.
+ *
+ * <p>The index is kept up to date by {@link InternalCatalogStore}, forwarding the catalog events.
+ * Changes to objects other than layers, layer groups and resources could affect the mapped values
+ * in ways that are hard to track, so any of them (e.g., saving a style or a workspace) drops the
+ * whole index, which is then rebuilt synchronously, scanning all the published objects, by the
+ * next GetRecords request using a filter.
+ */
+class CatalogStoreIndex {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogStoreIndex.class);
+
+    /**
+     * Maximum number of candidates the index hands back as an identifier filter, above it the
+     * filter would not be selective enough to pay off, and the catalog is scanned as usual
+     */
+    static final int MAX_CANDIDATES = Integer.getInteger("CSW_INDEX_MAX_CANDIDATES", 1000);
+
+    /** Field name used for the AnyText concatenation */
+    static final String ANY_TEXT = "AnyText";
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    static final int GRAM = 3;
+
+    private final Catalog catalog;
+
+    private final CatalogStoreMapping mapping;
+
+    private final RecordDescriptor rd;
+
+    private final Expression anyText;
+
+    /** Field name -> trigram -> published ids */
+    private final Map<String, Map<String, Set<String>>> grams = new HashMap<>();
+
+    /** Published id -> field name -> trigrams, to remove entries */
+    private final Map<String, Map<String, Set<String>>> entries = new HashMap<>();
+
+    /** Fields that had non textual values, equality cannot be resolved on them */
+    private final Set<String> nonTextual = new HashSet<>();
+
+    /** Published ids whose fields could not be evaluated, always candidates */
+    private final Set<String> unindexed = new HashSet<>();
+
+    private final Map<String, Envelope> nativeEnvelopes = new HashMap<>();
+
+    private final Map<String, Envelope> geographicEnvelopes = new HashMap<>();
+
+    private STRtree nativeTree;
+
+    private STRtree geographicTree;
+
+    private boolean built;
+
+    private int maxCandidates = MAX_CANDIDATES;
+
+    CatalogStoreIndex(Catalog catalog, CatalogStoreMapping mapping, RecordDescriptor rd) {
+        this.catalog = catalog;
+        this.mapping = mapping;
+        this.rd = rd;
+        this.anyText =
+                (Expression)
+                        FF.property(ANY_TEXT)
+                                .accept(new CSWUnmappingFilterVisitor(mapping, rd), null);
+    }
+
+    CatalogStoreMapping getMapping() {
+        return mapping;
+    }
+
+    /** Sets the maximum number of candidates turned into an identifier filter */
+    void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    /** Drops the contents, the index will be rebuilt on the next query */
+    synchronized void invalidate() {
+        built = false;
+        grams.clear();
+        entries.clear();
+        nonTextual.clear();
+        unindexed.clear();
+        nativeEnvelopes.clear();
+        geographicEnvelopes.clear();
+        nativeTree = null;
+        geographicTree = null;
+    }
+
+    /** Updates the entry of a layer or layer group */
+    synchronized void update(PublishedInfo published) {
+        if (built) {
+            remove(published.getId());
+            add(published);
+        }
+    }
+
+    /** Updates the entries of the layers publishing the given resource */
+    synchronized void update(ResourceInfo resource) {
+        if (built) {
+            for (LayerInfo layer : catalog.getLayers(resource)) {
+                update(layer);
+            }
+        }
+    }
+
+    /** Removes the entry of a layer or layer group */
+    synchronized void remove(String id) {
+        if (!built) {
+            return;
+        }
+        Map<String, Set<String>> fields = entries.remove(id);
+        if (fields != null) {
+            for (Map.Entry<String, Set<String>> field : fields.entrySet()) {
+                Map<String, Set<String>> fieldGrams = grams.get(field.getKey());
+                for (String gram : field.getValue()) {
+                    Set<String> ids = fieldGrams.get(gram);
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        fieldGrams.remove(gram);
+                    }
+                }
+            }
+        }
+        unindexed.remove(id);
+        if (nativeEnvelopes.remove(id) != null) {
+            nativeTree = null;
+        }
+        if (geographicEnvelopes.remove(id) != null) {
+            geographicTree = null;
+        }
+    }
+
+    private void build() {
+        try (CloseableIterator<PublishedInfo> it =
+                catalog.getFacade().list(PublishedInfo.class, Filter.INCLUDE, null, null)) {
+            while (it.hasNext()) {
+                add(it.next());
+            }
+        }
+        built = true;
+    }
+
+    private void add(PublishedInfo published) {
+        String id = published.getId();
+        CatalogInfo target =
+                published instanceof LayerInfo ? ((LayerInfo) published).getResource() : published;
+        if (target == null) {
+            unindexed.add(id);
+            return;
+        }
+        Map<String, Set<String>> fields = new HashMap<>();
+        try {
+            for (CatalogStoreMappingElement element : mapping.elements()) {
+                Object value = element.getContent().evaluate(target);
+                if (value == null) {
+                    continue;
+                }
+                if (!isTextual(value)) {
+                    nonTextual.add(element.getKey());
+                }
+                fields.put(element.getKey(), gramsOf(value));
+            }
+            String text = anyText.evaluate(target, String.class);
+            if (text != null) {
+                fields.put(ANY_TEXT, gramsOf(text));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not index " + id + ", will always be a candidate", e);
+            unindexed.add(id);
+            return;
+        }
+        entries.put(id, fields);
+        for (Map.Entry<String, Set<String>> field : fields.entrySet()) {
+            Map<String, Set<String>> fieldGrams =
+                    grams.computeIfAbsent(field.getKey(), k -> new HashMap<>());
+            for (String gram : field.getValue()) {
+                fieldGrams.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+            }
+        }
+
+        // the filter might use any of the envelopes, in any of the CRSs, keep the union
+        Envelope nativeEnvelope = new Envelope();
+        Envelope geographicEnvelope = new Envelope();
+        for (ReferencedEnvelope envelope : getEnvelopes(target)) {
+            nativeEnvelope.expandToInclude(envelope);
+            try {
+                geographicEnvelope.expandToInclude(
+                        envelope.getCoordinateReferenceSystem() == null
+                                ? envelope
+                                : envelope.transform(DefaultGeographicCRS.WGS84, true));
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not compute geographic envelope of " + id, e);
+            }
+        }
+        if (!nativeEnvelope.isNull()) {
+            nativeEnvelopes.put(id, nativeEnvelope);
+            nativeTree = null;
+        }
+        if (!geographicEnvelope.isNull()) {
+            geographicEnvelopes.put(id, geographicEnvelope);
+            geographicTree = null;
+        }
+    }
+
+    private List<ReferencedEnvelope> getEnvelopes(CatalogInfo target) {
+        List<ReferencedEnvelope> result = new ArrayList<>();
+        try {
+            if (target instanceof ResourceInfo) {
+                ResourceInfo resource = (ResourceInfo) target;
+                result.add(resource.getNativeBoundingBox());
+                result.add(resource.getLatLonBoundingBox());
+                result.add(resource.boundingBox());
+            } else if (target instanceof LayerGroupInfo) {
+                result.add(((LayerGroupInfo) target).getBounds());
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not compute envelope of " + target, e);
+        }
+        result.removeIf(e -> e == null || e.isNull());
+        return result;
+    }
+
+    private boolean isTextual(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value)
+                    .stream()
+                    .allMatch(v -> v == null || v instanceof CharSequence);
+        }
+        return value instanceof CharSequence;
+    }
+
+    /**
+     * Returns the trigrams of all the string representations a filter could compare the value
+     * with, lower cased
+     */
+    private Set<String> gramsOf(Object value) {
+        Set<String> result = new HashSet<>();
+        addGrams(value, result);
+        if (value instanceof Collection) {
+            for (Object v : (Collection<?>) value) {
+                if (v != null) {
+                    addGrams(v, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addGrams(Object value, Set<String> result) {
+        addGrams(value.toString(), result);
+        String converted = Converters.convert(value, String.class);
+        if (converted != null) {
+            addGrams(converted, result);
+        }
+    }
+
+    private static void addGrams(String text, Set<String> result) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            result.add(lower.substring(i, i + GRAM));
+        }
+    }
+
+    /**
+     * Returns a filter selecting the candidate published objects for the given CSW filter, or
+     * null if the index cannot narrow down the search enough
+     */
+    synchronized Filter getCandidatesFilter(Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return null;
+        }
+        Set<String> candidates = getCandidates(filter);
+        if (candidates == null) {
+            return null;
+        } else if (candidates.isEmpty()) {
+            return Filter.EXCLUDE;
+        } else if (candidates.size() > maxCandidates) {
+            return null;
+        }
+        List<Filter> filters = new ArrayList<>();
+        for (String id : candidates) {
+            filters.add(FF.equals(FF.property("id"), FF.literal(id)));
+        }
+        return filters.size() == 1 ? filters.get(0) : FF.or(filters);
+    }
+
+    /**
+     * Returns the ids of the candidate published objects, including the ones that could not be
+     * indexed, building the index if needed, or null if the filter cannot be resolved
+     */
+    synchronized Set<String> getCandidates(Filter filter) {
+        if (!built) {
+            build();
+        }
+        Set<String> candidates = candidates(filter);
+        if (candidates != null) {
+            candidates.addAll(unindexed);
+        }
+        return candidates;
+    }
+
+    /** Returns the ids possibly matching the filter, or null if the filter cannot be resolved */
+    Set<String> candidates(Filter filter) {
+        if (filter instanceof And) {
+            Set<String> result = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                Set<String> childCandidates = candidates(child);
+                if (childCandidates != null) {
+                    if (result == null) {
+                        result = childCandidates;
+                    } else {
+                        result.retainAll(childCandidates);
+                    }
+                }
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            Set<String> result = new HashSet<>();
+            for (Filter child : ((Or) filter).getChildren()) {
+                Set<String> childCandidates = candidates(child);
+                if (childCandidates == null) {
+                    return null;
+                }
+                result.addAll(childCandidates);
+            }
+            return result;
+        } else if (filter instanceof PropertyIsLike) {
+            PropertyIsLike like = (PropertyIsLike) filter;
+            String field = getField(like.getExpression());
+            if (field == null || "boundingBox".equals(field)) {
+                return null;
+            }
+            return textCandidates(field, likeFragments(like));
+        } else if (filter instanceof PropertyIsEqualTo) {
+            BinaryComparisonOperator equal = (BinaryComparisonOperator) filter;
+            Expression property = equal.getExpression1();
+            Expression literal = equal.getExpression2();
+            if (property instanceof Literal) {
+                property = equal.getExpression2();
+                literal = equal.getExpression1();
+            }
+            if (!(literal instanceof Literal) || ((Literal) literal).getValue() == null) {
+                return null;
+            }
+            String field = getField(property);
+            if (field == null || ANY_TEXT.equals(field) || nonTextual.contains(field)) {
+                return null;
+            }
+            String value = ((Literal) literal).getValue().toString();
+            return textCandidates(field, Collections.singletonList(value));
+        } else if (filter instanceof BBOX) {
+            BBOX bbox = (BBOX) filter;
+            if (!"boundingBox".equals(getField(bbox.getExpression1()))) {
+                return null;
+            }
+            return bboxCandidates(ReferencedEnvelope.reference(bbox.getBounds()));
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a CSW property to the name of the indexed field, the same way {@link
+     * CSWUnmappingFilterVisitor} does, "boundingBox" is returned for the envelope
+     */
+    private String getField(Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        try {
+            XPathUtil.StepList steps =
+                    XPathUtil.steps(
+                            rd.getFeatureDescriptor(),
+                            ((PropertyName) expression).getPropertyName(),
+                            rd.getNamespaceSupport());
+            if (steps.size() == 1
+                    && steps.get(0).getName().getLocalPart().equalsIgnoreCase(ANY_TEXT)) {
+                return ANY_TEXT;
+            }
+            String path = CatalogStoreMapping.toDotPath(steps);
+            if (path.equalsIgnoreCase(rd.getBoundingBoxPropertyName())) {
+                return "boundingBox";
+            }
+            CatalogStoreMappingElement element = mapping.getElement(path);
+            return element != null ? element.getKey() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** The literal parts of a like pattern, the ones a matching value must contain */
+    static List<String> likeFragments(PropertyIsLike like) {
+        String pattern = like.getLiteral();
+        String wildcard = like.getWildCard();
+        String single = like.singleChar();
+        String escape = like.getEscape();
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            if (escape != null && !escape.isEmpty() && pattern.startsWith(escape, i)) {
+                i += escape.length();
+                if (i < pattern.length()) {
+                    current.append(pattern.charAt(i++));
+                }
+            } else if (wildcard != null && !wildcard.isEmpty() && pattern.startsWith(wildcard, i)) {
+                i += wildcard.length();
+                result.add(current.toString());
+                current.setLength(0);
+            } else if (single != null && !single.isEmpty() && pattern.startsWith(single, i)) {
+                i += single.length();
+                result.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(pattern.charAt(i++));
+            }
+        }
+        result.add(current.toString());
+        return result;
+    }
+
+    /** Returns the ids whose field contains all the trigrams of the fragments */
+    private Set<String> textCandidates(String field, List<String> fragments) {
+        Set<String> fragmentGrams = new LinkedHashSet<>();
+        for (String fragment : fragments) {
+            addGrams(fragment, fragmentGrams);
+        }
+        if (fragmentGrams.isEmpty()) {
+            // too short to tell
+            return null;
+        }
+        Map<String, Set<String>> fieldGrams = grams.getOrDefault(field, Collections.emptyMap());
+        Set<String> result = null;
+        for (String gram : fragmentGrams) {
+            Set<String> ids = fieldGrams.getOrDefault(gram, Collections.emptySet());
+            if (result == null) {
+                result = new HashSet<>(ids);
+            } else {
+                result.retainAll(ids);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids whose envelope intersects the given one. The filter might compare the raw
+     * coordinates, or reproject, so both the native and the geographic envelopes are looked up
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> bboxCandidates(ReferencedEnvelope envelope) {
+        if (envelope == null || envelope.isNull()) {
+            return null;
+        }
+        Set<String> result = new HashSet<>();
+        if (nativeTree == null) {
+            nativeTree = buildTree(nativeEnvelopes);
+        }
+        result.addAll(nativeTree.query(expand(envelope)));
+        ReferencedEnvelope geographic = envelope;
+        if (envelope.getCoordinateReferenceSystem() != null) {
+            try {
+                geographic = envelope.transform(DefaultGeographicCRS.WGS84, true);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not reproject query envelope, not using index", e);
+                return null;
+            }
+        }
+        if (geographicTree == null) {
+            geographicTree = buildTree(geographicEnvelopes);
+        }
+        result.addAll(geographicTree.query(expand(geographic)));
+        // objects without an envelope are left to the filter
+        Set<String> withoutEnvelope = new HashSet<>(entries.keySet());
+        withoutEnvelope.removeAll(geographicEnvelopes.keySet());
+        result.addAll(withoutEnvelope);
+        return result;
+    }
+
+    private Envelope expand(Envelope envelope) {
+        Envelope result = new Envelope(envelope);
+        result.expandBy(Math.max(result.getWidth(), result.getHeight()) * 1e-6 + 1e-9);
+        return result;
+    }
+
+    private STRtree buildTree(Map<String, Envelope> envelopes) {
+        STRtree tree = new STRtree();
+        for (Map.Entry<String, Envelope> entry : envelopes.entrySet()) {
+            tree.insert(entry.getValue(), entry.getKey());
+        }
+        tree.build();
+        return tree;
+    }
+}
@@ -8,8 +8,17 @@ package org.geoserver.csw.store.internal;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.config.GeoServer;
 import org.geoserver.csw.GetRecords;
 import org.geoserver.csw.records.RecordDescriptor;
@@ -55,6 +64,10 @@ public class InternalCatalogStore extends AbstractCatalogStore implements Applic
     protected Map<String, PropertyFileWatcher> watchers =
             new HashMap<String, PropertyFileWatcher>();
 
+    /** Record indexes, by type name, built lazily on the first query */
+    protected Map<String, CatalogStoreIndex> indexes =
+            new ConcurrentHashMap<String, CatalogStoreIndex>();
+
     public InternalCatalogStore(GeoServer geoServer) {
         this.geoServer = geoServer;
     }
@@ -90,6 +103,16 @@ public class InternalCatalogStore extends AbstractCatalogStore implements Applic
         return mappings.get(typeName);
     }
 
+    /** Returns the index for the given record type, rebuilding it if the mapping changed */
+    CatalogStoreIndex getIndex(String typeName, CatalogStoreMapping mapping, RecordDescriptor rd) {
+        return indexes.compute(
+                typeName,
+                (k, index) ->
+                        index != null && index.getMapping() == mapping
+                                ? index
+                                : new CatalogStoreIndex(geoServer.getCatalog(), mapping, rd));
+    }
+
     @Override
     public FeatureCollection getRecordsInternal(
             RecordDescriptor rd, RecordDescriptor rdOutput, Query q, Transaction t)
@@ -149,11 +172,18 @@ public class InternalCatalogStore extends AbstractCatalogStore implements Applic
             outputMapping = outputMapping.subMapping(q.getProperties(), rdOutput);
         }
 
+        // narrow down the catalog objects to evaluate the filter against using the index
+        Filter candidates = null;
+        if (unmapped != Filter.INCLUDE) {
+            candidates = getIndex(q.getTypeName(), mapping, rd).getCandidatesFilter(q.getFilter());
+        }
+
         return new CatalogStoreFeatureCollection(
                 startIndex,
                 q.getMaxFeatures(),
                 unmappedSortBy,
                 unmapped,
+                candidates,
                 geoServer.getCatalog(),
                 outputMapping,
                 rdOutput,
@@ -197,5 +227,51 @@ public class InternalCatalogStore extends AbstractCatalogStore implements Applic
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new FatalBeanException(e.getMessage(), e);
         }
+        // keep the indexes in synch with the catalog
+        geoServer.getCatalog().addListener(new IndexUpdater());
+    }
+
+    /** Forwards the catalog changes to the record indexes */
+    class IndexUpdater implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            if (event.getSource() instanceof PublishedInfo) {
+                PublishedInfo published = (PublishedInfo) event.getSource();
+                indexes.values().forEach(index -> index.update(published));
+            }
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            if (event.getSource() instanceof PublishedInfo) {
+                String id = event.getSource().getId();
+                indexes.values().forEach(index -> index.remove(id));
+            }
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            // wait for the change to be applied
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            if (event.getSource() instanceof PublishedInfo) {
+                PublishedInfo published = (PublishedInfo) event.getSource();
+                indexes.values().forEach(index -> index.update(published));
+            } else if (event.getSource() instanceof ResourceInfo) {
+                ResourceInfo resource = (ResourceInfo) event.getSource();
+                indexes.values().forEach(index -> index.update(resource));
+            } else {
+                // workspaces, stores, styles... can be part of the mapped values too
+                indexes.values().forEach(CatalogStoreIndex::invalidate);
+            }
+        }
+
+        @Override
+        public void reloaded() {
+            indexes.values().forEach(CatalogStoreIndex::invalidate);
+        }
     }
 }
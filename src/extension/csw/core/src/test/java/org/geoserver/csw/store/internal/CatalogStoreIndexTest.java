@@ -0,0 +1,200 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.csw.store.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.csw.records.CSWRecordDescriptor;
+import org.geoserver.csw.store.internal.CatalogStoreMapping.CatalogStoreMappingElement;
+import org.geoserver.data.test.MockData;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.filter.text.ecql.ECQL;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.util.Converters;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.ExpressionVisitor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+public class CatalogStoreIndexTest extends CSWInternalTestSupport {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    /** Fails evaluating the Lakes resource, to simulate an object that cannot be indexed */
+    static class FailingExpression implements Expression {
+
+        @Override
+        public Object evaluate(Object object) {
+            if (object instanceof ResourceInfo
+                    && "Lakes".equals(((ResourceInfo) object).getName())) {
+                throw new IllegalStateException("Cannot evaluate Lakes");
+            }
+            return null;
+        }
+
+        @Override
+        public <T> T evaluate(Object object, Class<T> context) {
+            return Converters.convert(evaluate(object), context);
+        }
+
+        @Override
+        public Object accept(ExpressionVisitor visitor, Object extraData) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private CatalogStoreIndex index() {
+        InternalCatalogStore store = applicationContext.getBean(InternalCatalogStore.class);
+        return new CatalogStoreIndex(
+                getCatalog(), store.getMapping("Record"), CSWRecordDescriptor.getInstance());
+    }
+
+    private Filter filter(Filter filter) {
+        return CSWRecordDescriptor.getInstance()
+                .adaptQuery(new Query("Record", filter))
+                .getFilter();
+    }
+
+    private Filter cql(String cql) throws Exception {
+        return filter(ECQL.toFilter(cql));
+    }
+
+    private String id(QName layer) {
+        return getCatalog().getLayerByName(getLayerId(layer)).getId();
+    }
+
+    private Set<String> ids(QName... layers) {
+        Set<String> result = new HashSet<>();
+        for (QName layer : layers) {
+            result.add(id(layer));
+        }
+        return result;
+    }
+
+    @Test
+    public void testAndOr() throws Exception {
+        CatalogStoreIndex index = index();
+        assertEquals(
+                ids(MockData.FORESTS, MockData.LAKES),
+                index.getCandidates(cql("dc:title = 'Forests' OR dc:title = 'Lakes'")));
+        assertEquals(
+                ids(MockData.BRIDGES),
+                index.getCandidates(cql("AnyText LIKE '%about B%' AND dc:title LIKE 'Bri%'")));
+        // a branch the index cannot resolve does not restrict an and
+        assertEquals(
+                ids(MockData.FORESTS),
+                index.getCandidates(cql("dc:title = 'Forests' AND NOT (dc:title = 'Lakes')")));
+        // but makes the whole or unresolvable
+        assertNull(index.getCandidates(cql("dc:title = 'Forests' OR NOT (dc:title = 'Lakes')")));
+    }
+
+    @Test
+    public void testLikePatterns() throws Exception {
+        CatalogStoreIndex index = index();
+        // single char wildcard splits the fragments
+        Filter single = FF.like(FF.property("dc:title"), "Br?dges", "*", "?", "!");
+        assertTrue(index.getCandidates(filter(single)).contains(id(MockData.BRIDGES)));
+        // unescaped wildcard, matches
+        Filter wildcard = FF.like(FF.property("dc:title"), "*Bri*dges*", "*", "?", "!");
+        assertTrue(index.getCandidates(filter(wildcard)).contains(id(MockData.BRIDGES)));
+        // escaped wildcard, it's part of the text and nothing matches
+        Filter escaped = FF.like(FF.property("dc:title"), "*Bri!*dges*", "*", "?", "!");
+        assertTrue(index.getCandidates(filter(escaped)).isEmpty());
+        // fragments too short to be resolved
+        assertNull(index.getCandidates(cql("dc:title LIKE 'S%'")));
+    }
+
+    @Test
+    public void testBBoxNonGeographic() throws Exception {
+        CoordinateReferenceSystem webMercator = CRS.decode("EPSG:3857", true);
+        ResourceInfo forests = getCatalog().getResourceByName("Forests", ResourceInfo.class);
+        ReferencedEnvelope nativeBounds = forests.getNativeBoundingBox();
+        ReferencedEnvelope latLonBounds = forests.getLatLonBoundingBox();
+        try {
+            ReferencedEnvelope bounds = new ReferencedEnvelope(1e6, 1.1e6, 1e6, 1.1e6, webMercator);
+            forests.setNativeBoundingBox(bounds);
+            forests.setLatLonBoundingBox(bounds.transform(DefaultGeographicCRS.WGS84, true));
+            getCatalog().save(forests);
+
+            CatalogStoreIndex index = index();
+            Filter inside =
+                    FF.bbox(
+                            FF.property("ows:BoundingBox"),
+                            1.02e6,
+                            1.02e6,
+                            1.08e6,
+                            1.08e6,
+                            "EPSG:3857");
+            assertTrue(index.getCandidates(filter(inside)).contains(id(MockData.FORESTS)));
+            Filter outside =
+                    FF.bbox(
+                            FF.property("ows:BoundingBox"),
+                            -1.2e7,
+                            -1.2e7,
+                            -1.1e7,
+                            -1.1e7,
+                            "EPSG:3857");
+            assertFalse(index.getCandidates(filter(outside)).contains(id(MockData.FORESTS)));
+        } finally {
+            forests.setNativeBoundingBox(nativeBounds);
+            forests.setLatLonBoundingBox(latLonBounds);
+            getCatalog().save(forests);
+        }
+    }
+
+    @Test
+    public void testMaxCandidates() throws Exception {
+        CatalogStoreIndex index = index();
+        Filter filter = cql("dc:title = 'Forests' OR dc:title = 'Lakes'");
+        Filter candidates = index.getCandidatesFilter(filter);
+        assertTrue(candidates instanceof Or);
+        assertEquals(2, ((Or) candidates).getChildren().size());
+
+        // too many candidates, not worth using them
+        index.setMaxCandidates(1);
+        assertNull(index.getCandidatesFilter(filter));
+
+        // no candidates at all
+        assertEquals(Filter.EXCLUDE, index.getCandidatesFilter(cql("dc:title = 'NotThere'")));
+    }
+
+    @Test
+    public void testUnindexed() throws Exception {
+        Map<String, String> source = new HashMap<>();
+        source.put("@identifier.value", "id");
+        source.put("title.value", "title");
+        CatalogStoreMapping mapping = CatalogStoreMapping.parse(source);
+        CatalogStoreMappingElement failing = new CatalogStoreMappingElement("abstract.value");
+        failing.content = new FailingExpression();
+        mapping.mappingElements.put(failing.getKey(), failing);
+
+        CatalogStoreIndex index =
+                new CatalogStoreIndex(getCatalog(), mapping, CSWRecordDescriptor.getInstance());
+        // Lakes could not be indexed, it's always a candidate
+        assertEquals(
+                ids(MockData.FORESTS, MockData.LAKES),
+                index.getCandidates(cql("dc:title = 'Forests'")));
+        assertEquals(ids(MockData.LAKES), index.getCandidates(cql("dc:title = 'NotThere'")));
+        assertTrue(
+                index.getCandidatesFilter(cql("dc:title = 'NotThere'"))
+                        instanceof PropertyIsEqualTo);
+    }
+}
@@ -185,6 +185,31 @@ public class GetRecordsTest extends CSWInternalTestSupport {
         assertXpathExists("//csw:BriefRecord[dc:title='Buildings']", d);
     }
 
+    @Test
+    public void testFullTextSearchAfterCatalogChange() throws Exception {
+        String request =
+                "csw?service=CSW&version=2.0.2&request=GetRecords&typeNames=csw:Record&resultType=results&elementSetName=brief&constraint=AnyText like '%25Renamed lakes%25'";
+        // make sure the index is built before the change
+        Document d = getAsDOM(request);
+        assertXpathEvaluatesTo("0", "//csw:SearchResults/@numberOfRecordsMatched", d);
+
+        ResourceInfo lakes = getCatalog().getResourceByName("Lakes", ResourceInfo.class);
+        String title = lakes.getTitle();
+        lakes.setTitle("Renamed lakes");
+        getCatalog().save(lakes);
+        try {
+            d = getAsDOM(request);
+            assertXpathEvaluatesTo("1", "//csw:SearchResults/@numberOfRecordsMatched", d);
+            assertXpathExists("//csw:BriefRecord[dc:title='Renamed lakes']", d);
+        } finally {
+            lakes.setTitle(title);
+            getCatalog().save(lakes);
+        }
+
+        d = getAsDOM(request);
+        assertXpathEvaluatesTo("0", "//csw:SearchResults/@numberOfRecordsMatched", d);
+    }
+
     @Test
     public void testFilterBBox() throws Exception {
 
@@ -146,21 +146,19 @@ public abstract class AbstractDXFWriter implements DXFWriter {
     /** Performs the actual writing. Override it in the actual implementation class. */
     public abstract void write(List featureList, String version) throws IOException;
 
-    /** Extracts and cache the global ReferenceEnvelope for the given feature list. */
-    protected ReferencedEnvelope getEnvelope(List featureList) {
-        if (e == null) {
-            for (int i = 0; i < featureList.size(); i++) {
-                FeatureCollection collection = (FeatureCollection) featureList.get(i);
-                if (e == null) {
-                    e = collection.getBounds();
-                } else {
-                    e.expandToInclude(collection.getBounds());
-                }
-            }
-        }
+    /**
+     * Returns the global envelope, as computed while reading the features. The collections are not
+     * queried for their bounds, that would mean reading them again.
+     */
+    protected ReferencedEnvelope getEnvelope() {
         return normalizeEnvelope(e);
     }
 
+    /** Sets the global envelope, computed while reading the features */
+    protected void setEnvelope(ReferencedEnvelope envelope) {
+        this.e = envelope;
+    }
+
     /** Normalizes an envelope to get a usable viewport. */
     private ReferencedEnvelope normalizeEnvelope(ReferencedEnvelope pEnv) {
         if (pEnv != null) {
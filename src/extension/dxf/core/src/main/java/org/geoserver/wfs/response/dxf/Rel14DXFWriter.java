@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import org.geoserver.wfs.response.dxf.util.SpoolWriter;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.type.FeatureTypeImpl;
@@ -79,19 +80,95 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         return new Rel14DXFWriter(writer);
     }
 
-    /** Writes the DXF for the given feature list. */
+    /**
+     * Writes the DXF for the given feature list. Each collection is read only once: the blocks and
+     * entities sections are spooled while reading, and copied to the output after the header and
+     * tables, which depend on the envelope and blocks found while reading.
+     */
     @Override
     public void write(List featureList, String version) throws IOException {
-        // DXF General Structure
-        writeHeader(featureList);
-        writeClasses(featureList);
-        writeTables(featureList);
-        writeBlocks(featureList);
-        writeEntities(featureList);
-        writeObjects(featureList);
-        writeEof();
-        blockNames.clear();
-        blockHandles.clear();
+        try (SpoolWriter blocks = new SpoolWriter();
+                SpoolWriter entities = new SpoolWriter()) {
+            readFeatures(featureList, blocks, entities);
+            // DXF General Structure
+            writeHeader(featureList);
+            writeClasses(featureList);
+            writeTables(featureList);
+            writeBlocks(featureList, blocks);
+            writeEntities(entities);
+            writeObjects(featureList);
+            writeEof();
+        } finally {
+            blockNames.clear();
+            blockHandles.clear();
+        }
+    }
+
+    /**
+     * Reads all the collections, collecting the envelope and the blocks, and writing the feature
+     * blocks and entities to the given writers.
+     */
+    private void readFeatures(List featureList, Writer blocks, Writer entities)
+            throws IOException {
+        blockNames = new HashMap<String, String>();
+        blockHandles = new HashMap<String, String>();
+        ReferencedEnvelope envelope = null;
+        Writer out = writer;
+        try {
+            for (Object o : featureList) {
+                FeatureCollection coll = (FeatureCollection) o;
+                String layer = getLayerName(coll);
+                if (writeAttributes) {
+                    // add attribute definition blocks
+                    addBlock(coll.hashCode() + "");
+                }
+                try (FeatureIterator<SimpleFeature> iter = coll.features()) {
+                    while (iter.hasNext()) {
+                        SimpleFeature f = iter.next();
+                        Geometry geom = (Geometry) f.getDefaultGeometry();
+                        if (geom != null && !geom.isEmpty()) {
+                            if (envelope == null) {
+                                envelope =
+                                        new ReferencedEnvelope(
+                                                geom.getEnvelopeInternal(),
+                                                coll.getSchema().getCoordinateReferenceSystem());
+                            } else {
+                                envelope.expandToInclude(geom.getEnvelopeInternal());
+                            }
+                        }
+                        // if the geometry is complex, it will be
+                        // exported as a block
+                        if (geometryAsBlock || isBlockGeometry(geom)) {
+                            String fid = f.getID();
+                            addBlock(fid);
+                            writer = blocks;
+                            writeFeatureBlock(layer, fid, geom);
+                        }
+                        if (!geometryAsBlock) {
+                            writer = entities;
+                            writeEntity(coll, layer, f);
+                        }
+                    }
+                }
+            }
+            if (geometryAsBlock) {
+                writer = entities;
+                for (Object coll : featureList) {
+                    String layer = getLayerName((FeatureCollection) coll);
+                    for (String name : blockNames.values()) writeInsert(layer, name);
+                }
+            }
+        } finally {
+            writer = out;
+        }
+        // no geometries found, an empty envelope gets normalized to a default viewport
+        setEnvelope(envelope != null ? envelope : new ReferencedEnvelope());
+    }
+
+    /** Registers a block, along with the handle of its block record */
+    private void addBlock(String key) {
+        blockNames.put(key, (blockCounter++) + "");
+        blockHandles.put(key, getNewHandle("BlockRecord"));
     }
 
     /** Writes the Header section. */
@@ -158,25 +235,25 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
     }
 
     /** Writes the blocks section */
-    private void writeBlocks(List featureList) throws IOException {
+    private void writeBlocks(List featureList, SpoolWriter featureBlocks) throws IOException {
         writeSectionStart("BLOCKS");
         // static blocks (model space and paper space)
         writeModelSpaceBlock();
         writePaperSpaceBlock();
         // blocks computed from the feature list
         // (complex geometries)
-        writeEntityBlocks(featureList);
+        featureBlocks.writeTo(writer);
         writeAttributeDefinitionBlocks(featureList);
         writeSectionEnd();
     }
 
     /** Writes the entities section */
-    private void writeEntities(List featureList) throws IOException {
+    private void writeEntities(SpoolWriter entities) throws IOException {
         writeSectionStart("ENTITIES");
 
         // entities computed from the feature list
         // (simple geometries or insert of blocks)
-        for (Object coll : featureList) writeEntity((FeatureCollection) coll);
+        entities.writeTo(writer);
         writeSectionEnd();
     }
 
@@ -185,37 +262,24 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         loadFromResource("objects");
     }
 
-    /** Writes entities representing the given collection. */
-    private void writeEntity(FeatureCollection coll) throws IOException {
-        String layer = getLayerName(coll);
-        if (geometryAsBlock) {
-            for (String name : blockNames.values()) writeInsert(layer, name);
+    /** Writes the entity representing the given feature. */
+    private void writeEntity(FeatureCollection coll, String layer, SimpleFeature f)
+            throws IOException {
+        String fid = f.getID();
+
+        // if it's a block insert it, else write the geometry
+        // directly
+        if (blockNames.containsKey(fid)) {
+            String name = blockNames.get(fid);
+            writeInsert(layer, name);
         } else {
-            // iterates through all the items
-            FeatureIterator<SimpleFeature> iter = coll.features();
-            try {
-                while (iter.hasNext()) {
-                    SimpleFeature f = iter.next();
-                    String fid = f.getID();
-
-                    // if it's a block insert it, else write the geometry
-                    // directly
-                    if (blockNames.containsKey(fid)) {
-                        String name = blockNames.get(fid);
-                        writeInsert(layer, name);
-                    } else {
-                        writeGeometry(layer, "1F", (Geometry) f.getDefaultGeometry());
-                        String name = blockNames.get(coll.hashCode() + "");
-                        if (writeAttributes) {
-                            String ownerHandle = blockHandles.get(coll.hashCode() + "");
-                            String attributesLayer = layer + "_attributes";
-                            // writeInsert(layer, name);
-                            writeInsertWithAttributes(attributesLayer, ownerHandle, name, f);
-                        }
-                    }
-                }
-            } finally {
-                iter.close();
+            writeGeometry(layer, "1F", (Geometry) f.getDefaultGeometry());
+            String name = blockNames.get(coll.hashCode() + "");
+            if (writeAttributes) {
+                String ownerHandle = blockHandles.get(coll.hashCode() + "");
+                String attributesLayer = layer + "_attributes";
+                // writeInsert(layer, name);
+                writeInsertWithAttributes(attributesLayer, ownerHandle, name, f);
             }
         }
     }
@@ -292,37 +356,15 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         writeLayer(layer);
     }
 
-    /** Writes all the given feature list associated blocks. */
-    private void writeEntityBlocks(List featureList) throws IOException {
-        for (Object coll : featureList) writeFeatureBlocks((FeatureCollection) coll);
-    }
-
-    /** Writes all the given feature collection associated blocks. */
-    private void writeFeatureBlocks(FeatureCollection coll) throws IOException {
-        LOGGER.warning("Rel14DXFWriter.writeFeatureBlocks");
-        String layer = getLayerName(coll);
-
-        FeatureIterator<SimpleFeature> iter = coll.features();
-        try {
-            while (iter.hasNext()) {
-                SimpleFeature f = iter.next();
-                String fid = f.getID();
-
-                // consider only items cached to be treated as
-                // blocks (by the previous block_record analysis)
-                if (blockNames.containsKey(fid)) {
-                    String ownerHandle = blockHandles.get(fid);
-                    String name = blockNames.get(fid);
-                    String startHandle = getNewHandle("Block");
-                    String endHandle = getNewHandle("Block");
-                    writeStartBlock(startHandle, ownerHandle, false, "0", name);
-                    writeGeometry(layer, ownerHandle, (Geometry) f.getDefaultGeometry());
-                    writeEndBlock(endHandle, ownerHandle, false, "0", name);
-                }
-            }
-        } finally {
-            iter.close();
-        }
+    /** Writes the block associated to the given feature. */
+    private void writeFeatureBlock(String layer, String fid, Geometry geom) throws IOException {
+        String ownerHandle = blockHandles.get(fid);
+        String name = blockNames.get(fid);
+        String startHandle = getNewHandle("Block");
+        String endHandle = getNewHandle("Block");
+        writeStartBlock(startHandle, ownerHandle, false, "0", name);
+        writeGeometry(layer, ownerHandle, geom);
+        writeEndBlock(endHandle, ownerHandle, false, "0", name);
     }
 
     /** Writes all the given attribute definition blocks to be used for later INSERT entities */
@@ -478,27 +520,18 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         writeSubClass("AcDbSymbolTable");
         // 2 fixed blocks (paper space and model space)
         // N dynamic blocks for complex geometries
-        writeSize(2 + countBlocks(featureList));
+        writeSize(2 + blockNames.size());
         // writes the 2 fixed block references
         writeModelSpaceBlockRecord();
         writePaperSpaceBlockRecord();
-        // write each dynamic block reference, saving handles
-        // for further reference (they will be assigned as owner
+        // write each dynamic block reference, using the handles
+        // assigned while reading the features (they are the owner
         // handles for the real blocks)
-        if (blockNames != null) {
-            for (String fid : blockNames.keySet())
-                blockHandles.put(fid, writeBlockRecord(blockNames.get(fid)));
-        }
+        for (String fid : blockNames.keySet())
+            writeBlockRecord(blockHandles.get(fid), "1", blockNames.get(fid));
         writeTableEnd();
     }
 
-    /** Writes a block reference, given the desired name. The handle is dinamically created. */
-    private String writeBlockRecord(String blockName) throws IOException {
-        String handle = getNewHandle("BlockRecord");
-        writeBlockRecord(handle, "1", blockName);
-        return handle;
-    }
-
     /** Writes the model space fixed block reference. */
     private void writeModelSpaceBlockRecord() throws IOException {
         writeBlockRecord("1F", "1", "*MODEL_SPACE");
@@ -520,45 +553,6 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         writeName(name);
     }
 
-    /** Builds a block list for the given feature list. */
-    private int countBlocks(List featureList) {
-        if (blockNames == null) {
-            // initializes block cache
-            // for names and handles
-            blockNames = new HashMap<String, String>();
-            blockHandles = new HashMap<String, String>();
-            // cycle through feature to accumulate
-            // blocks
-            for (Object coll : featureList) addBlocks((FeatureCollection) coll);
-        }
-        return blockNames.size();
-    }
-
-    /** Add blocks for the given collection. */
-    private void addBlocks(FeatureCollection coll) {
-        FeatureIterator<SimpleFeature> iter = coll.features();
-        try {
-            while (iter.hasNext()) {
-                SimpleFeature f = iter.next();
-                Geometry geom = (Geometry) f.getDefaultGeometry();
-                // if the geometry is complex, it will be
-                // exported as a block; we use fid to cache
-                // this for further using (blocks and entities
-                // sections)
-                if (geometryAsBlock || isBlockGeometry(geom)) {
-                    LOGGER.warning("    added");
-                    blockNames.put(f.getID(), (blockCounter++) + "");
-                }
-            }
-        } finally {
-            iter.close();
-        }
-        if (writeAttributes) {
-            // add attribute definition blocks
-            blockNames.put(coll.hashCode() + "", (blockCounter++) + "");
-        }
-    }
-
     /** Checks if a geometry is complex and should be exported as a block. */
     private boolean isBlockGeometry(Geometry geom) {
         if (geom != null) {
@@ -866,7 +860,7 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         writePoint(10, 0.0, 0.0, Double.NaN);
         // upper right point
         writePoint(11, 1.0, 1.0, Double.NaN);
-        ReferencedEnvelope env = getEnvelope(featureList);
+        ReferencedEnvelope env = getEnvelope();
         // center point
         writePoint(12, env.getMedian(0), env.getMedian(1), Double.NaN);
         // snap point
@@ -927,7 +921,7 @@ public class Rel14DXFWriter extends AbstractDXFWriter {
         writeVariable("INSBASE");
         writePoint(0.0, 0.0, 0.0);
         // extracts global envelope
-        ReferencedEnvelope e = getEnvelope(featureList);
+        ReferencedEnvelope e = getEnvelope();
         // drawing extension
         if (e != null) {
             writeVariable("EXTMIN");
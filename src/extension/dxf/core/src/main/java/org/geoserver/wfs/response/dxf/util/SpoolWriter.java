@@ -0,0 +1,127 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.response.dxf.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer keeping the text written to it in memory, and moving it to a temporary file once it grows
+ * past a threshold. Used to write the sections of a DXF file in a different order than the one
+ * they are computed in. Once done writing, the contents are copied to the final destination with
+ * {@link #writeTo(Writer)}, closing the writer removes the temporary file.
+ */
+public class SpoolWriter extends Writer {
+
+    /** Number of characters kept in memory before moving the contents to a file */
+    public static final int THRESHOLD =
+            Integer.getInteger("GS_DXF_SPOOL_THRESHOLD", 4 * 1024 * 1024);
+
+    final int threshold;
+
+    StringBuilder buffer = new StringBuilder();
+
+    File file;
+
+    Writer fileWriter;
+
+    public SpoolWriter() {
+        this(THRESHOLD);
+    }
+
+    public SpoolWriter(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (fileWriter == null && buffer.length() + len > threshold) {
+            spill();
+        }
+        if (fileWriter != null) {
+            fileWriter.write(cbuf, off, len);
+        } else {
+            buffer.append(cbuf, off, len);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (fileWriter == null && buffer.length() + len > threshold) {
+            spill();
+        }
+        if (fileWriter != null) {
+            fileWriter.write(str, off, len);
+        } else {
+            buffer.append(str, off, off + len);
+        }
+    }
+
+    /** Moves the contents written so far to a temporary file */
+    private void spill() throws IOException {
+        file = File.createTempFile("dxf", ".spool");
+        fileWriter =
+                new BufferedWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(file), StandardCharsets.UTF_8));
+        fileWriter.append(buffer);
+        buffer = null;
+    }
+
+    /** Returns true if the contents have been moved to a temporary file */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /** Copies the contents written so far to the given writer */
+    public void writeTo(Writer out) throws IOException {
+        char[] chars = new char[8192];
+        if (fileWriter == null) {
+            for (int start = 0; start < buffer.length(); start += chars.length) {
+                int end = Math.min(buffer.length(), start + chars.length);
+                buffer.getChars(start, end, chars, 0);
+                out.write(chars, 0, end - start);
+            }
+        } else {
+            fileWriter.flush();
+            try (Reader reader =
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                int read;
+                while ((read = reader.read(chars)) != -1) {
+                    out.write(chars, 0, read);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileWriter != null) {
+            fileWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        try {
+            if (fileWriter != null) {
+                fileWriter.close();
+            }
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.response.dxf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class Rel14DXFWriterTest {
+
+    /** Counts the reads and the bounds queries */
+    static class CountingCollection extends DecoratingSimpleFeatureCollection {
+
+        int reads;
+
+        int boundsQueries;
+
+        CountingCollection(SimpleFeatureCollection delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            reads++;
+            return super.features();
+        }
+
+        @Override
+        public ReferencedEnvelope getBounds() {
+            boundsQueries++;
+            return super.getBounds();
+        }
+    }
+
+    private CountingCollection collection(String name, String... wkts) throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName(name);
+        tb.add("the_geom", Geometry.class);
+        tb.add("label", String.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        ListFeatureCollection features = new ListFeatureCollection(type);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        for (int i = 0; i < wkts.length; i++) {
+            fb.add(new WKTReader().read(wkts[i]));
+            fb.add("f" + i);
+            features.add(fb.buildFeature(name + "." + i));
+        }
+        return new CountingCollection(features);
+    }
+
+    private List<CountingCollection> collections() throws Exception {
+        return Arrays.asList(
+                collection("lines", "LINESTRING (0 0, 10 5)", "LINESTRING (2 2, 4 -3)"),
+                collection(
+                        "polygons",
+                        "POLYGON ((20 20, 30 20, 30 30, 20 30, 20 20))",
+                        "POLYGON ((40 0, 50 0, 50 10, 40 10, 40 0), (42 2, 44 2, 44 4, 42 2))"));
+    }
+
+    /** Writes the collections, returning the DXF groups as code/value pairs */
+    private List<String[]> write(List<CountingCollection> collections, String option)
+            throws Exception {
+        StringWriter sw = new StringWriter();
+        DXFWriter writer = DXFWriterFinder.getWriter(null, sw);
+        if (option != null) {
+            writer.setOption(option, true);
+        }
+        writer.write(collections, "14");
+        for (CountingCollection collection : collections) {
+            assertEquals(1, collection.reads);
+            assertEquals(0, collection.boundsQueries);
+        }
+
+        String[] lines = sw.toString().split("\n");
+        List<String[]> groups = new ArrayList<>();
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            groups.add(new String[] {lines[i].trim(), lines[i + 1].trim()});
+        }
+        return groups;
+    }
+
+    /** Returns the groups of the named section */
+    private List<String[]> section(List<String[]> groups, String name) {
+        for (int i = 0; i < groups.size() - 1; i++) {
+            if (is(groups.get(i), "0", "SECTION") && is(groups.get(i + 1), "2", name)) {
+                int end = i;
+                while (!is(groups.get(end), "0", "ENDSEC")) {
+                    end++;
+                }
+                return groups.subList(i + 2, end);
+            }
+        }
+        throw new AssertionError("Section " + name + " not found");
+    }
+
+    private boolean is(String[] group, String code, String value) {
+        return group[0].equals(code) && group[1].equals(value);
+    }
+
+    /** Returns the value of the first group with the given code following the given position */
+    private String next(List<String[]> groups, int from, String code) {
+        for (int i = from + 1; i < groups.size(); i++) {
+            if (groups.get(i)[0].equals(code)) {
+                return groups.get(i)[1];
+            }
+        }
+        throw new AssertionError("Group " + code + " not found after " + from);
+    }
+
+    private List<Integer> find(List<String[]> groups, String code, String value) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            if (is(groups.get(i), code, value)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /** Checks the blocks are all registered, and the handles unique */
+    private void checkConsistency(List<String[]> groups, int expectedBlocks) {
+        List<String[]> tables = section(groups, "TABLES");
+        Set<String> records = new HashSet<>();
+        for (int i : find(tables, "0", "BLOCK_RECORD")) {
+            records.add(next(tables, i, "5"));
+        }
+        List<String[]> blocks = section(groups, "BLOCKS");
+        List<Integer> blockStarts = find(blocks, "0", "BLOCK");
+        assertEquals(expectedBlocks, blockStarts.size());
+        assertEquals(expectedBlocks, records.size());
+        for (int i : blockStarts) {
+            assertTrue(records.contains(next(blocks, i, "330")));
+        }
+
+        List<String> handles = new ArrayList<>();
+        for (List<String[]> section : Arrays.asList(blocks, section(groups, "ENTITIES"))) {
+            for (String[] group : section) {
+                if (group[0].equals("5")) {
+                    handles.add(group[1]);
+                }
+            }
+        }
+        assertEquals(handles.size(), new HashSet<>(handles).size());
+    }
+
+    @Test
+    public void testReadOnce() throws Exception {
+        List<String[]> groups = write(collections(), null);
+
+        // the extent is computed from the features read
+        List<String[]> header = section(groups, "HEADER");
+        int min = find(header, "9", "$EXTMIN").get(0);
+        assertEquals(0, Double.parseDouble(next(header, min, "10")), 0d);
+        assertEquals(-3, Double.parseDouble(next(header, min, "20")), 0d);
+        int max = find(header, "9", "$EXTMAX").get(0);
+        assertEquals(50, Double.parseDouble(next(header, max, "10")), 0d);
+        assertEquals(30, Double.parseDouble(next(header, max, "20")), 0d);
+
+        // model space, paper space, and the polygon with a hole
+        checkConsistency(groups, 3);
+        assertEquals(1, find(section(groups, "ENTITIES"), "0", "INSERT").size());
+    }
+
+    @Test
+    public void testGeometryAsBlock() throws Exception {
+        List<String[]> groups = write(collections(), "geometryasblock");
+        checkConsistency(groups, 6);
+    }
+
+    @Test
+    public void testWriteAttributes() throws Exception {
+        List<String[]> groups = write(collections(), "writeattributes");
+        // one attribute definition block per collection
+        checkConsistency(groups, 5);
+        // the label of the features not exported as blocks
+        assertEquals(3, find(section(groups, "ENTITIES"), "0", "ATTRIB").size());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        List<String[]> groups = write(Arrays.asList(collection("empty")), null);
+        // default viewport, without querying the bounds
+        List<String[]> header = section(groups, "HEADER");
+        int max = find(header, "9", "$EXTMAX").get(0);
+        assertEquals(1, Double.parseDouble(next(header, max, "10")), 0d);
+        assertEquals(1, Double.parseDouble(next(header, max, "20")), 0d);
+        checkConsistency(groups, 2);
+    }
+}
@@ -0,0 +1,44 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.response.dxf.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import junit.framework.TestCase;
+
+public class SpoolWriterTest extends TestCase {
+
+    private String write(SpoolWriter spool, int lines) throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            String line = "  0\nLWPOLYLINE " + i + " \u00e8\n";
+            spool.write(line);
+            expected.append(line);
+        }
+        return expected.toString();
+    }
+
+    /** Small contents stay in memory */
+    public void testMemory() throws IOException {
+        try (SpoolWriter spool = new SpoolWriter(1024 * 1024)) {
+            String expected = write(spool, 1000);
+            assertFalse(spool.isSpilled());
+            StringWriter out = new StringWriter();
+            spool.writeTo(out);
+            assertEquals(expected, out.toString());
+        }
+    }
+
+    /** Contents over the threshold are moved to a file, and read back unchanged */
+    public void testSpill() throws IOException {
+        try (SpoolWriter spool = new SpoolWriter(1000)) {
+            String expected = write(spool, 1000);
+            assertTrue(spool.isSpilled());
+            StringWriter out = new StringWriter();
+            spool.writeTo(out);
+            assertEquals(expected, out.toString());
+        }
+    }
+}
@@ -8,8 +8,12 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,6 +40,7 @@ import org.geoserver.geofence.core.model.enums.GrantType;
 import org.geoserver.geofence.services.RuleReaderService;
 import org.geoserver.geofence.services.dto.AccessInfo;
 import org.geoserver.geofence.services.dto.RuleFilter;
+import org.geoserver.geofence.services.dto.ShortRule;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.DispatcherCallback;
 import org.geoserver.ows.LocalWorkspace;
@@ -303,6 +308,39 @@ public class GeofenceAccessManager
             }
         }
 
+        // get the resource info
+        String layer = resource.getName();
+        StoreInfo store = resource.getStore();
+        WorkspaceInfo ws = store.getWorkspace();
+        String workspace = ws.getName();
+
+        // get the request infos
+        RuleFilter ruleFilter = buildRuleFilter(user);
+        ruleFilter.setWorkspace(workspace);
+        ruleFilter.setLayer(layer);
+
+        LOGGER.log(Level.FINE, "ResourceInfo filter: {0}", ruleFilter);
+
+        AccessInfo rule = rules.getAccessInfo(ruleFilter);
+
+        if (rule == null) {
+            rule = AccessInfo.DENY_ALL;
+        }
+
+        DataAccessLimits limits = buildAccessLimits(resource, rule);
+        LOGGER.log(
+                Level.FINE,
+                "Returning {0} for layer {1} and user {2}",
+                new Object[] {limits, resource.prefixedName(), username});
+
+        return limits;
+    }
+
+    /**
+     * Builds a rule filter for the given user and the current request, leaving workspace and layer
+     * to {@link RuleFilter.SpecialFilterType#ANY}
+     */
+    private RuleFilter buildRuleFilter(Authentication user) {
         // get info from the current request
         String service = null;
         String request = null;
@@ -312,13 +350,6 @@ public class GeofenceAccessManager
             request = owsRequest.getRequest();
         }
 
-        // get the resource info
-        String layer = resource.getName();
-        StoreInfo store = resource.getStore();
-        WorkspaceInfo ws = store.getWorkspace();
-        String workspace = ws.getName();
-
-        // get the request infos
         RuleFilter ruleFilter = new RuleFilter(RuleFilter.SpecialFilterType.ANY);
         setRuleFilterUserOrRole(user, ruleFilter);
 
@@ -342,8 +373,6 @@ public class GeofenceAccessManager
         } else {
             ruleFilter.setRequest(RuleFilter.SpecialFilterType.DEFAULT);
         }
-        ruleFilter.setWorkspace(workspace);
-        ruleFilter.setLayer(layer);
 
         String sourceAddress = retrieveCallerIpAddress();
         if (sourceAddress != null) {
@@ -353,21 +382,7 @@ public class GeofenceAccessManager
             ruleFilter.setSourceAddress(RuleFilter.SpecialFilterType.DEFAULT);
         }
 
-        LOGGER.log(Level.FINE, "ResourceInfo filter: {0}", ruleFilter);
-
-        AccessInfo rule = rules.getAccessInfo(ruleFilter);
-
-        if (rule == null) {
-            rule = AccessInfo.DENY_ALL;
-        }
-
-        DataAccessLimits limits = buildAccessLimits(resource, rule);
-        LOGGER.log(
-                Level.FINE,
-                "Returning {0} for layer {1} and user {2}",
-                new Object[] {limits, resource.prefixedName(), username});
-
-        return limits;
+        return ruleFilter;
     }
 
     /** @param user */
@@ -778,7 +793,187 @@ public class GeofenceAccessManager
 
     @Override
     public Filter getSecurityFilter(Authentication user, Class<? extends CatalogInfo> clazz) {
-        return Predicates.acceptAll();
+        // workspaces are always readable, layer groups and styles are not limited
+        if (!(PublishedInfo.class.isAssignableFrom(clazz)
+                        || ResourceInfo.class.isAssignableFrom(clazz))
+                || LayerGroupInfo.class.isAssignableFrom(clazz)) {
+            return Predicates.acceptAll();
+        }
+        if ((user != null) && !(user instanceof AnonymousAuthenticationToken) && isAdmin(user)) {
+            return Predicates.acceptAll();
+        }
+
+        try {
+            // bulk fetch of the rules applying to the user and current request, on any layer
+            RuleFilter ruleFilter = buildSecurityRuleFilter(user);
+            List<ShortRule> matchingRules = rules.getMatchingRules(ruleFilter);
+            if (matchingRules == null) {
+                return Predicates.acceptAll();
+            }
+
+            Filter filter = buildSecurityFilter(matchingRules, clazz);
+            if (PublishedInfo.class.isAssignableFrom(clazz) && filter != Filter.INCLUDE) {
+                filter = Predicates.or(Predicates.isInstanceOf(LayerGroupInfo.class), filter);
+            }
+            LOGGER.log(Level.FINE, "Security filter for {0}: {1}", new Object[] {clazz, filter});
+            return filter;
+        } catch (Exception e) {
+            // the catalog will check access on each object instead
+            LOGGER.log(Level.WARNING, "Could not build the GeoFence catalog security filter", e);
+            return Predicates.acceptAll();
+        }
+    }
+
+    /**
+     * Builds the filter matching the rules that apply to the user and current request on any
+     * workspace and layer, including the catch-all and default rules, the ones not bound to a
+     * user, role, instance, address, service or request
+     */
+    RuleFilter buildSecurityRuleFilter(Authentication user) {
+        RuleFilter ruleFilter = buildRuleFilter(user);
+        ruleFilter.setWorkspace(RuleFilter.SpecialFilterType.ANY);
+        ruleFilter.setLayer(RuleFilter.SpecialFilterType.ANY);
+        ruleFilter.getUser().setIncludeDefault(true);
+        ruleFilter.getRole().setIncludeDefault(true);
+        ruleFilter.getInstance().setIncludeDefault(true);
+        ruleFilter.getSourceAddress().setIncludeDefault(true);
+        ruleFilter.getService().setIncludeDefault(true);
+        ruleFilter.getRequest().setIncludeDefault(true);
+        return ruleFilter;
+    }
+
+    /**
+     * Turns the rules matching a user into a catalog filter. Rules are grouped by role, as the
+     * access of users having several roles is the union of the access granted to each role. The
+     * filter can be broader than the actual access, the catalog still checks the access limits of
+     * each object it returns, but must never exclude an object the user can access.
+     */
+    Filter buildSecurityFilter(List<ShortRule> matchingRules, Class<? extends CatalogInfo> clazz) {
+        List<ShortRule> sorted = new ArrayList<>(matchingRules);
+        sorted.sort(Comparator.comparingLong(ShortRule::getPriority));
+
+        Set<String> roles = new LinkedHashSet<>();
+        for (ShortRule rule : sorted) {
+            if (rule.getRoleName() != null) {
+                roles.add(rule.getRoleName());
+            }
+        }
+        if (roles.isEmpty()) {
+            return new RuleSetFilter(sorted).toFilter(clazz);
+        }
+
+        List<Filter> roleFilters = new ArrayList<>();
+        for (String role : roles) {
+            List<ShortRule> roleRules = new ArrayList<>();
+            for (ShortRule rule : sorted) {
+                if (rule.getRoleName() == null || role.equals(rule.getRoleName())) {
+                    roleRules.add(rule);
+                }
+            }
+            Filter roleFilter = new RuleSetFilter(roleRules).toFilter(clazz);
+            if (roleFilter == Filter.INCLUDE) {
+                return Filter.INCLUDE;
+            }
+            roleFilters.add(roleFilter);
+        }
+        return Predicates.or(roleFilters);
+    }
+
+    /**
+     * Resolves the workspace and layer decisions of a list of rules sorted by priority, the first
+     * rule matching a layer wins
+     */
+    static class RuleSetFilter {
+
+        /** Decision for the layers not matched by any specific rule */
+        boolean defaultAllow;
+
+        /** Layers decided by a workspace and layer rule, by prefixed name */
+        Map<String, Boolean> layers = new LinkedHashMap<>();
+
+        /** Workspaces decided by a workspace wide rule */
+        Map<String, Boolean> workspaces = new LinkedHashMap<>();
+
+        /** Set when rules cannot be turned into a filter */
+        boolean unsupported;
+
+        RuleSetFilter(List<ShortRule> sortedRules) {
+            for (ShortRule rule : sortedRules) {
+                if (rule.getAccess() == GrantType.LIMIT) {
+                    // limits restrict the data, not the visibility of the layer
+                    continue;
+                }
+                boolean allow = rule.getAccess() == GrantType.ALLOW;
+                String ws = rule.getWorkspace();
+                String layer = rule.getLayer();
+                if (ws == null && layer == null) {
+                    // catch all, the following rules will never be reached
+                    defaultAllow = allow;
+                    return;
+                } else if (ws == null) {
+                    // layer name in any workspace, not worth a filter
+                    unsupported = true;
+                    return;
+                } else if (layer == null) {
+                    workspaces.putIfAbsent(ws, allow);
+                } else if (!workspaces.containsKey(ws)) {
+                    layers.putIfAbsent(ws + ":" + layer, allow);
+                }
+            }
+            // no catch all rule, GeoFence denies access
+            defaultAllow = false;
+        }
+
+        Filter toFilter(Class<? extends CatalogInfo> clazz) {
+            if (unsupported) {
+                return Filter.INCLUDE;
+            }
+            String wsNameProperty;
+            if (PublishedInfo.class.isAssignableFrom(clazz)) {
+                wsNameProperty = "resource.store.workspace.name";
+            } else {
+                wsNameProperty = "store.workspace.name";
+            }
+
+            List<Filter> allowedLayers = new ArrayList<>();
+            List<Filter> deniedLayers = new ArrayList<>();
+            for (Map.Entry<String, Boolean> entry : layers.entrySet()) {
+                Filter layerFilter = Predicates.equal("prefixedName", entry.getKey());
+                if (entry.getValue()) {
+                    allowedLayers.add(layerFilter);
+                } else {
+                    deniedLayers.add(layerFilter);
+                }
+            }
+            List<Filter> workspaceExceptions = new ArrayList<>();
+            for (Map.Entry<String, Boolean> entry : workspaces.entrySet()) {
+                if (entry.getValue() != defaultAllow) {
+                    workspaceExceptions.add(Predicates.equal(wsNameProperty, entry.getKey()));
+                }
+            }
+
+            // layers not decided by a layer rule follow their workspace, or the default
+            Filter wsFilter;
+            if (workspaceExceptions.isEmpty()) {
+                wsFilter = defaultAllow ? Filter.INCLUDE : Filter.EXCLUDE;
+            } else if (defaultAllow) {
+                wsFilter = Predicates.not(Predicates.or(workspaceExceptions));
+            } else {
+                wsFilter = Predicates.or(workspaceExceptions);
+            }
+            Filter filter = wsFilter;
+            if (!allowedLayers.isEmpty() && wsFilter != Filter.INCLUDE) {
+                if (wsFilter != Filter.EXCLUDE) {
+                    allowedLayers.add(wsFilter);
+                }
+                filter = Predicates.or(allowedLayers);
+            }
+            if (!deniedLayers.isEmpty() && filter != Filter.EXCLUDE) {
+                Filter notDenied = Predicates.not(Predicates.or(deniedLayers));
+                filter = filter == Filter.INCLUDE ? notDenied : Predicates.and(notDenied, filter);
+            }
+            return filter;
+        }
     }
 
     @Override
@@ -46,6 +46,8 @@ public class CachedRuleReader implements RuleReaderService {
 
     private LoadingCache<RuleFilter, AccessInfo> authCache;
 
+    private LoadingCache<RuleFilter, List<ShortRule>> matchingRulesCache;
+
     private final GeoFenceConfigurationManager configurationManager;
 
     /** Latest configuration used */
@@ -71,6 +73,7 @@ public class CachedRuleReader implements RuleReaderService {
         ruleCache = getCacheBuilder().build(new RuleLoader());
         userCache = getCacheBuilder().build(new UserLoader());
         authCache = getCacheBuilder().build(new AuthLoader());
+        matchingRulesCache = getCacheBuilder().build(new MatchingRulesLoader());
     }
 
     protected CacheBuilder getCacheBuilder() {
@@ -155,6 +158,31 @@ public class CachedRuleReader implements RuleReaderService {
         }
     }
 
+    private class MatchingRulesLoader extends CacheLoader<RuleFilter, List<ShortRule>> {
+
+        @Override
+        public List<ShortRule> load(RuleFilter filter) throws Exception {
+            if (LOGGER.isLoggable(Level.FINE)) LOGGER.log(Level.FINE, "Loading rules {0}", filter);
+            // the service, when integrated, may modify the filter
+            RuleFilter clone = filter.clone();
+            return realRuleReaderService.getMatchingRules(clone);
+        }
+
+        @Override
+        public ListenableFuture<List<ShortRule>> reload(
+                final RuleFilter filter, List<ShortRule> rules) throws Exception {
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.log(Level.FINE, "Reloading rules {0}", filter);
+
+            // the service, when integrated, may modify the filter
+            RuleFilter clone = filter.clone();
+
+            // this is a sync implementation
+            List<ShortRule> ret = realRuleReaderService.getMatchingRules(clone);
+            return Futures.immediateFuture(ret);
+        }
+    }
+
     private class UserLoader extends CacheLoader<NamePw, AuthUser> {
 
         @Override
@@ -187,6 +215,7 @@ public class CachedRuleReader implements RuleReaderService {
         ruleCache.invalidateAll();
         userCache.invalidateAll();
         authCache.invalidateAll();
+        matchingRulesCache.invalidateAll();
     }
 
     /**
@@ -283,7 +312,15 @@ public class CachedRuleReader implements RuleReaderService {
 
     @Override
     public List<ShortRule> getMatchingRules(RuleFilter filter) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Matching rules request for {0}", filter);
+        }
+
+        try {
+            return matchingRulesCache.get(filter);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex); // fixme: handle me
+        }
     }
 
     @Override
@@ -332,6 +369,14 @@ public class CachedRuleReader implements RuleReaderService {
         return userCache.size();
     }
 
+    public CacheStats getMatchingRulesStats() {
+        return matchingRulesCache.stats();
+    }
+
+    public long getMatchingRulesCacheSize() {
+        return matchingRulesCache.size();
+    }
+
     /** May be useful if an external peer doesn't want to use the guava dep. */
     public String getStatsString() {
         return ruleCache.stats().toString();
@@ -0,0 +1,650 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.geofence.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.geofence.config.GeoFenceConfigurationManager;
+import org.geoserver.geofence.core.model.enums.GrantType;
+import org.geoserver.geofence.services.RuleReaderService;
+import org.geoserver.geofence.services.dto.AccessInfo;
+import org.geoserver.geofence.services.dto.AuthUser;
+import org.geoserver.geofence.services.dto.RuleFilter;
+import org.geoserver.geofence.services.dto.RuleFilter.FilterType;
+import org.geoserver.geofence.services.dto.RuleFilter.SpecialFilterType;
+import org.geoserver.geofence.services.dto.RuleFilter.TextFilter;
+import org.geoserver.geofence.services.dto.ShortRule;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A delegating {@link RuleReaderService} evaluating the rules locally.
+ *
+ * <p>The rules applying to a user (or role) and instance are fetched once from the real service,
+ * and compiled in an index bucketed by workspace, layer and service, each bucket holding the rules
+ * in priority order with pre-parsed address ranges. Requests are then matched locally, a deny
+ * decision is answered without contacting the real service, while the details of an allow
+ * decision are fetched once for each combination of matching rules and shared among all the
+ * requests resolving to it, regardless of the source address, service, request and layer.
+ *
+ * <p>The whole rule set is polled every {@link CacheConfiguration#getRefreshMilliSec()}
+ * milliseconds, the compiled rules are thrown away only when the rule set changed. The details of
+ * allow decisions (filters, attributes, areas) are not part of the rule set and expire after
+ * {@link CacheConfiguration#getExpireMilliSec()} milliseconds. The rule set is read a first time
+ * before any rule gets compiled, so that no change happening after a compile can be missed. As
+ * the compiled rules cannot be kept up to date without polling, a refresh period that is not
+ * positive disables the compilation, every request is then forwarded to the real service.
+ *
+ * <p>To use it, set the {@code ruleReaderFrontend} property to {@code compiledRuleReader}.
+ */
+public class CompiledRuleReader implements RuleReaderService {
+
+    static final Logger LOGGER = Logging.getLogger(CompiledRuleReader.class);
+
+    private RuleReaderService realRuleReaderService;
+
+    private final GeoFenceConfigurationManager configurationManager;
+
+    /** Latest configuration used */
+    private CacheConfiguration cacheConfiguration = new CacheConfiguration();
+
+    /** Compiled rules, by user, role and instance */
+    private Cache<RuleFilter, CompiledRules> compiledCache;
+
+    /** Details of allow decisions, by combination of matching rules */
+    private Cache<AccessKey, AccessInfo> accessCache;
+
+    private Cache<RuleFilter, AccessInfo> authCache;
+
+    /** Incremented every time the rule set changes */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Fingerprint of the rule set last read */
+    private volatile Long fingerprint;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean syncStarted;
+
+    public CompiledRuleReader(GeoFenceConfigurationManager configurationManager) {
+        this.configurationManager = configurationManager;
+    }
+
+    /** (Re)Init the reader, pulling the configuration from the configurationManager. */
+    public final synchronized void init() {
+        cacheConfiguration = configurationManager.getCacheConfiguration();
+
+        compiledCache =
+                CacheBuilder.newBuilder()
+                        .maximumSize(cacheConfiguration.getSize())
+                        .recordStats()
+                        .build();
+        accessCache = getExpiringCacheBuilder().build();
+        authCache = getExpiringCacheBuilder().build();
+        if (!isCompiling()) {
+            LOGGER.log(
+                    Level.WARNING,
+                    "The GeoFence rules refresh period is not positive, the rules cannot be "
+                            + "compiled and every request will be forwarded to the rule service");
+        }
+
+        destroy();
+    }
+
+    /** Rules are compiled only if they can be kept up to date polling the rule set */
+    private boolean isCompiling() {
+        return cacheConfiguration.getRefreshMilliSec() > 0;
+    }
+
+    /**
+     * Starts polling the rule set, if not done already. The first read happens before returning,
+     * the compiles following it will thus be checked against a fingerprint taken before them
+     */
+    private void startSync() {
+        if (!syncStarted) {
+            synchronized (this) {
+                if (!syncStarted) {
+                    sync();
+                    long period = cacheConfiguration.getRefreshMilliSec();
+                    scheduler =
+                            Executors.newSingleThreadScheduledExecutor(
+                                    r -> {
+                                        Thread t = new Thread(r, "GeoFenceRuleSync");
+                                        t.setDaemon(true);
+                                        return t;
+                                    });
+                    scheduler.scheduleWithFixedDelay(
+                            this::sync, period, period, TimeUnit.MILLISECONDS);
+                    syncStarted = true;
+                }
+            }
+        }
+    }
+
+    /** Stops the rule set polling */
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        syncStarted = false;
+    }
+
+    private CacheBuilder<Object, Object> getExpiringCacheBuilder() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(cacheConfiguration.getSize())
+                .expireAfterWrite(cacheConfiguration.getExpireMilliSec(), TimeUnit.MILLISECONDS)
+                .recordStats();
+    }
+
+    /** Reads the whole rule set, and drops the compiled rules if it changed since the last read */
+    public void sync() {
+        try {
+            RuleFilter all = new RuleFilter(SpecialFilterType.ANY, true);
+            long current = fingerprint(realRuleReaderService.getMatchingRules(all));
+            if (fingerprint == null || fingerprint != current) {
+                if (fingerprint != null) {
+                    LOGGER.log(Level.FINE, "GeoFence rules changed, recompiling");
+                    invalidateAll();
+                }
+                fingerprint = current;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to read the GeoFence rule set", e);
+        }
+    }
+
+    static long fingerprint(List<ShortRule> rules) {
+        long result = 1;
+        for (ShortRule rule : rules) {
+            result =
+                    31 * result
+                            + Objects.hash(
+                                    rule.getId(),
+                                    rule.getPriority(),
+                                    rule.getUserName(),
+                                    rule.getRoleName(),
+                                    rule.getAddressRange(),
+                                    rule.getService(),
+                                    rule.getRequest(),
+                                    rule.getWorkspace(),
+                                    rule.getLayer(),
+                                    rule.getAccess());
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        compiledCache.invalidateAll();
+        accessCache.invalidateAll();
+        authCache.invalidateAll();
+    }
+
+    // --------------------------------------------------------------------------
+    public void setRealRuleReaderService(RuleReaderService realRuleReaderService) {
+        this.realRuleReaderService = realRuleReaderService;
+    }
+
+    public CacheConfiguration getCacheInitParams() {
+        return cacheConfiguration;
+    }
+
+    /** Returns the number of times the rule set changed since startup */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public CacheStats getCompiledStats() {
+        return compiledCache.stats();
+    }
+
+    public CacheStats getAccessStats() {
+        return accessCache.stats();
+    }
+
+    /**
+     * <B>Deprecated method are not compiled.</B>
+     *
+     * @deprecated Use {@link #getAccessInfo(RuleFilter filter) }
+     */
+    @Override
+    public AccessInfo getAccessInfo(
+            String userName,
+            String profileName,
+            String instanceName,
+            String sourceAddress,
+            String service,
+            String request,
+            String workspace,
+            String layer) {
+        return realRuleReaderService.getAccessInfo(
+                userName,
+                profileName,
+                instanceName,
+                sourceAddress,
+                service,
+                request,
+                workspace,
+                layer);
+    }
+
+    @Override
+    public AccessInfo getAccessInfo(RuleFilter filter) {
+        if (LOGGER.isLoggable(Level.FINE)) LOGGER.log(Level.FINE, "Request for {0}", filter);
+
+        if (!isCompiling()) {
+            return realRuleReaderService.getAccessInfo(filter);
+        }
+        startSync();
+        Query query = Query.build(filter);
+        if (query == null) {
+            LOGGER.log(Level.FINE, "Filter cannot be evaluated locally {0}", filter);
+            return realRuleReaderService.getAccessInfo(filter);
+        }
+
+        try {
+            long current = version.get();
+            RuleFilter principal = getPrincipalFilter(filter);
+            CompiledRules rules = compiledCache.get(principal, () -> compile(principal, current));
+            if (rules.version != current) {
+                compiledCache.invalidate(principal);
+                rules = compiledCache.get(principal, () -> compile(principal, current));
+            }
+
+            if (rules.groups == null) {
+                return realRuleReaderService.getAccessInfo(filter);
+            }
+
+            List<Long> decision = new ArrayList<>();
+            if (!rules.evaluate(query, decision)) {
+                return AccessInfo.DENY_ALL;
+            }
+            AccessKey key = new AccessKey(principal, query.workspace, decision, current);
+            // the service, when integrated, may modify the filter
+            RuleFilter clone = filter.clone();
+            return accessCache.get(key, () -> realRuleReaderService.getAccessInfo(clone));
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Returns a filter matching all the rules applying to the user, role and instance of the given
+     * filter
+     */
+    static RuleFilter getPrincipalFilter(RuleFilter filter) {
+        RuleFilter principal = filter.clone();
+        principal.setSourceAddress(SpecialFilterType.ANY);
+        principal.setService(SpecialFilterType.ANY);
+        principal.setRequest(SpecialFilterType.ANY);
+        principal.setWorkspace(SpecialFilterType.ANY);
+        principal.setLayer(SpecialFilterType.ANY);
+        // rules not bound to a user, role or instance apply too
+        principal.getUser().setIncludeDefault(true);
+        principal.getRole().setIncludeDefault(true);
+        principal.getInstance().setIncludeDefault(true);
+        return principal;
+    }
+
+    private CompiledRules compile(RuleFilter principal, long version) {
+        if (LOGGER.isLoggable(Level.FINE)) LOGGER.log(Level.FINE, "Compiling {0}", principal);
+        List<ShortRule> rules = realRuleReaderService.getMatchingRules(principal.clone());
+        return new CompiledRules(rules, version);
+    }
+
+    @Override
+    public AccessInfo getAdminAuthorization(RuleFilter filter) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "AdminAuth Request for {0}", filter);
+        }
+
+        try {
+            RuleFilter clone = filter.clone();
+            return authCache.get(clone, () -> realRuleReaderService.getAdminAuthorization(clone));
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * <B>Deprecated method are not compiled.</B>
+     *
+     * @deprecated Use {@link #getMatchingRules(RuleFilter filter) }
+     */
+    @Override
+    public List<ShortRule> getMatchingRules(
+            String userName,
+            String profileName,
+            String instanceName,
+            String sourceAddress,
+            String service,
+            String request,
+            String workspace,
+            String layer) {
+        return realRuleReaderService.getMatchingRules(
+                userName,
+                profileName,
+                instanceName,
+                sourceAddress,
+                service,
+                request,
+                workspace,
+                layer);
+    }
+
+    @Override
+    public List<ShortRule> getMatchingRules(RuleFilter filter) {
+        return realRuleReaderService.getMatchingRules(filter);
+    }
+
+    @Override
+    public AuthUser authorize(String username, String password) {
+        return realRuleReaderService.authorize(username, password);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()
+                + "["
+                + "Version:"
+                + version.get()
+                + " Compiled:"
+                + compiledCache.stats()
+                + " Access:"
+                + accessCache.stats()
+                + " Auth:"
+                + authCache.stats()
+                + " "
+                + cacheConfiguration
+                + "]";
+    }
+
+    /** The parts of a {@link RuleFilter} matched locally, null values match default rules only */
+    static class Query {
+        String workspace;
+        String layer;
+        String service;
+        String request;
+        byte[] address;
+
+        /** Returns the query for the given filter, or null if it cannot be evaluated locally */
+        static Query build(RuleFilter filter) {
+            Query query = new Query();
+            try {
+                query.workspace = getText(filter.getWorkspace());
+                query.layer = getText(filter.getLayer());
+                query.service = upper(getText(filter.getService()));
+                query.request = upper(getText(filter.getRequest()));
+                String address = getText(filter.getSourceAddress());
+                if (address != null) {
+                    query.address = parseAddress(address);
+                    if (query.address == null) {
+                        return null;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return query;
+        }
+
+        private static String getText(TextFilter filter) {
+            if (filter.getType() == FilterType.NAMEVALUE) {
+                return filter.getText();
+            } else if (filter.getType() == FilterType.DEFAULT) {
+                return null;
+            }
+            throw new IllegalArgumentException("Unsupported filter type " + filter.getType());
+        }
+    }
+
+    static String upper(String value) {
+        return value == null ? null : value.toUpperCase(Locale.ENGLISH);
+    }
+
+    /** Parses a literal IPv4 or IPv6 address, without ever doing a name lookup */
+    static byte[] parseAddress(String address) {
+        if (!address.matches("[0-9a-fA-F.:]+")) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /** A rule, with its address range parsed */
+    static class CompiledRule {
+        final long id;
+        final long priority;
+        final GrantType access;
+        final String request;
+        final byte[] network;
+        final int prefix;
+
+        CompiledRule(ShortRule rule) {
+            this.id = rule.getId() != null ? rule.getId() : Long.MIN_VALUE;
+            this.priority = rule.getPriority();
+            this.access = rule.getAccess();
+            this.request = upper(rule.getRequest());
+            String range = rule.getAddressRange();
+            if (range == null) {
+                this.network = null;
+                this.prefix = 0;
+            } else {
+                int slash = range.indexOf('/');
+                String address = slash > 0 ? range.substring(0, slash) : range;
+                this.network = parseAddress(address);
+                if (network == null) {
+                    throw new IllegalArgumentException("Invalid address range " + range);
+                }
+                this.prefix =
+                        slash > 0
+                                ? Integer.parseInt(range.substring(slash + 1))
+                                : network.length * 8;
+            }
+        }
+
+        boolean matches(Query query) {
+            if (request != null && !request.equals(query.request)) {
+                return false;
+            }
+            if (network == null) {
+                return true;
+            }
+            byte[] address = query.address;
+            if (address == null || address.length != network.length) {
+                return false;
+            }
+            int bytes = prefix / 8;
+            for (int i = 0; i < bytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int bits = prefix % 8;
+            if (bits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - bits)) & 0xFF;
+            return (address[bytes] & mask) == (network[bytes] & mask);
+        }
+    }
+
+    /** The rules applying to a user, role and instance, indexed for local evaluation */
+    static class CompiledRules {
+
+        static final Comparator<CompiledRule> PRIORITY =
+                Comparator.comparingLong(rule -> rule.priority);
+
+        final long version;
+
+        /**
+         * One index per role, users having several roles get the union of the access granted to
+         * each of them. Null if the rules cannot be evaluated locally.
+         */
+        final List<Map<String, List<CompiledRule>>> groups;
+
+        CompiledRules(List<ShortRule> rules, long version) {
+            this.version = version;
+
+            Set<String> roles = new LinkedHashSet<>();
+            for (ShortRule rule : rules) {
+                if (rule.getRoleName() != null) {
+                    roles.add(rule.getRoleName());
+                }
+            }
+            List<Map<String, List<CompiledRule>>> groups = new ArrayList<>();
+            try {
+                if (roles.isEmpty()) {
+                    groups.add(index(rules, null));
+                } else {
+                    for (String role : roles) {
+                        groups.add(index(rules, role));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Rules cannot be evaluated locally", e);
+                groups = null;
+            }
+            this.groups = groups;
+        }
+
+        private static Map<String, List<CompiledRule>> index(List<ShortRule> rules, String role) {
+            Map<String, List<CompiledRule>> buckets = new HashMap<>();
+            for (ShortRule rule : rules) {
+                if (rule.getRoleName() == null || rule.getRoleName().equals(role)) {
+                    String service = upper(rule.getService());
+                    String key = key(rule.getWorkspace(), rule.getLayer(), service);
+                    buckets.computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(new CompiledRule(rule));
+                }
+            }
+            for (List<CompiledRule> bucket : buckets.values()) {
+                bucket.sort(PRIORITY);
+            }
+            return buckets;
+        }
+
+        static String key(String workspace, String layer, String service) {
+            return (workspace == null ? "*" : workspace)
+                    + "|"
+                    + (layer == null ? "*" : layer)
+                    + "|"
+                    + (service == null ? "*" : service);
+        }
+
+        /**
+         * Evaluates the rules, adding to the decision the identifiers of the matching rules of
+         * each role, and returns true if any role grants access
+         */
+        boolean evaluate(Query query, List<Long> decision) {
+            boolean allowed = false;
+            for (Map<String, List<CompiledRule>> buckets : groups) {
+                List<List<CompiledRule>> candidates = new ArrayList<>(8);
+                for (String workspace : Arrays.asList(query.workspace, null)) {
+                    for (String layer : Arrays.asList(query.layer, null)) {
+                        for (String service : Arrays.asList(query.service, null)) {
+                            List<CompiledRule> bucket =
+                                    buckets.get(key(workspace, layer, service));
+                            if (bucket != null && !candidates.contains(bucket)) {
+                                candidates.add(bucket);
+                            }
+                        }
+                    }
+                }
+                allowed |= evaluate(query, candidates, decision);
+                // group separator
+                decision.add(-1L);
+            }
+            return allowed;
+        }
+
+        /** Scans the candidate buckets merging them in priority order, the first match wins */
+        private boolean evaluate(
+                Query query, List<List<CompiledRule>> candidates, List<Long> decision) {
+            int[] positions = new int[candidates.size()];
+            while (true) {
+                CompiledRule next = null;
+                int nextBucket = -1;
+                for (int i = 0; i < candidates.size(); i++) {
+                    List<CompiledRule> bucket = candidates.get(i);
+                    if (positions[i] < bucket.size()) {
+                        CompiledRule rule = bucket.get(positions[i]);
+                        if (next == null || rule.priority < next.priority) {
+                            next = rule;
+                            nextBucket = i;
+                        }
+                    }
+                }
+                if (next == null) {
+                    // no match, access is denied
+                    return false;
+                }
+                positions[nextBucket]++;
+                if (next.matches(query)) {
+                    // limits matched before an allow rule are part of the decision
+                    decision.add(next.id);
+                    if (next.access != GrantType.LIMIT) {
+                        return next.access == GrantType.ALLOW;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Identifies the details of an allow decision */
+    static class AccessKey {
+        final RuleFilter principal;
+        final String workspace;
+        final List<Long> decision;
+        final long version;
+
+        AccessKey(RuleFilter principal, String workspace, List<Long> decision, long version) {
+            this.principal = principal;
+            this.workspace = workspace;
+            this.decision = Collections.unmodifiableList(decision);
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AccessKey key = (AccessKey) o;
+            return version == key.version
+                    && Objects.equals(principal, key.principal)
+                    && Objects.equals(workspace, key.workspace)
+                    && Objects.equals(decision, key.decision);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(principal, workspace, decision, version);
+        }
+    }
+}
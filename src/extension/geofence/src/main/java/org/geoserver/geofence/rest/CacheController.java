@@ -9,6 +9,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.geofence.cache.CachedRuleReader;
+import org.geoserver.geofence.cache.CompiledRuleReader;
 import org.geoserver.rest.RestBaseController;
 import org.geoserver.rest.catalog.AbstractCatalogController;
 import org.geotools.util.logging.Logging;
@@ -35,6 +36,9 @@ public class CacheController extends AbstractCatalogController {
 
     @Autowired private CachedRuleReader cachedRuleReader;
 
+    @Autowired(required = false)
+    private CompiledRuleReader compiledRuleReader;
+
     public CacheController(Catalog catalog) {
         super(catalog);
     }
@@ -115,6 +119,9 @@ public class CacheController extends AbstractCatalogController {
     public String invalidateCache() {
         LOGGER.log(Level.WARNING, "INVALIDATING CACHE");
         cachedRuleReader.invalidateAll();
+        if (compiledRuleReader != null) {
+            compiledRuleReader.invalidateAll();
+        }
         return "OK";
     }
 }
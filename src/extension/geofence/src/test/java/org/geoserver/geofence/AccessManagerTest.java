@@ -9,6 +9,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.WorkspaceInfo;
@@ -19,9 +22,16 @@ import org.geoserver.catalog.impl.FeatureTypeInfoImpl;
 import org.geoserver.catalog.impl.LayerInfoImpl;
 import org.geoserver.catalog.impl.WorkspaceInfoImpl;
 import org.geoserver.data.test.MockData;
+import org.geoserver.geofence.core.model.enums.GrantType;
+import org.geoserver.geofence.services.RuleReaderService;
+import org.geoserver.geofence.services.dto.AccessInfo;
+import org.geoserver.geofence.services.dto.AuthUser;
+import org.geoserver.geofence.services.dto.RuleFilter;
+import org.geoserver.geofence.services.dto.ShortRule;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.security.CoverageAccessLimits;
+import org.geoserver.security.DataAccessLimits;
 import org.geoserver.security.VectorAccessLimits;
 import org.geoserver.security.WorkspaceAccessLimits;
 import org.geotools.factory.CommonFactoryFinder;
@@ -318,6 +328,152 @@ public class AccessManagerTest extends GeofenceBaseTest {
         assertTrue(expectedLimit.equalsExact(accessLimits.getRasterFilter(), .000000001));
     }
 
+    @Test
+    public void testSecurityFilterFromRules() {
+        List<ShortRule> rules = new ArrayList<>();
+        rules.add(rule(10, null, MockData.CITE_PREFIX, MockData.BUILDINGS.getLocalPart(), false));
+        rules.add(rule(20, null, MockData.CITE_PREFIX, null, true));
+        String primitive = MockData.PRIMITIVEGEOFEATURE.getLocalPart();
+        rules.add(rule(30, null, MockData.SF_PREFIX, primitive, true));
+        rules.add(rule(40, null, null, null, false));
+
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        Filter filter = accessManager.buildSecurityFilter(rules, LayerInfo.class);
+        for (LayerInfo layer : catalog.getLayers()) {
+            String ws = layer.getResource().getStore().getWorkspace().getName();
+            boolean expected =
+                    layer.prefixedName().equals(getLayerId(MockData.PRIMITIVEGEOFEATURE))
+                            || (MockData.CITE_PREFIX.equals(ws)
+                                    && !layer.prefixedName()
+                                            .equals(getLayerId(MockData.BUILDINGS)));
+            assertEquals(layer.prefixedName(), expected, filter.evaluate(layer));
+        }
+
+        // access granted to any of the roles is granted
+        rules.add(rule(5, "ROLE_OTHER", null, null, true));
+        assertEquals(Filter.INCLUDE, accessManager.buildSecurityFilter(rules, LayerInfo.class));
+    }
+
+    @Test
+    public void testSecurityFilterMatchesAccessLimits() {
+        Assume.assumeTrue(IS_GEOFENCE_AVAILABLE);
+
+        Authentication user = getUser("cite", "cite", "ROLE_AUTHENTICATED");
+        Filter filter = accessManager.getSecurityFilter(user, LayerInfo.class);
+
+        // the filter can be broader than the access limits, but must not hide accessible layers
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        for (LayerInfo layer : catalog.getLayers()) {
+            DataAccessLimits limits = accessManager.getAccessLimits(user, layer);
+            if (limits == null || limits.getReadFilter() != Filter.EXCLUDE) {
+                assertTrue(layer.prefixedName(), filter.evaluate(layer));
+            }
+        }
+    }
+
+    @Test
+    public void testSecurityFilterIncludesDefaultRules() {
+        // the catch-all rule has no user or role, a rule service only returns it when asked to
+        // include the default rules, like GeoFence does
+        List<RuleFilter> filters = new ArrayList<>();
+        RuleReaderService service =
+                new MatchingRulesReader(
+                        filter -> {
+                            filters.add(filter);
+                            List<ShortRule> rules = new ArrayList<>();
+                            String buildings = MockData.BUILDINGS.getLocalPart();
+                            rules.add(rule(10, "ROLE_AUTHENTICATED", "cite", buildings, false));
+                            if (filter.getRole().isIncludeDefault()) {
+                                rules.add(rule(20, null, null, null, true));
+                            }
+                            return rules;
+                        });
+        GeofenceAccessManager manager = new GeofenceAccessManager(service, catalog, configManager);
+
+        Authentication user = getUser("cite", "cite", "ROLE_AUTHENTICATED");
+        Filter filter = manager.getSecurityFilter(user, LayerInfo.class);
+        RuleFilter ruleFilter = filters.get(0);
+        assertTrue(ruleFilter.getUser().isIncludeDefault());
+        assertTrue(ruleFilter.getRole().isIncludeDefault());
+        assertTrue(ruleFilter.getInstance().isIncludeDefault());
+        assertTrue(ruleFilter.getSourceAddress().isIncludeDefault());
+        assertTrue(ruleFilter.getService().isIncludeDefault());
+        assertTrue(ruleFilter.getRequest().isIncludeDefault());
+
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        for (LayerInfo layer : catalog.getLayers()) {
+            boolean expected = !layer.prefixedName().equals(getLayerId(MockData.BUILDINGS));
+            assertEquals(layer.prefixedName(), expected, filter.evaluate(layer));
+        }
+    }
+
+    /** Answers the matching rules requests with a function, used to test without GeoFence */
+    static class MatchingRulesReader implements RuleReaderService {
+
+        Function<RuleFilter, List<ShortRule>> matchingRules;
+
+        MatchingRulesReader(Function<RuleFilter, List<ShortRule>> matchingRules) {
+            this.matchingRules = matchingRules;
+        }
+
+        @Override
+        public AccessInfo getAccessInfo(
+                String userName,
+                String profileName,
+                String instanceName,
+                String sourceAddress,
+                String service,
+                String request,
+                String workspace,
+                String layer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccessInfo getAccessInfo(RuleFilter filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccessInfo getAdminAuthorization(RuleFilter filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ShortRule> getMatchingRules(
+                String userName,
+                String profileName,
+                String instanceName,
+                String sourceAddress,
+                String service,
+                String request,
+                String workspace,
+                String layer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ShortRule> getMatchingRules(RuleFilter filter) {
+            return matchingRules.apply(filter);
+        }
+
+        @Override
+        public AuthUser authorize(String username, String password) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private ShortRule rule(
+            long priority, String role, String workspace, String layer, boolean allow) {
+        ShortRule rule = new ShortRule();
+        rule.setPriority(priority);
+        rule.setRoleName(role);
+        rule.setWorkspace(workspace);
+        rule.setLayer(layer);
+        rule.setAccess(allow ? GrantType.ALLOW : GrantType.DENY);
+        return rule;
+    }
+
     static class IntersectExtractor extends DefaultFilterVisitor {
 
         Geometry geom;
@@ -0,0 +1,220 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.geofence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.geofence.cache.CacheConfiguration;
+import org.geoserver.geofence.cache.CompiledRuleReader;
+import org.geoserver.geofence.config.GeoFenceConfigurationManager;
+import org.geoserver.geofence.core.model.enums.GrantType;
+import org.geoserver.geofence.services.RuleReaderService;
+import org.geoserver.geofence.services.dto.AccessInfo;
+import org.geoserver.geofence.services.dto.AuthUser;
+import org.geoserver.geofence.services.dto.RuleFilter;
+import org.geoserver.geofence.services.dto.ShortRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledRuleReaderTest {
+
+    List<ShortRule> rules = new ArrayList<>();
+
+    AtomicInteger accessInfoCalls = new AtomicInteger();
+
+    AtomicInteger matchingRulesCalls = new AtomicInteger();
+
+    CompiledRuleReader reader;
+
+    @Before
+    public void setupReader() {
+        CacheConfiguration config = new CacheConfiguration();
+        // no background polling during the tests
+        config.setRefreshMilliSec(TimeUnit.HOURS.toMillis(1));
+        GeoFenceConfigurationManager configManager = new GeoFenceConfigurationManager();
+        configManager.setCacheConfiguration(config);
+
+        reader = new CompiledRuleReader(configManager);
+        reader.setRealRuleReaderService(new StubRuleReader());
+        reader.init();
+
+        rules.add(rule(1, null, "sf", "restricted", null, null, GrantType.DENY));
+        rules.add(rule(2, null, "sf", null, "WMS", null, GrantType.ALLOW));
+        rules.add(rule(3, null, "cite", null, null, "10.0.0.0/8", GrantType.ALLOW));
+        rules.add(rule(4, null, null, null, null, null, GrantType.DENY));
+    }
+
+    @After
+    public void destroyReader() {
+        reader.destroy();
+    }
+
+    private ShortRule rule(
+            long priority,
+            String role,
+            String workspace,
+            String layer,
+            String service,
+            String addressRange,
+            GrantType access) {
+        ShortRule rule = new ShortRule();
+        rule.setId(priority);
+        rule.setPriority(priority);
+        rule.setRoleName(role);
+        rule.setWorkspace(workspace);
+        rule.setLayer(layer);
+        rule.setService(service);
+        rule.setAddressRange(addressRange);
+        rule.setAccess(access);
+        return rule;
+    }
+
+    private RuleFilter filter(String workspace, String layer, String service, String address) {
+        RuleFilter filter = new RuleFilter(RuleFilter.SpecialFilterType.ANY);
+        filter.setUser("user");
+        filter.setInstance("default-gs");
+        filter.setService(service);
+        filter.setRequest("GetMap");
+        filter.setWorkspace(workspace);
+        filter.setLayer(layer);
+        filter.setSourceAddress(address);
+        return filter;
+    }
+
+    @Test
+    public void testLocalDecisions() {
+        assertEquals(GrantType.DENY, grant(filter("sf", "restricted", "WMS", "127.0.0.1")));
+        assertEquals(GrantType.ALLOW, grant(filter("sf", "roads", "WMS", "127.0.0.1")));
+        assertEquals(GrantType.DENY, grant(filter("sf", "roads", "WFS", "127.0.0.1")));
+        assertEquals(GrantType.ALLOW, grant(filter("cite", "roads", "WFS", "10.1.2.3")));
+        assertEquals(GrantType.DENY, grant(filter("cite", "roads", "WFS", "11.1.2.3")));
+        assertEquals(GrantType.DENY, grant(filter("topp", "states", "WMS", "10.1.2.3")));
+
+        // rule set read once, rules fetched once for the user
+        assertEquals(2, matchingRulesCalls.get());
+        // details fetched once per allow decision
+        assertEquals(2, accessInfoCalls.get());
+    }
+
+    @Test
+    public void testSharedAllowDetails() {
+        AccessInfo first = reader.getAccessInfo(filter("sf", "roads", "WMS", "127.0.0.1"));
+        AccessInfo second = reader.getAccessInfo(filter("sf", "streams", "WMS", "192.168.1.1"));
+        assertSame(first, second);
+        assertEquals(1, accessInfoCalls.get());
+    }
+
+    @Test
+    public void testRoles() {
+        rules.add(0, rule(0, "ROLE_A", "topp", null, null, null, GrantType.ALLOW));
+        rules.add(0, rule(0, "ROLE_B", "topp", null, null, null, GrantType.DENY));
+        // access granted by any role is granted
+        assertEquals(GrantType.ALLOW, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+    }
+
+    @Test
+    public void testInvalidate() {
+        assertEquals(GrantType.DENY, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+        rules.add(0, rule(0, null, "topp", null, null, null, GrantType.ALLOW));
+        assertEquals(GrantType.DENY, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+        reader.invalidateAll();
+        assertEquals(GrantType.ALLOW, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+        assertEquals(3, matchingRulesCalls.get());
+    }
+
+    @Test
+    public void testSyncAfterCompile() {
+        // the rule set fingerprint is taken before compiling
+        assertEquals(GrantType.DENY, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+        rules.add(0, rule(0, null, "topp", null, null, null, GrantType.ALLOW));
+        // so the next poll sees the change
+        reader.sync();
+        assertEquals(1, reader.getVersion());
+        assertEquals(GrantType.ALLOW, grant(filter("topp", "states", "WMS", "127.0.0.1")));
+
+        // no changes, nothing dropped
+        reader.sync();
+        assertEquals(1, reader.getVersion());
+    }
+
+    @Test
+    public void testNoRefresh() {
+        CacheConfiguration config = new CacheConfiguration();
+        config.setRefreshMilliSec(0);
+        GeoFenceConfigurationManager configManager = new GeoFenceConfigurationManager();
+        configManager.setCacheConfiguration(config);
+        reader = new CompiledRuleReader(configManager);
+        reader.setRealRuleReaderService(new StubRuleReader());
+        reader.init();
+
+        // the compiled rules could not be kept up to date, every request hits the real service
+        assertEquals(GrantType.ALLOW, grant(filter("sf", "restricted", "WMS", "127.0.0.1")));
+        assertEquals(GrantType.ALLOW, grant(filter("sf", "restricted", "WMS", "127.0.0.1")));
+        assertEquals(0, matchingRulesCalls.get());
+        assertEquals(2, accessInfoCalls.get());
+    }
+
+    private GrantType grant(RuleFilter filter) {
+        return reader.getAccessInfo(filter).getGrant();
+    }
+
+    /** Returns all the rules, allow decisions are counted */
+    class StubRuleReader implements RuleReaderService {
+
+        @Override
+        public AccessInfo getAccessInfo(
+                String userName,
+                String profileName,
+                String instanceName,
+                String sourceAddress,
+                String service,
+                String request,
+                String workspace,
+                String layer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccessInfo getAccessInfo(RuleFilter filter) {
+            accessInfoCalls.incrementAndGet();
+            return new AccessInfo(GrantType.ALLOW);
+        }
+
+        @Override
+        public AccessInfo getAdminAuthorization(RuleFilter filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ShortRule> getMatchingRules(
+                String userName,
+                String profileName,
+                String instanceName,
+                String sourceAddress,
+                String service,
+                String request,
+                String workspace,
+                String layer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ShortRule> getMatchingRules(RuleFilter filter) {
+            matchingRulesCalls.incrementAndGet();
+            return new ArrayList<>(rules);
+        }
+
+        @Override
+        public AuthUser authorize(String username, String password) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.importer;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.data.FeatureReader;
+import org.opengis.feature.Feature;
+
+/**
+ * Reads features from a {@link FeatureReader} in a background thread, handing them over through a
+ * bounded queue, so that reading and parsing the source overlaps with the conversion and writing
+ * of the features into the target store. The pipe is meant to be consumed by a single thread.
+ *
+ * <p>The background readers share a pool of at most {@link #THREADS} threads, when they are all
+ * busy the features are read directly by the consuming thread instead.
+ */
+class FeatureReaderPipe {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /** Maximum number of sources read in background, zero or less disables background reading */
+    static final int THREADS =
+            Integer.getInteger(
+                    "GS_IMPORTER_READER_THREADS", Runtime.getRuntime().availableProcessors());
+
+    /** Marks the end of the source features */
+    static final Object END = new Object();
+
+    static ExecutorService executor;
+
+    final FeatureReader<?, ?> reader;
+
+    final BlockingQueue<Object> queue;
+
+    volatile boolean closed;
+
+    Future<?> future;
+
+    /** True if the features are read by the consuming thread */
+    boolean direct;
+
+    Object next;
+
+    FeatureReaderPipe(FeatureReader<?, ?> reader) {
+        this(reader, DEFAULT_CAPACITY);
+    }
+
+    FeatureReaderPipe(FeatureReader<?, ?> reader, int capacity) {
+        this.reader = reader;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            // no queue, readers waiting for a thread would just delay the import
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            THREADS,
+                            THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new SynchronousQueue<>(),
+                            r -> {
+                                Thread t =
+                                        new Thread(
+                                                r, "ImporterReader-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /** Starts reading in the background, or sets up direct reading if no thread is available */
+    FeatureReaderPipe start() {
+        if (THREADS <= 0) {
+            direct = true;
+            return this;
+        }
+        // the source might be read using the request or security context
+        ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+        try {
+            future =
+                    getExecutor()
+                            .submit(
+                                    () -> {
+                                        transfer.apply();
+                                        try {
+                                            read();
+                                        } finally {
+                                            transfer.cleanup();
+                                        }
+                                    });
+        } catch (RejectedExecutionException e) {
+            direct = true;
+        }
+        return this;
+    }
+
+    private void read() {
+        Object last = END;
+        try {
+            while (!closed && reader.hasNext()) {
+                put(reader.next());
+            }
+        } catch (Throwable t) {
+            last = t;
+        } finally {
+            put(last);
+        }
+    }
+
+    private void put(Object item) {
+        try {
+            while (!closed && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                // wait for the writer to catch up
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        if (direct) {
+            return reader.hasNext();
+        }
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading features", e);
+            }
+            if (next instanceof Throwable) {
+                Throwable t = (Throwable) next;
+                next = END;
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                } else if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                }
+                throw new IOException(t);
+            }
+        }
+        return next != END;
+    }
+
+    public Feature next() throws IOException {
+        if (direct) {
+            return (Feature) reader.next();
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Feature result = (Feature) next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Stops the background reading, and waits for it to be over, so that the reader can be safely
+     * disposed afterwards. Does not close the wrapped reader.
+     */
+    public void close() {
+        closed = true;
+        if (future != null) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // the reading failures are reported by hasNext
+            }
+        }
+    }
+}
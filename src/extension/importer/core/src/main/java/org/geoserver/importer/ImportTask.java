@@ -98,6 +98,14 @@ public class ImportTask implements Serializable {
 
     int numberProcessed;
 
+    /** number of features skipped by the transforms */
+    int numberSkipped;
+
+    /** when the loading of the data started and ended, used to compute the throughput */
+    long processingStarted;
+
+    long processingEnded;
+
     String typeName;
 
     String typeSpec;
@@ -242,6 +250,47 @@ public class ImportTask implements Serializable {
         this.totalToProcess = totalToProcess;
     }
 
+    public int getNumberSkipped() {
+        return numberSkipped;
+    }
+
+    public void setNumberSkipped(int numberSkipped) {
+        this.numberSkipped = numberSkipped;
+    }
+
+    /** Time at which the data loading started, or zero if not started yet */
+    public long getProcessingStarted() {
+        return processingStarted;
+    }
+
+    public void setProcessingStarted(long processingStarted) {
+        this.processingStarted = processingStarted;
+    }
+
+    /** Time at which the data loading ended, or zero if still running */
+    public long getProcessingEnded() {
+        return processingEnded;
+    }
+
+    public void setProcessingEnded(long processingEnded) {
+        this.processingEnded = processingEnded;
+    }
+
+    /** Milliseconds spent loading the data so far */
+    public long getProcessingTime() {
+        if (processingStarted == 0) {
+            return 0;
+        }
+        long end = processingEnded > 0 ? processingEnded : System.currentTimeMillis();
+        return Math.max(0, end - processingStarted);
+    }
+
+    /** Number of features processed per second, so far */
+    public double getThroughput() {
+        long time = getProcessingTime();
+        return time > 0 ? numberProcessed * 1000d / time : 0;
+    }
+
     public UpdateMode getUpdateMode() {
         return updateMode;
     }
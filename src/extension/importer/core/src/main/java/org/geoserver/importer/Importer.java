@@ -21,9 +21,18 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FilenameUtils;
@@ -66,6 +75,7 @@ import org.geoserver.platform.GeoServerResourceLoader;
 import org.geoserver.platform.resource.Resource;
 import org.geoserver.platform.resource.Resources;
 import org.geoserver.security.GeoServerSecurityManager;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.util.EntityResolverProvider;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.coverage.grid.io.HarvestedSource;
@@ -114,6 +124,18 @@ public class Importer implements DisposableBean, ApplicationListener {
     static Logger LOGGER = Logging.getLogger(Importer.class);
 
     public static final String PROPERTYFILENAME = "importer.properties";
+
+    /** Maximum number of tasks loaded in parallel, across all the running imports */
+    static final int TASK_THREADS =
+            Math.max(
+                    1,
+                    Integer.getInteger(
+                            "GS_IMPORTER_TASK_THREADS",
+                            Runtime.getRuntime().availableProcessors()));
+
+    /** Shared pool loading the independent tasks of an import in parallel */
+    static ExecutorService taskExecutor;
+
     private final ImporterInfoDAO configDAO;
     private Resource configFile;
 
@@ -134,8 +156,15 @@ public class Importer implements DisposableBean, ApplicationListener {
 
     JobQueue synchronousJobs = new JobQueue();
 
-    ConcurrentHashMap<Long, ImportTask> currentlyProcessing =
-            new ConcurrentHashMap<Long, ImportTask>();
+    /** tasks being loaded, by context id and task id */
+    ConcurrentHashMap<Long, Map<Long, ImportTask>> currentlyProcessing =
+            new ConcurrentHashMap<Long, Map<Long, ImportTask>>();
+
+    /** serializes the creation of new feature types, by target store id */
+    ConcurrentHashMap<String, Object> storeLocks = new ConcurrentHashMap<String, Object>();
+
+    /** serializes the catalog additions of tasks running in parallel */
+    final Object catalogLock = new Object();
 
     ImporterInfo configuration;
 
@@ -233,7 +262,17 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     public ImportTask getCurrentlyProcessingTask(long contextId) {
-        return currentlyProcessing.get(Long.valueOf(contextId));
+        Map<Long, ImportTask> tasks = currentlyProcessing.get(Long.valueOf(contextId));
+        if (tasks == null) {
+            return null;
+        }
+        return tasks.values().stream().findFirst().orElse(null);
+    }
+
+    /** Returns the specified task, if its data is being loaded right now, null otherwise */
+    public ImportTask getCurrentlyProcessingTask(long contextId, long taskId) {
+        Map<Long, ImportTask> tasks = currentlyProcessing.get(Long.valueOf(contextId));
+        return tasks == null ? null : tasks.get(Long.valueOf(taskId));
     }
 
     @Override
@@ -916,18 +955,22 @@ public class Importer implements DisposableBean, ApplicationListener {
             LOGGER.fine("Running import " + context.getId());
         }
 
+        List<ImportTask> tasks = new ArrayList<>();
         for (ImportTask task : context.getTasks()) {
-            if (!filter.include(task)) {
-                continue;
-            }
-            if (!task.readyForImport()) {
-                continue;
+            if (filter.include(task) && task.readyForImport()) {
+                tasks.add(task);
             }
-
-            if (context.progress().isCanceled()) {
-                break;
+        }
+        int parallelism = configuration.getMaxParallelTasks();
+        if (parallelism > 1 && tasks.size() > 1) {
+            runParallel(context, tasks, parallelism);
+        } else {
+            for (ImportTask task : tasks) {
+                if (context.progress().isCanceled()) {
+                    break;
+                }
+                run(task);
             }
-            run(task);
         }
 
         context.updated();
@@ -953,6 +996,95 @@ public class Importer implements DisposableBean, ApplicationListener {
         }
     }
 
+    /**
+     * Runs the tasks using up to the given number of threads. Direct imports only configure the
+     * catalog, they are run first in the current thread, the indirect ones are independent from
+     * each other and are loaded in parallel.
+     */
+    void runParallel(ImportContext context, List<ImportTask> tasks, int parallelism)
+            throws IOException {
+        List<ImportTask> indirect = new ArrayList<>();
+        for (ImportTask task : tasks) {
+            if (context.progress().isCanceled()) {
+                return;
+            }
+            if (task.isDirect()) {
+                run(task);
+            } else {
+                indirect.add(task);
+            }
+        }
+
+        // each worker takes tasks from the shared queue, so that at most parallelism tasks of
+        // this context are loaded at the same time, while the pool bounds the overall threads
+        Queue<ImportTask> pending = new ConcurrentLinkedQueue<>(indirect);
+        // the workers need the same security and request context as the current thread
+        ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+        // a failing task does not stop the others, the first failure is reported at the end
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService executor = getTaskExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, indirect.size()); i++) {
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                transfer.apply();
+                                try {
+                                    ImportTask task;
+                                    while (!context.progress().isCanceled()
+                                            && (task = pending.poll()) != null) {
+                                        try {
+                                            run(task);
+                                        } catch (Exception e) {
+                                            failure.compareAndSet(null, e);
+                                        }
+                                    }
+                                } finally {
+                                    transfer.cleanup();
+                                }
+                            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.clear();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, new IOException(e.getCause()));
+            }
+        }
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException(e);
+        }
+    }
+
+    static synchronized ExecutorService getTaskExecutor() {
+        if (taskExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            TASK_THREADS,
+                            TASK_THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread t =
+                                        new Thread(r, "ImporterTask-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+            pool.allowCoreThreadTimeOut(true);
+            taskExecutor = pool;
+        }
+        return taskExecutor;
+    }
+
     void run(ImportTask task) throws IOException {
         if (task.getState() == ImportTask.State.COMPLETE) {
             return;
@@ -1143,7 +1275,9 @@ public class Importer implements DisposableBean, ApplicationListener {
         DataFormat format = task.getData().getFormat();
         if (format instanceof VectorFormat) {
             try {
-                currentlyProcessing.put(task.getContext().getId(), task);
+                currentlyProcessing
+                        .computeIfAbsent(task.getContext().getId(), id -> new ConcurrentHashMap<>())
+                        .put(task.getId(), task);
                 loadIntoDataStore(
                         task,
                         (DataStoreInfo) task.getStore(),
@@ -1171,7 +1305,12 @@ public class Importer implements DisposableBean, ApplicationListener {
                 task.setState(ImportTask.State.ERROR);
                 return;
             } finally {
-                currentlyProcessing.remove(task.getContext().getId());
+                currentlyProcessing.computeIfPresent(
+                        task.getContext().getId(),
+                        (id, tasks) -> {
+                            tasks.remove(task.getId());
+                            return tasks.isEmpty() ? null : tasks;
+                        });
             }
         } else {
             // see if the store exposes a structured grid coverage reader
@@ -1344,36 +1483,40 @@ public class Importer implements DisposableBean, ApplicationListener {
             UpdateMode updateMode = task.getUpdateMode();
             final String uniquifiedFeatureTypeName;
             if (updateMode == UpdateMode.CREATE) {
-                // find a unique type name in the target store
-                uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
-
-                if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
-                    // update the metadata
-                    task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
-                    task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
-
-                    // retype
-                    SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
-                    typeBuilder.setName(uniquifiedFeatureTypeName);
-                    typeBuilder.addAll(featureType.getAttributeDescriptors());
-                    featureType = typeBuilder.buildFeatureType();
-                }
+                // tasks running in parallel could otherwise pick the same unique name
+                synchronized (storeLocks.computeIfAbsent(store.getId(), id -> new Object())) {
+                    // find a unique type name in the target store
+                    uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
+
+                    if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
+                        // update the metadata
+                        task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
+                        task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
+
+                        // retype
+                        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+                        typeBuilder.setName(uniquifiedFeatureTypeName);
+                        typeBuilder.addAll(featureType.getAttributeDescriptors());
+                        featureType = typeBuilder.buildFeatureType();
+                    }
 
-                // @todo HACK remove this at some point when timezone issues are fixed
-                // this will force postgis to create timezone w/ timestamp fields
-                if (dataStore instanceof JDBCDataStore) {
-                    JDBCDataStore ds = (JDBCDataStore) dataStore;
-                    // sniff for postgis (h2 is used in tests and will cause failure if this occurs)
-                    if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
-                        ds.getSqlTypeToSqlTypeNameOverrides()
-                                .put(java.sql.Types.TIMESTAMP, "timestamptz");
+                    // @todo HACK remove this at some point when timezone issues are fixed
+                    // this will force postgis to create timezone w/ timestamp fields
+                    if (dataStore instanceof JDBCDataStore) {
+                        JDBCDataStore ds = (JDBCDataStore) dataStore;
+                        // sniff for postgis (h2 is used in tests and will cause failure if this
+                        // occurs)
+                        if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
+                            ds.getSqlTypeToSqlTypeNameOverrides()
+                                    .put(java.sql.Types.TIMESTAMP, "timestamptz");
+                        }
                     }
-                }
 
-                // apply the feature type transform
-                featureType = tx.inline(task, dataStore, featureType);
+                    // apply the feature type transform
+                    featureType = tx.inline(task, dataStore, featureType);
 
-                dataStore.createSchema(featureType);
+                    dataStore.createSchema(featureType);
+                }
             } else {
                 // @todo what to do if featureType transform is present?
 
@@ -1401,7 +1544,6 @@ public class Importer implements DisposableBean, ApplicationListener {
                                 (DataStoreFormat) format,
                                 dataStore,
                                 transaction,
-                                featureTypeName,
                                 uniquifiedFeatureTypeName,
                                 featureDataConverter,
                                 tx);
@@ -1414,7 +1556,6 @@ public class Importer implements DisposableBean, ApplicationListener {
                                 format,
                                 dataStore,
                                 transaction,
-                                featureTypeName,
                                 uniquifiedFeatureTypeName,
                                 featureDataConverter,
                                 tx);
@@ -1457,7 +1598,6 @@ public class Importer implements DisposableBean, ApplicationListener {
             DataStoreFormat format,
             DataStore dataStoreDestination,
             Transaction transaction,
-            String featureTypeName,
             String uniquifiedFeatureTypeName,
             FeatureDataConverter featureDataConverter,
             VectorTransformChain tx)
@@ -1468,6 +1608,8 @@ public class Importer implements DisposableBean, ApplicationListener {
             task.clearMessages();
 
             task.setTotalToProcess(format.getFeatureCount(task.getData(), task));
+            task.setProcessingStarted(System.currentTimeMillis());
+            task.setProcessingEnded(0);
             LOGGER.fine("begining import - highlevel api");
 
             FeatureSource fs = format.getFeatureSource(data, task);
@@ -1490,6 +1632,8 @@ public class Importer implements DisposableBean, ApplicationListener {
 
         } catch (Throwable e) {
             error = e;
+        } finally {
+            task.setProcessingEnded(System.currentTimeMillis());
         }
 
         if (error != null || monitor.isCanceled()) {
@@ -1509,11 +1653,13 @@ public class Importer implements DisposableBean, ApplicationListener {
                         e1);
             }
 
-            // attempt to drop the type that was created as well
-            try {
-                dropSchema(dataStoreDestination, featureTypeName);
-            } catch (Exception e1) {
-                LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+            // attempt to drop the type that was created as well, existing tables are left alone
+            if (task.getUpdateMode() == UpdateMode.CREATE) {
+                try {
+                    dropSchema(dataStoreDestination, uniquifiedFeatureTypeName);
+                } catch (Exception e1) {
+                    LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+                }
             }
         }
 
@@ -1526,7 +1672,6 @@ public class Importer implements DisposableBean, ApplicationListener {
             VectorFormat format,
             DataStore dataStoreDestination,
             Transaction transaction,
-            String featureTypeName,
             String uniquifiedFeatureTypeName,
             FeatureDataConverter featureDataConverter,
             VectorTransformChain tx)
@@ -1540,19 +1685,34 @@ public class Importer implements DisposableBean, ApplicationListener {
         // metrics
         long startTime = System.currentTimeMillis();
         task.clearMessages();
+        task.setProcessingStarted(startTime);
+        task.setProcessingEnded(0);
 
         task.setTotalToProcess(format.getFeatureCount(task.getData(), task));
 
+        // intermediate commits are only safe against databases, other stores buffer the
+        // changes in the transaction state and apply them all on commit. They are also limited
+        // to tables created by the task, which can be dropped on failure: appending to or
+        // replacing the contents of an existing table must be all or nothing
+        int commitSize = configuration.getCommitSize();
+        boolean batchCommits =
+                commitSize > 0
+                        && dataStoreDestination instanceof JDBCDataStore
+                        && task.getUpdateMode() == UpdateMode.CREATE;
+        int uncommitted = 0;
+
         LOGGER.fine("begining import - lowlevel api");
+        // read the source in a separate thread, while converting and writing in this one
+        FeatureReaderPipe pipe = new FeatureReaderPipe(reader).start();
         try (FeatureWriter writer =
                 dataStoreDestination.getFeatureWriterAppend(
                         uniquifiedFeatureTypeName, transaction)) {
 
-            while (reader.hasNext()) {
+            while (pipe.hasNext()) {
                 if (monitor.isCanceled()) {
                     break;
                 }
-                SimpleFeature feature = (SimpleFeature) reader.next();
+                SimpleFeature feature = (SimpleFeature) pipe.next();
                 SimpleFeature next = (SimpleFeature) writer.next();
 
                 // (JD) TODO: some formats will rearrange the geometry type (like shapefile) which
@@ -1572,8 +1732,13 @@ public class Importer implements DisposableBean, ApplicationListener {
 
                 if (next == null) {
                     skipped++;
+                    task.setNumberSkipped(skipped);
                 } else {
                     writer.write();
+                    if (batchCommits && ++uncommitted >= commitSize) {
+                        transaction.commit();
+                        uncommitted = 0;
+                    }
                 }
                 task.setNumberProcessed(++cnt);
             }
@@ -1583,6 +1748,9 @@ public class Importer implements DisposableBean, ApplicationListener {
             LOGGER.info("load to target took " + (System.currentTimeMillis() - startTime));
         } catch (Throwable e) {
             error = e;
+        } finally {
+            pipe.close();
+            task.setProcessingEnded(System.currentTimeMillis());
         }
         // no finally block, there is too much to do
 
@@ -1597,11 +1765,14 @@ public class Importer implements DisposableBean, ApplicationListener {
                 LOGGER.log(Level.WARNING, "Error rolling back transaction", e1);
             }
 
-            // attempt to drop the type that was created as well
-            try {
-                dropSchema(dataStoreDestination, featureTypeName);
-            } catch (Exception e1) {
-                LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+            // attempt to drop the type that was created as well, along with the batches
+            // committed so far, existing tables are left alone
+            if (task.getUpdateMode() == UpdateMode.CREATE) {
+                try {
+                    dropSchema(dataStoreDestination, uniquifiedFeatureTypeName);
+                } catch (Exception e1) {
+                    LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+                }
             }
         }
         return error;
@@ -1617,28 +1788,31 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     void addToCatalog(ImportTask task) throws IOException {
-        LayerInfo layer = task.getLayer();
-        ResourceInfo resource = layer.getResource();
-        resource.setStore(task.getStore());
-
-        // add the resource
-        String name = findUniqueResourceName(resource);
-        resource.setName(name);
-
-        // JD: not setting a native name, it should actually already be set by this point and we
-        // don't want to blindly set it to the same name as the resource name, which might have
-        // changed to deal with name clashes
-        // resource.setNativeName(name);
-        resource.setEnabled(true);
-        catalog.add(resource);
+        // tasks running in parallel could otherwise pick the same unique name
+        synchronized (catalogLock) {
+            LayerInfo layer = task.getLayer();
+            ResourceInfo resource = layer.getResource();
+            resource.setStore(task.getStore());
+
+            // add the resource
+            String name = findUniqueResourceName(resource);
+            resource.setName(name);
+
+            // JD: not setting a native name, it should actually already be set by this point and we
+            // don't want to blindly set it to the same name as the resource name, which might have
+            // changed to deal with name clashes
+            // resource.setNativeName(name);
+            resource.setEnabled(true);
+            catalog.add(resource);
+
+            // add the layer (and style)
+            if (layer.getDefaultStyle().getId() == null) {
+                catalog.add(layer.getDefaultStyle());
+            }
 
-        // add the layer (and style)
-        if (layer.getDefaultStyle().getId() == null) {
-            catalog.add(layer.getDefaultStyle());
+            layer.setEnabled(true);
+            catalog.add(layer);
         }
-
-        layer.setEnabled(true);
-        catalog.add(layer);
     }
 
     String findUniqueStoreName(StoreInfo store) {
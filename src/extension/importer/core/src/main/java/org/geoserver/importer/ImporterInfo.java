@@ -18,6 +18,21 @@ public interface ImporterInfo extends Serializable {
     /** Maximum number of synchronous imports, negative or zero for no limit */
     public int getMaxAsynchronousImports();
 
+    /**
+     * Maximum number of tasks of a single import that can be run in parallel, one or less to run
+     * them one after the other
+     */
+    public int getMaxParallelTasks();
+
+    /**
+     * Number of features after which the target transaction of an indirect import is committed,
+     * zero or less to load all the features of a task in a single transaction. Only used for
+     * database targets, when the task creates a new table: appending to or replacing the contents
+     * of an existing table always happens in a single transaction, as the features committed
+     * before a failure could not be told apart from the existing ones.
+     */
+    public int getCommitSize();
+
     /** @see #getUploadRoot() */
     public void setUploadRoot(String uploadRoot);
 
@@ -26,4 +41,10 @@ public interface ImporterInfo extends Serializable {
 
     /** @see #getMaxAsynchronousImports() */
     public void setMaxAsynchronousImports(int maxAsynchronousImports);
+
+    /** @see #getMaxParallelTasks() */
+    public void setMaxParallelTasks(int maxParallelTasks);
+
+    /** @see #getCommitSize() */
+    public void setCommitSize(int commitSize);
 }
@@ -30,6 +30,10 @@ public class ImporterInfoDAO {
 
     public static final String MAX_SYNCH_KEY = "importer.maxSynch";
 
+    public static final String MAX_PARALLEL_TASKS_KEY = "importer.maxParallelTasks";
+
+    public static final String COMMIT_SIZE_KEY = "importer.commitSize";
+
     /**
      * Reads the importer configuration from the specified resource, or returns a default
      *
@@ -56,6 +60,8 @@ public class ImporterInfoDAO {
                 getConfig(props, MAX_ASYNCH_KEY, Integer.class, () -> processors));
         info.setMaxSynchronousImports(
                 getConfig(props, MAX_SYNCH_KEY, Integer.class, () -> processors));
+        info.setMaxParallelTasks(getConfig(props, MAX_PARALLEL_TASKS_KEY, Integer.class, () -> 1));
+        info.setCommitSize(getConfig(props, COMMIT_SIZE_KEY, Integer.class, () -> 0));
     }
 
     private <T> T getConfig(
@@ -98,6 +104,9 @@ public class ImporterInfoDAO {
         props.setProperty(MAX_SYNCH_KEY, String.valueOf(configuration.getMaxSynchronousImports()));
         props.setProperty(
                 MAX_ASYNCH_KEY, String.valueOf(configuration.getMaxAsynchronousImports()));
+        props.setProperty(
+                MAX_PARALLEL_TASKS_KEY, String.valueOf(configuration.getMaxParallelTasks()));
+        props.setProperty(COMMIT_SIZE_KEY, String.valueOf(configuration.getCommitSize()));
         try (OutputStream os = resource.out()) {
             props.store(os, null);
         }
@@ -12,6 +12,8 @@ public class ImporterInfoImpl implements ImporterInfo {
     String uploadRoot;
     int maxSynchronousImports;
     int maxAsynchronousImports;
+    int maxParallelTasks = 1;
+    int commitSize;
 
     public ImporterInfoImpl() {}
 
@@ -19,6 +21,8 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.uploadRoot = configuration.getUploadRoot();
         this.maxSynchronousImports = configuration.getMaxSynchronousImports();
         this.maxAsynchronousImports = configuration.getMaxAsynchronousImports();
+        this.maxParallelTasks = configuration.getMaxParallelTasks();
+        this.commitSize = configuration.getCommitSize();
     }
 
     public int getMaxSynchronousImports() {
@@ -38,6 +42,24 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.maxAsynchronousImports = maxAsynchronousImports;
     }
 
+    @Override
+    public int getMaxParallelTasks() {
+        return maxParallelTasks;
+    }
+
+    public void setMaxParallelTasks(int maxParallelTasks) {
+        this.maxParallelTasks = maxParallelTasks;
+    }
+
+    @Override
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
     @Override
     public String getUploadRoot() {
         return uploadRoot;
@@ -54,11 +76,18 @@ public class ImporterInfoImpl implements ImporterInfo {
         ImporterInfoImpl that = (ImporterInfoImpl) o;
         return maxSynchronousImports == that.maxSynchronousImports
                 && maxAsynchronousImports == that.maxAsynchronousImports
+                && maxParallelTasks == that.maxParallelTasks
+                && commitSize == that.commitSize
                 && Objects.equals(uploadRoot, that.uploadRoot);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uploadRoot, maxSynchronousImports, maxAsynchronousImports);
+        return Objects.hash(
+                uploadRoot,
+                maxSynchronousImports,
+                maxAsynchronousImports,
+                maxParallelTasks,
+                commitSize);
     }
 }
@@ -105,6 +105,27 @@ public class ImporterDataTest extends ImporterTestSupport {
         }
     }
 
+    /** Fails after a number of features has been transformed */
+    private static final class FailingTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        private int count;
+
+        @Override
+        public SimpleFeature apply(
+                ImportTask task,
+                DataStore dataStore,
+                SimpleFeature oldFeature,
+                SimpleFeature feature)
+                throws Exception {
+            if (++count > 5) {
+                throw new IOException("Failing on purpose");
+            }
+            return feature;
+        }
+    }
+
     @Test
     public void testUploadRootExternalProps() throws Exception {
         // Let's now override the external folder through the Environment variable. This takes
@@ -489,6 +510,43 @@ public class ImporterDataTest extends ImporterTestSupport {
         runChecks("bugsites");
     }
 
+    @Test
+    public void testImportIntoDatabaseParallel() throws Exception {
+        ImporterInfo configuration = importer.getConfiguration();
+        configuration.setMaxParallelTasks(2);
+        configuration.setCommitSize(10);
+        try {
+            Catalog cat = getCatalog();
+            DataStoreInfo ds =
+                    createH2DataStore(cat.getDefaultWorkspace().getName(), "spearfishParallel");
+
+            File dir = tmpDir();
+            unpack("shape/archsites_epsg_prj.zip", dir);
+            unpack("shape/bugsites_esri_prj.tar.gz", dir);
+
+            ImportContext context = importer.createContext(new Directory(dir), ds);
+            assertEquals(2, context.getTasks().size());
+
+            importer.run(context);
+
+            for (ImportTask task : context.getTasks()) {
+                assertEquals(ImportTask.State.COMPLETE, task.getState());
+                // metrics have been collected
+                assertTrue(task.getNumberProcessed() > 0);
+                assertEquals(task.getTotalToProcess(), task.getNumberProcessed());
+                assertTrue(task.getProcessingStarted() > 0);
+                assertTrue(task.getProcessingEnded() >= task.getProcessingStarted());
+            }
+            assertNotNull(cat.getFeatureTypeByDataStore(ds, "archsites"));
+            assertNotNull(cat.getFeatureTypeByDataStore(ds, "bugsites"));
+            runChecks("archsites");
+            runChecks("bugsites");
+        } finally {
+            configuration.setMaxParallelTasks(1);
+            configuration.setCommitSize(0);
+        }
+    }
+
     @Test
     public void testImportIntoDatabaseWithEncoding() throws Exception {
         Catalog cat = getCatalog();
@@ -558,6 +616,36 @@ public class ImporterDataTest extends ImporterTestSupport {
         }
     }
 
+    @Test
+    public void testImportIntoDatabaseAppendFailure() throws Exception {
+        testImportIntoDatabase();
+
+        DataStoreInfo ds = getCatalog().getDataStoreByName("spearfish");
+        FeatureSource<? extends FeatureType, ? extends Feature> fs =
+                getCatalog().getFeatureTypeByName("archsites").getFeatureSource(null, null);
+        int archsitesCount = fs.getCount(Query.ALL);
+
+        ImporterInfo configuration = importer.getConfiguration();
+        configuration.setCommitSize(2);
+        try {
+            File dir = tmpDir();
+            unpack("shape/archsites_epsg_prj.zip", dir);
+            ImportContext context = importer.createContext(new Directory(dir), ds);
+            ImportTask task = context.getTasks().get(0);
+            task.setUpdateMode(UpdateMode.APPEND);
+            task.getTransform().add(new FailingTransform());
+
+            importer.run(context);
+
+            // no batch committed before the failure, and the table has not been dropped
+            assertEquals(ImportTask.State.ERROR, task.getState());
+            fs = getCatalog().getFeatureTypeByName("archsites").getFeatureSource(null, null);
+            assertEquals(archsitesCount, fs.getCount(Query.ALL));
+        } finally {
+            configuration.setCommitSize(0);
+        }
+    }
+
     @Test
     public void testImportGeoTIFF() throws Exception {
         File dir = unpack("geotiff/EmissiveCampania.tif.bz2");
@@ -99,12 +99,13 @@ public class ImportTaskController extends ImportBaseController {
     public ImportWrapper progressGet(@PathVariable Long id, @PathVariable Integer taskId) {
 
         JSONObject progress = new JSONObject();
-        ImportTask inProgress = importer.getCurrentlyProcessingTask(id);
+        ImportTask inProgress = importer.getCurrentlyProcessingTask(id, taskId);
         try {
             if (inProgress != null) {
                 progress.put("progress", inProgress.getNumberProcessed());
                 progress.put("total", inProgress.getTotalToProcess());
                 progress.put("state", inProgress.getState().toString());
+                putMetrics(progress, inProgress);
             } else {
                 ImportTask task = task(id, taskId);
                 progress.put("state", task.getState().toString());
@@ -113,6 +114,11 @@ public class ImportTaskController extends ImportBaseController {
                         progress.put("message", task.getError().getMessage());
                     }
                 }
+                if (task.getProcessingStarted() > 0) {
+                    progress.put("progress", task.getNumberProcessed());
+                    progress.put("total", task.getTotalToProcess());
+                    putMetrics(progress, task);
+                }
             }
         } catch (JSONException jex) {
             LOGGER.log(
@@ -129,6 +135,13 @@ public class ImportTaskController extends ImportBaseController {
         return (writer, builder, converter) -> writer.write(progress.toString());
     }
 
+    /** Adds the throughput metrics of the data loading */
+    private void putMetrics(JSONObject progress, ImportTask task) {
+        progress.put("skipped", task.getNumberSkipped());
+        progress.put("time", task.getProcessingTime());
+        progress.put("featuresPerSecond", Math.round(task.getThroughput() * 100) / 100d);
+    }
+
     @GetMapping(path = "/{taskId}/target")
     public ImportWrapper targetGet(
             @PathVariable Long id,
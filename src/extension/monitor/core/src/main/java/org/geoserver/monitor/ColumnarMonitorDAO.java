@@ -0,0 +1,679 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.geoserver.monitor.MemoryMonitorDAO.DateRange;
+import org.geoserver.monitor.MemoryMonitorDAO.PropertyCompare;
+import org.geoserver.monitor.MemoryMonitorDAO.Sorter;
+import org.geoserver.monitor.Query.Comparison;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Monitor DAO keeping the request history in local, append only, compressed columnar files (see
+ * {@link ColumnarSegment}), partitioned by day, in the {@code monitoring/history} directory of the
+ * data directory.
+ *
+ * <p>Completed requests are appended to a bounded in memory buffer, so the cost per request is
+ * constant, and are written to disk in segments by a background thread. Queries skip the days and
+ * segments that cannot match the date range, id or dictionary encoded values being searched, and
+ * only decode the remaining ones.
+ *
+ * <p>It can be configured in {@code monitor.properties} with:
+ *
+ * <ul>
+ *   <li>{@code storage=columnar} to enable it
+ *   <li>{@code columnar.directory} the storage directory, absolute or relative to the data
+ *       directory
+ *   <li>{@code columnar.segmentSize} the max number of requests per segment, defaults to 4096
+ *   <li>{@code columnar.bufferSize} the max number of requests waiting to be written, further ones
+ *       are dropped, defaults to 65536
+ *   <li>{@code columnar.flushDelay} seconds a request is kept in memory before being written, to
+ *       allow post processors to update it, defaults to 10
+ *   <li>{@code columnar.retentionDays} number of days of history to keep, defaults to 0, that is,
+ *       unlimited
+ * </ul>
+ *
+ * Completed requests can be updated only until they are written to disk.
+ */
+public class ColumnarMonitorDAO implements MonitorDAO {
+
+    static final Logger LOGGER = Logging.getLogger(ColumnarMonitorDAO.class);
+
+    public static final String NAME = "columnar";
+
+    static final String PREFIX = "columnar";
+
+    Queue<RequestData> live = new ConcurrentLinkedQueue<>();
+
+    /** The completed requests not yet written, guarded by lock */
+    Deque<Pending> buffer = new ArrayDeque<>();
+
+    /** The requests being written, still visible to queries, guarded by lock */
+    List<RequestData> flushing = Collections.emptyList();
+
+    /** The segments by sequence, guarded by lock */
+    TreeMap<Long, ColumnarSegment> segments = new TreeMap<>();
+
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Serializes the segment writes */
+    final Object flushLock = new Object();
+
+    AtomicLong REQUEST_ID_GEN = new AtomicLong(1);
+
+    AtomicLong sequence = new AtomicLong();
+
+    AtomicLong dropped = new AtomicLong();
+
+    AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    File directory;
+
+    int segmentSize = 4096;
+
+    int bufferSize = 65536;
+
+    long flushDelay = TimeUnit.SECONDS.toMillis(10);
+
+    int retentionDays;
+
+    ScheduledExecutorService executor;
+
+    public ColumnarMonitorDAO() {}
+
+    /** Builds a DAO storing into the given directory, mostly for tests */
+    ColumnarMonitorDAO(File directory, int segmentSize, long flushDelay) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushDelay = flushDelay;
+        open();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void init(MonitorConfig config) {
+        Integer size = config.getProperty(PREFIX, "segmentSize", Integer.class);
+        if (size != null && size > 0) {
+            segmentSize = size;
+        }
+        size = config.getProperty(PREFIX, "bufferSize", Integer.class);
+        if (size != null && size > 0) {
+            bufferSize = size;
+        }
+        Integer delay = config.getProperty(PREFIX, "flushDelay", Integer.class);
+        if (delay != null && delay >= 0) {
+            flushDelay = TimeUnit.SECONDS.toMillis(delay);
+        }
+        Integer retention = config.getProperty(PREFIX, "retentionDays", Integer.class);
+        if (retention != null) {
+            retentionDays = retention;
+        }
+        try {
+            String path = config.getProperty(PREFIX, "directory", String.class);
+            if (path != null && new File(path).isAbsolute()) {
+                directory = new File(path);
+            } else {
+                GeoServerResourceLoader loader =
+                        GeoServerExtensions.bean(GeoServerResourceLoader.class);
+                directory = loader.get(path != null ? path : "monitoring/history").dir();
+            }
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open the monitoring history", e);
+        }
+    }
+
+    /** Loads the segment headers and starts the background writer */
+    void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        long maxId = 0;
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            File[] days = directory.listFiles(File::isDirectory);
+            if (days != null) {
+                for (File day : days) {
+                    File[] files = day.listFiles((d, n) -> n.endsWith(ColumnarSegment.EXTENSION));
+                    for (File file : files != null ? files : new File[0]) {
+                        String name = file.getName();
+                        try {
+                            long seq =
+                                    Long.parseLong(
+                                            name.substring(
+                                                    0,
+                                                    name.length()
+                                                            - ColumnarSegment.EXTENSION.length()));
+                            ColumnarSegment segment = ColumnarSegment.open(file, seq);
+                            segments.put(seq, segment);
+                            maxId = Math.max(maxId, segment.maxId);
+                        } catch (Exception e) {
+                            LOGGER.log(Level.WARNING, "Skipping invalid segment " + file, e);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sequence.set(segments.isEmpty() ? 0 : segments.lastKey());
+        REQUEST_ID_GEN.set(maxId + 1);
+
+        executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread t = new Thread(r, "MonitorHistoryWriter");
+                            t.setDaemon(true);
+                            return t;
+                        });
+        long period = Math.max(1000, flushDelay);
+        executor.scheduleWithFixedDelay(
+                () -> flushQuietly(false), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public RequestData init(RequestData data) {
+        data.setId(REQUEST_ID_GEN.getAndIncrement());
+        return data;
+    }
+
+    @Override
+    public void add(RequestData data) {
+        live.add(data);
+    }
+
+    @Override
+    public void update(RequestData data) {
+        // live and buffered requests are updated in place, written ones cannot be changed
+    }
+
+    @Override
+    public void save(RequestData data) {
+        live.remove(data);
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            if (buffer.size() >= bufferSize) {
+                if (dropped.getAndIncrement() % 1000 == 0) {
+                    LOGGER.warning(
+                            "Monitoring history buffer full, dropped "
+                                    + dropped.get()
+                                    + " requests so far");
+                }
+                return;
+            }
+            buffer.add(new Pending(data));
+            full = buffer.size() >= segmentSize;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full && flushScheduled.compareAndSet(false, true) && executor != null) {
+            executor.execute(
+                    () -> {
+                        flushScheduled.set(false);
+                        flushQuietly(false);
+                    });
+        }
+    }
+
+    /** Number of requests dropped because the write buffer was full */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    void flushQuietly(boolean all) {
+        try {
+            flush(all);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write the monitoring history", e);
+        }
+    }
+
+    /**
+     * Writes the buffered requests to disk. If a write fails, the requests that could not be
+     * written are put back at the head of the buffer, to be retried by the next flush.
+     *
+     * @param all if false, only the requests older than the flush delay are written, unless the
+     *     buffer holds enough requests to fill a segment
+     */
+    void flush(boolean all) throws IOException {
+        synchronized (flushLock) {
+            while (true) {
+                List<Pending> batch = new ArrayList<>();
+                List<RequestData> batchData = new ArrayList<>();
+                long limit = System.currentTimeMillis() - flushDelay;
+                lock.writeLock().lock();
+                try {
+                    boolean fullSegment = buffer.size() >= segmentSize;
+                    while (!buffer.isEmpty()
+                            && batch.size() < segmentSize
+                            && (all || fullSegment || buffer.peek().savedAt <= limit)) {
+                        Pending pending = buffer.poll();
+                        batch.add(pending);
+                        batchData.add(pending.data);
+                    }
+                    flushing = batchData;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                // partition by day
+                Map<LocalDate, List<Pending>> days = new LinkedHashMap<>();
+                for (Pending p : batch) {
+                    days.computeIfAbsent(getDay(p.data), k -> new ArrayList<>()).add(p);
+                }
+                List<ColumnarSegment> written = new ArrayList<>();
+                Set<LocalDate> writtenDays = new HashSet<>();
+                try {
+                    for (Map.Entry<LocalDate, List<Pending>> entry : days.entrySet()) {
+                        File dir = new File(directory, entry.getKey().toString());
+                        if (!dir.exists() && !dir.mkdirs()) {
+                            throw new IOException("Could not create " + dir);
+                        }
+                        List<RequestData> requests = new ArrayList<>();
+                        for (Pending p : entry.getValue()) {
+                            requests.add(p.data);
+                        }
+                        long seq = sequence.incrementAndGet();
+                        File file = new File(dir, String.format("%012d", seq) + ".seg");
+                        written.add(ColumnarSegment.write(file, seq, requests));
+                        writtenDays.add(entry.getKey());
+                    }
+                } finally {
+                    // the days not written go back at the head of the buffer, in their order
+                    Set<Pending> unwritten = new HashSet<>();
+                    for (Map.Entry<LocalDate, List<Pending>> entry : days.entrySet()) {
+                        if (!writtenDays.contains(entry.getKey())) {
+                            unwritten.addAll(entry.getValue());
+                        }
+                    }
+                    lock.writeLock().lock();
+                    try {
+                        for (ColumnarSegment segment : written) {
+                            segments.put(segment.sequence, segment);
+                        }
+                        for (int i = batch.size() - 1; i >= 0; i--) {
+                            if (unwritten.contains(batch.get(i))) {
+                                buffer.addFirst(batch.get(i));
+                            }
+                        }
+                        flushing = Collections.emptyList();
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            }
+            applyRetention();
+        }
+    }
+
+    private LocalDate getDay(RequestData r) {
+        long time =
+                r.getStartTime() != null
+                        ? r.getStartTime().getTime()
+                        : System.currentTimeMillis();
+        return Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private void applyRetention() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        String oldest = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays).toString();
+        File[] days = directory.listFiles(File::isDirectory);
+        if (days == null) {
+            return;
+        }
+        for (File day : days) {
+            // ISO dates sort lexicographically
+            if (day.getName().compareTo(oldest) < 0) {
+                lock.writeLock().lock();
+                try {
+                    segments.values().removeIf(s -> s.file.getParentFile().equals(day));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                FileUtils.deleteQuietly(day);
+            }
+        }
+    }
+
+    @Override
+    public RequestData getRequest(long id) {
+        List<RequestData> result = new ArrayList<>();
+        scan(
+                new Query().filter("id", id, Comparison.EQ),
+                s -> id >= s.minId && id <= s.maxId,
+                false,
+                r -> {
+                    result.add(r);
+                    return false;
+                });
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    public List<RequestData> getRequests() {
+        return getRequests(new Query());
+    }
+
+    @Override
+    public List<RequestData> getRequests(Query query) {
+        List<RequestData> result = new ArrayList<>();
+        getRequests(query, (data, aggregates) -> result.add(data));
+        return result;
+    }
+
+    @Override
+    public void getRequests(Query query, RequestDataVisitor visitor) {
+        long offset = query.getOffset() != null ? query.getOffset() : 0;
+        long count = query.getCount() != null ? query.getCount() : Long.MAX_VALUE;
+        if (query.getSortBy() != null) {
+            // need to collect everything before paging
+            List<RequestData> matches = new ArrayList<>();
+            scan(query, s -> true, false, r -> matches.add(r));
+            Collections.sort(matches, new Sorter(query.getSortBy(), query.getSortOrder()));
+            matches.stream().skip(offset).limit(count).forEach(r -> visitor.visit(r));
+        } else {
+            // same as the memory DAO, sort by descending time when a date range is given
+            boolean descending = query.getFromDate() != null || query.getToDate() != null;
+            long[] seen = new long[1];
+            scan(
+                    query,
+                    s -> true,
+                    descending,
+                    r -> {
+                        long position = seen[0]++;
+                        if (position >= offset) {
+                            visitor.visit(r);
+                        }
+                        return position + 1 < offset + count;
+                    });
+        }
+    }
+
+    @Override
+    public long getCount(Query query) {
+        Query unpaged = query.clone();
+        unpaged.setSortBy(null);
+        unpaged.setOffset(null);
+        unpaged.setCount(null);
+        long[] count = new long[1];
+        getRequests(unpaged, (data, aggregates) -> count[0]++);
+        long result = count[0];
+        if (query.getOffset() != null) {
+            result = Math.max(0, result - query.getOffset());
+        }
+        if (query.getCount() != null) {
+            result = Math.min(result, query.getCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<RequestData> getIterator(Query query) {
+        return getRequests(query).iterator();
+    }
+
+    @Override
+    public List<RequestData> getOwsRequests() {
+        return getRequests(new Query().filter("service", null, Comparison.NEQ));
+    }
+
+    @Override
+    public List<RequestData> getOwsRequests(String service, String operation, String version) {
+        Query query = new Query().filter("service", service, Comparison.EQ);
+        if (operation != null) {
+            query.and("operation", operation, Comparison.EQ);
+        }
+        if (version != null) {
+            query.and("owsVersion", version, Comparison.EQ);
+        }
+        return getRequests(query);
+    }
+
+    /**
+     * Scans the live, buffered and stored requests matching the query filter and date range,
+     * ignoring sorting and paging
+     *
+     * @param segmentFilter additional segment selection
+     * @param descending scan from the most recent requests to the oldest ones
+     * @param visitor receives the matching requests, returns false to stop the scan
+     */
+    void scan(
+            Query query,
+            Predicate<ColumnarSegment> segmentFilter,
+            boolean descending,
+            Predicate<RequestData> visitor) {
+        Predicate<RequestData> matcher = toPredicate(query);
+
+        // snapshot the current state
+        List<RequestData> memory = new ArrayList<>();
+        List<ColumnarSegment> stored;
+        lock.readLock().lock();
+        try {
+            memory.addAll(flushing);
+            for (Pending p : buffer) {
+                memory.add(p.data);
+            }
+            stored = new ArrayList<>(segments.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        memory.addAll(live);
+        if (descending) {
+            Collections.reverse(memory);
+            Collections.reverse(stored);
+        }
+
+        if (descending && !visit(memory, matcher, visitor)) {
+            return;
+        }
+        for (ColumnarSegment segment : stored) {
+            if (!segment.overlaps(query.getFromDate(), query.getToDate())
+                    || !segmentFilter.test(segment)) {
+                continue;
+            }
+            try {
+                ColumnarSegment.Reader reader = segment.read();
+                if (!mightMatch(query.getFilter(), reader)) {
+                    continue;
+                }
+                List<RequestData> requests = reader.getRequests();
+                if (descending) {
+                    requests = new ArrayList<>(requests);
+                    Collections.reverse(requests);
+                }
+                if (!visit(requests, matcher, visitor)) {
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read monitoring history " + segment, e);
+            }
+        }
+        if (!descending) {
+            visit(memory, matcher, visitor);
+        }
+    }
+
+    /** @return false if the visitor asked to stop the scan */
+    private boolean visit(
+            List<RequestData> requests,
+            Predicate<RequestData> matcher,
+            Predicate<RequestData> visitor) {
+        for (RequestData r : requests) {
+            if (matcher.test(r) && !visitor.test(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Predicate<RequestData> toPredicate(Query query) {
+        Predicate<RequestData> result = r -> true;
+        if (query.getFilter() != null) {
+            result = toPredicate(query.getFilter());
+        }
+        if (query.getFromDate() != null || query.getToDate() != null) {
+            DateRange range = new DateRange(query.getFromDate(), query.getToDate());
+            result = result.and(range::matches);
+        }
+        return result;
+    }
+
+    private Predicate<RequestData> toPredicate(Filter filter) {
+        if (filter instanceof CompositeFilter) {
+            List<Predicate<RequestData>> children = new ArrayList<>();
+            for (Filter child : ((CompositeFilter) filter).getFilters()) {
+                children.add(toPredicate(child));
+            }
+            if (filter instanceof Or) {
+                return r -> children.stream().anyMatch(p -> p.test(r));
+            }
+            return r -> children.stream().allMatch(p -> p.test(r));
+        }
+        PropertyCompare compare =
+                new PropertyCompare(filter.getLeft(), filter.getType(), filter.getRight());
+        return compare::matches;
+    }
+
+    /**
+     * Checks the filter against the segment dictionaries, returns false if the filter looks for
+     * string values that are not in the segment at all
+     */
+    private boolean mightMatch(Filter filter, ColumnarSegment.Reader reader) throws IOException {
+        if (filter == null) {
+            return true;
+        }
+        if (filter instanceof CompositeFilter) {
+            List<Filter> children = ((CompositeFilter) filter).getFilters();
+            if (filter instanceof Or) {
+                for (Filter child : children) {
+                    if (mightMatch(child, reader)) {
+                        return true;
+                    }
+                }
+                return children.isEmpty();
+            }
+            for (Filter child : children) {
+                if (!mightMatch(child, reader)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (filter.getType() != Comparison.EQ && filter.getType() != Comparison.IN) {
+            return true;
+        }
+        String property;
+        Object value;
+        if (filter.getLeft() instanceof String
+                && ColumnarSegment.COLUMNS_BY_NAME.containsKey(filter.getLeft())) {
+            property = (String) filter.getLeft();
+            value = filter.getRight();
+        } else if (filter.getRight() instanceof String
+                && ColumnarSegment.COLUMNS_BY_NAME.containsKey(filter.getRight())) {
+            property = (String) filter.getRight();
+            value = filter.getLeft();
+        } else {
+            return true;
+        }
+        Set<String> dictionary = reader.getDictionary(property);
+        if (dictionary == null) {
+            return true;
+        }
+        Collection<?> values =
+                value instanceof Collection
+                        ? (Collection<?>) value
+                        : Collections.singletonList(value);
+        for (Object v : values) {
+            // nulls are not in the dictionary, but they might be in the column
+            if (v == null || !(v instanceof String) || dictionary.contains(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (flushLock) {
+            lock.writeLock().lock();
+            try {
+                live.clear();
+                buffer.clear();
+                flushing = Collections.emptyList();
+                for (ColumnarSegment segment : segments.values()) {
+                    FileUtils.deleteQuietly(segment.file);
+                }
+                segments.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        flushQuietly(true);
+        live.clear();
+    }
+
+    /** A completed request waiting to be written */
+    static class Pending {
+
+        final RequestData data;
+
+        final long savedAt = System.currentTimeMillis();
+
+        Pending(RequestData data) {
+            this.data = data;
+        }
+    }
+}
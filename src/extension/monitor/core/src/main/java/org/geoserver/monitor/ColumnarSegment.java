@@ -0,0 +1,691 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import org.geoserver.monitor.RequestData.Category;
+import org.geoserver.monitor.RequestData.Status;
+
+/**
+ * An immutable, compressed, columnar file holding a batch of {@link RequestData}, used by {@link
+ * ColumnarMonitorDAO}.
+ *
+ * <p>The file starts with a header (row count, id and start time ranges) followed by one
+ * separately deflated block per column. Numbers are stored as deltas in variable length encoding,
+ * strings are dictionary encoded, so that repetitive values such as service, operation, layer and
+ * user names take a few bits per row. The header and the dictionaries can be read without decoding
+ * the rows, allowing to skip segments that cannot match a query.
+ *
+ * <p>The request body, the error stack trace, the bounding box and the processing times are not
+ * stored.
+ */
+class ColumnarSegment {
+
+    static final int MAGIC = 0x474D4F4E;
+
+    static final byte VERSION = 1;
+
+    static final String EXTENSION = ".seg";
+
+    /** The stored columns, in file order */
+    static final List<Column<?>> COLUMNS =
+            Collections.unmodifiableList(
+                    Arrays.asList(
+                            new LongColumn("id", RequestData::getId, RequestData::setId),
+                            new EnumColumn<>(
+                                    "status",
+                                    Status.class,
+                                    RequestData::getStatus,
+                                    RequestData::setStatus),
+                            new EnumColumn<>(
+                                    "category",
+                                    Category.class,
+                                    RequestData::getCategory,
+                                    RequestData::setCategory),
+                            new StringColumn("path", RequestData::getPath, RequestData::setPath),
+                            new StringColumn(
+                                    "queryString",
+                                    RequestData::getQueryString,
+                                    RequestData::setQueryString),
+                            new StringColumn(
+                                    "httpMethod",
+                                    RequestData::getHttpMethod,
+                                    RequestData::setHttpMethod),
+                            new DateColumn(
+                                    "startTime",
+                                    RequestData::getStartTime,
+                                    RequestData::setStartTime),
+                            new DateColumn(
+                                    "endTime", RequestData::getEndTime, RequestData::setEndTime),
+                            new LongColumn(
+                                    "totalTime",
+                                    RequestData::getTotalTime,
+                                    RequestData::setTotalTime),
+                            new StringColumn(
+                                    "remoteAddr",
+                                    RequestData::getRemoteAddr,
+                                    RequestData::setRemoteAddr),
+                            new StringColumn(
+                                    "remoteHost",
+                                    RequestData::getRemoteHost,
+                                    RequestData::setRemoteHost),
+                            new StringColumn(
+                                    "remoteUser",
+                                    RequestData::getRemoteUser,
+                                    RequestData::setRemoteUser),
+                            new StringColumn(
+                                    "remoteUserAgent",
+                                    RequestData::getRemoteUserAgent,
+                                    RequestData::setRemoteUserAgent),
+                            new StringColumn(
+                                    "remoteCountry",
+                                    RequestData::getRemoteCountry,
+                                    RequestData::setRemoteCountry),
+                            new StringColumn(
+                                    "remoteCity",
+                                    RequestData::getRemoteCity,
+                                    RequestData::setRemoteCity),
+                            new DoubleColumn(
+                                    "remoteLat",
+                                    RequestData::getRemoteLat,
+                                    RequestData::setRemoteLat),
+                            new DoubleColumn(
+                                    "remoteLon",
+                                    RequestData::getRemoteLon,
+                                    RequestData::setRemoteLon),
+                            new StringColumn("host", RequestData::getHost, RequestData::setHost),
+                            new StringColumn(
+                                    "internalHost",
+                                    RequestData::getInternalHost,
+                                    RequestData::setInternalHost),
+                            new StringColumn(
+                                    "service", RequestData::getService, RequestData::setService),
+                            new StringColumn(
+                                    "operation",
+                                    RequestData::getOperation,
+                                    RequestData::setOperation),
+                            new StringColumn(
+                                    "owsVersion",
+                                    RequestData::getOwsVersion,
+                                    RequestData::setOwsVersion),
+                            new StringColumn(
+                                    "subOperation",
+                                    RequestData::getSubOperation,
+                                    RequestData::setSubOperation),
+                            new StringListColumn(
+                                    "resources",
+                                    RequestData::getResources,
+                                    RequestData::setResources),
+                            new LongColumn(
+                                    "responseLength",
+                                    RequestData::getResponseLength,
+                                    RequestData::setResponseLength),
+                            new StringColumn(
+                                    "responseContentType",
+                                    RequestData::getResponseContentType,
+                                    RequestData::setResponseContentType),
+                            new StringColumn(
+                                    "errorMessage",
+                                    RequestData::getErrorMessage,
+                                    RequestData::setErrorMessage),
+                            new IntegerColumn(
+                                    "responseStatus",
+                                    RequestData::getResponseStatus,
+                                    RequestData::setResponseStatus),
+                            new StringColumn(
+                                    "httpReferer",
+                                    RequestData::getHttpReferer,
+                                    RequestData::setHttpReferer),
+                            new StringColumn(
+                                    "cacheResult",
+                                    RequestData::getCacheResult,
+                                    RequestData::setCacheResult),
+                            new StringColumn(
+                                    "missReason",
+                                    RequestData::getMissReason,
+                                    RequestData::setMissReason),
+                            new LongColumn(
+                                    "bodyContentLength",
+                                    RequestData::getBodyContentLength,
+                                    RequestData::setBodyContentLength),
+                            new StringColumn(
+                                    "bodyContentType",
+                                    RequestData::getBodyContentType,
+                                    RequestData::setBodyContentType)));
+
+    static final Map<String, Column<?>> COLUMNS_BY_NAME = new HashMap<>();
+
+    static {
+        for (Column<?> column : COLUMNS) {
+            COLUMNS_BY_NAME.put(column.name, column);
+        }
+    }
+
+    final File file;
+
+    final long sequence;
+
+    final int rows;
+
+    final long minId;
+
+    final long maxId;
+
+    /** Smallest request start time, Long.MAX_VALUE if no request had one */
+    final long minTime;
+
+    /** Largest request start time, Long.MIN_VALUE if no request had one */
+    final long maxTime;
+
+    private ColumnarSegment(
+            File file, long sequence, int rows, long minId, long maxId, long minTime, long maxTime) {
+        this.file = file;
+        this.sequence = sequence;
+        this.rows = rows;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+    }
+
+    /** Writes the requests into a new segment file */
+    static ColumnarSegment write(File file, long sequence, List<RequestData> requests)
+            throws IOException {
+        long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+        long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+        for (RequestData r : requests) {
+            minId = Math.min(minId, r.getId());
+            maxId = Math.max(maxId, r.getId());
+            if (r.getStartTime() != null) {
+                minTime = Math.min(minTime, r.getStartTime().getTime());
+                maxTime = Math.max(maxTime, r.getStartTime().getTime());
+            }
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp.toPath()))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(requests.size());
+            out.writeLong(minId);
+            out.writeLong(maxId);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            out.writeInt(COLUMNS.size());
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                for (Column<?> column : COLUMNS) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    column.write(requests, bytes);
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    deflater.reset();
+                    try (OutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+                        bytes.writeTo(dos);
+                    }
+                    out.writeUTF(column.name);
+                    out.writeInt(bytes.size());
+                    out.writeInt(compressed.size());
+                    compressed.writeTo(out);
+                }
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException | RuntimeException e) {
+            // do not leave partial files behind, the requests will be written again
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), file.toPath());
+        return new ColumnarSegment(
+                file, sequence, requests.size(), minId, maxId, minTime, maxTime);
+    }
+
+    /** Reads the segment header */
+    static ColumnarSegment open(File file, long sequence) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException(file + " is not a monitoring history segment");
+            }
+            int rows = in.readInt();
+            long minId = in.readLong();
+            long maxId = in.readLong();
+            long minTime = in.readLong();
+            long maxTime = in.readLong();
+            return new ColumnarSegment(file, sequence, rows, minId, maxId, minTime, maxTime);
+        }
+    }
+
+    /** @return true if the segment might contain requests started within the given range */
+    boolean overlaps(Date from, Date to) {
+        if (minTime > maxTime) {
+            // no start time at all, cannot match a date range
+            return from == null && to == null;
+        }
+        return (from == null || maxTime >= from.getTime()) && (to == null || minTime <= to.getTime());
+    }
+
+    /** Loads the whole segment in memory for decoding */
+    Reader read() throws IOException {
+        byte[] contents = Files.readAllBytes(file.toPath());
+        return new Reader(contents);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarSegment[" + file + ", rows=" + rows + "]";
+    }
+
+    /** Decodes the columns of a segment, on demand */
+    class Reader {
+
+        final Map<String, byte[]> blocks = new LinkedHashMap<>();
+
+        final Map<String, Object> decoded = new HashMap<>();
+
+        Reader(byte[] contents) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+            // skip the header, read already
+            in.skipBytes(4 + 1 + 4 + 8 * 4);
+            int columns = in.readInt();
+            for (int i = 0; i < columns; i++) {
+                String name = in.readUTF();
+                int length = in.readInt();
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                blocks.put(name, inflate(compressed, length));
+            }
+        }
+
+        private byte[] inflate(byte[] compressed, int length) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                byte[] result = new byte[length];
+                int read = 0;
+                while (read < length) {
+                    int n = inflater.inflate(result, read, length - read);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated column in " + file);
+                    }
+                    read += n;
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted column in " + file, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /**
+         * Returns the dictionary of a string column, without decoding the rows, or null if the
+         * column is not a string one
+         */
+        Set<String> getDictionary(String name) throws IOException {
+            Column<?> column = COLUMNS_BY_NAME.get(name);
+            byte[] block = blocks.get(name);
+            if (!(column instanceof StringColumn) || block == null) {
+                return null;
+            }
+            return new LinkedHashSet<>(
+                    Arrays.asList(StringColumn.readDictionary(new ByteArrayInputStream(block))));
+        }
+
+        /** Decodes all the rows */
+        List<RequestData> getRequests() throws IOException {
+            RequestData[] requests = new RequestData[rows];
+            for (int i = 0; i < rows; i++) {
+                requests[i] = new RequestData();
+            }
+            for (Column<?> column : COLUMNS) {
+                byte[] block = blocks.get(column.name);
+                if (block != null) {
+                    column.read(new ByteArrayInputStream(block), requests);
+                }
+            }
+            return Arrays.asList(requests);
+        }
+    }
+
+    /** Writes an unsigned variable length integer */
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of column");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** A stored {@link RequestData} property */
+    abstract static class Column<T> {
+
+        final String name;
+
+        final Function<RequestData, T> getter;
+
+        final BiConsumer<RequestData, T> setter;
+
+        Column(String name, Function<RequestData, T> getter, BiConsumer<RequestData, T> setter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        abstract void write(List<RequestData> requests, OutputStream out) throws IOException;
+
+        abstract void read(InputStream in, RequestData[] requests) throws IOException;
+    }
+
+    /** Stores deltas with the previous row */
+    static class LongColumn extends Column<Long> {
+
+        LongColumn(
+                String name, Function<RequestData, Long> getter, BiConsumer<RequestData, Long> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            long previous = 0;
+            for (RequestData r : requests) {
+                long value = getter.apply(r);
+                writeVarLong(out, zigZag(value - previous));
+                previous = value;
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            long previous = 0;
+            for (RequestData r : requests) {
+                long value = previous + unZigZag(readVarLong(in));
+                setter.accept(r, value);
+                previous = value;
+            }
+        }
+    }
+
+    /** Stores deltas with the previous non null row, with a null marker */
+    static class DateColumn extends Column<Date> {
+
+        DateColumn(
+                String name, Function<RequestData, Date> getter, BiConsumer<RequestData, Date> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            long previous = 0;
+            for (RequestData r : requests) {
+                Date value = getter.apply(r);
+                if (value == null) {
+                    out.write(0);
+                } else {
+                    out.write(1);
+                    writeVarLong(out, zigZag(value.getTime() - previous));
+                    previous = value.getTime();
+                }
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            long previous = 0;
+            for (RequestData r : requests) {
+                if (in.read() == 1) {
+                    long value = previous + unZigZag(readVarLong(in));
+                    setter.accept(r, new Date(value));
+                    previous = value;
+                }
+            }
+        }
+    }
+
+    static class IntegerColumn extends Column<Integer> {
+
+        IntegerColumn(
+                String name,
+                Function<RequestData, Integer> getter,
+                BiConsumer<RequestData, Integer> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            for (RequestData r : requests) {
+                Integer value = getter.apply(r);
+                // zero marks a null value
+                writeVarLong(out, value == null ? 0 : zigZag(value) + 1);
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            for (RequestData r : requests) {
+                long value = readVarLong(in);
+                if (value != 0) {
+                    setter.accept(r, (int) unZigZag(value - 1));
+                }
+            }
+        }
+    }
+
+    static class DoubleColumn extends Column<Double> {
+
+        DoubleColumn(
+                String name,
+                Function<RequestData, Double> getter,
+                BiConsumer<RequestData, Double> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            DataOutputStream dos = new DataOutputStream(out);
+            for (RequestData r : requests) {
+                dos.writeDouble(getter.apply(r));
+            }
+            dos.flush();
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            DataInputStream dis = new DataInputStream(in);
+            for (RequestData r : requests) {
+                setter.accept(r, dis.readDouble());
+            }
+        }
+    }
+
+    static class EnumColumn<E extends Enum<E>> extends Column<E> {
+
+        final E[] values;
+
+        EnumColumn(
+                String name,
+                Class<E> type,
+                Function<RequestData, E> getter,
+                BiConsumer<RequestData, E> setter) {
+            super(name, getter, setter);
+            this.values = type.getEnumConstants();
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            for (RequestData r : requests) {
+                E value = getter.apply(r);
+                writeVarLong(out, value == null ? 0 : value.ordinal() + 1);
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            for (RequestData r : requests) {
+                int code = (int) readVarLong(in);
+                setter.accept(r, code == 0 ? null : values[code - 1]);
+            }
+        }
+    }
+
+    /** Dictionary encoded strings, the codes are the dictionary positions plus one, zero is null */
+    static class StringColumn extends Column<String> {
+
+        StringColumn(
+                String name,
+                Function<RequestData, String> getter,
+                BiConsumer<RequestData, String> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (RequestData r : requests) {
+                String value = getter.apply(r);
+                if (value != null) {
+                    dictionary.putIfAbsent(value, dictionary.size() + 1);
+                }
+            }
+            writeDictionary(dictionary, out);
+            for (RequestData r : requests) {
+                String value = getter.apply(r);
+                writeVarLong(out, value == null ? 0 : dictionary.get(value));
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            String[] dictionary = readDictionary(in);
+            for (RequestData r : requests) {
+                int code = (int) readVarLong(in);
+                if (code != 0) {
+                    setter.accept(r, dictionary[code - 1]);
+                }
+            }
+        }
+
+        static void writeDictionary(Map<String, Integer> dictionary, OutputStream out)
+                throws IOException {
+            writeVarLong(out, dictionary.size());
+            for (String value : dictionary.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        static String[] readDictionary(InputStream in) throws IOException {
+            String[] dictionary = new String[(int) readVarLong(in)];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                if (in.read(bytes) != bytes.length) {
+                    throw new IOException("Unexpected end of column");
+                }
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return dictionary;
+        }
+    }
+
+    /** Dictionary encoded string lists, each row has the list size followed by the codes */
+    static class StringListColumn extends Column<List<String>> {
+
+        StringListColumn(
+                String name,
+                Function<RequestData, List<String>> getter,
+                BiConsumer<RequestData, List<String>> setter) {
+            super(name, getter, setter);
+        }
+
+        @Override
+        void write(List<RequestData> requests, OutputStream out) throws IOException {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (RequestData r : requests) {
+                List<String> values = getter.apply(r);
+                if (values != null) {
+                    for (String value : values) {
+                        if (value != null) {
+                            dictionary.putIfAbsent(value, dictionary.size() + 1);
+                        }
+                    }
+                }
+            }
+            StringColumn.writeDictionary(dictionary, out);
+            for (RequestData r : requests) {
+                List<String> values = getter.apply(r);
+                if (values == null) {
+                    writeVarLong(out, 0);
+                } else {
+                    writeVarLong(out, values.size());
+                    for (String value : values) {
+                        writeVarLong(out, value == null ? 0 : dictionary.get(value));
+                    }
+                }
+            }
+        }
+
+        @Override
+        void read(InputStream in, RequestData[] requests) throws IOException {
+            String[] dictionary = StringColumn.readDictionary(in);
+            for (RequestData r : requests) {
+                int size = (int) readVarLong(in);
+                List<String> values = new ArrayList<>(Math.max(1, size));
+                for (int i = 0; i < size; i++) {
+                    int code = (int) readVarLong(in);
+                    values.add(code == 0 ? null : dictionary[code - 1]);
+                }
+                setter.accept(r, values);
+            }
+        }
+    }
+}
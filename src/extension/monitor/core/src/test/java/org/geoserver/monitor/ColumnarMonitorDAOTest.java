@@ -0,0 +1,172 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.geoserver.monitor.MonitorTestData.assertCovered;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.geoserver.monitor.Query.Comparison;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnarMonitorDAOTest extends MonitorDAOTestSupport {
+
+    @ClassRule public static TemporaryFolder folder = new TemporaryFolder();
+
+    static File directory;
+
+    @BeforeClass
+    public static void createDAO() throws Exception {
+        directory = folder.newFolder("history");
+        // small segments, so that the test data spans several of them, and two days
+        dao = new ColumnarMonitorDAO(directory, 3, 0);
+        setUpData();
+        ((ColumnarMonitorDAO) dao).flush(true);
+    }
+
+    @AfterClass
+    public static void disposeDAO() {
+        dao.dispose();
+    }
+
+    @Override
+    @Test
+    public void testUpdate() throws Exception {
+        // only live requests can be updated, the stored ones are immutable
+        ColumnarMonitorDAO columnar = (ColumnarMonitorDAO) dao;
+        RequestData data = dao.init(new RequestData());
+        data.setPath("/live");
+        dao.add(data);
+        try {
+            data.setPath("/live_updated");
+            dao.update(data);
+            assertEquals("/live_updated", dao.getRequest(data.getId()).getPath());
+        } finally {
+            columnar.live.remove(data);
+        }
+    }
+
+    @Test
+    public void testStorageLayout() throws Exception {
+        ColumnarMonitorDAO columnar = (ColumnarMonitorDAO) dao;
+        assertTrue(columnar.buffer.isEmpty());
+        int rows = 0;
+        for (ColumnarSegment segment : columnar.segments.values()) {
+            assertTrue(segment.rows <= 3);
+            assertTrue(segment.file.exists());
+            rows += segment.rows;
+        }
+        assertEquals(testData.getData().size(), rows);
+        // partitioned by day
+        assertEquals(2, directory.listFiles(File::isDirectory).length);
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        ColumnarMonitorDAO reopened = new ColumnarMonitorDAO(directory, 3, 0);
+        try {
+            List<RequestData> requests = reopened.getRequests();
+            assertEquals(testData.getData().size(), requests.size());
+
+            // all the stored properties survived the round trip
+            RequestData data = reopened.getRequest(14);
+            RequestData original = testData.getData().get(13);
+            assertEquals(original.getPath(), data.getPath());
+            assertEquals(original.getStartTime(), data.getStartTime());
+            assertEquals(original.getEndTime(), data.getEndTime());
+            assertEquals(original.getStatus(), data.getStatus());
+            assertEquals(original.getService(), data.getService());
+            assertEquals(original.getOperation(), data.getOperation());
+            assertEquals(Arrays.asList("widgets", "things"), data.getResources());
+            assertNull(data.getRemoteUser());
+
+            // new ids do not clash with the stored ones
+            assertEquals(21, reopened.init(new RequestData()).getId());
+        } finally {
+            reopened.dispose();
+        }
+    }
+
+    @Test
+    public void testFilterDictionaryColumns() throws Exception {
+        assertCovered(
+                dao.getRequests(new Query().filter("service", "bam", Comparison.EQ)), 14, 18, 19);
+        assertCovered(
+                dao.getRequests(
+                        new Query()
+                                .filter("service", "foo", Comparison.EQ)
+                                .and("operation", "x", Comparison.EQ)),
+                11,
+                15,
+                16,
+                20);
+        assertEquals(0, dao.getCount(new Query().filter("service", "notThere", Comparison.EQ)));
+        assertEquals(
+                2, dao.getCount(new Query().filter("service", "bam", Comparison.EQ).page(1l, 5l)));
+    }
+
+    @Test
+    public void testFlushFailure() throws Exception {
+        File failing = folder.newFolder("failing");
+        // a file where the day directory should be, cannot be written
+        File day = new File(failing, "2020-06-15");
+        assertTrue(day.createNewFile());
+        ColumnarMonitorDAO columnar = new ColumnarMonitorDAO(failing, 3, 0);
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                RequestData data = columnar.init(new RequestData());
+                data.setPath("/failing" + i);
+                data.setStartTime(new Date(1592215200000l + i));
+                columnar.add(data);
+                columnar.save(data);
+                ids.add(data.getId());
+            }
+            try {
+                columnar.flush(true);
+                fail("The flush should have failed");
+            } catch (IOException e) {
+                // expected
+            }
+            // nothing lost, still in order
+            assertEquals(ids, getIds(columnar.getRequests()));
+            assertTrue(columnar.segments.isEmpty());
+
+            // retried once writable
+            assertTrue(day.delete());
+            columnar.flush(true);
+            assertTrue(columnar.buffer.isEmpty());
+            assertEquals(ids, getIds(columnar.getRequests()));
+            int rows = 0;
+            for (ColumnarSegment segment : columnar.segments.values()) {
+                rows += segment.rows;
+            }
+            assertEquals(5, rows);
+            assertEquals(0, day.listFiles((d, n) -> n.endsWith(".tmp")).length);
+        } finally {
+            columnar.dispose();
+        }
+    }
+
+    private List<Long> getIds(List<RequestData> requests) {
+        List<Long> result = new ArrayList<>();
+        for (RequestData r : requests) {
+            result.add(r.getId());
+        }
+        return result;
+    }
+}
@@ -12,12 +12,24 @@ import com.google.common.base.Stopwatch;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
@@ -47,6 +59,38 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
     /** A logger for this class. */
     private static final Logger LOGGER = Logging.getLogger(VectorTileMapOutputFormat.class);
 
+    /**
+     * Maximum number of layers whose features are fetched and processed concurrently while
+     * building a single tile. A value of 1 or less disables concurrent processing.
+     */
+    static final int PARALLELISM =
+            Integer.getInteger(
+                    "VECTOR_TILES_PARALLELISM",
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Number of features that can be buffered between the reading and processing stages */
+    static final int QUEUE_SIZE = Integer.getInteger("VECTOR_TILES_QUEUE_SIZE", 256);
+
+    /**
+     * Maximum number of layers processed in background across all requests, and of background
+     * readers feeding them
+     */
+    static final int THREADS =
+            Integer.getInteger("VECTOR_TILES_THREADS", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum number of layers waiting for a processing thread, when full the layers are fetched by
+     * the request thread instead
+     */
+    static final int TASK_QUEUE_SIZE = Integer.getInteger("VECTOR_TILES_TASK_QUEUE_SIZE", 100);
+
+    /** Marks the end of the features of a layer in the processing queues */
+    private static final Object END = new Object();
+
+    private static ExecutorService executor;
+
+    private static ExecutorService readers;
+
     private final VectorTileBuilderFactory tileBuilderFactory;
 
     private boolean clipToMapBounds;
@@ -97,53 +141,76 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         final VectorTileBuilder vectorTileBuilder =
                 this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
+        // layers are consumed in map order, at most PARALLELISM of them are in flight
+        List<LayerFetch> fetches = new ArrayList<>();
+        int consumed = 0;
         CoordinateReferenceSystem sourceCrs;
-        for (Layer layer : mapContent.layers()) {
+        try {
+            for (Layer layer : mapContent.layers()) {
 
-            FeatureSource<?, ?> featureSource = layer.getFeatureSource();
-            GeometryDescriptor geometryDescriptor =
-                    featureSource.getSchema().getGeometryDescriptor();
-            if (null == geometryDescriptor) {
-                continue;
-            }
+                FeatureSource<?, ?> featureSource = layer.getFeatureSource();
+                GeometryDescriptor geometryDescriptor =
+                        featureSource.getSchema().getGeometryDescriptor();
+                if (null == geometryDescriptor) {
+                    continue;
+                }
 
-            sourceCrs = geometryDescriptor.getType().getCoordinateReferenceSystem();
-            int buffer =
-                    VectorMapRenderUtils.getComputedBuffer(
-                            mapContent.getBuffer(),
-                            VectorMapRenderUtils.getFeatureStyles(
-                                    layer,
-                                    paintArea,
-                                    VectorMapRenderUtils.getMapScale(mapContent, renderingArea),
-                                    (FeatureType) featureSource.getSchema()));
-            if (this.tileBuilderFactory.shouldOversampleScale()) {
-                // buffer is in pixels (style pixels), need to convert to paint area pixels
-                buffer *=
-                        Math.max(
-                                Math.max(
-                                        this.tileBuilderFactory.getOversampleX(),
-                                        this.tileBuilderFactory.getOversampleY()),
-                                1); // if 0 (i.e. test case), don't expand
-            }
+                sourceCrs = geometryDescriptor.getType().getCoordinateReferenceSystem();
+                int buffer =
+                        VectorMapRenderUtils.getComputedBuffer(
+                                mapContent.getBuffer(),
+                                VectorMapRenderUtils.getFeatureStyles(
+                                        layer,
+                                        paintArea,
+                                        VectorMapRenderUtils.getMapScale(mapContent, renderingArea),
+                                        (FeatureType) featureSource.getSchema()));
+                if (this.tileBuilderFactory.shouldOversampleScale()) {
+                    // buffer is in pixels (style pixels), need to convert to paint area pixels
+                    buffer *=
+                            Math.max(
+                                    Math.max(
+                                            this.tileBuilderFactory.getOversampleX(),
+                                            this.tileBuilderFactory.getOversampleY()),
+                                    1); // if 0 (i.e. test case), don't expand
+                }
 
-            Query query = getStyleQuery(layer, mapContent);
-            Hints hints = query.getHints();
+                Query query = getStyleQuery(layer, mapContent);
+                Hints hints = query.getHints();
 
-            Pipeline pipeline =
-                    getPipeline(
-                            mapContent,
-                            renderingArea,
-                            paintArea,
-                            sourceCrs,
-                            featureSource.getSupportedHints(),
-                            hints,
-                            buffer);
+                Pipeline pipeline =
+                        getPipeline(
+                                mapContent,
+                                renderingArea,
+                                paintArea,
+                                sourceCrs,
+                                featureSource.getSupportedHints(),
+                                hints,
+                                buffer);
 
-            hints.remove(Hints.SCREENMAP);
+                hints.remove(Hints.SCREENMAP);
 
-            FeatureCollection<?, ?> features = featureSource.getFeatures(query);
+                FeatureCollection<?, ?> features = featureSource.getFeatures(query);
 
-            run(features, pipeline, geometryDescriptor, vectorTileBuilder, layer);
+                if (PARALLELISM <= 1) {
+                    run(features, pipeline, geometryDescriptor, vectorTileBuilder, layer);
+                    continue;
+                }
+                LayerFetch fetch = new LayerFetch(features, pipeline, geometryDescriptor, layer);
+                fetches.add(fetch.start());
+                if (fetches.size() - consumed >= PARALLELISM) {
+                    fetches.get(consumed).drain(vectorTileBuilder);
+                    consumed++;
+                }
+            }
+            while (consumed < fetches.size()) {
+                fetches.get(consumed).drain(vectorTileBuilder);
+                consumed++;
+            }
+        } finally {
+            // stop whatever is still running, e.g., in case of errors
+            for (int i = consumed; i < fetches.size(); i++) {
+                fetches.get(i).cancel();
+            }
         }
 
         WebMap map = vectorTileBuilder.build(mapContent);
@@ -207,51 +274,331 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         Stopwatch sw = Stopwatch.createStarted();
         int count = 0;
         int total = 0;
-        Feature feature;
 
         try (FeatureIterator<?> it = features.features()) {
             while (it.hasNext()) {
-                feature = it.next();
                 total++;
-                Geometry originalGeom;
-                Geometry finalGeom;
-
-                originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
-                try {
-                    finalGeom = pipeline.execute(originalGeom);
-                } catch (Exception processingException) {
-                    LOGGER.log(
-                            Level.WARNING,
-                            processingException.getLocalizedMessage(),
-                            processingException);
-                    continue;
-                }
-                if (finalGeom.isEmpty()) {
-                    continue;
+                ProcessedFeature processed = process(it.next(), pipeline, geometryDescriptor);
+                if (processed != null) {
+                    processed.addTo(vectorTileBuilder);
+                    count++;
                 }
-
-                final String layerName = feature.getType().getName().getLocalPart();
-                final String featureId = feature.getIdentifier().toString();
-                final String geometryName = geometryDescriptor.getName().getLocalPart();
-
-                final Map<String, Object> properties = getProperties(feature);
-
-                vectorTileBuilder.addFeature(
-                        layerName, featureId, geometryName, finalGeom, properties);
-                count++;
             }
         }
         sw.stop();
+        logStats(layer, count, total, sw);
+    }
+
+    /**
+     * Runs the geometry of the feature through the pipeline and collects its properties.
+     *
+     * @return the processed feature, or {@code null} if the feature should be skipped
+     */
+    private ProcessedFeature process(
+            Feature feature, Pipeline pipeline, GeometryDescriptor geometryDescriptor) {
+        Geometry originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
+        Geometry finalGeom;
+        try {
+            finalGeom = pipeline.execute(originalGeom);
+        } catch (Exception processingException) {
+            LOGGER.log(
+                    Level.WARNING, processingException.getLocalizedMessage(), processingException);
+            return null;
+        }
+        if (finalGeom.isEmpty()) {
+            return null;
+        }
+
+        return new ProcessedFeature(
+                feature.getType().getName().getLocalPart(),
+                feature.getIdentifier().toString(),
+                geometryDescriptor.getName().getLocalPart(),
+                finalGeom,
+                getProperties(feature));
+    }
+
+    private void logStats(Layer layer, int count, int total, Stopwatch sw) {
         if (LOGGER.isLoggable(Level.FINE)) {
             String msg =
                     String.format(
                             "Added %,d out of %,d features of '%s' in %s",
                             count, total, layer.getTitle(), sw);
-            // System.err.println(msg);
             LOGGER.fine(msg);
         }
     }
 
+    /**
+     * The layer processing pool. Layers of a request are submitted in order, and the queue is
+     * FIFO, so a running layer never waits on an earlier one that did not get a thread yet.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            THREADS,
+                            THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(TASK_QUEUE_SIZE),
+                            threadFactory("VectorTileLayer-"));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * The reader pool, with no queue: a processing thread waiting for its reader to get a thread
+     * would hold its own for nothing, it reads the features by itself instead.
+     */
+    private static synchronized ExecutorService getReaders() {
+        if (readers == null) {
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            THREADS,
+                            THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new SynchronousQueue<>(),
+                            threadFactory("VectorTileReader-"));
+            pool.allowCoreThreadTimeOut(true);
+            readers = pool;
+        }
+        return readers;
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        return new ThreadFactory() {
+            final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /** A feature ready to be added to the tile */
+    static class ProcessedFeature {
+        final String layerName;
+        final String featureId;
+        final String geometryName;
+        final Geometry geometry;
+        final Map<String, Object> properties;
+
+        ProcessedFeature(
+                String layerName,
+                String featureId,
+                String geometryName,
+                Geometry geometry,
+                Map<String, Object> properties) {
+            this.layerName = layerName;
+            this.featureId = featureId;
+            this.geometryName = geometryName;
+            this.geometry = geometry;
+            this.properties = properties;
+        }
+
+        void addTo(VectorTileBuilder builder) {
+            builder.addFeature(layerName, featureId, geometryName, geometry, properties);
+        }
+    }
+
+    /** Wraps a failure in one of the background stages, to be rethrown in the request thread */
+    static class Failure {
+        final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Reads and processes the features of a single layer in the background. Features are read by
+     * one thread and handed over to a second one running the geometry pipeline, through bounded
+     * queues so that a slow consumer is not flooded. The pipeline is not thread safe (e.g., the
+     * screenmap used for pre-processing), so each layer gets a single processing thread, which also
+     * preserves the order in which features get added to the tile.
+     *
+     * <p>When no processing thread is available the layer is fetched by the request thread, once
+     * its turn to be added to the tile comes, and when no reader thread is available the
+     * processing thread reads the features itself.
+     */
+    class LayerFetch {
+        final FeatureCollection<?, ?> features;
+        final Pipeline pipeline;
+        final GeometryDescriptor geometryDescriptor;
+        final Layer layer;
+
+        final BlockingQueue<Object> read = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        final BlockingQueue<Object> processed = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+        volatile boolean cancelled;
+
+        /** True if the layer is fetched by the request thread, the pools being saturated */
+        boolean inline;
+
+        LayerFetch(
+                FeatureCollection<?, ?> features,
+                Pipeline pipeline,
+                GeometryDescriptor geometryDescriptor,
+                Layer layer) {
+            this.features = features;
+            this.pipeline = pipeline;
+            this.geometryDescriptor = geometryDescriptor;
+            this.layer = layer;
+        }
+
+        LayerFetch start() {
+            try {
+                getExecutor().execute(transferring(this::processFeatures));
+            } catch (RejectedExecutionException e) {
+                inline = true;
+            }
+            return this;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        private Runnable transferring(Runnable task) {
+            ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+            return () -> {
+                transfer.apply();
+                try {
+                    task.run();
+                } finally {
+                    transfer.cleanup();
+                }
+            };
+        }
+
+        private void readFeatures() {
+            Object last = END;
+            try (FeatureIterator<?> it = features.features()) {
+                while (!cancelled && it.hasNext()) {
+                    put(read, it.next());
+                }
+            } catch (Throwable t) {
+                last = new Failure(t);
+            } finally {
+                put(read, last);
+            }
+        }
+
+        private void processFeatures() {
+            Stopwatch sw = Stopwatch.createStarted();
+            int count = 0;
+            int total = 0;
+            Object last = END;
+            try {
+                if (startReading()) {
+                    Object item = END;
+                    while (!cancelled && (item = take(read)) instanceof Feature) {
+                        total++;
+                        if (processAndQueue((Feature) item)) {
+                            count++;
+                        }
+                    }
+                    // forward the end marker, or the reading failure
+                    if (!(item instanceof Feature)) {
+                        last = item;
+                    }
+                } else {
+                    try (FeatureIterator<?> it = features.features()) {
+                        while (!cancelled && it.hasNext()) {
+                            total++;
+                            if (processAndQueue(it.next())) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                last = new Failure(t);
+            } finally {
+                put(processed, last);
+            }
+            sw.stop();
+            logStats(layer, count, total, sw);
+        }
+
+        /** Starts the background reader, returns false if no thread is available for it */
+        private boolean startReading() {
+            try {
+                getReaders().execute(transferring(this::readFeatures));
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /** Runs the feature through the pipeline, and queues the result, if not skipped */
+        private boolean processAndQueue(Feature feature) {
+            ProcessedFeature result = process(feature, pipeline, geometryDescriptor);
+            if (result != null) {
+                put(processed, result);
+                return true;
+            }
+            return false;
+        }
+
+        /** Adds the processed features to the builder, in the order they were read */
+        void drain(VectorTileBuilder builder) throws IOException {
+            if (inline) {
+                run(features, pipeline, geometryDescriptor, builder, layer);
+                return;
+            }
+            try {
+                Object item;
+                while ((item = processed.take()) instanceof ProcessedFeature) {
+                    ((ProcessedFeature) item).addTo(builder);
+                }
+                if (item instanceof Failure) {
+                    Throwable cause = ((Failure) item).cause;
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new ServiceException(cause);
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+                throw new ServiceException("Interrupted while building the vector tile", e);
+            } finally {
+                cancelled = true;
+            }
+        }
+
+        /** Puts the item in the queue, giving up if the fetch gets cancelled */
+        private void put(BlockingQueue<Object> queue, Object item) {
+            try {
+                while (!cancelled && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    // wait for the consumer to catch up
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Takes the next item from the queue, returns {@link #END} if the fetch gets cancelled */
+        private Object take(BlockingQueue<Object> queue) throws InterruptedException {
+            Object item = null;
+            while (!cancelled && item == null) {
+                item = queue.poll(100, TimeUnit.MILLISECONDS);
+            }
+            return item == null ? END : item;
+        }
+    }
+
     /** @return {@code null}, not a raster format. */
     @Override
     public MapProducerCapabilities getCapabilities(String format) {
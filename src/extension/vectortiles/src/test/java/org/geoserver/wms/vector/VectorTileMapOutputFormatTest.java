@@ -11,6 +11,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -64,6 +66,7 @@ import org.junit.Test;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -453,6 +456,40 @@ public class VectorTileMapOutputFormatTest {
                         any(Map.class));
     }
 
+    @Test
+    public void testLayerOrder() throws Exception {
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(-90, 90, 0, 180, WGS84);
+        Rectangle renderingArea = new Rectangle(256, 256);
+
+        WMSMapContent mapContent =
+                createMapContent(mapBounds, renderingArea, null, lineLayer, pointLayer);
+
+        WebMap mockMap = mock(WebMap.class);
+        when(tileBuilderMock.build(same(mapContent))).thenReturn(mockMap);
+
+        assertSame(mockMap, outputFormat.produceMap(mapContent));
+
+        // layers are processed concurrently, but added to the tile in map order
+        InOrder inOrder = inOrder(tileBuilderMock);
+        for (String layer : new String[] {"lines", "points"}) {
+            inOrder.verify(tileBuilderMock, atLeastOnce())
+                    .addFeature(
+                            eq(layer),
+                            any(String.class),
+                            eq("geom"),
+                            any(Geometry.class),
+                            any(Map.class));
+        }
+        inOrder.verify(tileBuilderMock).build(mapContent);
+        verify(tileBuilderMock, times(3))
+                .addFeature(
+                        eq("points"),
+                        any(String.class),
+                        eq("geom"),
+                        any(Geometry.class),
+                        any(Map.class));
+    }
+
     private WMSMapContent createMapContent(
             ReferencedEnvelope mapBounds, Rectangle renderingArea, Integer buffer, Layer... layers)
             throws Exception {
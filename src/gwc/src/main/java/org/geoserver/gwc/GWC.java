@@ -222,6 +222,8 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     private BlobStoreAggregator blobStoreAggregator;
 
+    private final TruncationQueue truncationQueue;
+
     /**
      * Constructor for the GWC mediator
      *
@@ -272,6 +274,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
         this.jdbcConfigurationStorage = jdbcConfigurationStorage;
         this.blobStoreAggregator = blobStoreAggregator;
+        this.truncationQueue = new TruncationQueue(this);
     }
 
     /** Updates the configurable lock provider to use the specified bean */
@@ -341,6 +344,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         if (this.catalogStyleChangeListener != null) {
             catalog.removeListener(this.catalogStyleChangeListener);
         }
+        truncationQueue.dispose();
         GWC.set(null);
     }
 
@@ -352,9 +356,25 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         return gwcConfigPersister.getConfig();
     }
 
+    /**
+     * Returns the queue used to run truncations asynchronously, when {@link
+     * TruncationQueue#isEnabled() enabled}
+     */
+    public TruncationQueue getTruncationQueue() {
+        return truncationQueue;
+    }
+
     /** Fully truncates the given layer, including any ParameterFilter */
     public void truncate(final String layerName) {
         checkNotNull(layerName, "layerName is null");
+        if (truncationQueue.isEnabled()) {
+            truncationQueue.truncateLayer(layerName);
+        } else {
+            truncateLayerNow(layerName);
+        }
+    }
+
+    void truncateLayerNow(final String layerName) {
         // easy, no need to issue truncate tasks
         TileLayer layer;
         try {
@@ -363,8 +383,12 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             log.log(Level.INFO, e.getMessage(), e);
             return;
         }
-        final Set<String> gridSubsets = layer.getGridSubsets();
-        for (String gridSetId : gridSubsets) {
+        truncateLayerNow(layerName, layer.getGridSubsets());
+    }
+
+    /** Fully truncates the given grid sets of a layer */
+    void truncateLayerNow(final String layerName, final Collection<String> gridSetIds) {
+        for (String gridSetId : gridSetIds) {
             deleteCacheByGridSetId(layerName, gridSetId);
         }
     }
@@ -390,6 +414,11 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
                             + "'. No need to truncate.");
             return;
         }
+        if (truncationQueue.isEnabled()) {
+            // the check above has to happen now, the cached styles might be changing
+            truncationQueue.truncateStyle(layerName, styleName);
+            return;
+        }
         log.fine("truncating '" + layerName + "' for style '" + styleName + "'");
         String gridSetId = null; // all of them
         BoundingBox bounds = null; // all of them
@@ -400,41 +429,92 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
     /** Truncates the cache for the default style of the given layer */
     public void truncateByLayerDefaultStyle(final String layerName) {
         checkNotNull(layerName, "layerName can't be null");
+        if (truncationQueue.isEnabled()) {
+            truncationQueue.truncateDefaultStyle(layerName);
+        } else {
+            truncateByLayerDefaultStyleNow(layerName);
+        }
+    }
+
+    void truncateByLayerDefaultStyleNow(final String layerName) {
         log.fine("truncating '" + layerName + "' for default style");
 
         final TileLayer layer = getTileLayerByName(layerName);
         final Set<String> gridSetIds = layer.getGridSubsets(); // all of them
-        final List<MimeType> mimeTypes = layer.getMimeTypes(); // all of them
-        final BoundingBox bounds = null; // all of them
+        final List<String> formats = new ArrayList<>(); // all of them
+        for (MimeType mime : layer.getMimeTypes()) {
+            formats.add(mime.getFormat());
+        }
         final Map<String, String> parameters = null; // only default style
+        truncateParametersNow(layerName, parameters, gridSetIds, formats);
+    }
 
-        for (String gridSetId : gridSetIds) {
-            GridSubset gridSubset = layer.getGridSubset(gridSetId);
-            if (gridSubset == null) {
-                // layer may no longer have this gridsubset, but we want to truncate any remaining
-                // tiles
-                GridSet gridSet = gridSetBroker.get(gridSetId);
-                gridSubset = GridSubsetFactory.createGridSubSet(gridSet);
-            }
+    /**
+     * Truncates the tiles of a layer cached with the given parameters, on the given grid sets and
+     * formats. Used by the {@link TruncationQueue}, which resolves them when the truncation is
+     * queued, as the layer configuration might change before it runs.
+     *
+     * @param parameters the parameters, {@code null} for the tiles of the default style
+     */
+    void truncateParametersNow(
+            final String layerName,
+            final Map<String, String> parameters,
+            final Collection<String> gridSetIds,
+            final Collection<String> formats) {
+        final TileLayer layer = getTileLayerByName(layerName);
+        final BoundingBox bounds = null; // all of them
 
-            for (MimeType mime : mimeTypes) {
-                String formatName = mime.getFormat();
+        for (String gridSetId : gridSetIds) {
+            GridSubset gridSubset = getGridSubset(layer, gridSetId);
+            for (String formatName : formats) {
                 truncate(layer, bounds, gridSubset, formatName, parameters);
             }
         }
     }
 
+    /**
+     * Returns the layer grid subset, or one covering the whole grid set if the layer no longer has
+     * it, so that any remaining tile can still be truncated
+     */
+    private GridSubset getGridSubset(TileLayer layer, String gridSetId) {
+        GridSubset gridSubset = layer.getGridSubset(gridSetId);
+        if (gridSubset == null) {
+            GridSet gridSet = gridSetBroker.get(gridSetId);
+            gridSubset = GridSubsetFactory.createGridSubSet(gridSet);
+        }
+        return gridSubset;
+    }
+
     public void truncate(final String layerName, final ReferencedEnvelope bounds)
             throws GeoWebCacheException {
+        if (truncationQueue.isEnabled()) {
+            // fail early if the layer is not there
+            tld.getTileLayer(layerName);
+            truncationQueue.truncateBounds(layerName, bounds);
+        } else {
+            truncateBoundsNow(layerName, bounds);
+        }
+    }
 
+    void truncateBoundsNow(final String layerName, final ReferencedEnvelope bounds)
+            throws GeoWebCacheException {
+        final TileLayer tileLayer = tld.getTileLayer(layerName);
+        truncateBoundsNow(layerName, bounds, tileLayer.getGridSubsets());
+    }
+
+    /** Truncates the tiles of a layer intersecting the bounds, on the given grid sets */
+    void truncateBoundsNow(
+            final String layerName,
+            final ReferencedEnvelope bounds,
+            final Collection<String> gridSubSets)
+            throws GeoWebCacheException {
         final TileLayer tileLayer = tld.getTileLayer(layerName);
-        final Collection<String> gridSubSets = tileLayer.getGridSubsets();
 
         /*
          * Create a truncate task for each gridSubset (CRS), format and style
          */
         for (String gridSetId : gridSubSets) {
-            GridSubset layerGrid = tileLayer.getGridSubset(gridSetId);
+            GridSubset layerGrid = getGridSubset(tileLayer, gridSetId);
             BoundingBox intersectingBounds = getIntersectingBounds(layerName, layerGrid, bounds);
             if (intersectingBounds == null) {
                 continue;
@@ -559,13 +639,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         final String defaultStyle = layer.getStyles();
 
         for (String gridSetId : gridSetIds) {
-            GridSubset gridSubset = layer.getGridSubset(gridSetId);
-            if (gridSubset == null) {
-                // layer may no longer have this gridsubset, but we want to truncate any remaining
-                // tiles
-                GridSet gridSet = gridSetBroker.get(gridSetId);
-                gridSubset = GridSubsetFactory.createGridSubSet(gridSet);
-            }
+            GridSubset gridSubset = getGridSubset(layer, gridSetId);
             for (String style : styleNames) {
                 Map<String, String> parameters;
                 if (style.length() == 0 || style.equals(defaultStyle)) {
@@ -0,0 +1,465 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.layer.TileLayer;
+import org.geowebcache.mime.MimeType;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Asynchronous, deduplicating queue of the truncate requests issued by the catalog and transaction
+ * listeners through the {@link GWC} mediator.
+ *
+ * <p>Requests are accumulated per tile layer: a full layer truncation supersedes any other pending
+ * request for the layer, style truncations are deduplicated, and truncation bounds in the same CRS
+ * that overlap are merged into a single envelope. Each layer is processed by at most one worker at
+ * a time, while different layers are processed in parallel on a bounded pool, so the requests of a
+ * layer are applied in order and the callers (e.g., a catalog save) do not wait for them.
+ *
+ * <p>The grid sets, formats and styles to be truncated are resolved when a request is queued, so
+ * that a layer configuration change made before the truncation runs does not make it miss tiles
+ * cached with the previous configuration. Pending truncations are run before the queue is disposed.
+ *
+ * <p>The queue is disabled by default, it can be enabled setting the {@link #GWC_ASYNC_TRUNCATE}
+ * system property to {@code true}, and the pool size with {@link #GWC_TRUNCATE_THREADS}.
+ */
+public class TruncationQueue {
+
+    static final Logger LOGGER = Logging.getLogger(TruncationQueue.class);
+
+    /** System property enabling the asynchronous truncation */
+    public static final String GWC_ASYNC_TRUNCATE = "GWC_ASYNC_TRUNCATE";
+
+    /** System property setting the number of truncation threads, defaults to 2 */
+    public static final String GWC_TRUNCATE_THREADS = "GWC_TRUNCATE_THREADS";
+
+    /** Max time, in seconds, waited for the pending truncations when disposing the queue */
+    static final long FLUSH_TIMEOUT = 60;
+
+    private final GWC mediator;
+
+    private final boolean enabled;
+
+    private final int threads;
+
+    /** Pending requests by tile layer name, guarded by this */
+    private final Map<String, PendingTruncation> pending = new LinkedHashMap<>();
+
+    /** Layers with a worker either scheduled or running, guarded by this */
+    private final Set<String> scheduled = new LinkedHashSet<>();
+
+    /** Layers whose truncation is running, guarded by this */
+    private final Map<String, PendingTruncation> running = new LinkedHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong merged = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private ExecutorService executor;
+
+    private boolean disposed;
+
+    TruncationQueue(GWC mediator) {
+        this(
+                mediator,
+                Boolean.parseBoolean(System.getProperty(GWC_ASYNC_TRUNCATE, "false")),
+                Integer.getInteger(GWC_TRUNCATE_THREADS, 2));
+    }
+
+    TruncationQueue(GWC mediator, boolean enabled, int threads) {
+        this.mediator = mediator;
+        this.enabled = enabled;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** @return true if truncate requests are queued, false if they are executed synchronously */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues the truncation of all the tiles of a layer */
+    void truncateLayer(String layerName) {
+        TileLayer layer;
+        try {
+            layer = mediator.getTileLayerByName(layerName);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "Tile layer " + layerName + " not found, nothing to truncate");
+            return;
+        }
+        submit(layerName, layer, p -> p.full = true);
+    }
+
+    /** Queues the truncation of the tiles of a layer for the given cached style */
+    void truncateStyle(String layerName, String styleName) {
+        TileLayer layer = mediator.getTileLayerByName(layerName);
+        // tiles of the current default style are cached without the style parameter
+        if (styleName.isEmpty() || styleName.equals(layer.getStyles())) {
+            submit(layerName, layer, p -> p.defaultStyle = true);
+        } else {
+            submit(layerName, layer, p -> p.styles.add(styleName));
+        }
+    }
+
+    /** Queues the truncation of the tiles of a layer for its default style */
+    void truncateDefaultStyle(String layerName) {
+        submit(layerName, mediator.getTileLayerByName(layerName), p -> p.defaultStyle = true);
+    }
+
+    /** Queues the truncation of the tiles of a layer intersecting the given bounds */
+    void truncateBounds(String layerName, ReferencedEnvelope bounds) {
+        submit(layerName, mediator.getTileLayerByName(layerName), p -> p.addBounds(bounds));
+    }
+
+    private synchronized void submit(
+            String layerName, TileLayer layer, Consumer<PendingTruncation> merge) {
+        if (disposed) {
+            LOGGER.fine("Truncation queue disposed, ignoring truncate request for " + layerName);
+            return;
+        }
+        submitted.incrementAndGet();
+        PendingTruncation truncation = pending.get(layerName);
+        if (truncation == null) {
+            truncation = new PendingTruncation(layerName);
+            pending.put(layerName, truncation);
+        } else {
+            merged.incrementAndGet();
+        }
+        truncation.addTargets(layer);
+        if (!truncation.full) {
+            merge.accept(truncation);
+            truncation.simplify();
+        }
+        if (scheduled.add(layerName)) {
+            getExecutor().execute(() -> process(layerName));
+        }
+    }
+
+    private void process(String layerName) {
+        PendingTruncation truncation;
+        synchronized (this) {
+            truncation = pending.remove(layerName);
+            if (truncation == null) {
+                scheduled.remove(layerName);
+                return;
+            }
+            running.put(layerName, truncation);
+        }
+        try {
+            truncation.execute(mediator);
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Error truncating tile layer " + layerName, e);
+        } finally {
+            synchronized (this) {
+                running.remove(layerName);
+                if (pending.containsKey(layerName)) {
+                    // more requests came in while truncating, process them in order
+                    getExecutor().execute(() -> process(layerName));
+                } else {
+                    scheduled.remove(layerName);
+                }
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadFactory factory =
+                    new ThreadFactory() {
+                        final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "GWC-Truncate-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    };
+            executor =
+                    new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            60,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            factory);
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /** @return a snapshot of the truncations waiting to be executed */
+    public synchronized List<TruncationStatus> getPending() {
+        List<TruncationStatus> result = new ArrayList<>();
+        for (PendingTruncation p : pending.values()) {
+            result.add(p.toStatus(false));
+        }
+        return result;
+    }
+
+    /** @return a snapshot of the truncations being executed */
+    public synchronized List<TruncationStatus> getRunning() {
+        List<TruncationStatus> result = new ArrayList<>();
+        for (PendingTruncation p : running.values()) {
+            result.add(p.toStatus(true));
+        }
+        return result;
+    }
+
+    /** Number of truncate requests received */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /** Number of truncate requests merged into an already pending one */
+    public long getMergedCount() {
+        return merged.get();
+    }
+
+    /** Number of layer truncations successfully executed */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /** Number of layer truncations that failed */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Waits for the queue to be empty, mostly useful for tests
+     *
+     * @return true if the queue got empty before the timeout expired
+     */
+    public boolean awaitEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            synchronized (this) {
+                if (scheduled.isEmpty()) {
+                    return true;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stops accepting truncate requests, runs the pending ones, and stops the workers. Truncations
+     * still pending after {@link #FLUSH_TIMEOUT} seconds are discarded.
+     */
+    void dispose() {
+        synchronized (this) {
+            disposed = true;
+        }
+        try {
+            if (!awaitEmpty(FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.warning(
+                        "Timed out waiting for the pending truncations, discarding "
+                                + getPending().size()
+                                + " of them");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            pending.clear();
+            scheduled.clear();
+            running.clear();
+        }
+    }
+
+    /** Immutable description of a queued or running truncation, for monitoring */
+    public static class TruncationStatus {
+
+        private final String layerName;
+
+        private final boolean full;
+
+        private final boolean defaultStyle;
+
+        private final List<String> styles;
+
+        private final List<ReferencedEnvelope> bounds;
+
+        private final long queuedAt;
+
+        private final boolean running;
+
+        TruncationStatus(
+                String layerName,
+                boolean full,
+                boolean defaultStyle,
+                List<String> styles,
+                List<ReferencedEnvelope> bounds,
+                long queuedAt,
+                boolean running) {
+            this.layerName = layerName;
+            this.full = full;
+            this.defaultStyle = defaultStyle;
+            this.styles = styles;
+            this.bounds = bounds;
+            this.queuedAt = queuedAt;
+            this.running = running;
+        }
+
+        public String getLayerName() {
+            return layerName;
+        }
+
+        /** @return true if all the tiles of the layer are going to be truncated */
+        public boolean isFull() {
+            return full;
+        }
+
+        public boolean isDefaultStyle() {
+            return defaultStyle;
+        }
+
+        public List<String> getStyles() {
+            return styles;
+        }
+
+        public List<ReferencedEnvelope> getBounds() {
+            return bounds;
+        }
+
+        /** @return the time the first of the merged requests was queued */
+        public long getQueuedAt() {
+            return queuedAt;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+    }
+
+    /** The truncate requests accumulated for a single layer */
+    static class PendingTruncation {
+
+        final String layerName;
+
+        final long queuedAt = System.currentTimeMillis();
+
+        boolean full;
+
+        boolean defaultStyle;
+
+        final Set<String> styles = new LinkedHashSet<>();
+
+        final List<ReferencedEnvelope> bounds = new ArrayList<>();
+
+        /** The grid sets of the layer at the time the requests were queued */
+        final Set<String> gridSetIds = new LinkedHashSet<>();
+
+        /** The formats of the layer at the time the requests were queued */
+        final Set<String> formats = new LinkedHashSet<>();
+
+        PendingTruncation(String layerName) {
+            this.layerName = layerName;
+        }
+
+        /** Adds the current grid sets and formats of the layer to the ones to be truncated */
+        void addTargets(TileLayer layer) {
+            gridSetIds.addAll(layer.getGridSubsets());
+            for (MimeType mime : layer.getMimeTypes()) {
+                formats.add(mime.getFormat());
+            }
+        }
+
+        void addBounds(ReferencedEnvelope envelope) {
+            ReferencedEnvelope union = new ReferencedEnvelope(envelope);
+            // merge with any overlapping envelope, repeating since the union can grow to
+            // overlap envelopes that did not overlap the original one
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Iterator<ReferencedEnvelope> it = bounds.iterator(); it.hasNext(); ) {
+                    ReferencedEnvelope other = it.next();
+                    if (sameCRS(union, other) && union.intersects((Envelope) other)) {
+                        union.expandToInclude((Envelope) other);
+                        it.remove();
+                        changed = true;
+                    }
+                }
+            }
+            bounds.add(union);
+        }
+
+        private static boolean sameCRS(ReferencedEnvelope e1, ReferencedEnvelope e2) {
+            return CRS.equalsIgnoreMetadata(
+                    e1.getCoordinateReferenceSystem(), e2.getCoordinateReferenceSystem());
+        }
+
+        /** Drops requests made redundant by a full truncation */
+        void simplify() {
+            if (full) {
+                defaultStyle = false;
+                styles.clear();
+                bounds.clear();
+            }
+        }
+
+        void execute(GWC mediator) throws Exception {
+            if (full) {
+                mediator.truncateLayerNow(layerName, gridSetIds);
+                return;
+            }
+            if (defaultStyle) {
+                mediator.truncateParametersNow(layerName, null, gridSetIds, formats);
+            }
+            for (String style : styles) {
+                Map<String, String> parameters = Collections.singletonMap("STYLES", style);
+                mediator.truncateParametersNow(layerName, parameters, gridSetIds, formats);
+            }
+            for (ReferencedEnvelope envelope : bounds) {
+                mediator.truncateBoundsNow(layerName, envelope, gridSetIds);
+            }
+        }
+
+        TruncationStatus toStatus(boolean running) {
+            return new TruncationStatus(
+                    layerName,
+                    full,
+                    defaultStyle,
+                    Collections.unmodifiableList(new ArrayList<>(styles)),
+                    Collections.unmodifiableList(new ArrayList<>(bounds)),
+                    queuedAt,
+                    running);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.controller;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.TruncationQueue;
+import org.geoserver.gwc.TruncationQueue.TruncationStatus;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes the status of the asynchronous {@link TruncationQueue} at {@code
+ * /gwc/rest/truncationqueue.json}, listing the running and pending truncations along with the
+ * queue counters.
+ */
+@RestController
+@RequestMapping(path = "${gwc.context.suffix:}/rest")
+public class TruncationQueueController {
+
+    private final GWC mediator;
+
+    public TruncationQueueController(GWC mediator) {
+        this.mediator = mediator;
+    }
+
+    @GetMapping(
+        path = {"/truncationqueue", "/truncationqueue.json"},
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public String getTruncationQueue() {
+        TruncationQueue queue = mediator.getTruncationQueue();
+        JSONObject json = new JSONObject();
+        json.put("enabled", queue.isEnabled());
+        json.put("submitted", queue.getSubmittedCount());
+        json.put("merged", queue.getMergedCount());
+        json.put("completed", queue.getCompletedCount());
+        json.put("failed", queue.getFailedCount());
+        json.put("running", toJSON(queue.getRunning()));
+        json.put("pending", toJSON(queue.getPending()));
+        return json.toString();
+    }
+
+    private JSONArray toJSON(Iterable<TruncationStatus> truncations) {
+        JSONArray array = new JSONArray();
+        for (TruncationStatus status : truncations) {
+            JSONObject json = new JSONObject();
+            json.put("layer", status.getLayerName());
+            json.put("full", status.isFull());
+            json.put("defaultStyle", status.isDefaultStyle());
+            json.put("styles", JSONArray.fromObject(status.getStyles()));
+            JSONArray bounds = new JSONArray();
+            for (ReferencedEnvelope envelope : status.getBounds()) {
+                JSONObject jsonEnvelope = new JSONObject();
+                jsonEnvelope.put("minx", envelope.getMinX());
+                jsonEnvelope.put("miny", envelope.getMinY());
+                jsonEnvelope.put("maxx", envelope.getMaxX());
+                jsonEnvelope.put("maxy", envelope.getMaxY());
+                if (envelope.getCoordinateReferenceSystem() != null) {
+                    jsonEnvelope.put("crs", CRS.toSRS(envelope.getCoordinateReferenceSystem()));
+                }
+                bounds.add(jsonEnvelope);
+            }
+            json.put("bounds", bounds);
+            json.put("queuedAt", status.getQueuedAt());
+            array.add(json);
+        }
+        return array;
+    }
+}
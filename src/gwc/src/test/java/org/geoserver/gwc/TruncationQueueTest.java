@@ -0,0 +1,203 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.gwc.TruncationQueue.TruncationStatus;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geowebcache.layer.TileLayer;
+import org.geowebcache.mime.ImageMime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TruncationQueueTest {
+
+    private GWC mediator;
+
+    private TruncationQueue queue;
+
+    private CountDownLatch latch;
+
+    private TileLayer layer;
+
+    @Before
+    public void setUp() throws Exception {
+        mediator = mock(GWC.class);
+        layer = mock(TileLayer.class);
+        when(layer.getGridSubsets()).thenReturn(Collections.singleton("EPSG:4326"));
+        when(layer.getMimeTypes()).thenReturn(Arrays.asList(ImageMime.png));
+        when(layer.getStyles()).thenReturn("default");
+        when(mediator.getTileLayerByName(any())).thenReturn(layer);
+        queue = new TruncationQueue(mediator, true, 2);
+        // keep the first truncation of "blocker" running until the latch is released
+        latch = new CountDownLatch(1);
+        doAnswer(
+                        invocation -> {
+                            latch.await(10, TimeUnit.SECONDS);
+                            return null;
+                        })
+                .when(mediator)
+                .truncateLayerNow(eq("blocker"), any());
+    }
+
+    @After
+    public void tearDown() {
+        queue.dispose();
+    }
+
+    @Test
+    public void testMergeOverlappingBounds() throws Exception {
+        queue.truncateLayer("blocker");
+        awaitRunning();
+        queue.truncateBounds("blocker", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        queue.truncateBounds("blocker", new ReferencedEnvelope(5, 15, 5, 15, WGS84));
+        queue.truncateBounds("blocker", new ReferencedEnvelope(50, 60, 50, 60, WGS84));
+        queue.truncateStyle("blocker", "style");
+        queue.truncateStyle("blocker", "style");
+
+        List<TruncationStatus> pending = queue.getPending();
+        assertEquals(1, pending.size());
+        TruncationStatus status = pending.get(0);
+        assertEquals("blocker", status.getLayerName());
+        assertEquals(1, status.getStyles().size());
+        assertEquals(2, status.getBounds().size());
+        assertEquals(new ReferencedEnvelope(0, 15, 0, 15, WGS84), status.getBounds().get(0));
+        assertEquals(1, queue.getRunning().size());
+
+        latch.countDown();
+        assertTrue(queue.awaitEmpty(10, TimeUnit.SECONDS));
+
+        verify(mediator, times(1))
+                .truncateParametersNow(
+                        eq("blocker"),
+                        eq(Collections.singletonMap("STYLES", "style")),
+                        eq(Collections.singleton("EPSG:4326")),
+                        eq(Collections.singleton("image/png")));
+        verify(mediator, times(2)).truncateBoundsNow(eq("blocker"), any(), any());
+        assertEquals(6, queue.getSubmittedCount());
+        assertEquals(2, queue.getCompletedCount());
+    }
+
+    @Test
+    public void testFullTruncationSupersedes() throws Exception {
+        queue.truncateLayer("blocker");
+        awaitRunning();
+        queue.truncateDefaultStyle("blocker");
+        queue.truncateBounds("blocker", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        queue.truncateLayer("blocker");
+        queue.truncateStyle("blocker", "style");
+
+        List<TruncationStatus> pending = queue.getPending();
+        assertEquals(1, pending.size());
+        assertTrue(pending.get(0).isFull());
+        assertTrue(pending.get(0).getBounds().isEmpty());
+        assertTrue(pending.get(0).getStyles().isEmpty());
+
+        latch.countDown();
+        assertTrue(queue.awaitEmpty(10, TimeUnit.SECONDS));
+
+        verify(mediator, times(2)).truncateLayerNow(eq("blocker"), any());
+        verify(mediator, never()).truncateParametersNow(any(), any(), any(), any());
+        verify(mediator, never()).truncateBoundsNow(any(), any(), any());
+    }
+
+    @Test
+    public void testLayersRunInParallel() throws Exception {
+        queue.truncateLayer("blocker");
+        // not blocked by the other layer
+        queue.truncateDefaultStyle("other");
+        verify(mediator, timeout(10000))
+                .truncateParametersNow(eq("other"), isNull(), any(), any());
+
+        latch.countDown();
+        assertTrue(queue.awaitEmpty(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTargetsResolvedWhenQueued() throws Exception {
+        queue.truncateLayer("blocker");
+        awaitRunning();
+        queue.truncateStyle("blocker", "style");
+        // the default style is cached without parameters
+        queue.truncateStyle("blocker", "default");
+
+        // the layer configuration changes before the truncation runs
+        when(layer.getGridSubsets()).thenReturn(Collections.singleton("EPSG:900913"));
+        when(layer.getStyles()).thenReturn("style");
+        queue.truncateBounds("blocker", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+
+        TruncationStatus status = queue.getPending().get(0);
+        assertTrue(status.isDefaultStyle());
+        assertEquals(Collections.singletonList("style"), status.getStyles());
+
+        latch.countDown();
+        assertTrue(queue.awaitEmpty(10, TimeUnit.SECONDS));
+
+        // both the old and the new grid sets are truncated
+        HashSet<String> gridSets = new HashSet<>(Arrays.asList("EPSG:4326", "EPSG:900913"));
+        verify(mediator)
+                .truncateParametersNow(
+                        eq("blocker"),
+                        eq(Collections.singletonMap("STYLES", "style")),
+                        eq(gridSets),
+                        any());
+        verify(mediator).truncateParametersNow(eq("blocker"), isNull(), eq(gridSets), any());
+        verify(mediator).truncateBoundsNow(eq("blocker"), any(), eq(gridSets));
+    }
+
+    @Test
+    public void testDisposeRunsPending() throws Exception {
+        queue.truncateLayer("blocker");
+        awaitRunning();
+        queue.truncateBounds("blocker", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+
+        new Thread(
+                        () -> {
+                            try {
+                                Thread.sleep(100);
+                            } catch (InterruptedException e) {
+                                // go on
+                            }
+                            latch.countDown();
+                        })
+                .start();
+        queue.dispose();
+
+        verify(mediator).truncateBoundsNow(eq("blocker"), any(), any());
+        assertEquals(2, queue.getCompletedCount());
+
+        // no more requests accepted
+        queue.truncateLayer("other");
+        assertEquals(2, queue.getSubmittedCount());
+    }
+
+    private void awaitRunning() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queue.getRunning().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, queue.getRunning().size());
+    }
+}
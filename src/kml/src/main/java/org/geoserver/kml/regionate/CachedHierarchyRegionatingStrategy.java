@@ -15,6 +15,13 @@ import java.sql.Statement;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoserver.catalog.Catalog;
@@ -25,6 +32,7 @@ import org.geoserver.platform.GeoServerResourceLoader;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.platform.resource.Resource;
 import org.geoserver.platform.resource.Resource.Type;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.WMSMapContent;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.jdbc.JDBCUtils;
@@ -57,7 +65,10 @@ import org.opengis.referencing.operation.MathTransform;
  *   <li>tiling based on the TMS tiling recommendation
  *   <li>caching the assignment of a feature in a specific tile in an H2 database stored in the data
  *       directory
- *   <li>
+ *   <li>building in background the children of the tiles being requested, so that they are
+ *       usually ready by the time the client zooms in. The number of threads used can be set with
+ *       the {@link #KML_REGIONATE_THREADS} system property, zero disables the background build
+ * </ul>
  *
  * @author Andrea Aime - OpenGeo
  * @author David Winslow - OpenGeo
@@ -70,6 +81,19 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
 
     static final Set<String> NO_FIDS = Collections.emptySet();
 
+    /** System property setting the number of threads building child tiles in background */
+    public static final String KML_REGIONATE_THREADS = "KML_REGIONATE_THREADS";
+
+    static final int PREFETCH_THREADS = Integer.getInteger(KML_REGIONATE_THREADS, 2);
+
+    /** Max number of child tiles waiting to be built, further ones are left to the requests */
+    static final int PREFETCH_QUEUE_SIZE = 256;
+
+    /** Keys of the child tiles being built in background, to avoid queueing them twice */
+    static final Set<String> PREFETCHING = ConcurrentHashMap.newKeySet();
+
+    static ExecutorService prefetchExecutor;
+
     /**
      * This structure is used to make sure that multiple threads end up using the same table name
      * object, so that we can use it as a synchonization token
@@ -154,6 +178,12 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
             LOGGER.log(
                     Level.FINE,
                     "Found " + featuresInTile.size() + " features in tile " + tile.toString());
+
+            // if the tile is full the children might contain features too, build them
+            // while the client processes this one
+            if (featuresInTile.size() >= featuresPerTile) {
+                prefetchChildren(dataDir, tile);
+            }
         } catch (Throwable t) {
             LOGGER.log(Level.SEVERE, "Error occurred while pre-processing regionated features", t);
             throw new ServiceException("Failure while pre-processing regionated features", t);
@@ -211,9 +241,17 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
                 && yRatio < MAX_ERROR;
     }
 
-    /** Open/creates the db and then reads/computes the tile features */
+    /** Opens a connection to the tile cache database */
     @SuppressFBWarnings(
             "DMI_CONSTANT_DB_PASSWORD") // well spotted, but the db contents are not sensitive
+    private Connection getConnection(String dataDir) throws SQLException {
+        return DriverManager.getConnection(
+                "jdbc:h2:file:" + dataDir + "/geosearch/h2cache_" + tableName,
+                "geoserver",
+                "geopass");
+    }
+
+    /** Open/creates the db and then reads/computes the tile features */
     private Set<String> getFeaturesForTile(String dataDir, Tile tile) throws Exception {
         Connection conn = null;
         Statement st = null;
@@ -227,11 +265,7 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
             synchronized (tableName) {
                 // get a hold to the database that contains the cache (this will
                 // eventually create the db)
-                conn =
-                        DriverManager.getConnection(
-                                "jdbc:h2:file:" + dataDir + "/geosearch/h2cache_" + tableName,
-                                "geoserver",
-                                "geopass");
+                conn = getConnection(dataDir);
 
                 // try to create the table, if it's already there this will fail
                 st = conn.createStatement();
@@ -251,6 +285,67 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
         }
     }
 
+    /**
+     * Queues the computation of the children of the specified tile in the background thread pool,
+     * skipping the ones already queued. The pool being bounded, children that do not fit in it are
+     * simply left to be computed by the requests. The background computation runs with the thread
+     * locals of the request (authentication, local workspace), so that it sees the same data
+     */
+    private void prefetchChildren(String dataDir, Tile tile) {
+        if (PREFETCH_THREADS <= 0) {
+            return;
+        }
+        ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        for (Tile child : tile.getChildren()) {
+            String tileKey = getTileKey(child);
+            if (!PREFETCHING.add(tileKey)) {
+                continue;
+            }
+            try {
+                getPrefetchExecutor()
+                        .execute(
+                                () -> {
+                                    try {
+                                        threadLocals.apply();
+                                        getFeaturesForTile(dataDir, new CachedTile(child));
+                                    } catch (Exception e) {
+                                        LOGGER.log(
+                                                Level.FINE,
+                                                "Failed to build regionating tile " + child,
+                                                e);
+                                    } finally {
+                                        threadLocals.cleanup();
+                                        PREFETCHING.remove(tileKey);
+                                    }
+                                });
+            } catch (RejectedExecutionException e) {
+                PREFETCHING.remove(tileKey);
+            }
+        }
+    }
+
+    static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(
+                            PREFETCH_THREADS,
+                            PREFETCH_THREADS,
+                            60,
+                            TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+                            r -> {
+                                Thread t =
+                                        new Thread(r, "KMLRegionate-" + count.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+            executor.allowCoreThreadTimeOut(true);
+            prefetchExecutor = executor;
+        }
+        return prefetchExecutor;
+    }
+
     /**
      * Reads/computes the tile feature set
      *
@@ -264,7 +359,7 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
             return fids;
         } else {
             // build the synchronization token
-            String tileKey = tableName + tile.x + "-" + tile.y + "-" + tile.z;
+            String tileKey = getTileKey(tile);
             canonicalizer.add(tileKey);
             tileKey = canonicalizer.get(tileKey);
 
@@ -287,6 +382,11 @@ public abstract class CachedHierarchyRegionatingStrategy implements RegionatingS
         return fids;
     }
 
+    /** Returns a key identifying the tile among the ones of all the cached layers */
+    private String getTileKey(Tile tile) {
+        return tableName + "/" + tile.x + "-" + tile.y + "-" + tile.z;
+    }
+
     /** Store the fids inside */
     private void storeFids(Tile t, Set<String> fids, Connection conn) throws SQLException {
         PreparedStatement ps = null;
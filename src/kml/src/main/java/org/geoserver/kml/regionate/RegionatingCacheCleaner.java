@@ -0,0 +1,152 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.config.GeoServer;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.TransactionCallback;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.request.TransactionResponse;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Clears the regionating caches of a feature type when it gets removed, or when a change affecting
+ * the tile hierarchy is made (bounds, filter, attributes, regionating configuration), or when its
+ * data is modified by a WFS transaction. The cached tiles are then rebuilt on demand, for that
+ * layer only.
+ */
+public class RegionatingCacheCleaner implements CatalogListener, TransactionCallback {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.geosearch");
+
+    /** Feature type properties whose change invalidates the cached tile hierarchy */
+    static final List<String> RELEVANT_PROPERTIES =
+            Arrays.asList(
+                    "name",
+                    "namespace",
+                    "nativeBoundingBox",
+                    "latLonBoundingBox",
+                    "srs",
+                    "projectionPolicy",
+                    "cqlFilter",
+                    "attributes",
+                    "metadata");
+
+    private final Catalog catalog;
+
+    /** The feature types modified by the current transaction */
+    private final ThreadLocal<Set<QName>> dirtyTypes = ThreadLocal.withInitial(HashSet::new);
+
+    public RegionatingCacheCleaner(GeoServer gs) {
+        this.catalog = gs.getCatalog();
+        catalog.addListener(this);
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        // nothing to do
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        if (event.getSource() instanceof FeatureTypeInfo) {
+            clearCaches((FeatureTypeInfo) event.getSource());
+        }
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the source reports the new values, the caches are named after the old ones, which
+        // the unwrapped feature type still has as the changes have not been committed yet
+        if (event.getSource() instanceof FeatureTypeInfo && isRelevant(event.getPropertyNames())) {
+            clearCaches(ModificationProxy.unwrap((FeatureTypeInfo) event.getSource()));
+        }
+    }
+
+    private boolean isRelevant(List<String> propertyNames) {
+        return propertyNames
+                .stream()
+                .anyMatch(p -> RELEVANT_PROPERTIES.stream().anyMatch(p::equalsIgnoreCase));
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        // nothing to do
+    }
+
+    @Override
+    public void reloaded() {
+        // nothing to do, caches of layers that did not change are still valid
+    }
+
+    @Override
+    public TransactionRequest beforeTransaction(TransactionRequest request) throws WFSException {
+        dirtyTypes.get().clear();
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionRequest request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    public void afterTransaction(
+            TransactionRequest request, TransactionResponse result, boolean committed) {
+        Set<QName> names = dirtyTypes.get();
+        dirtyTypes.remove();
+        if (committed) {
+            for (QName name : names) {
+                FeatureTypeInfo featureType =
+                        catalog.getFeatureTypeByName(name.getNamespaceURI(), name.getLocalPart());
+                if (featureType != null) {
+                    clearCaches(featureType);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        if (event.getLayerName() != null) {
+            dirtyTypes.get().add(event.getLayerName());
+        }
+    }
+
+    void clearCaches(FeatureTypeInfo featureType) {
+        for (RegionatingStrategyFactory factory :
+                GeoServerExtensions.extensions(RegionatingStrategyFactory.class)) {
+            try {
+                factory.createStrategy().clearCache(featureType);
+            } catch (Exception e) {
+                LOGGER.log(
+                        Level.FINE,
+                        "Failed to clear the "
+                                + factory.getName()
+                                + " regionating cache for "
+                                + featureType.getName(),
+                        e);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.kml.KMLMapOutputFormat;
+import org.geoserver.kml.RegionatingTestSupport;
+import org.geoserver.wms.WMSMapContent;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.w3c.dom.Document;
+
+public class RegionatingCacheCleanerTest extends RegionatingTestSupport {
+
+    static final String RANDOM_REQUEST =
+            "wms?request=getmap&service=wms&version=1.1.1&format="
+                    + KMLMapOutputFormat.MIME_TYPE
+                    + "&layers="
+                    + TILE_TESTS.getPrefix()
+                    + ":"
+                    + TILE_TESTS.getLocalPart()
+                    + "&styles=&height=1024&width=1024&srs=EPSG:4326&bbox=-180,-90,0,90"
+                    + "&format_options=regionateBy:random";
+
+    @Before
+    public void setFeatureLimit() throws IOException {
+        FeatureTypeInfo fti = getFeatureTypeInfo(TILE_TESTS);
+        fti.getMetadata().put("kml.regionateFeatureLimit", 2);
+        getCatalog().save(fti);
+    }
+
+    @After
+    public void cleanupRegionationDatabases() throws Exception {
+        awaitPrefetch();
+        FeatureTypeInfo fti = getFeatureTypeInfo(TILE_TESTS);
+        fti.getMetadata().remove("kml.regionateFeatureLimit");
+        getCatalog().save(fti);
+        File dir = getDataDirectory().findOrCreateDir("geosearch");
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /** Waits for the background build of the child tiles to complete */
+    private void awaitPrefetch() throws InterruptedException {
+        for (int i = 0; i < 100 && !CachedHierarchyRegionatingStrategy.PREFETCHING.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(CachedHierarchyRegionatingStrategy.PREFETCHING.isEmpty());
+    }
+
+    /** Builds the random regionating cache of the tile tests layer */
+    private void buildCache() throws Exception {
+        Document document = getAsDOM(RANDOM_REQUEST);
+        assertEquals("kml", document.getDocumentElement().getTagName());
+        awaitPrefetch();
+        assertTrue(hasCache("sf_Tiles"));
+    }
+
+    private boolean hasCache(String name) throws IOException {
+        File dir = getDataDirectory().findOrCreateDir("geosearch");
+        String[] files = dir.list((d, n) -> n.startsWith("h2cache_" + name + "."));
+        return files != null && files.length > 0;
+    }
+
+    @Test
+    public void testClearOnRename() throws Exception {
+        buildCache();
+
+        FeatureTypeInfo fti = getFeatureTypeInfo(TILE_TESTS);
+        try {
+            fti.setName("TilesRenamed");
+            getCatalog().save(fti);
+            // the cache was named after the old name
+            assertFalse(hasCache("sf_Tiles"));
+        } finally {
+            fti = getCatalog().getFeatureTypeByName("sf", "TilesRenamed");
+            fti.setName(TILE_TESTS.getLocalPart());
+            getCatalog().save(fti);
+        }
+    }
+
+    @Test
+    public void testClearOnTransaction() throws Exception {
+        buildCache();
+
+        // updates a feature with its current value, the data does not change
+        String xml =
+                "<wfs:Transaction service=\"WFS\" version=\"1.0.0\" "
+                        + "xmlns:sf=\"http://cite.opengeospatial.org/gmlsf\" "
+                        + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                        + "xmlns:wfs=\"http://www.opengis.net/wfs\">"
+                        + "<wfs:Update typeName=\"sf:Tiles\">"
+                        + "<wfs:Property><wfs:Name>x</wfs:Name><wfs:Value>1</wfs:Value>"
+                        + "</wfs:Property>"
+                        + "<ogc:Filter><ogc:FeatureId fid=\"Regionated.fid1\"/></ogc:Filter>"
+                        + "</wfs:Update></wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertXpathEvaluatesTo("1", "count(//wfs:WFS_TransactionResponse)", dom);
+        assertXpathEvaluatesTo("1", "count(//wfs:Status/wfs:SUCCESS)", dom);
+
+        assertFalse(hasCache("sf_Tiles"));
+    }
+
+    @Test
+    public void testPrefetchRunsAsCaller() throws Exception {
+        Thread caller = Thread.currentThread();
+        List<Authentication> authentications = new CopyOnWriteArrayList<>();
+        RandomRegionatingStrategy strategy =
+                new RandomRegionatingStrategy(getGeoServer()) {
+                    @Override
+                    public FeatureIterator getSortedFeatures(
+                            GeometryDescriptor geom,
+                            ReferencedEnvelope latLongEnv,
+                            ReferencedEnvelope nativeEnv,
+                            Connection cacheConn)
+                            throws Exception {
+                        if (Thread.currentThread() != caller) {
+                            authentications.add(
+                                    SecurityContextHolder.getContext().getAuthentication());
+                        }
+                        return super.getSortedFeatures(geom, latLongEnv, nativeEnv, cacheConn);
+                    }
+                };
+
+        WMSMapContent mapContent = new WMSMapContent();
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        try {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            mapContent
+                    .getViewport()
+                    .setBounds(
+                            new ReferencedEnvelope(-180, 0, -90, 90, DefaultGeographicCRS.WGS84));
+            FeatureTypeInfo fti = getFeatureTypeInfo(TILE_TESTS);
+            FeatureLayer layer =
+                    new FeatureLayer(
+                            fti.getFeatureSource(null, null),
+                            getCatalog()
+                                    .getLayerByName(getLayerId(TILE_TESTS))
+                                    .getDefaultStyle()
+                                    .getStyle());
+            mapContent.addLayer(layer);
+
+            // the root tile is full, the children get built in background
+            strategy.getFilter(mapContent, layer);
+            awaitPrefetch();
+            assertFalse(authentications.isEmpty());
+            for (Authentication a : authentications) {
+                assertSame(authentication, a);
+            }
+        } finally {
+            logout();
+            mapContent.dispose();
+        }
+    }
+}
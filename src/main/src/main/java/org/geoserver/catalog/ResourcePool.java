@@ -4,6 +4,12 @@
  */
 package org.geoserver.catalog;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.awt.RenderingHints;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
@@ -32,8 +38,15 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.measure.Unit;
@@ -198,6 +211,15 @@ public class ResourcePool {
     /** Default number of hard references */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
 
+    /**
+     * Default size of the style caches, expressed as the total size in bytes of the sources of the
+     * parsed styles kept in memory
+     */
+    static long STYLE_CACHE_SIZE_DEFAULT = 16 * 1024 * 1024;
+
+    /** Styles smaller than this are accounted for this size in the style caches */
+    static final int MIN_STYLE_WEIGHT = 1024;
+
     Catalog catalog;
     Map<String, CoordinateReferenceSystem> crsCache;
     DataStoreCache dataStoreCache;
@@ -208,6 +230,9 @@ public class ResourcePool {
     Map<CoverageHintReaderKey, GridCoverageReader> hintCoverageReaderCache;
     Map<StyleInfo, StyledLayerDescriptor> sldCache;
     Map<StyleInfo, Style> styleCache;
+    Map<String, StyleParseStatistics> styleParseStatistics = new ConcurrentHashMap<>();
+    /** Listeners clearing the cached styles when their resource changes, by resource path */
+    Map<String, ResourceListener> styleListeners = new ConcurrentHashMap<>();
     List<Listener> listeners;
     ThreadPoolExecutor coverageExecutor;
     CatalogRepository repository;
@@ -360,7 +385,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, StyledLayerDescriptor> createSldCache() {
-        return new HashMap<StyleInfo, StyledLayerDescriptor>();
+        return new StyleCache<StyledLayerDescriptor>(getStyleCacheSize());
     }
 
     /**
@@ -373,7 +398,32 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new StyleCache<Style>(getStyleCacheSize());
+    }
+
+    /**
+     * Returns the size of each style cache, as the total size in bytes of the style sources, that
+     * can be configured with the {@code GEOSERVER_STYLE_CACHE_SIZE} variable
+     */
+    static long getStyleCacheSize() {
+        String value = GeoServerExtensions.getProperty("GEOSERVER_STYLE_CACHE_SIZE");
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid GEOSERVER_STYLE_CACHE_SIZE value: " + value);
+            }
+        }
+        return STYLE_CACHE_SIZE_DEFAULT;
+    }
+
+    /**
+     * Returns the style parsing statistics, keyed by style format
+     *
+     * @see StyleInfo#getFormat()
+     */
+    public Map<String, StyleParseStatistics> getStyleParseStatistics() {
+        return Collections.unmodifiableMap(styleParseStatistics);
     }
 
     /**
@@ -2009,29 +2059,8 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public StyledLayerDescriptor getSld(final StyleInfo info) throws IOException {
-        StyledLayerDescriptor sld = sldCache.get(info);
-        if (sld == null) {
-            synchronized (sldCache) {
-                sld = sldCache.get(info);
-                if (sld == null) {
-                    sld = dataDir().parsedSld(info);
-
-                    sldCache.put(info, sld);
-
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener(
-                            new ResourceListener() {
-                                @Override
-                                public void changed(ResourceNotification notify) {
-                                    sldCache.remove(info);
-                                    styleResource.removeListener(this);
-                                }
-                            });
-                }
-            }
-        }
-
-        return sld;
+        return getCachedStyle(
+                sldCache, info, () -> parseStyle(info, () -> dataDir().parsedSld(info)));
     }
     /**
      * Returns the first {@link Style} in a style resource, caching the result. Any associated
@@ -2045,13 +2074,11 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public Style getStyle(final StyleInfo info) throws IOException {
-        Style style = styleCache.get(info);
-        if (style == null) {
-            synchronized (styleCache) {
-                style = styleCache.get(info);
-                if (style == null) {
-                    style = dataDir().parsedStyle(info);
-
+        return getCachedStyle(
+                styleCache,
+                info,
+                () -> {
+                    Style style = parseStyle(info, () -> dataDir().parsedStyle(info));
                     if (style == null) {
                         throw new ServiceException(
                                 "Could not extract a UserStyle definition from " + info.getName());
@@ -2062,22 +2089,137 @@ public class ResourcePool {
                     }
                     // remove this when wms works off style info
                     style.setName(info.getName());
-                    styleCache.put(info, style);
+                    return style;
+                });
+    }
+
+    /**
+     * Looks up a style object in the cache, loading it if missing. The {@link StyleCache} loads
+     * each style under its own lock, other caches are locked as a whole during the load. Once
+     * loaded, the entry is removed from the cache as soon as the style resource changes.
+     */
+    @SuppressWarnings("unchecked")
+    private <V> V getCachedStyle(Map<StyleInfo, V> cache, StyleInfo info, Callable<V> loader)
+            throws IOException {
+        V value = cache.get(info);
+        if (value != null) {
+            return value;
+        }
+        if (cache instanceof StyleCache) {
+            value = ((StyleCache<V>) cache).get(info, loader);
+        } else {
+            synchronized (cache) {
+                value = cache.get(info);
+                if (value != null) {
+                    return value;
+                }
+                value = load(loader);
+                cache.put(info, value);
+            }
+        }
+        return value;
+    }
+
+    /** Loads the style and starts watching its resource for changes */
+    private <V> V load(Callable<V> loader) throws IOException {
+        try {
+            return loader.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Parses a style, collecting the parse statistics, and removes it from the caches when the
+     * style resource changes
+     */
+    private <V> V parseStyle(StyleInfo info, Callable<V> parser) throws IOException {
+        String format = info.getFormat() != null ? info.getFormat() : SLDHandler.FORMAT;
+        StyleParseStatistics statistics =
+                styleParseStatistics.computeIfAbsent(format, f -> new StyleParseStatistics());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            V result = load(parser);
+            failed = false;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            statistics.record(elapsed, failed);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(
+                        "Parsed style "
+                                + info.prefixedName()
+                                + " in "
+                                + elapsed / 1000000
+                                + "ms"
+                                + (failed ? ", failed" : ""));
+            }
+            if (!failed) {
+                watchStyle(info);
+            }
+        }
+    }
 
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener(
+    /**
+     * Clears the style from the caches when its resource changes. A single listener is registered
+     * for each style resource, no matter how many times the style is parsed again after being
+     * evicted, it goes away when it fires.
+     */
+    private void watchStyle(StyleInfo info) {
+        final Resource styleResource = dataDir().style(info);
+        styleListeners.computeIfAbsent(
+                styleResource.path(),
+                path -> {
+                    ResourceListener listener =
                             new ResourceListener() {
                                 @Override
                                 public void changed(ResourceNotification notify) {
-                                    styleCache.remove(info);
                                     styleResource.removeListener(this);
+                                    styleListeners.remove(path, this);
+                                    clear(info);
                                 }
-                            });
-                }
-            }
-        }
+                            };
+                    styleResource.addListener(listener);
+                    return listener;
+                });
+    }
 
-        return style;
+    /**
+     * Parses all the styles in the catalog in background, using the given number of threads, to
+     * avoid paying the parsing cost on the first requests using them. Styles that do not fit in the
+     * caches will be parsed again when needed.
+     */
+    public void preloadStyles(int threads) {
+        List<StyleInfo> styles = catalog.getStyles();
+        if (styles.isEmpty()) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(
+                        Math.max(1, threads),
+                        r -> {
+                            String name = "StylePreloader-" + counter.incrementAndGet();
+                            Thread t = new Thread(r, name);
+                            t.setDaemon(true);
+                            t.setPriority(Thread.MIN_PRIORITY);
+                            return t;
+                        });
+        for (StyleInfo style : styles) {
+            executor.submit(
+                    () -> {
+                        try {
+                            getStyle(style);
+                        } catch (Exception e) {
+                            LOGGER.log(
+                                    Level.FINE, "Failed to preload style " + style.getName(), e);
+                        }
+                    });
+        }
+        executor.shutdown();
     }
 
     /**
@@ -2228,9 +2370,122 @@ public class ResourcePool {
         wmsCache.clear();
         wmtsCache.clear();
         styleCache.clear();
+        sldCache.clear();
         listeners.clear();
     }
 
+    /**
+     * Cache of parsed styles, bounded by the total size of the style sources, so that the memory
+     * used by a catalog with many large styles stays predictable. Styles are loaded under a per key
+     * lock, a slow parse does not block the lookup of other styles.
+     *
+     * <p>The weight of a style is measured while loading it, the weigher only looks it up, as it
+     * runs under the cache locks. The cache uses a single segment, Guava would otherwise split the
+     * maximum weight among the segments, and a style larger than a segment share would never be
+     * cached.
+     */
+    class StyleCache<V> extends ForwardingMap<StyleInfo, V> {
+
+        final Cache<StyleInfo, V> cache;
+
+        final Map<StyleInfo, Integer> weights = new ConcurrentHashMap<>();
+
+        StyleCache(long maxSize) {
+            this.cache =
+                    CacheBuilder.newBuilder()
+                            .concurrencyLevel(1)
+                            .maximumWeight(maxSize)
+                            .weigher(
+                                    (StyleInfo info, V value) ->
+                                            weights.getOrDefault(info, MIN_STYLE_WEIGHT))
+                            .removalListener(
+                                    (RemovalNotification<StyleInfo, V> n) -> {
+                                        if (n.getCause() != RemovalCause.REPLACED) {
+                                            weights.remove(n.getKey());
+                                        }
+                                    })
+                            .build();
+        }
+
+        @Override
+        protected Map<StyleInfo, V> delegate() {
+            return cache.asMap();
+        }
+
+        /** Returns the cached value, using the loader to create it if missing */
+        V get(StyleInfo info, Callable<V> loader) throws IOException {
+            try {
+                return cache.get(
+                        info,
+                        () -> {
+                            V value = loader.call();
+                            weights.put(info, getStyleWeight(info));
+                            return value;
+                        });
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * The weight of a style in the caches, the size of its source. Resources do not expose their
+     * size, and getting a file out of them may copy them on disk, so the source gets streamed.
+     */
+    int getStyleWeight(StyleInfo info) {
+        try {
+            Resource resource = dataDir().style(info);
+            if (resource.getType() == Resource.Type.RESOURCE) {
+                long size;
+                try (InputStream in = resource.in()) {
+                    size = IOUtils.skip(in, Long.MAX_VALUE);
+                }
+                return (int) Math.max(MIN_STYLE_WEIGHT, Math.min(Integer.MAX_VALUE, size));
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not compute the size of style " + info.getName(), e);
+        }
+        return MIN_STYLE_WEIGHT;
+    }
+
+    /** Counts the style parses and the time spent parsing, for a style format */
+    public static class StyleParseStatistics {
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void record(long elapsed, boolean failed) {
+            count.increment();
+            nanos.add(elapsed);
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        /** The number of parses, including the failed ones */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /** The number of parses that failed */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /** The total time spent parsing, in milliseconds */
+        public long getTotalTime() {
+            return nanos.sum() / 1000000;
+        }
+    }
+
     /**
      * Base class for all the resource caches, ensures type safety and provides an easier way to
      * handle with resource disposal
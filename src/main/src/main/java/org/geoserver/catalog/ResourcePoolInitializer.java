@@ -6,11 +6,14 @@
 package org.geoserver.catalog;
 
 import java.util.List;
+import java.util.logging.Logger;
 import org.geoserver.config.ConfigurationListenerAdapter;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.GeoServerReinitializer;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.util.EntityResolverProvider;
+import org.geotools.util.logging.Logging;
 
 /**
  * Initializes parameters of the {@link ResourcePool} class from configuration.
@@ -19,6 +22,14 @@ import org.geoserver.util.EntityResolverProvider;
  */
 public class ResourcePoolInitializer implements GeoServerReinitializer {
 
+    static final Logger LOGGER = Logging.getLogger(ResourcePoolInitializer.class);
+
+    /**
+     * Number of threads used to parse all the styles in background at startup, the styles are not
+     * preloaded if not set
+     */
+    static final String STYLE_PRELOAD_THREADS = "GEOSERVER_STYLE_PRELOAD_THREADS";
+
     GeoServer gs;
     EntityResolverProvider resolverProvider;
 
@@ -58,5 +69,14 @@ public class ResourcePoolInitializer implements GeoServerReinitializer {
                 });
 
         gs.getCatalog().getResourcePool().setEntityResolverProvider(resolverProvider);
+
+        String preloadThreads = GeoServerExtensions.getProperty(STYLE_PRELOAD_THREADS);
+        if (preloadThreads != null) {
+            try {
+                gs.getCatalog().getResourcePool().preloadStyles(Integer.parseInt(preloadThreads));
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + STYLE_PRELOAD_THREADS + " value: " + preloadThreads);
+            }
+        }
     }
 }
@@ -0,0 +1,389 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.ServiceInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.ows.URLMangler.URLType;
+import org.geoserver.ows.util.ResponseUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Caches the encoded capabilities documents, so that the secured catalog does not need to be
+ * walked over and over for the same clients asking the same document.
+ *
+ * <p>Documents are keyed by service, version, virtual service scope (workspace and layer), user
+ * and authorities, proxied base URL and the full set of request parameters, and are only cached
+ * for GET requests. Catalog changes invalidate the documents of the affected workspace and the
+ * global ones, while service and global configuration changes clear the whole cache.
+ *
+ * <p>Some inputs of the capabilities documents do not emit events (data driven dimension domains,
+ * data security rules, tile caching configuration), for those the documents are refreshed after a
+ * configurable time to live. The cache is disabled by default, it can be enabled setting the
+ * {@code CAPABILITIES_CACHE_SIZE} variable to the maximum number of documents to keep, and the
+ * time to live can be set, in seconds, with {@code CAPABILITIES_CACHE_TTL}.
+ */
+public class CapabilitiesCache extends ConfigurationListenerAdapter implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(CapabilitiesCache.class);
+
+    public static final String CACHE_SIZE_KEY = "CAPABILITIES_CACHE_SIZE";
+
+    public static final String CACHE_TTL_KEY = "CAPABILITIES_CACHE_TTL";
+
+    static final long DEFAULT_TTL = 300;
+
+    /** Produces a capabilities document */
+    @FunctionalInterface
+    public interface DocumentWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    /** Incremented at each invalidation, documents built across one are not stored */
+    final AtomicLong generation = new AtomicLong();
+
+    volatile Cache<Key, byte[]> cache;
+
+    public CapabilitiesCache(GeoServer geoServer) {
+        geoServer.addListener(this);
+        geoServer.getCatalog().addListener(this);
+        configure(getProperty(CACHE_SIZE_KEY, 0), getProperty(CACHE_TTL_KEY, DEFAULT_TTL));
+    }
+
+    private static long getProperty(String key, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + key + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Sets up the cache, dropping the documents cached so far
+     *
+     * @param maxDocuments the maximum number of cached documents, zero or less disables the cache
+     * @param ttl the time to live of the documents, in seconds
+     */
+    public void configure(long maxDocuments, long ttl) {
+        generation.incrementAndGet();
+        if (maxDocuments <= 0) {
+            cache = null;
+        } else {
+            cache =
+                    CacheBuilder.newBuilder()
+                            .maximumSize(maxDocuments)
+                            .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                            .build();
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Writes out a capabilities document, using the cached copy when available, and the {@link
+     * DocumentWriter} otherwise. Falls back on the writer when the cache is not available.
+     */
+    public static void write(OutputStream output, DocumentWriter writer) throws IOException {
+        CapabilitiesCache cache = GeoServerExtensions.bean(CapabilitiesCache.class);
+        if (cache != null) {
+            cache.writeCached(output, writer);
+        } else {
+            writer.write(output);
+        }
+    }
+
+    void writeCached(OutputStream output, DocumentWriter writer) throws IOException {
+        Cache<Key, byte[]> cache = this.cache;
+        Key key = cache != null ? getKey(Dispatcher.REQUEST.get()) : null;
+        if (key == null) {
+            writer.write(output);
+            return;
+        }
+
+        byte[] document = cache.getIfPresent(key);
+        if (document == null) {
+            long current = generation.get();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            writer.write(bos);
+            document = bos.toByteArray();
+            if (current == generation.get()) {
+                cache.put(key, document);
+            }
+        } else if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Serving cached capabilities document for " + key);
+        }
+        output.write(document);
+    }
+
+    /** Builds the cache key for the request, or returns null if the request cannot be cached */
+    Key getKey(Request request) {
+        if (request == null || !request.isGet() || request.getHttpRequest() == null) {
+            return null;
+        }
+        WorkspaceInfo ws = LocalWorkspace.get();
+        PublishedInfo published = LocalPublished.get();
+        // the proxy base URL might depend on the request headers, let the manglers compute it
+        String baseURL =
+                ResponseUtils.buildURL(
+                        ResponseUtils.baseURL(request.getHttpRequest()),
+                        "",
+                        null,
+                        URLType.SERVICE);
+        Map<String, String> params = new TreeMap<>();
+        if (request.getRawKvp() != null) {
+            for (Object e : request.getRawKvp().entrySet()) {
+                Map.Entry entry = (Map.Entry) e;
+                params.put(
+                        String.valueOf(entry.getKey()).toUpperCase(),
+                        String.valueOf(entry.getValue()));
+            }
+        }
+        String user = null;
+        String authorities = null;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null) {
+            user = auth.getName();
+            authorities =
+                    auth.getAuthorities()
+                            .stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .sorted()
+                            .collect(Collectors.joining(","));
+        }
+        return new Key(
+                upper(request.getService()),
+                request.getVersion(),
+                ws != null ? ws.getName() : null,
+                published != null ? published.prefixedName() : null,
+                user,
+                authorities,
+                baseURL,
+                params.toString());
+    }
+
+    private static String upper(String value) {
+        return value != null ? value.toUpperCase() : null;
+    }
+
+    /** Drops all the cached documents */
+    public void clear() {
+        invalidate(k -> true);
+    }
+
+    void invalidate(Predicate<Key> predicate) {
+        generation.incrementAndGet();
+        Cache<Key, byte[]> cache = this.cache;
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(predicate);
+        }
+    }
+
+    /**
+     * Invalidates the documents of the given workspace, along with the global ones. A null
+     * workspace name affects all documents.
+     */
+    void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            clear();
+        } else {
+            invalidate(k -> k.workspace == null || k.workspace.equals(workspace));
+        }
+    }
+
+    void handleCatalogEvent(CatalogEvent event) {
+        if (cache != null) {
+            invalidateWorkspace(getWorkspaceName(event.getSource()));
+        }
+    }
+
+    /** Returns the name of the workspace containing the object, or null if global or unknown */
+    String getWorkspaceName(CatalogInfo info) {
+        WorkspaceInfo ws = null;
+        if (info instanceof WorkspaceInfo) {
+            ws = (WorkspaceInfo) info;
+        } else if (info instanceof NamespaceInfo) {
+            return ((NamespaceInfo) info).getPrefix();
+        } else if (info instanceof StoreInfo) {
+            ws = ((StoreInfo) info).getWorkspace();
+        } else if (info instanceof ResourceInfo) {
+            StoreInfo store = ((ResourceInfo) info).getStore();
+            ws = store != null ? store.getWorkspace() : null;
+        } else if (info instanceof LayerInfo) {
+            return getWorkspaceName(((LayerInfo) info).getResource());
+        } else if (info instanceof LayerGroupInfo) {
+            ws = ((LayerGroupInfo) info).getWorkspace();
+        } else if (info instanceof StyleInfo) {
+            ws = ((StyleInfo) info).getWorkspace();
+        }
+        return ws != null ? ws.getName() : null;
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        handleCatalogEvent(event);
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        handleCatalogEvent(event);
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the object still has the old workspace and names here
+        handleCatalogEvent(event);
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        handleCatalogEvent(event);
+    }
+
+    @Override
+    public void handlePostGlobalChange(GeoServerInfo global) {
+        clear();
+    }
+
+    @Override
+    public void handleSettingsPostModified(SettingsInfo settings) {
+        invalidateSettings(settings);
+    }
+
+    @Override
+    public void handleSettingsAdded(SettingsInfo settings) {
+        invalidateSettings(settings);
+    }
+
+    @Override
+    public void handleSettingsRemoved(SettingsInfo settings) {
+        invalidateSettings(settings);
+    }
+
+    private void invalidateSettings(SettingsInfo settings) {
+        WorkspaceInfo ws = settings.getWorkspace();
+        if (ws == null) {
+            clear();
+        } else {
+            // workspace settings only apply to the virtual services of that workspace
+            invalidate(k -> ws.getName().equals(k.workspace));
+        }
+    }
+
+    @Override
+    public void handlePostServiceChange(ServiceInfo service) {
+        // service names are configurable, cannot be reliably matched with the requested service
+        clear();
+    }
+
+    @Override
+    public void handleServiceRemove(ServiceInfo service) {
+        clear();
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    /** The identity of a capabilities document */
+    static class Key {
+        final String service;
+        final String version;
+        final String workspace;
+        final String layer;
+        final String user;
+        final String authorities;
+        final String baseURL;
+        final String params;
+
+        Key(
+                String service,
+                String version,
+                String workspace,
+                String layer,
+                String user,
+                String authorities,
+                String baseURL,
+                String params) {
+            this.service = service;
+            this.version = version;
+            this.workspace = workspace;
+            this.layer = layer;
+            this.user = user;
+            this.authorities = authorities;
+            this.baseURL = baseURL;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(service, key.service)
+                    && Objects.equals(version, key.version)
+                    && Objects.equals(workspace, key.workspace)
+                    && Objects.equals(layer, key.layer)
+                    && Objects.equals(user, key.user)
+                    && Objects.equals(authorities, key.authorities)
+                    && Objects.equals(baseURL, key.baseURL)
+                    && Objects.equals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    service, version, workspace, layer, user, authorities, baseURL, params);
+        }
+
+        @Override
+        public String toString() {
+            return service + " " + version + " " + baseURL + " " + params;
+        }
+    }
+}
@@ -4,6 +4,8 @@
  */
 package org.geoserver.security.impl;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -12,6 +14,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import org.geoserver.catalog.Catalog;
@@ -31,7 +34,12 @@ import org.geoserver.catalog.event.CatalogRemoveEvent;
 
 /**
  * A cache for layer group containment, it speeds up looking up layer groups containing a particular
- * layer (recursively). * The class is thread safe.
+ * layer (recursively). The class is thread safe.
+ *
+ * <p>The flattened list of containers of a resource or group is computed once and memoized, along
+ * with a bit set of all its ancestors (by group index). Catalog changes only drop the memoized
+ * entries having one of the modified groups (or their direct children) as ancestor, the others
+ * keep being served without walking the group hierarchy again.
  *
  * @author Andrea Aime - GeoSolutions
  */
@@ -62,6 +70,24 @@ class LayerGroupContainmentCache {
      */
     Map<String, Set<LayerGroupSummary>> resourceContainmentCache = new ConcurrentHashMap<>();
 
+    /** Memoized flattened containers by {@link ResourceInfo} id */
+    Map<String, Containment> resourceAncestors = new ConcurrentHashMap<>();
+
+    /** Memoized flattened containers by {@link LayerGroupInfo} id */
+    Map<String, Containment> groupAncestors = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented before and after each structural change, an odd value means a change is in
+     * progress. Used to avoid memoizing a containment computed while the structure was changing.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Serializes the structural changes */
+    private final Object updateLock = new Object();
+
+    /** Next index to be assigned to a {@link LayerGroupSummary}, guarded by updateLock */
+    private int nextIndex;
+
     private Catalog catalog;
 
     public LayerGroupContainmentCache(Catalog catalog) {
@@ -71,19 +97,91 @@ class LayerGroupContainmentCache {
     }
 
     private void buildLayerGroupCaches() {
-        groupCache.clear();
-        resourceContainmentCache.clear();
-        List<LayerGroupInfo> groups = catalog.getLayerGroups();
+        synchronized (updateLock) {
+            version.incrementAndGet();
+            try {
+                groupCache.clear();
+                resourceContainmentCache.clear();
+                nextIndex = 0;
+                List<LayerGroupInfo> groups = catalog.getLayerGroups();
+
+                // first populate the basic structure
+                for (LayerGroupInfo lg : groups) {
+                    addGroupInfo(lg);
+                }
+
+                // now populate the containment structure
+                for (LayerGroupInfo lg : groups) {
+                    registerContainedGroups(lg);
+                }
+                resourceAncestors.clear();
+                groupAncestors.clear();
+            } finally {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs a structural change, then drops the memoized containments affected by it
+     *
+     * @param groupId the group whose contents or mode are being changed
+     * @param children the group children, before and after the change
+     * @param update the structural change
+     */
+    private void update(
+            String groupId, Collection<? extends PublishedInfo> children, Runnable update) {
+        synchronized (updateLock) {
+            version.incrementAndGet();
+            try {
+                // collect the affected entries both before and after the change
+                Set<String> resourceIds = new HashSet<>();
+                BitSet groupIndexes = new BitSet();
+                Set<String> groupIds = new HashSet<>();
+                collectAffected(groupId, children, resourceIds, groupIds, groupIndexes);
+                update.run();
+                collectAffected(groupId, children, resourceIds, groupIds, groupIndexes);
+                invalidate(resourceAncestors, resourceIds, groupIndexes);
+                invalidate(groupAncestors, groupIds, groupIndexes);
+            } finally {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Collects the group and its direct children, any containment having one of them as ancestor
+     * is affected by a change in the group
+     */
+    private void collectAffected(
+            String groupId,
+            Collection<? extends PublishedInfo> children,
+            Set<String> resourceIds,
+            Set<String> groupIds,
+            BitSet groupIndexes) {
+        addAffectedGroup(groupId, groupIds, groupIndexes);
+        for (PublishedInfo p : children) {
+            if (IS_LAYER.test(p)) {
+                resourceIds.add(((LayerInfo) p).getResource().getId());
+            } else if (IS_GROUP.test(p)) {
+                addAffectedGroup(p.getId(), groupIds, groupIndexes);
+            }
+        }
+    }
 
-        // first populate the basic structure
-        for (LayerGroupInfo lg : groups) {
-            addGroupInfo(lg);
+    private void addAffectedGroup(String id, Set<String> groupIds, BitSet groupIndexes) {
+        groupIds.add(id);
+        LayerGroupSummary summary = groupCache.get(id);
+        if (summary != null) {
+            groupIndexes.set(summary.index);
         }
+    }
 
-        // now populate the containment structure
-        for (LayerGroupInfo lg : groups) {
-            registerContainedGroups(lg);
+    private void invalidate(Map<String, Containment> memo, Set<String> ids, BitSet groupIndexes) {
+        for (String id : ids) {
+            memo.remove(id);
         }
+        memo.values().removeIf(c -> c.ancestors.intersects(groupIndexes));
     }
 
     private void registerContainedGroups(LayerGroupInfo lg) {
@@ -104,6 +202,7 @@ class LayerGroupContainmentCache {
 
     private void addGroupInfo(LayerGroupInfo lg) {
         LayerGroupSummary groupData = new LayerGroupSummary(lg);
+        groupData.index = nextIndex++;
         groupCache.put(lg.getId(), groupData);
         lg.getLayers()
                 .stream()
@@ -135,25 +234,30 @@ class LayerGroupContainmentCache {
                                 }
                             }
                         });
-        // this group does not contain anything anymore, remove from containment
-        for (LayerGroupSummary d : groupCache.values()) {
-            // will be removed by equality
-            d.containerGroups.remove(new LayerGroupSummary(lg));
+        // this group does not contain anything anymore, remove from its children containment
+        if (data != null) {
+            lg.getLayers()
+                    .stream()
+                    .filter(IS_GROUP)
+                    .map(p -> groupCache.get(p.getId()))
+                    .filter(Objects::nonNull)
+                    .forEach(child -> child.containerGroups.remove(data));
         }
     }
 
     /** Returns all groups containing directly or indirectly containing the resource */
     public Collection<LayerGroupSummary> getContainerGroupsFor(ResourceInfo resource) {
         String id = resource.getId();
-        Set<LayerGroupSummary> groups = resourceContainmentCache.get(id);
-        if (groups == null) {
+        if (id == null) {
             return Collections.emptyList();
         }
-        Set<LayerGroupSummary> result = new HashSet<>();
-        for (LayerGroupSummary lg : groups) {
-            collectContainers(lg, result);
+        Containment containment = resourceAncestors.get(id);
+        if (containment == null) {
+            long start = version.get();
+            containment = buildContainment(resourceContainmentCache.get(id));
+            memoize(resourceAncestors, id, containment, start);
         }
-        return result;
+        return containment.groups;
     }
 
     /**
@@ -165,32 +269,83 @@ class LayerGroupContainmentCache {
         if (id == null) {
             return Collections.emptyList();
         }
-        LayerGroupSummary summary = groupCache.get(id);
-        if (summary == null) {
-            return Collections.emptyList();
+        Containment containment = groupAncestors.get(id);
+        if (containment == null) {
+            long start = version.get();
+            LayerGroupSummary summary = groupCache.get(id);
+            if (summary == null) {
+                return Collections.emptyList();
+            }
+            containment = buildContainment(summary.getContainerGroups());
+            memoize(groupAncestors, id, containment, start);
+        }
+        return containment.groups;
+    }
+
+    /**
+     * Stores the containment unless the structure changed (or was changing) while it was being
+     * computed. The entry is stored first and the version checked afterwards, so that a change
+     * starting after the check is guaranteed to find it and invalidate it if needed, while a change
+     * that started before the check makes this method take the entry back.
+     */
+    private void memoize(
+            Map<String, Containment> memo, String id, Containment containment, long start) {
+        if ((start & 1) == 0
+                && memo.putIfAbsent(id, containment) == null
+                && version.get() != start) {
+            memo.remove(id, containment);
         }
+    }
 
-        Set<LayerGroupSummary> result = new HashSet<>();
-        for (LayerGroupSummary container : summary.getContainerGroups()) {
-            collectContainers(container, result);
+    /** Walks upwards the hierarchy starting from the given direct containers */
+    private Containment buildContainment(Collection<LayerGroupSummary> directContainers) {
+        if (directContainers == null || directContainers.isEmpty()) {
+            return Containment.EMPTY;
+        }
+        BitSet ancestors = new BitSet();
+        List<LayerGroupSummary> groups = new ArrayList<>();
+        for (LayerGroupSummary lg : directContainers) {
+            collectContainers(lg, ancestors, groups);
         }
-        return result;
+        return new Containment(ancestors, groups);
     }
 
     /**
-     * Recursively collects the group and all its containers in the <data>groups</data> collection
+     * Recursively collects the group and all its containers, the <data>ancestors</data> tracks all
+     * the visited groups while <data>groups</data> only the ones relevant for security
      */
-    private void collectContainers(LayerGroupSummary lg, Set<LayerGroupSummary> groups) {
-        if (!groups.contains(lg)) {
+    private void collectContainers(
+            LayerGroupSummary lg, BitSet ancestors, List<LayerGroupSummary> groups) {
+        if (!ancestors.get(lg.index)) {
+            ancestors.set(lg.index);
             if (lg.getMode() != LayerGroupInfo.Mode.SINGLE) {
                 groups.add(lg);
             }
             for (LayerGroupSummary container : lg.containerGroups) {
-                collectContainers(container, groups);
+                collectContainers(container, ancestors, groups);
             }
         }
     }
 
+    /**
+     * The flattened containment of a resource or group: the index of all the ancestor groups, and
+     * the ones relevant for security
+     */
+    static class Containment {
+
+        static final Containment EMPTY =
+                new Containment(new BitSet(), Collections.<LayerGroupSummary>emptyList());
+
+        final BitSet ancestors;
+
+        final Collection<LayerGroupSummary> groups;
+
+        Containment(BitSet ancestors, List<LayerGroupSummary> groups) {
+            this.ancestors = ancestors;
+            this.groups = Collections.unmodifiableList(groups);
+        }
+    }
+
     /**
      * Information summary about a layer group, just enough information to avoid performing linear
      * searches against the catalog to match against rules and scan layer containment upwards
@@ -206,6 +361,9 @@ class LayerGroupContainmentCache {
 
         Set<LayerGroupSummary> containerGroups;
 
+        /** Compact identifier used in the flattened containment bit sets */
+        int index;
+
         LayerGroupSummary(LayerGroupInfo lg) {
             this.id = lg.getId();
             this.workspace = lg.getWorkspace() != null ? lg.getWorkspace().getName() : null;
@@ -219,6 +377,7 @@ class LayerGroupContainmentCache {
             this.workspace = other.workspace;
             this.name = other.name;
             this.mode = other.mode;
+            this.index = other.index;
             containerGroups = other.containerGroups;
         }
 
@@ -302,8 +461,13 @@ class LayerGroupContainmentCache {
         public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
             if (event.getSource() instanceof LayerGroupInfo) {
                 LayerGroupInfo lg = (LayerGroupInfo) event.getSource();
-                addGroupInfo(lg);
-                registerContainedGroups(lg);
+                update(
+                        lg.getId(),
+                        lg.getLayers(),
+                        () -> {
+                            addGroupInfo(lg);
+                            registerContainedGroups(lg);
+                        });
             }
         }
 
@@ -311,7 +475,7 @@ class LayerGroupContainmentCache {
         public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
             if (event.getSource() instanceof LayerGroupInfo) {
                 LayerGroupInfo lg = (LayerGroupInfo) event.getSource();
-                clearGroupInfo(lg);
+                update(lg.getId(), lg.getLayers(), () -> clearGroupInfo(lg));
             }
             // no need to listen to workspace or layer removal, these will cascade to
             // layer groups
@@ -339,12 +503,22 @@ class LayerGroupContainmentCache {
                             (List<PublishedInfo>) event.getOldValues().get(layerIdx);
                     List<PublishedInfo> newLayers =
                             (List<PublishedInfo>) event.getNewValues().get(layerIdx);
-                    updateContainedLayers(groupCache.get(lg.getId()), oldLayers, newLayers);
+                    Set<PublishedInfo> children = new HashSet<>(oldLayers);
+                    children.addAll(newLayers);
+                    update(
+                            lg.getId(),
+                            children,
+                            () ->
+                                    updateContainedLayers(
+                                            groupCache.get(lg.getId()), oldLayers, newLayers));
                 }
                 int modeIdx = event.getPropertyNames().indexOf("mode");
                 if (modeIdx != -1) {
                     Mode newMode = (Mode) event.getNewValues().get(modeIdx);
-                    updateGroupMode(lg.getId(), newMode);
+                    update(
+                            lg.getId(),
+                            Collections.emptyList(),
+                            () -> updateGroupMode(lg.getId(), newMode));
                 }
             } else if (source instanceof WorkspaceInfo) {
                 int nameIdx = event.getPropertyNames().indexOf("name");
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -314,6 +315,78 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         assertTrue(disposeCalled);
     }
 
+    private long getStyleParseCount(ResourcePool pool) {
+        return pool.getStyleParseStatistics()
+                .values()
+                .stream()
+                .mapToLong(ResourcePool.StyleParseStatistics::getCount)
+                .sum();
+    }
+
+    @Test
+    public void testStyleCache() throws IOException {
+        ResourcePool pool = new ResourcePool(getCatalog());
+        StyleInfo info = getCatalog().getStyleByName("relative");
+
+        Style style = pool.getStyle(info);
+        assertSame(style, pool.getStyle(info));
+        assertEquals(1, getStyleParseCount(pool));
+
+        // clearing the style forces a new parse
+        pool.clear(info);
+        assertNotSame(style, pool.getStyle(info));
+        assertEquals(2, getStyleParseCount(pool));
+    }
+
+    @Test
+    public void testStyleCacheSize() throws IOException {
+        ResourcePool pool =
+                new ResourcePool(getCatalog()) {
+                    @Override
+                    protected Map<StyleInfo, Style> createStyleCache() {
+                        // nothing fits in it
+                        return new StyleCache<>(0);
+                    }
+                };
+        StyleInfo info = getCatalog().getStyleByName("relative");
+
+        assertNotNull(pool.getStyle(info));
+        assertNotNull(pool.getStyle(info));
+        assertEquals(2, getStyleParseCount(pool));
+    }
+
+    @Test
+    public void testStyleListeners() throws IOException {
+        ResourcePool pool = new ResourcePool(getCatalog());
+        StyleInfo info = getCatalog().getStyleByName("relative");
+
+        // parsed again after being evicted, and as a SLD, still a single listener
+        pool.getStyle(info);
+        pool.getStyleCache().remove(info);
+        pool.getStyle(info);
+        pool.getSld(info);
+        assertEquals(3, getStyleParseCount(pool));
+        assertEquals(1, pool.styleListeners.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStyleWeight() throws IOException {
+        ResourcePool pool = new ResourcePool(getCatalog());
+        StyleInfo info = getCatalog().getStyleByName("relative");
+        int size = pool.dataDir().style(info).getContents().length;
+        int expected = Math.max(ResourcePool.MIN_STYLE_WEIGHT, size);
+        assertEquals(expected, pool.getStyleWeight(info));
+
+        // measured while loading, not by the weigher
+        pool.getStyle(info);
+        ResourcePool.StyleCache<Style> cache =
+                (ResourcePool.StyleCache<Style>) pool.getStyleCache();
+        assertEquals(expected, (int) cache.weights.get(info));
+        pool.clear(info);
+        assertNull(cache.weights.get(info));
+    }
+
     @Test
     public void testConfigureFeatureTypeCacheSize() {
         GeoServer gs = getGeoServer();
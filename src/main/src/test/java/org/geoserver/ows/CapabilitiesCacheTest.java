@@ -0,0 +1,138 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.geoserver.test.SystemTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(SystemTest.class)
+public class CapabilitiesCacheTest extends GeoServerSystemTestSupport {
+
+    CapabilitiesCache cache;
+
+    Request request;
+
+    AtomicInteger writes = new AtomicInteger();
+
+    @Before
+    public void setupCache() {
+        cache = applicationContext.getBean(CapabilitiesCache.class);
+        cache.configure(100, 300);
+
+        Map<String, Object> kvp = new HashMap<>();
+        kvp.put("service", "WMS");
+        kvp.put("version", "1.1.1");
+        kvp.put("request", "GetCapabilities");
+        request = new Request();
+        request.setHttpRequest(createRequest("wms"));
+        request.setGet(true);
+        request.setService("WMS");
+        request.setVersion("1.1.1");
+        request.setRequest("GetCapabilities");
+        request.setRawKvp(kvp);
+        Dispatcher.REQUEST.set(request);
+    }
+
+    @After
+    public void cleanup() {
+        Dispatcher.REQUEST.remove();
+        LocalWorkspace.remove();
+        cache.configure(0, 0);
+    }
+
+    private String write() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        cache.writeCached(bos, out -> out.write(("doc" + writes.incrementAndGet()).getBytes()));
+        return bos.toString();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        assertEquals("doc1", write());
+        assertEquals("doc1", write());
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void testPostNotCached() throws Exception {
+        request.setGet(false);
+        write();
+        write();
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testRequestParameters() throws Exception {
+        write();
+        request.getRawKvp().put("updateSequence", "10");
+        write();
+        write();
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        cache.configure(0, 0);
+        write();
+        write();
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testCatalogChangeInvalidatesWorkspace() throws Exception {
+        Catalog catalog = getCatalog();
+        LocalWorkspace.set(catalog.getWorkspaceByName(MockData.CITE_PREFIX));
+        assertEquals("doc1", write());
+        LocalWorkspace.set(catalog.getWorkspaceByName(MockData.SF_PREFIX));
+        assertEquals("doc2", write());
+        LocalWorkspace.remove();
+        assertEquals("doc3", write());
+
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        String title = ft.getTitle();
+        ft.setTitle("A new title");
+        catalog.save(ft);
+        try {
+            // the cite and global documents are rebuilt, the sf one is still valid
+            LocalWorkspace.set(catalog.getWorkspaceByName(MockData.CITE_PREFIX));
+            assertEquals("doc4", write());
+            LocalWorkspace.set(catalog.getWorkspaceByName(MockData.SF_PREFIX));
+            assertEquals("doc2", write());
+            LocalWorkspace.remove();
+            assertEquals("doc5", write());
+        } finally {
+            ft = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+            ft.setTitle(title);
+            catalog.save(ft);
+        }
+    }
+
+    @Test
+    public void testGlobalChangeClears() throws Exception {
+        Catalog catalog = getCatalog();
+        LocalWorkspace.set(catalog.getWorkspaceByName(MockData.SF_PREFIX));
+        assertEquals("doc1", write());
+
+        GeoServerInfo global = getGeoServer().getGlobal();
+        getGeoServer().save(global);
+
+        assertEquals("doc2", write());
+    }
+}
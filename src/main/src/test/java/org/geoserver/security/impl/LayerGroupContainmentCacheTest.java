@@ -10,6 +10,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.net.URL;
@@ -377,4 +378,54 @@ public class LayerGroupContainmentCacheTest {
         summary = cc.groupCache.get(nature.getId());
         assertEquals(Mode.OPAQUE_CONTAINER, summary.getMode());
     }
+
+    @Test
+    public void testChangeGroupModeUpdatesContainment() throws Exception {
+        // compute and memoize the containment first
+        assertThat(containerNamesForResource(MockData.LAKES), equalTo(set(CONTAINER_GROUP)));
+        assertThat(
+                containerNamesForResource(MockData.ROAD_SEGMENTS), equalTo(set(CONTAINER_GROUP)));
+
+        nature.setMode(Mode.NAMED);
+        catalog.save(nature);
+
+        assertThat(
+                containerNamesForResource(MockData.LAKES),
+                equalTo(set(CONTAINER_GROUP, NATURE_GROUP)));
+        assertThat(
+                containerNamesForResource(MockData.FORESTS),
+                equalTo(set(CONTAINER_GROUP, NATURE_GROUP)));
+        assertThat(
+                containerNamesForResource(MockData.ROAD_SEGMENTS), equalTo(set(CONTAINER_GROUP)));
+    }
+
+    @Test
+    public void testNestUnderNewGroupUpdatesContainment() throws Exception {
+        final String TOP_GROUP = "top";
+        assertThat(containerNamesForGroup(nature), equalTo(set(CONTAINER_GROUP)));
+        assertThat(containerNamesForResource(MockData.LAKES), equalTo(set(CONTAINER_GROUP)));
+
+        LayerGroupInfo top = addLayerGroup(TOP_GROUP, Mode.NAMED, null, container);
+        assertThat(containerNamesForGroup(nature), equalTo(set(CONTAINER_GROUP, TOP_GROUP)));
+        assertThat(containerNamesForGroup(container), equalTo(set(TOP_GROUP)));
+        assertThat(
+                containerNamesForResource(MockData.LAKES), equalTo(set(CONTAINER_GROUP, TOP_GROUP)));
+
+        catalog.remove(top);
+        assertThat(containerNamesForGroup(nature), equalTo(set(CONTAINER_GROUP)));
+        assertThat(containerNamesForGroup(container), empty());
+        assertThat(containerNamesForResource(MockData.LAKES), equalTo(set(CONTAINER_GROUP)));
+    }
+
+    @Test
+    public void testUnrelatedChangesKeepContainment() throws Exception {
+        Collection<LayerGroupSummary> lakes = cc.getContainerGroupsFor(getResource(MockData.LAKES));
+        assertSame(lakes, cc.getContainerGroupsFor(getResource(MockData.LAKES)));
+
+        // a group not related to lakes is added, the memoized containment is preserved
+        LayerInfo neatline = catalog.getLayerByName(getLayerId(MockData.MAP_NEATLINE));
+        addLayerGroup("unrelated", Mode.NAMED, null, neatline);
+        assertSame(lakes, cc.getContainerGroupsFor(getResource(MockData.LAKES)));
+        assertThat(containerNamesForResource(MockData.MAP_NEATLINE), equalTo(set("unrelated")));
+    }
 }
@@ -4,15 +4,22 @@
  */
 package org.geoserver.wcs.responses;
 
+import java.awt.geom.AffineTransform;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import javax.media.jai.OpImage;
 import javax.media.jai.RenderedOp;
+import javax.media.jai.TiledImage;
 import org.apache.commons.io.FileUtils;
 import org.geoserver.platform.ServiceException;
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.coverage.grid.io.AbstractGridCoverageWriter;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
@@ -23,12 +30,16 @@ import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.image.ImageWorker;
 import org.geotools.image.util.ImageUtilities;
+import org.geotools.referencing.operation.transform.ConcatenatedTransform;
+import org.geotools.referencing.operation.transform.ProjectiveTransform;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.crs.EngineeringCRS;
+import org.opengis.referencing.datum.PixelInCell;
+import org.opengis.referencing.operation.MathTransform;
 
 /**
  * Support class setting up reasonable defaults on the write parameters and centralizing the write
@@ -164,30 +175,93 @@ public class GeoTiffWriterHelper {
                 }
 
                 new ImageWorker(ri).writeTIFF(stream, compression, quality, tileWidth, tileHeight);
+            } else if (isStreamable()) {
+                writeStreaming(stream);
             } else {
-                final GeneralParameterValue[] wps =
-                        (GeneralParameterValue[])
-                                geotoolsWriteParams
-                                        .values()
-                                        .toArray(
-                                                new GeneralParameterValue
-                                                        [geotoolsWriteParams.values().size()]);
-
-                // write out the coverage
-                AbstractGridCoverageWriter writer =
-                        (AbstractGridCoverageWriter) TIFF_FORMAT.getWriter(stream);
-                if (writer == null)
-                    throw new ServiceException(
-                            "Could not find the GeoTIFF writer, please check it's in the classpath");
-                try {
-                    writer.write(coverage, wps);
-                } finally {
-                    try {
-                        writer.dispose();
-                    } catch (Exception e) {
-                        // swallow, silent close
-                    }
-                }
+                writeCoverage(coverage, geotoolsWriteParams, stream);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the coverage can be written by the {@link StreamingGeoTiffEncoder}, that
+     * is, if it is large enough and the output is not compressed
+     */
+    private boolean isStreamable() {
+        return imageIoWriteParams.getCompressionMode() != GeoToolsWriteParams.MODE_EXPLICIT
+                && StreamingGeoTiffEncoder.accepts(coverage.getRenderedImage());
+    }
+
+    /**
+     * Streams the coverage tile by tile, using a 1x1 pixels GeoTIFF with the same
+     * georeferencing, color model and properties as the template for the GeoTIFF tags
+     */
+    private void writeStreaming(OutputStream stream) throws IOException {
+        RenderedImage image = coverage.getRenderedImage();
+        SampleModel sm = image.getSampleModel().createCompatibleSampleModel(1, 1);
+        TiledImage pixel = new TiledImage(0, 0, 1, 1, 0, 0, sm, image.getColorModel());
+        // the template pixel is the top left one of the image
+        MathTransform gridToCRS =
+                ConcatenatedTransform.create(
+                        ProjectiveTransform.create(
+                                AffineTransform.getTranslateInstance(
+                                        image.getMinX(), image.getMinY())),
+                        coverage.getGridGeometry().getGridToCRS(PixelInCell.CELL_CORNER));
+        GridGeometry2D geometry =
+                new GridGeometry2D(
+                        new GridEnvelope2D(0, 0, 1, 1),
+                        PixelInCell.CELL_CORNER,
+                        gridToCRS,
+                        coverage.getCoordinateReferenceSystem(),
+                        null);
+        GridCoverage2D template =
+                new GridCoverageFactory()
+                        .create(
+                                coverage.getName(),
+                                pixel,
+                                geometry,
+                                coverage.getSampleDimensions(),
+                                null,
+                                coverage.getProperties());
+        ParameterValueGroup templateParams = geotoolsWriteParams.clone();
+        templateParams
+                .parameter(AbstractGridFormat.GEOTOOLS_WRITE_PARAMS.getName().toString())
+                .setValue(new GeoTiffWriteParams());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeCoverage(template, templateParams, bos);
+
+        int tileWidth, tileHeight;
+        if (imageIoWriteParams.getTilingMode() == GeoToolsWriteParams.MODE_EXPLICIT) {
+            tileWidth = imageIoWriteParams.getTileWidth();
+            tileHeight = imageIoWriteParams.getTileHeight();
+        } else {
+            tileWidth = image.getTileWidth();
+            tileHeight = image.getTileHeight();
+        }
+        new StreamingGeoTiffEncoder(bos.toByteArray(), tileWidth, tileHeight)
+                .encode(image, stream);
+    }
+
+    private void writeCoverage(
+            GridCoverage2D coverage, ParameterValueGroup params, OutputStream stream)
+            throws IOException {
+        final GeneralParameterValue[] wps =
+                (GeneralParameterValue[])
+                        params.values().toArray(new GeneralParameterValue[params.values().size()]);
+
+        // write out the coverage
+        AbstractGridCoverageWriter writer =
+                (AbstractGridCoverageWriter) TIFF_FORMAT.getWriter(stream);
+        if (writer == null)
+            throw new ServiceException(
+                    "Could not find the GeoTIFF writer, please check it's in the classpath");
+        try {
+            writer.write(coverage, wps);
+        } finally {
+            try {
+                writer.dispose();
+            } catch (Exception e) {
+                // swallow, silent close
             }
         }
     }
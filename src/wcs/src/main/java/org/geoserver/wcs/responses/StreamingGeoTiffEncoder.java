@@ -0,0 +1,507 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs.responses;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes uncompressed, tiled GeoTIFF files in a single pass, computing the tiles of the source
+ * image in parallel and sending them to the output as soon as they are ready, in order. Since the
+ * tiles are not compressed their size is known upfront, so the header and the directory are
+ * written first (the same layout as a cloud optimized GeoTIFF, without overviews) and the file
+ * never needs to be seeked back or buffered as a whole. The amount of tiles computed ahead of the
+ * one being written is bounded by a memory budget.
+ *
+ * <p>The GeoTIFF specific tags (geokeys, tie points, nodata and the like) are not computed here,
+ * they are copied from a template TIFF file, normally a 1x1 pixels image written by the GeoTools
+ * GeoTIFF writer, with the same color model and georeferencing as the image to be encoded.
+ */
+public class StreamingGeoTiffEncoder {
+
+    /**
+     * Images with at least these many pixels are streamed, zero or less disables it. Not final to
+     * allow modification in tests.
+     */
+    public static long PIXEL_THRESHOLD =
+            Long.getLong("GS_WCS_TIFF_STREAMING_THRESHOLD", 4096L * 4096);
+
+    /** Maximum amount of memory used by the tiles computed ahead of the one being written */
+    static final long MEMORY_BUDGET =
+            Long.getLong("GS_WCS_TIFF_MEMORY_BUDGET", 64L * 1024 * 1024);
+
+    static final int THREADS =
+            Integer.getInteger("GS_WCS_TIFF_THREADS", Runtime.getRuntime().availableProcessors());
+
+    /** Tile size used when the requested one is not valid for a TIFF file */
+    static final int DEFAULT_TILE_SIZE = 512;
+
+    static final int TAG_IMAGE_WIDTH = 256;
+    static final int TAG_IMAGE_LENGTH = 257;
+    static final int TAG_COMPRESSION = 259;
+    static final int TAG_PLANAR_CONFIGURATION = 284;
+    static final int TAG_TILE_WIDTH = 322;
+    static final int TAG_TILE_LENGTH = 323;
+    static final int TAG_TILE_OFFSETS = 324;
+    static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    /** Tags describing the layout of the template data, replaced by the ones of the output */
+    static final Set<Integer> LAYOUT_TAGS =
+            new HashSet<>(
+                    Arrays.asList(
+                            TAG_IMAGE_WIDTH,
+                            TAG_IMAGE_LENGTH,
+                            TAG_COMPRESSION,
+                            273, // strip offsets
+                            278, // rows per strip
+                            279, // strip byte counts
+                            TAG_PLANAR_CONFIGURATION,
+                            317, // predictor
+                            TAG_TILE_WIDTH,
+                            TAG_TILE_LENGTH,
+                            TAG_TILE_OFFSETS,
+                            TAG_TILE_BYTE_COUNTS,
+                            330, // sub IFDs
+                            347 // JPEG tables
+                            ));
+
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_IFD = 13;
+    static final int TYPE_LONG8 = 16;
+    static final int TYPE_IFD8 = 18;
+
+    /** Size in bytes of the TIFF field types, indexed by type */
+    static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8};
+
+    static ExecutorService executor;
+
+    final List<Entry> templateEntries;
+
+    final ByteOrder order;
+
+    final int tileWidth;
+
+    final int tileHeight;
+
+    long memoryBudget = MEMORY_BUDGET;
+
+    /**
+     * @param template a TIFF file whose tags, other than the ones describing the data layout, are
+     *     copied in the output
+     * @param tileWidth the output tile width, replaced by a default if not a multiple of 16
+     * @param tileHeight the output tile height, replaced by a default if not a multiple of 16
+     */
+    public StreamingGeoTiffEncoder(byte[] template, int tileWidth, int tileHeight)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(template);
+        if (template.length < 8) {
+            throw new IOException("Invalid TIFF template, too short");
+        } else if (template[0] == 'I' && template[1] == 'I') {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (template[0] == 'M' && template[1] == 'M') {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IOException("Invalid TIFF template, unknown byte order");
+        }
+        this.order = buffer.order();
+        this.templateEntries = parseEntries(buffer);
+        this.tileWidth = isValidTileSize(tileWidth) ? tileWidth : DEFAULT_TILE_SIZE;
+        this.tileHeight = isValidTileSize(tileHeight) ? tileHeight : DEFAULT_TILE_SIZE;
+    }
+
+    private static boolean isValidTileSize(int size) {
+        return size > 0 && size % 16 == 0;
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            executor =
+                    Executors.newFixedThreadPool(
+                            Math.max(1, THREADS),
+                            r -> {
+                                String name = "GeoTIFFEncoder-" + counter.incrementAndGet();
+                                Thread t = new Thread(r, name);
+                                t.setDaemon(true);
+                                return t;
+                            });
+        }
+        return executor;
+    }
+
+    /** Returns true if the image is large enough, and its layout supported by this encoder */
+    public static boolean accepts(RenderedImage image) {
+        return PIXEL_THRESHOLD > 0
+                && (long) image.getWidth() * image.getHeight() >= PIXEL_THRESHOLD
+                && isSupported(image);
+    }
+
+    /**
+     * Returns true if the image can be encoded by this class, that is, if all its samples use the
+     * full size of the data type, which is not a bit packed one
+     */
+    public static boolean isSupported(RenderedImage image) {
+        SampleModel sm = image.getSampleModel();
+        if (sm == null || image.getColorModel() == null) {
+            return false;
+        }
+        int dataType = sm.getDataType();
+        if (dataType < DataBuffer.TYPE_BYTE || dataType > DataBuffer.TYPE_DOUBLE) {
+            return false;
+        }
+        int dataTypeSize = DataBuffer.getDataTypeSize(dataType);
+        for (int size : sm.getSampleSize()) {
+            if (size != dataTypeSize) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads the entries of the first directory of the template */
+    private static List<Entry> parseEntries(ByteBuffer buffer) throws IOException {
+        int magic = buffer.getShort(2) & 0xFFFF;
+        boolean bigTiff = magic == 43;
+        if (magic != 42 && !bigTiff) {
+            throw new IOException("Invalid TIFF template, unknown version " + magic);
+        }
+        int ifd = (int) (bigTiff ? buffer.getLong(8) : buffer.getInt(4) & 0xFFFFFFFFL);
+        long count = bigTiff ? buffer.getLong(ifd) : buffer.getShort(ifd) & 0xFFFF;
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        int position = ifd + (bigTiff ? 8 : 2);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++, position += entrySize) {
+            int tag = buffer.getShort(position) & 0xFFFF;
+            int type = buffer.getShort(position + 2) & 0xFFFF;
+            long valueCount =
+                    bigTiff
+                            ? buffer.getLong(position + 4)
+                            : buffer.getInt(position + 4) & 0xFFFFFFFFL;
+            if (LAYOUT_TAGS.contains(tag)
+                    || type >= TYPE_SIZES.length
+                    || TYPE_SIZES[type] == 0
+                    || type == TYPE_IFD
+                    || type == TYPE_IFD8) {
+                continue;
+            }
+            int size = (int) (valueCount * TYPE_SIZES[type]);
+            int valuePosition = position + (bigTiff ? 12 : 8);
+            if (size > inlineSize) {
+                valuePosition =
+                        (int)
+                                (bigTiff
+                                        ? buffer.getLong(valuePosition)
+                                        : buffer.getInt(valuePosition) & 0xFFFFFFFFL);
+            }
+            byte[] value = new byte[size];
+            for (int j = 0; j < size; j++) {
+                value[j] = buffer.get(valuePosition + j);
+            }
+            entries.add(new Entry(tag, type, valueCount, value));
+        }
+        return entries;
+    }
+
+    /** Encodes the image to the output stream */
+    public void encode(RenderedImage image, OutputStream out) throws IOException {
+        if (!isSupported(image)) {
+            throw new IllegalArgumentException("Unsupported image layout for TIFF streaming");
+        }
+        int tilesAcross = (image.getWidth() + tileWidth - 1) / tileWidth;
+        int tilesDown = (image.getHeight() + tileHeight - 1) / tileHeight;
+        int tileCount = tilesAcross * tilesDown;
+        SampleModel sm = image.getSampleModel();
+        int pixelBytes = sm.getNumBands() * DataBuffer.getDataTypeSize(sm.getDataType()) / 8;
+        long tileBytes = (long) tileWidth * tileHeight * pixelBytes;
+        if (tileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Tile size too large: " + tileBytes);
+        }
+
+        out.write(buildHeader(image, tileCount, (int) tileBytes));
+
+        ExecutorService executor = getExecutor();
+        int window = (int) Math.max(1, Math.min(tileCount, memoryBudget / tileBytes));
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            int submitted = 0;
+            for (int written = 0; written < tileCount; written++) {
+                while (submitted < tileCount && pending.size() < window) {
+                    int tileX = submitted % tilesAcross;
+                    int tileY = submitted / tilesAcross;
+                    pending.add(
+                            executor.submit(
+                                    () -> encodeTile(image, tileX, tileY, (int) tileBytes)));
+                    submitted++;
+                }
+                out.write(getTile(pending.poll()));
+            }
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private byte[] getTile(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the GeoTIFF");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode the GeoTIFF", cause);
+        }
+    }
+
+    /**
+     * Builds the TIFF header, the directory and the values that do not fit in it, everything that
+     * comes before the tiles
+     */
+    byte[] buildHeader(RenderedImage image, int tileCount, int tileBytes) {
+        long dataLength = (long) tileCount * tileBytes;
+        // start with a classic TIFF, switch to BigTIFF if the offsets do not fit in 32 bits
+        Layout layout = new Layout(image, tileCount, false);
+        if (layout.dataStart + dataLength > 0xFFFFFFFFL) {
+            layout = new Layout(image, tileCount, true);
+        }
+        for (int i = 0; i < tileCount; i++) {
+            long offset = layout.dataStart + (long) i * tileBytes;
+            if (layout.bigTiff) {
+                layout.offsets.putLong(offset);
+                layout.byteCounts.putLong(tileBytes);
+            } else {
+                layout.offsets.putInt((int) offset);
+                layout.byteCounts.putInt(tileBytes);
+            }
+        }
+        return layout.write();
+    }
+
+    /** Reads a tile of the image and returns its pixels, uncompressed and pixel interleaved */
+    byte[] encodeTile(RenderedImage image, int tileX, int tileY, int tileBytes) {
+        Rectangle bounds =
+                new Rectangle(
+                        image.getMinX(), image.getMinY(), image.getWidth(), image.getHeight());
+        Rectangle area =
+                new Rectangle(
+                                image.getMinX() + tileX * tileWidth,
+                                image.getMinY() + tileY * tileHeight,
+                                tileWidth,
+                                tileHeight)
+                        .intersection(bounds);
+        Raster raster = image.getData(area);
+        int bands = raster.getNumBands();
+        int samples = area.width * bands;
+        int rowBytes = tileBytes / tileHeight;
+        // the tiles on the right and bottom borders are padded with zeroes
+        ByteBuffer buffer = ByteBuffer.allocate(tileBytes).order(order);
+        int dataType = raster.getSampleModel().getDataType();
+        int[] ints = null;
+        float[] floats = null;
+        double[] doubles = null;
+        for (int row = 0; row < area.height; row++) {
+            int y = area.y + row;
+            buffer.position(row * rowBytes);
+            switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    ints = raster.getPixels(area.x, y, area.width, 1, ints);
+                    for (int i = 0; i < samples; i++) {
+                        buffer.put((byte) ints[i]);
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                case DataBuffer.TYPE_SHORT:
+                    ints = raster.getPixels(area.x, y, area.width, 1, ints);
+                    for (int i = 0; i < samples; i++) {
+                        buffer.putShort((short) ints[i]);
+                    }
+                    break;
+                case DataBuffer.TYPE_INT:
+                    ints = raster.getPixels(area.x, y, area.width, 1, ints);
+                    for (int i = 0; i < samples; i++) {
+                        buffer.putInt(ints[i]);
+                    }
+                    break;
+                case DataBuffer.TYPE_FLOAT:
+                    floats = raster.getPixels(area.x, y, area.width, 1, floats);
+                    for (int i = 0; i < samples; i++) {
+                        buffer.putFloat(floats[i]);
+                    }
+                    break;
+                case DataBuffer.TYPE_DOUBLE:
+                    doubles = raster.getPixels(area.x, y, area.width, 1, doubles);
+                    for (int i = 0; i < samples; i++) {
+                        buffer.putDouble(doubles[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported data type " + dataType);
+            }
+        }
+        return buffer.array();
+    }
+
+    /** A TIFF directory entry */
+    static class Entry {
+        final int tag;
+        final int type;
+        final long count;
+        final byte[] value;
+
+        Entry(int tag, int type, long count, byte[] value) {
+            this.tag = tag;
+            this.type = type;
+            this.count = count;
+            this.value = value;
+        }
+    }
+
+    /** The position of the directory entries and values in the output file */
+    class Layout {
+        final boolean bigTiff;
+        final List<Entry> entries = new ArrayList<>(templateEntries);
+        final Map<Entry, Long> valueOffsets = new IdentityHashMap<>();
+        final ByteBuffer offsets;
+        final ByteBuffer byteCounts;
+        final long dataStart;
+
+        Layout(RenderedImage image, int tileCount, boolean bigTiff) {
+            this.bigTiff = bigTiff;
+            entries.add(longEntry(TAG_IMAGE_WIDTH, image.getWidth()));
+            entries.add(longEntry(TAG_IMAGE_LENGTH, image.getHeight()));
+            entries.add(shortEntry(TAG_COMPRESSION, 1));
+            entries.add(shortEntry(TAG_PLANAR_CONFIGURATION, 1));
+            entries.add(longEntry(TAG_TILE_WIDTH, tileWidth));
+            entries.add(longEntry(TAG_TILE_LENGTH, tileHeight));
+            int offsetType = bigTiff ? TYPE_LONG8 : TYPE_LONG;
+            int offsetSize = TYPE_SIZES[offsetType];
+            Entry offsetsEntry =
+                    new Entry(
+                            TAG_TILE_OFFSETS,
+                            offsetType,
+                            tileCount,
+                            new byte[tileCount * offsetSize]);
+            Entry countsEntry =
+                    new Entry(
+                            TAG_TILE_BYTE_COUNTS,
+                            offsetType,
+                            tileCount,
+                            new byte[tileCount * offsetSize]);
+            entries.add(offsetsEntry);
+            entries.add(countsEntry);
+            entries.sort(Comparator.comparingInt(e -> e.tag));
+            this.offsets = ByteBuffer.wrap(offsetsEntry.value).order(order);
+            this.byteCounts = ByteBuffer.wrap(countsEntry.value).order(order);
+
+            // directory right after the header, then the values not fitting in it, then the tiles
+            long position =
+                    bigTiff ? 16 + 8 + entries.size() * 20 + 8 : 8 + 2 + entries.size() * 12 + 4;
+            for (Entry entry : entries) {
+                if (entry.value.length > getInlineSize()) {
+                    valueOffsets.put(entry, position);
+                    position += entry.value.length;
+                    // values must start on a word boundary
+                    position += position & 1;
+                }
+            }
+            this.dataStart = position;
+        }
+
+        private int getInlineSize() {
+            return bigTiff ? 8 : 4;
+        }
+
+        private Entry longEntry(int tag, int value) {
+            byte[] bytes = ByteBuffer.allocate(4).order(order).putInt(value).array();
+            return new Entry(tag, TYPE_LONG, 1, bytes);
+        }
+
+        private Entry shortEntry(int tag, int value) {
+            byte[] bytes = ByteBuffer.allocate(2).order(order).putShort((short) value).array();
+            return new Entry(tag, TYPE_SHORT, 1, bytes);
+        }
+
+        byte[] write() {
+            ByteBuffer buffer = ByteBuffer.allocate((int) dataStart).order(order);
+            buffer.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+            buffer.put(buffer.get(0));
+            if (bigTiff) {
+                buffer.putShort((short) 43);
+                buffer.putShort((short) 8);
+                buffer.putShort((short) 0);
+                buffer.putLong(16);
+                buffer.putLong(entries.size());
+            } else {
+                buffer.putShort((short) 42);
+                buffer.putInt(8);
+                buffer.putShort((short) entries.size());
+            }
+            for (Entry entry : entries) {
+                buffer.putShort((short) entry.tag);
+                buffer.putShort((short) entry.type);
+                if (bigTiff) {
+                    buffer.putLong(entry.count);
+                } else {
+                    buffer.putInt((int) entry.count);
+                }
+                int start = buffer.position();
+                if (entry.value.length > getInlineSize()) {
+                    if (bigTiff) {
+                        buffer.putLong(valueOffsets.get(entry));
+                    } else {
+                        buffer.putInt(valueOffsets.get(entry).intValue());
+                    }
+                } else {
+                    buffer.put(entry.value);
+                }
+                buffer.position(start + getInlineSize());
+            }
+            // no next directory
+            if (bigTiff) {
+                buffer.putLong(0);
+            } else {
+                buffer.putInt(0);
+            }
+            for (Entry entry : entries) {
+                if (entry.value.length > getInlineSize()) {
+                    buffer.position(valueOffsets.get(entry).intValue());
+                    buffer.put(entry.value);
+                }
+            }
+            return buffer.array();
+        }
+    }
+}
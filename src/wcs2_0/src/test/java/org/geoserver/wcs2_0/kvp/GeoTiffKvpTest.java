@@ -28,6 +28,7 @@ import net.opengis.wcs20.GetCoverageType;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.geoserver.wcs.WCSInfo;
+import org.geoserver.wcs.responses.StreamingGeoTiffEncoder;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.util.CoverageUtilities;
 import org.geotools.gce.geotiff.GeoTiffReader;
@@ -469,6 +470,65 @@ public class GeoTiffKvpTest extends WCSKVPTestSupport {
         reader.dispose();
     }
 
+    @Test
+    public void streaming() throws Exception {
+        String request =
+                "wcs?request=GetCoverage&service=WCS&version=2.0.1"
+                        + "&coverageId=wcs__BlueMarble&tiling=true&tileheight=256&tilewidth=256";
+        long threshold = StreamingGeoTiffEncoder.PIXEL_THRESHOLD;
+        byte[] expected;
+        byte[] streamed;
+        try {
+            StreamingGeoTiffEncoder.PIXEL_THRESHOLD = 0;
+            expected = getBinary(getAsServletResponse(request));
+            StreamingGeoTiffEncoder.PIXEL_THRESHOLD = 1;
+            MockHttpServletResponse response = getAsServletResponse(request);
+            assertEquals("image/tiff", response.getContentType());
+            streamed = getBinary(response);
+        } finally {
+            StreamingGeoTiffEncoder.PIXEL_THRESHOLD = threshold;
+        }
+        File expectedFile = File.createTempFile("bm_expected", ".tiff", new File("./target"));
+        FileUtils.writeByteArrayToFile(expectedFile, expected);
+        File streamedFile = File.createTempFile("bm_streamed", ".tiff", new File("./target"));
+        FileUtils.writeByteArrayToFile(streamedFile, streamed);
+
+        GeoTiffReader expectedReader = new GeoTiffReader(expectedFile);
+        GeoTiffReader streamedReader = new GeoTiffReader(streamedFile);
+        GridCoverage2D expectedCoverage = null, streamedCoverage = null;
+        try {
+            expectedCoverage = expectedReader.read(null);
+            streamedCoverage = streamedReader.read(null);
+            assertEquals(
+                    expectedCoverage.getGridGeometry().getGridRange(),
+                    streamedCoverage.getGridGeometry().getGridRange());
+            assertEquals(
+                    expectedCoverage.getCoordinateReferenceSystem(),
+                    streamedCoverage.getCoordinateReferenceSystem());
+            assertEquals(expectedCoverage.getEnvelope(), streamedCoverage.getEnvelope());
+
+            RenderedImage expectedImage = expectedCoverage.getRenderedImage();
+            RenderedImage streamedImage = streamedCoverage.getRenderedImage();
+            assertEquals(256, streamedImage.getTileWidth());
+            assertEquals(256, streamedImage.getTileHeight());
+            Raster expectedData = expectedImage.getData();
+            Raster streamedData = streamedImage.getData();
+            for (int y = 0; y < expectedImage.getHeight(); y++) {
+                for (int x = 0; x < expectedImage.getWidth(); x++) {
+                    for (int b = 0; b < expectedData.getNumBands(); b++) {
+                        assertEquals(
+                                expectedData.getSample(x, y, b), streamedData.getSample(x, y, b));
+                    }
+                }
+            }
+        } finally {
+            expectedReader.dispose();
+            streamedReader.dispose();
+            scheduleForCleaning(expectedCoverage);
+            scheduleForCleaning(streamedCoverage);
+        }
+    }
+
     @Test
     public void overviewPolicy() throws Exception {
         // //
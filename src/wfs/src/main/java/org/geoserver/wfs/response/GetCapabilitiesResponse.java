@@ -10,6 +10,7 @@ import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.List;
 import javax.xml.transform.TransformerException;
+import org.geoserver.ows.CapabilitiesCache;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
 import org.geoserver.wfs.request.GetCapabilitiesRequest;
@@ -50,10 +51,14 @@ public class GetCapabilitiesResponse extends Response {
     public void write(Object value, OutputStream output, Operation operation) throws IOException {
         TransformerBase tx = (TransformerBase) value;
 
-        try {
-            tx.transform(operation.getParameters()[0], output);
-        } catch (TransformerException e) {
-            throw (IOException) new IOException().initCause(e);
-        }
+        CapabilitiesCache.write(
+                output,
+                out -> {
+                    try {
+                        tx.transform(operation.getParameters()[0], out);
+                    } catch (TransformerException e) {
+                        throw (IOException) new IOException().initCause(e);
+                    }
+                });
     }
 }
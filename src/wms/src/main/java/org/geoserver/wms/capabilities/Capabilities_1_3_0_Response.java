@@ -8,6 +8,7 @@ package org.geoserver.wms.capabilities;
 import java.io.IOException;
 import java.io.OutputStream;
 import javax.xml.transform.TransformerException;
+import org.geoserver.ows.CapabilitiesCache;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
@@ -38,11 +39,15 @@ public class Capabilities_1_3_0_Response extends BaseCapabilitiesResponse {
 
         Capabilities_1_3_0_Transformer transformer = (Capabilities_1_3_0_Transformer) value;
 
-        try {
-            GetCapabilitiesRequest request = (GetCapabilitiesRequest) operation.getParameters()[0];
-            transformer.transform(request, output);
-        } catch (TransformerException e) {
-            throw new ServiceException(e);
-        }
+        GetCapabilitiesRequest request = (GetCapabilitiesRequest) operation.getParameters()[0];
+        CapabilitiesCache.write(
+                output,
+                out -> {
+                    try {
+                        transformer.transform(request, out);
+                    } catch (TransformerException e) {
+                        throw new ServiceException(e);
+                    }
+                });
     }
 }
@@ -23,6 +23,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import org.geoserver.ows.CapabilitiesCache;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
@@ -96,6 +97,14 @@ public class GetCapabilitiesResponse extends BaseCapabilitiesResponse {
         final GetCapabilitiesRequest request =
                 (GetCapabilitiesRequest) operation.getParameters()[0];
 
+        CapabilitiesCache.write(output, out -> writeCapabilities(transformer, request, out));
+    }
+
+    private void writeCapabilities(
+            GetCapabilitiesTransformer transformer,
+            GetCapabilitiesRequest request,
+            OutputStream output)
+            throws IOException, ServiceException {
         final String internalDTDDeclaration = getInternalDTDDeclaration(request);
 
         if (internalDTDDeclaration == null) {
@@ -0,0 +1,290 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Short lived cache of the features found in the map view of a GetFeatureInfo request, used by
+ * {@link VectorRenderingLayerIdentifier}. The first request against a view loads the features in
+ * the (slightly expanded) view bounds into a {@link STRtree}, the following ones within the same
+ * view, and for the same layer, filters, user and time to live, are answered from memory.
+ *
+ * <p>The cache is disabled by default, it can be enabled setting the {@code
+ * GS_FEATUREINFO_CACHE_TTL} system variable to the time to live of the snapshots, in seconds.
+ * Changes to the data are not visible until the snapshot expires. Views containing more than
+ * {@code GS_FEATUREINFO_CACHE_MAX_FEATURES} features (default 10000) are not cached.
+ */
+class FeatureInfoCache {
+
+    static final Logger LOGGER = Logging.getLogger(FeatureInfoCache.class);
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    static final long TTL = Long.getLong("GS_FEATUREINFO_CACHE_TTL", 0);
+
+    static final int MAX_FEATURES = Integer.getInteger("GS_FEATUREINFO_CACHE_MAX_FEATURES", 10000);
+
+    static final int MAX_SNAPSHOTS = Integer.getInteger("GS_FEATUREINFO_CACHE_SIZE", 32);
+
+    /** Fraction of the view size added around it when loading the snapshot */
+    static final double EXPANSION = 0.1;
+
+    static final FeatureInfoCache INSTANCE = new FeatureInfoCache(TTL, MAX_FEATURES);
+
+    final Cache<Key, Snapshot> snapshots;
+
+    final int maxFeatures;
+
+    FeatureInfoCache(long ttl, int maxFeatures) {
+        this.maxFeatures = maxFeatures;
+        this.snapshots =
+                ttl > 0
+                        ? CacheBuilder.newBuilder()
+                                .maximumSize(MAX_SNAPSHOTS)
+                                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                                .build()
+                        : null;
+    }
+
+    boolean isEnabled() {
+        return snapshots != null;
+    }
+
+    /**
+     * Returns the cache context for a layer and map view, or null if the cache is disabled or the
+     * layer definition query cannot be answered from a snapshot
+     *
+     * @param layerId the identifier of the layer
+     * @param source the feature source features will be read from
+     * @param definitionQuery the layer query, before the renderer adds its own filters
+     * @param view the map view bounds
+     */
+    Context getContext(
+            String layerId,
+            FeatureSource<? extends FeatureType, ? extends Feature> source,
+            Query definitionQuery,
+            ReferencedEnvelope view) {
+        if (!isEnabled()
+                || view == null
+                || !(source.getSchema() instanceof SimpleFeatureType)
+                || source.getSchema().getGeometryDescriptor() == null
+                || (definitionQuery.getSortBy() != null
+                        && definitionQuery.getSortBy().length > 0)
+                || definitionQuery.getStartIndex() != null
+                || !definitionQuery.isMaxFeaturesUnlimited()) {
+            return null;
+        }
+        try {
+            SimpleFeatureType schema = (SimpleFeatureType) source.getSchema();
+            ReferencedEnvelope extent = view;
+            if (schema.getCoordinateReferenceSystem() != null
+                    && view.getCoordinateReferenceSystem() != null) {
+                extent = view.transform(schema.getCoordinateReferenceSystem(), true);
+            }
+            extent = new ReferencedEnvelope(extent);
+            extent.expandBy(extent.getWidth() * EXPANSION, extent.getHeight() * EXPANSION);
+            Key key = new Key(layerId, definitionQuery, extent, getUser());
+            return new Context(key, source, schema, definitionQuery, extent);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Cannot cache feature info features for " + layerId, e);
+            return null;
+        }
+    }
+
+    private static String getUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return null;
+        }
+        return auth.getName()
+                + auth.getAuthorities()
+                        .stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .sorted()
+                        .collect(Collectors.toList());
+    }
+
+    /** Loads the features in the snapshot extent */
+    Snapshot load(Context context) throws IOException {
+        GeometryDescriptor gd = context.schema.getGeometryDescriptor();
+        Filter bbox = FF.bbox(FF.property(gd.getLocalName()), context.extent);
+        Filter definitionFilter = context.definitionQuery.getFilter();
+        Query query = new Query(context.definitionQuery);
+        query.setFilter(
+                definitionFilter == null || definitionFilter == Filter.INCLUDE
+                        ? bbox
+                        : FF.and(definitionFilter, bbox));
+        query.setProperties(Query.ALL_PROPERTIES);
+
+        STRtree tree = new STRtree();
+        int count = 0;
+        try (FeatureIterator<? extends Feature> it =
+                context.source.getFeatures(query).features()) {
+            while (it.hasNext()) {
+                SimpleFeature feature = (SimpleFeature) it.next();
+                if (++count > maxFeatures) {
+                    // too many, mark the view as not cacheable
+                    return new Snapshot(null);
+                }
+                Envelope envelope = ReferencedEnvelope.reference(feature.getBounds());
+                if (envelope != null && !envelope.isNull()) {
+                    tree.insert(envelope, feature);
+                }
+            }
+        }
+        tree.build();
+        return new Snapshot(tree);
+    }
+
+    /** Cache context for a layer and map view */
+    class Context {
+        final Key key;
+        final FeatureSource<? extends FeatureType, ? extends Feature> source;
+        final SimpleFeatureType schema;
+        final Query definitionQuery;
+        final ReferencedEnvelope extent;
+
+        Context(
+                Key key,
+                FeatureSource<? extends FeatureType, ? extends Feature> source,
+                SimpleFeatureType schema,
+                Query definitionQuery,
+                ReferencedEnvelope extent) {
+            this.key = key;
+            this.source = source;
+            this.schema = schema;
+            this.definitionQuery = definitionQuery;
+            this.extent = extent;
+        }
+
+        /**
+         * Answers the query from the snapshot of the view, or returns null if the query cannot be
+         * answered from it, in which case the store should be queried instead
+         */
+        FeatureCollection getFeatures(Query query) throws IOException {
+            if (query.getCoordinateSystem() != null
+                    || query.getCoordinateSystemReproject() != null
+                    || (query.getSortBy() != null && query.getSortBy().length > 0)
+                    || query.getStartIndex() != null) {
+                return null;
+            }
+            Filter filter = query.getFilter() != null ? query.getFilter() : Filter.INCLUDE;
+            Envelope bounds =
+                    (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if (bounds == null || !extent.contains(bounds)) {
+                return null;
+            }
+
+            Snapshot snapshot;
+            try {
+                snapshot = snapshots.get(key, () -> load(this));
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINE, "Failed to load the feature info snapshot", e.getCause());
+                return null;
+            }
+            if (snapshot.tree == null) {
+                return null;
+            }
+
+            List<SimpleFeature> features = new ArrayList<>();
+            int max = query.getMaxFeatures();
+            for (Object o : snapshot.tree.query(bounds)) {
+                SimpleFeature feature = (SimpleFeature) o;
+                if (filter.evaluate(feature)) {
+                    features.add(feature);
+                    if (features.size() >= max) {
+                        break;
+                    }
+                }
+            }
+            return new ListFeatureCollection(schema, features);
+        }
+    }
+
+    /** The features of a map view. A null tree marks a view with too many features to cache */
+    static class Snapshot {
+        final STRtree tree;
+
+        Snapshot(STRtree tree) {
+            this.tree = tree;
+        }
+    }
+
+    /** Identifies a map view of a layer, as seen by a user */
+    static class Key {
+        final String layerId;
+        final String filter;
+        final String version;
+        final String viewParams;
+        final Envelope extent;
+        final String crs;
+        final String user;
+
+        Key(String layerId, Query query, ReferencedEnvelope extent, String user) {
+            this.layerId = layerId;
+            this.filter = String.valueOf(query.getFilter());
+            this.version = query.getVersion();
+            this.viewParams = query.getHints() != null ? query.getHints().toString() : null;
+            this.extent = new Envelope(extent);
+            this.crs =
+                    extent.getCoordinateReferenceSystem() != null
+                            ? CRS.toSRS(extent.getCoordinateReferenceSystem())
+                            : null;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(layerId, key.layerId)
+                    && Objects.equals(filter, key.filter)
+                    && Objects.equals(version, key.version)
+                    && Objects.equals(viewParams, key.viewParams)
+                    && Objects.equals(extent, key.extent)
+                    && Objects.equals(crs, key.crs)
+                    && Objects.equals(user, key.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layerId, filter, version, viewParams, extent, crs, user);
+        }
+    }
+}
@@ -408,9 +408,20 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
                 getMap.getMaxFeatures() != null ? getMap.getMaxFeatures() : Integer.MAX_VALUE;
         definitionQuery.setMaxFeatures(maxFeatures);
 
+        // clipped sources are not cached, the clip geometry is not part of the cache key
+        FeatureInfoCache.Context cacheContext = null;
+        if (getMap.getClip() == null) {
+            cacheContext =
+                    FeatureInfoCache.INSTANCE.getContext(
+                            layer.getFeature().getId(),
+                            featureSource,
+                            definitionQuery,
+                            new ReferencedEnvelope(getMap.getBbox(), getMap.getCrs()));
+        }
         FeatureLayer result =
                 new FeatureLayer(
-                        new FeatureInfoFeatureSource(featureSource, params.getPropertyNames()),
+                        new FeatureInfoFeatureSource(
+                                featureSource, params.getPropertyNames(), cacheContext),
                         style);
         result.setQuery(definitionQuery);
 
@@ -707,13 +718,30 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
 
         String[] propertyNames;
 
+        FeatureInfoCache.Context cacheContext;
+
         public FeatureInfoFeatureSource(FeatureSource delegate, String[] propertyNames) {
+            this(delegate, propertyNames, null);
+        }
+
+        FeatureInfoFeatureSource(
+                FeatureSource delegate,
+                String[] propertyNames,
+                FeatureInfoCache.Context cacheContext) {
             super(delegate);
             this.propertyNames = propertyNames;
+            this.cacheContext = cacheContext;
         }
 
         @Override
         public FeatureCollection getFeatures(Query query) throws IOException {
+            if (cacheContext != null) {
+                // snapshot features carry all attributes, no need for property selection
+                FeatureCollection cached = cacheContext.getFeatures(query);
+                if (cached != null) {
+                    return cached;
+                }
+            }
             Query q = new Query(query);
             // we made the renderer believe we support the screenmap, but we don't want
             // it really be applied, so remove it
@@ -5,6 +5,7 @@
  */
 package org.geoserver.wms.map;
 
+import ar.com.hjg.pngj.FilterType;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.IOException;
@@ -20,6 +21,7 @@ import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.png.PNGJWriter;
+import org.geoserver.wms.map.png.ParallelPNGEncoder;
 import org.geotools.image.ImageWorker;
 import org.geotools.util.logging.Logging;
 
@@ -96,7 +98,16 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         image = applyPalette(image, mapContent, f -> f != null && f.contains("png8"), true);
         float quality = (100 - wms.getPngCompression()) / 100.0f;
         JAIInfo.PngEncoderType encoder = wms.getPNGEncoderType();
-        if (encoder == JAIInfo.PngEncoderType.PNGJ) {
+        if (encoder == JAIInfo.PngEncoderType.PNGJ && ParallelPNGEncoder.accepts(image)) {
+            // large image, filter and deflate bands of rows in parallel, using the same filter
+            // choice as the PNGJ writer, other encoders are honored as configured
+            int level = Math.round(9 * (1 - quality));
+            boolean subFilter =
+                    mapContent != null
+                            && new PNGJWriter().getFilterType(mapContent) == FilterType.FILTER_SUB;
+            new ParallelPNGEncoder(level, subFilter).encode(image, outStream);
+            RasterCleaner.addImage(image);
+        } else if (encoder == JAIInfo.PngEncoderType.PNGJ) {
             image = new PNGJWriter().writePNG(image, outStream, quality, mapContent);
             RasterCleaner.addImage(image);
         } else {
@@ -56,7 +56,7 @@ public class PNGJWriter {
      * SUB filtering is useful for raster images with "high" variation, otherwise we go for NONE,
      * empirically it provides better compression at lower effort
      */
-    private FilterType getFilterType(WMSMapContent mapContent) {
+    public FilterType getFilterType(WMSMapContent mapContent) {
         RasterSymbolizerVisitor visitor = new RasterSymbolizerVisitor();
         for (Layer layer : mapContent.layers()) {
             // check if the style has a raster symbolizer, don't trust the layer type as
@@ -0,0 +1,364 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes large images in PNG splitting them in bands of rows, that are filtered and deflated in
+ * parallel and then concatenated in a single zlib stream, the same way pigz does. Each band is
+ * flushed to a byte boundary, and the deflater of the next band is primed with the last 32KB of
+ * the previous band, so the compression ratio stays very close to the one of a single deflater.
+ *
+ * <p>Only 8 bits per sample images are supported, with gray, RGB (with or without alpha) or
+ * palette color models, see {@link #isSupported(RenderedImage)}.
+ */
+public class ParallelPNGEncoder {
+
+    /** Images with at least these many pixels are encoded in parallel, zero or less disables it */
+    public static final long PIXEL_THRESHOLD =
+            Long.getLong("GS_PNG_PARALLEL_THRESHOLD", 2048 * 2048);
+
+    static final int THREADS =
+            Integer.getInteger(
+                    "GS_PNG_PARALLEL_THREADS", Runtime.getRuntime().availableProcessors());
+
+    /** Target amount of raw bytes in a band */
+    static final int BAND_SIZE = 256 * 1024;
+
+    /** The deflate window size, used to prime the band deflaters */
+    static final int WINDOW = 32 * 1024;
+
+    static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    static final int FILTER_NONE = 0;
+
+    static final int FILTER_SUB = 1;
+
+    static ExecutorService executor;
+
+    final int level;
+
+    final int filter;
+
+    /**
+     * @param level the deflate compression level, between 0 and 9
+     * @param subFilter whether to use the SUB scanline filter, more effective on images with high
+     *     variation between adjacent pixels, or no filtering at all
+     */
+    public ParallelPNGEncoder(int level, boolean subFilter) {
+        this.level = Math.max(0, Math.min(9, level));
+        this.filter = subFilter ? FILTER_SUB : FILTER_NONE;
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            executor =
+                    Executors.newFixedThreadPool(
+                            Math.max(1, THREADS),
+                            r -> {
+                                Thread t = new Thread(r, "PNGEncoder-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+        }
+        return executor;
+    }
+
+    /** Returns true if the image is large enough, and its layout supported by this encoder */
+    public static boolean accepts(RenderedImage image) {
+        return PIXEL_THRESHOLD > 0
+                && THREADS > 1
+                && (long) image.getWidth() * image.getHeight() >= PIXEL_THRESHOLD
+                && isSupported(image);
+    }
+
+    /** Returns true if the image sample and color models can be encoded by this class */
+    public static boolean isSupported(RenderedImage image) {
+        return getColorType(image) >= 0;
+    }
+
+    /** Returns the PNG color type for the image, or -1 if not supported */
+    static int getColorType(RenderedImage image) {
+        SampleModel sm = image.getSampleModel();
+        ColorModel cm = image.getColorModel();
+        if (sm == null || cm == null || cm.isAlphaPremultiplied()) {
+            return -1;
+        }
+        for (int size : sm.getSampleSize()) {
+            if (size != 8) {
+                return -1;
+            }
+        }
+        int bands = sm.getNumBands();
+        if (cm instanceof IndexColorModel) {
+            return bands == 1 && ((IndexColorModel) cm).getMapSize() <= 256 ? 3 : -1;
+        }
+        int csType = cm.getColorSpace().getType();
+        if (csType == ColorSpace.TYPE_GRAY && bands == (cm.hasAlpha() ? 2 : 1)) {
+            return cm.hasAlpha() ? 4 : 0;
+        } else if (csType == ColorSpace.TYPE_RGB && bands == (cm.hasAlpha() ? 4 : 3)) {
+            return cm.hasAlpha() ? 6 : 2;
+        }
+        return -1;
+    }
+
+    /** Encodes the image in PNG format to the given output stream */
+    public void encode(RenderedImage image, OutputStream out) throws IOException {
+        int colorType = getColorType(image);
+        if (colorType < 0) {
+            throw new IllegalArgumentException("Unsupported image layout for PNG encoding");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bpp = image.getSampleModel().getNumBands();
+        int rowLength = 1 + width * bpp;
+        int bandRows = Math.max(1, BAND_SIZE / rowLength);
+        int bandCount = (height + bandRows - 1) / bandRows;
+
+        out.write(SIGNATURE);
+        writeHeader(out, width, height, colorType);
+        if (colorType == 3) {
+            writePalette(out, (IndexColorModel) image.getColorModel());
+        }
+
+        ExecutorService executor = getExecutor();
+        int window = Math.max(2, THREADS * 2);
+        Deque<Future<Band>> pending = new ArrayDeque<>();
+        Adler32 adler = new Adler32();
+        long checksum = adler.getValue();
+        try {
+            int submitted = 0;
+            for (int written = 0; written < bandCount; written++) {
+                while (submitted < bandCount && pending.size() < window) {
+                    int startRow = submitted * bandRows;
+                    int endRow = Math.min(height, startRow + bandRows);
+                    boolean last = submitted == bandCount - 1;
+                    pending.add(
+                            executor.submit(() -> encodeBand(image, startRow, endRow, last)));
+                    submitted++;
+                }
+                Band band = getBand(pending.poll());
+                checksum =
+                        written == 0
+                                ? band.adler
+                                : combineAdler32(checksum, band.adler, band.rawLength);
+                ByteArrayOutputStream data = new ByteArrayOutputStream(band.data.length + 6);
+                if (written == 0) {
+                    // zlib header, deflate with a 32KB window, default compression
+                    data.write(0x78);
+                    data.write(0x9C);
+                }
+                data.write(band.data);
+                if (written == bandCount - 1) {
+                    writeInt(data, (int) checksum);
+                }
+                writeChunk(out, "IDAT", data.toByteArray());
+            }
+        } finally {
+            for (Future<Band> future : pending) {
+                future.cancel(true);
+            }
+        }
+        writeChunk(out, "IEND", new byte[0]);
+    }
+
+    private Band getBand(Future<Band> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the PNG");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode the PNG", cause);
+        }
+    }
+
+    /** Filters and deflates a band of rows, from startRow included to endRow excluded */
+    Band encodeBand(RenderedImage image, int startRow, int endRow, boolean last) {
+        int width = image.getWidth();
+        int bpp = image.getSampleModel().getNumBands();
+        int rowLength = 1 + width * bpp;
+        // rows of the previous band used to prime the deflater
+        int dictionaryRows = Math.min(startRow, (WINDOW + rowLength - 1) / rowLength);
+        int firstRow = startRow - dictionaryRows;
+        Raster raster =
+                image.getData(
+                        new Rectangle(
+                                image.getMinX(),
+                                image.getMinY() + firstRow,
+                                width,
+                                endRow - firstRow));
+
+        byte[] filtered = new byte[rowLength * (endRow - firstRow)];
+        int[] samples = new int[width * bpp];
+        for (int r = firstRow; r < endRow; r++) {
+            raster.getPixels(image.getMinX(), image.getMinY() + r, width, 1, samples);
+            filterRow(samples, bpp, filtered, (r - firstRow) * rowLength);
+        }
+
+        int dictionaryLength = Math.min(WINDOW, dictionaryRows * rowLength);
+        int rawOffset = dictionaryRows * rowLength;
+        int rawLength = filtered.length - rawOffset;
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered, rawOffset, rawLength);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionaryLength > 0) {
+                deflater.setDictionary(filtered, rawOffset - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(filtered, rawOffset, rawLength);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(rawLength / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    bos.write(buffer, 0, count);
+                }
+            } else {
+                // sync flush, so that the next band starts on a byte boundary
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    bos.write(buffer, 0, count);
+                } while (count == buffer.length || !deflater.needsInput());
+            }
+            return new Band(bos.toByteArray(), adler.getValue(), rawLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void filterRow(int[] samples, int bpp, byte[] target, int offset) {
+        target[offset] = (byte) filter;
+        int base = offset + 1;
+        if (filter == FILTER_SUB) {
+            for (int i = 0; i < bpp && i < samples.length; i++) {
+                target[base + i] = (byte) samples[i];
+            }
+            for (int i = bpp; i < samples.length; i++) {
+                target[base + i] = (byte) (samples[i] - samples[i - bpp]);
+            }
+        } else {
+            for (int i = 0; i < samples.length; i++) {
+                target[base + i] = (byte) samples[i];
+            }
+        }
+    }
+
+    /** Combines the Adler-32 checksums of two consecutive blocks, same as zlib adler32_combine */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xffff) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + base - remainder;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    private void writeHeader(OutputStream out, int width, int height, int colorType)
+            throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        writeInt(header, width);
+        writeInt(header, height);
+        header.write(8); // bit depth
+        header.write(colorType);
+        header.write(0); // deflate compression
+        header.write(0); // adaptive filtering
+        header.write(0); // no interlacing
+        writeChunk(out, "IHDR", header.toByteArray());
+    }
+
+    private void writePalette(OutputStream out, IndexColorModel icm) throws IOException {
+        int size = icm.getMapSize();
+        byte[] palette = new byte[size * 3];
+        int lastTranslucent = -1;
+        for (int i = 0; i < size; i++) {
+            palette[i * 3] = (byte) icm.getRed(i);
+            palette[i * 3 + 1] = (byte) icm.getGreen(i);
+            palette[i * 3 + 2] = (byte) icm.getBlue(i);
+            if (icm.getAlpha(i) != 255) {
+                lastTranslucent = i;
+            }
+        }
+        writeChunk(out, "PLTE", palette);
+        if (lastTranslucent >= 0) {
+            byte[] alphas = new byte[lastTranslucent + 1];
+            for (int i = 0; i <= lastTranslucent; i++) {
+                alphas[i] = (byte) icm.getAlpha(i);
+            }
+            writeChunk(out, "tRNS", alphas);
+        }
+    }
+
+    private void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        writeInt(out, data.length);
+        out.write(typeBytes);
+        out.write(data);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write((value >>> 24) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    /** A filtered and deflated band of rows */
+    static class Band {
+        final byte[] data;
+        final long adler;
+        final int rawLength;
+
+        Band(byte[] data, long adler, int rawLength) {
+            this.data = data;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+}
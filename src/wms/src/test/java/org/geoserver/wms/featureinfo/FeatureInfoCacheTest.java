@@ -0,0 +1,125 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.security.decorators.DecoratingFeatureSource;
+import org.geoserver.wms.WMSTestSupport;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.Feature;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.filter.FilterFactory2;
+
+public class FeatureInfoCacheTest extends WMSTestSupport {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    AtomicInteger reads = new AtomicInteger();
+
+    FeatureSource<FeatureType, Feature> source;
+
+    ReferencedEnvelope bounds;
+
+    String geometryName;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setupSource() throws Exception {
+        FeatureTypeInfo info = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        FeatureSource<FeatureType, Feature> delegate =
+                (FeatureSource<FeatureType, Feature>) info.getFeatureSource(null, null);
+        source =
+                new DecoratingFeatureSource<FeatureType, Feature>(delegate) {
+                    @Override
+                    public FeatureCollection<FeatureType, Feature> getFeatures(Query query)
+                            throws IOException {
+                        reads.incrementAndGet();
+                        return super.getFeatures(query);
+                    }
+                };
+        bounds = delegate.getBounds();
+        geometryName = delegate.getSchema().getGeometryDescriptor().getLocalName();
+    }
+
+    private Query typeQuery() {
+        return new Query(source.getSchema().getName().getLocalPart());
+    }
+
+    private Query bboxQuery(ReferencedEnvelope envelope) {
+        Query query = typeQuery();
+        query.setFilter(FF.bbox(FF.property(geometryName), envelope));
+        return query;
+    }
+
+    @Test
+    public void testAnsweredFromSnapshot() throws Exception {
+        FeatureInfoCache cache = new FeatureInfoCache(60, 1000);
+        FeatureInfoCache.Context context = cache.getContext("lakes", source, typeQuery(), bounds);
+        assertNotNull(context);
+
+        Query query = bboxQuery(bounds);
+        int expected = source.getFeatures(query).size();
+        reads.set(0);
+
+        FeatureCollection features = context.getFeatures(query);
+        assertNotNull(features);
+        assertEquals(expected, features.size());
+        assertEquals(1, reads.get());
+
+        // a query in a sub-area does not hit the store again
+        ReferencedEnvelope corner =
+                new ReferencedEnvelope(
+                        bounds.getMinX(),
+                        bounds.getMinX() + bounds.getWidth() / 10,
+                        bounds.getMinY(),
+                        bounds.getMinY() + bounds.getHeight() / 10,
+                        bounds.getCoordinateReferenceSystem());
+        int expectedCorner = source.getFeatures(bboxQuery(corner)).size();
+        reads.set(0);
+        assertEquals(expectedCorner, context.getFeatures(bboxQuery(corner)).size());
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    public void testOutsideSnapshot() throws Exception {
+        FeatureInfoCache cache = new FeatureInfoCache(60, 1000);
+        FeatureInfoCache.Context context = cache.getContext("lakes", source, typeQuery(), bounds);
+        ReferencedEnvelope far = new ReferencedEnvelope(bounds);
+        far.translate(bounds.getWidth() * 10, 0);
+        assertNull(context.getFeatures(bboxQuery(far)));
+
+        // no spatial filter, cannot be answered from the snapshot either
+        assertNull(context.getFeatures(typeQuery()));
+    }
+
+    @Test
+    public void testTooManyFeatures() throws Exception {
+        FeatureInfoCache cache = new FeatureInfoCache(60, 0);
+        FeatureInfoCache.Context context = cache.getContext("lakes", source, typeQuery(), bounds);
+        assertNull(context.getFeatures(bboxQuery(bounds)));
+        assertNull(context.getFeatures(bboxQuery(bounds)));
+        // the view is marked as not cacheable, not loaded over and over
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        FeatureInfoCache cache = new FeatureInfoCache(0, 1000);
+        assertNull(cache.getContext("lakes", source, typeQuery(), bounds));
+    }
+}
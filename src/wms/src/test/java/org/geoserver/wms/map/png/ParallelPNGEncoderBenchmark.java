@@ -0,0 +1,106 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import ar.com.hjg.pngj.FilterType;
+import it.geosolutions.imageio.plugins.png.PNGWriter;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the {@link ParallelPNGEncoder} with the PNGJ writer it replaces on large images, at the
+ * same compression level and filter. Not run by the build, launch it from the IDE or with the test
+ * classpath, passing the image size (default 4096) and the number of timed runs (default 10):
+ *
+ * <pre>
+ * java -cp ... org.geoserver.wms.map.png.ParallelPNGEncoderBenchmark 8192 10
+ * </pre>
+ *
+ * The median encoding time and the output size are printed for each encoder and filter.
+ */
+public class ParallelPNGEncoderBenchmark {
+
+    static final int WARMUP = 3;
+
+    interface Encoder {
+        byte[] encode(BufferedImage image) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        // quality 0.7 as used by the PNG map response by default, level 3
+        float quality = 0.7f;
+        int level = Math.round(9 * (1 - quality));
+
+        BufferedImage image = createImage(size);
+        System.out.printf(
+                "Image %dx%d, %d threads, %d runs%n", size, size, ParallelPNGEncoder.THREADS, runs);
+        for (boolean sub : new boolean[] {false, true}) {
+            FilterType filter = sub ? FilterType.FILTER_SUB : FilterType.FILTER_NONE;
+            run(
+                    "PNGJ " + filter,
+                    image,
+                    runs,
+                    i -> {
+                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                        new PNGWriter().writePNG(i, bos, quality, filter);
+                        return bos.toByteArray();
+                    });
+            run(
+                    "Parallel " + filter,
+                    image,
+                    runs,
+                    i -> {
+                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                        new ParallelPNGEncoder(level, sub).encode(i, bos);
+                        return bos.toByteArray();
+                    });
+        }
+    }
+
+    static void run(String name, BufferedImage image, int runs, Encoder encoder) throws Exception {
+        int length = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            length = encoder.encode(image).length;
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            encoder.encode(image);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.printf(
+                "%-20s median %8.1f ms, %10d bytes%n", name, times[runs / 2] / 1e6, length);
+    }
+
+    /** A map like image, smooth background with vector overlays and some noise */
+    static BufferedImage createImage(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, Color.WHITE, size, size, new Color(200, 220, 255)));
+        g.fillRect(0, 0, size, size);
+        Random random = new Random(0);
+        for (int i = 0; i < size; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.drawLine(
+                    random.nextInt(size),
+                    random.nextInt(size),
+                    random.nextInt(size),
+                    random.nextInt(size));
+            g.drawString("Label " + i, random.nextInt(size), random.nextInt(size));
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,120 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Adler32;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+public class ParallelPNGEncoderTest {
+
+    private BufferedImage createImage(int type) {
+        // tall enough to be split in several bands
+        BufferedImage image = new BufferedImage(700, 900, type);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, Color.RED, 700, 900, new Color(0, 0, 255, 128)));
+        g.fillRect(0, 0, 700, 900);
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < 900; i += 15) {
+            g.drawLine(0, i, 700, 900 - i);
+            g.drawString("PNG " + i, i % 700, i);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private void assertRoundTrip(int type, boolean sub) throws Exception {
+        BufferedImage image = createImage(type);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new ParallelPNGEncoder(6, sub).encode(image, bos);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(image.getWidth(), decoded.getWidth());
+        assertEquals(image.getHeight(), decoded.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(
+                        "Pixel mismatch at " + x + "," + y,
+                        image.getRGB(x, y),
+                        decoded.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testRGBA() throws Exception {
+        assertRoundTrip(BufferedImage.TYPE_4BYTE_ABGR, false);
+        assertRoundTrip(BufferedImage.TYPE_4BYTE_ABGR, true);
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(BufferedImage.TYPE_3BYTE_BGR, true);
+        assertRoundTrip(BufferedImage.TYPE_INT_RGB, false);
+    }
+
+    @Test
+    public void testPackedARGB() throws Exception {
+        assertRoundTrip(BufferedImage.TYPE_INT_ARGB, true);
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(BufferedImage.TYPE_BYTE_GRAY, true);
+    }
+
+    @Test
+    public void testPalette() throws Exception {
+        assertRoundTrip(BufferedImage.TYPE_BYTE_INDEXED, false);
+    }
+
+    @Test
+    public void testSupported() {
+        assertTrue(ParallelPNGEncoder.isSupported(createImage(BufferedImage.TYPE_INT_ARGB)));
+        assertFalse(ParallelPNGEncoder.isSupported(createImage(BufferedImage.TYPE_INT_ARGB_PRE)));
+        assertFalse(ParallelPNGEncoder.isSupported(createImage(BufferedImage.TYPE_USHORT_GRAY)));
+        assertFalse(ParallelPNGEncoder.isSupported(createImage(BufferedImage.TYPE_BYTE_BINARY)));
+    }
+
+    @Test
+    public void testCompressionCloseToSerial() throws Exception {
+        BufferedImage image = createImage(BufferedImage.TYPE_4BYTE_ABGR);
+        ParallelPNGEncoder encoder = new ParallelPNGEncoder(6, true);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encoder.encode(image, bos);
+        // a single band is the same as a serial deflate of the whole image
+        ParallelPNGEncoder.Band serial = encoder.encodeBand(image, 0, image.getHeight(), true);
+        assertTrue(bos.size() < serial.data.length * 1.02 + 1024);
+    }
+
+    @Test
+    public void testCombineAdler() {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + i / 7);
+        }
+        Adler32 full = new Adler32();
+        full.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 30000);
+        Adler32 second = new Adler32();
+        second.update(data, 30000, 70000);
+        assertEquals(
+                full.getValue(),
+                ParallelPNGEncoder.combineAdler32(first.getValue(), second.getValue(), 70000));
+    }
+}